@@ -0,0 +1,93 @@
+package ci553.happyshop.catalogue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The DeliveryNote class represents a warehouse delivery: the stock change of every product on it,
+ * typed into the warehouse client or loaded from the supplier's file, and applied with DatabaseRW.adjustStocks.
+ *
+ * A delivery note example (one product per line, the ID and the quantity separated by a comma or spaces):
+ * productID,quantity
+ * 0001,300
+ * 0007 +20
+ * 0003,-2      # a negative quantity corrects the stock down, e.g. damaged goods
+ *
+ * - A first line starting with "productID" (a CSV header), empty lines and text after '#' are ignored.
+ * - A product listed twice gets the sum of its quantities.
+ * - Lines that cannot be read are collected as errors (with their line number) instead of stopping the note,
+ *   so the warehouse user sees every mistake at once.
+ */
+
+public class DeliveryNote {
+    private final LinkedHashMap<String, Integer> stockChanges = new LinkedHashMap<>();
+    private final List<String> errors = new ArrayList<>();
+
+    private DeliveryNote() {
+    }
+
+    /**
+     * Reads a delivery note from its text.
+     */
+    public static DeliveryNote parse(String text) {
+        DeliveryNote note = new DeliveryNote();
+        String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (note.stockChanges.isEmpty() && note.errors.isEmpty() && line.toLowerCase().startsWith("productid")) {
+                continue; // CSV header
+            }
+
+            String[] fields = line.split("\\s*,\\s*|\\s+");
+            if (fields.length != 2) {
+                note.errors.add("Line " + (i + 1) + ": expected a product ID and a quantity");
+                continue;
+            }
+            String productId = fields[0];
+            if (!productId.matches("\\d{4,10}")) {
+                note.errors.add("Line " + (i + 1) + ": product ID must be 4 to 10 digits");
+                continue;
+            }
+            int quantity;
+            try {
+                quantity = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                note.errors.add("Line " + (i + 1) + ": invalid quantity " + fields[1]);
+                continue;
+            }
+            if (quantity == 0) {
+                note.errors.add("Line " + (i + 1) + ": quantity cannot be 0");
+                continue;
+            }
+            note.stockChanges.merge(productId, quantity, Integer::sum);
+        }
+        return note;
+    }
+
+    // the stock change of each product, in the order the products first appear on the note
+    public LinkedHashMap<String, Integer> getStockChanges() {
+        return stockChanges;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean isEmpty() {
+        return stockChanges.isEmpty();
+    }
+
+    // the total number of units delivered (positive changes only)
+    public int getUnitsDelivered() {
+        int units = 0;
+        for (int quantity : stockChanges.values()) {
+            if (quantity > 0) units += quantity;
+        }
+        return units;
+    }
+}
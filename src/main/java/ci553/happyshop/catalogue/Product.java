@@ -9,6 +9,8 @@ package ci553.happyshop.catalogue;
  * - unitPrice: Price per single unit of the product.
  * - orderedQuantity: Quantity involved in a customer's order.
  * - stockQuantity: Quantity currently available in stock.
+ * - version: Row version read from the database, raised by every change of the row;
+ *   the warehouse passes it back when it saves an edit (see DatabaseRW.updateProduct).
  * 
  * Week 3: Implements Comparable interface for natural ordering by product ID
  */
@@ -23,6 +25,7 @@ public class Product implements Comparable<Product> {
     private double unitPrice;
     private int orderedQuantity =1; //The quantity of this product in the customer's order.
     private int stockQuantity;//
+    private int version = 0; // row version when the product was read
 
     /**
      * Constructor,used by DatabaseRW, make product from searching ResultSet
@@ -41,6 +44,15 @@ public class Product implements Comparable<Product> {
         totalProductsCreated++; // Week 3: Increment static counter
     }
 
+    /**
+     * Constructor used by DatabaseRW when it also reads the row version.
+     * @param version The row version of the product when it was read
+     */
+    public Product(String id, String des, String image, double aPrice, int stockQuantity, int version) {
+        this(id, des, image, aPrice, stockQuantity);
+        this.version = version;
+    }
+
     // a set of getter methods
     public String getProductId() { return proId;}
     public String getProductDescription() { return proDescription;}
@@ -48,6 +60,7 @@ public class Product implements Comparable<Product> {
     public double getUnitPrice() { return unitPrice;}
     public int getOrderedQuantity() { return orderedQuantity;}
     public int getStockQuantity() { return stockQuantity;}
+    public int getVersion() { return version;}
     
     // Week 3: Static getter for total products created across all instances
     public static int getTotalProductsCreated() { 
@@ -9,12 +9,17 @@ import ci553.happyshop.client.picker.PickerModel;
 import ci553.happyshop.client.picker.PickerView;
 
 import ci553.happyshop.client.warehouse.*;
+import ci553.happyshop.orderManagement.OrderCounter;
 import ci553.happyshop.orderManagement.OrderHub;
 import ci553.happyshop.storageAccess.DatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.systemSetup.SchemaMigrator;
+import ci553.happyshop.utility.Logger;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import java.io.IOException;
+import java.sql.SQLException;
 
 /**
  * The Main JavaFX application class. The Main class is executable directly.
@@ -44,7 +49,12 @@ public class Main extends Application {
     public void start(Stage window) throws IOException {
         // Week 11: Multi-window testing layout (2 of each client except Exit) in 3-column grid
         // Note: Window positions are assigned by WinPosManager in the order they're created
-        
+
+        // Brings the database schema up to date, then opens the shared connection pool
+        // and builds the search index before the clients start
+        migrateSchema();
+        DatabaseRWFactory.warmUp();
+
         // Row 1: Customer #1 + Customer #2 + Tracker #1
         startCustomerClient(); // Customer #1
         startCustomerClient(); // Customer #2
@@ -65,6 +75,25 @@ public class Main extends Application {
         startEmergencyExit(); // Exit button
     }
 
+    //applies the schema migrations not applied yet; the clients still start if this fails
+    private void migrateSchema() {
+        if (!DatabaseRWFactory.isDerbyBackend()) return; // the memory backend has no schema
+        try {
+            new SchemaMigrator(DatabaseRWFactory.dbURL).migrate();
+        } catch (SQLException e) {
+            // already logged by SchemaMigrator; the failed migration was rolled back and is tried again next start
+        }
+    }
+
+    //releases the shared database connections when the JavaFX application stops
+    @Override
+    public void stop() {
+        DatabaseRWFactory.shutdown();
+        OrderHub.getOrderHub().shutdown(); // closes the order journal, if used
+        OrderCounter.releaseUnusedIds(); // so the next start continues without a gap in the order IDs
+        Logger.shutdown(); // write the remaining log messages
+    }
+
     /** The customer GUI -search prodduct, add to trolley, cancel/submit trolley, view receipt
      *
      * Creates the Model, View, and Controller objects, links them together so they can communicate with each other.
@@ -91,6 +120,7 @@ public class Main extends Application {
         cusView.cusController = cusController;
         cusController.cusModel = cusModel;
         cusModel.cusView = cusView; // Setter injection for view (to avoid circular dependency)
+        cusModel.reservationManager = DatabaseRWFactory.getReservationManager(); // holds stock during payment
         
         // Week 3: Link notifier to view for positioning
         removeProductNotifier.cusView = cusView;
@@ -129,6 +159,9 @@ public class Main extends Application {
     private void initializeOrderMap(){
         OrderHub orderHub = OrderHub.getOrderHub();
         orderHub.initializeOrderMap();
+        if (DatabaseRWFactory.isNetworkBackend()) {
+            orderHub.watchOrderFolders(Platform::runLater); // clients in other JVMs place and pick orders too
+        }
     }
 
     /** The Warehouse GUI- for warehouse staff to manage stock
@@ -136,7 +169,7 @@ public class Main extends Application {
      * It also creates the DatabaseRW instance via the DatabaseRWFactory and injects it into the Model.
      * Once the components are linked, the warehouse interface (view) is started.
      *
-     * Also creates the dependent HistoryWindow and AlertSimulator,
+     * Also creates the dependent HistoryWindow, AlertSimulator and LowStockWindow,
      * which track the position of the Warehouse window and are triggered by the Model when needed.
      * These components are linked after launching the Warehouse interface.
      */
@@ -156,12 +189,16 @@ public class Main extends Application {
         //create dependent views that need window info
         HistoryWindow historyWindow = new HistoryWindow();
         AlertSimulator alertSimulator = new AlertSimulator();
+        LowStockWindow lowStockWindow = new LowStockWindow();
 
         // Link after start
         model.historyWindow = historyWindow;
         model.alertSimulator = alertSimulator;
         historyWindow.warehouseView = view;
         alertSimulator.warehouseView = view;
+        model.lowStockWindow = lowStockWindow;
+        lowStockWindow.warehouseView = view;
+        model.watchLowStock(DatabaseRWFactory.getLowStockMonitor()); // alerts pushed as stock changes
     }
 
     //starts the EmergencyExit GUI, - used to close the entire application immediatelly
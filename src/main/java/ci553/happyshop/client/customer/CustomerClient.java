@@ -35,6 +35,7 @@ public class CustomerClient extends Application {
         cusController.cusModel = cusModel;
         cusModel.cusView = cusView;
         cusModel.databaseRW = databaseRW;
+        cusModel.reservationManager = DatabaseRWFactory.getReservationManager();
         cusView.start(window);
 
         // Week 3: Initialize RemoveProductNotifier for stock shortage handling
@@ -79,6 +79,11 @@ public class CustomerController {
         cusModel.selectProduct(product);
     }
     
+    // Loads the next page of search results when the results list is scrolled to the end
+    public void loadMoreSearchResults() {
+        cusModel.loadMoreSearchResults();
+    }
+
     // Week 5: Original action handling
     private void handleStandardAction(String action) throws SQLException, IOException {
         switch (action) {
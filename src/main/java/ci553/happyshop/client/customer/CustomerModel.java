@@ -4,10 +4,16 @@ import ci553.happyshop.catalogue.Order;
 import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.catalogue.MinimumPaymentException;
 import ci553.happyshop.catalogue.ExcessiveOrderQuantityException;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRW;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.storageAccess.ProductPage;
+import ci553.happyshop.storageAccess.StockReservation;
+import ci553.happyshop.storageAccess.StockReservationManager;
 import ci553.happyshop.orderManagement.OrderHub;
 import ci553.happyshop.utility.StorageLocation;
 import ci553.happyshop.utility.ProductListFormatter;
+import javafx.application.Platform;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
@@ -23,6 +29,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * TODO
@@ -39,10 +47,20 @@ public class CustomerModel {
     public DatabaseRW databaseRW; //Interface type, not specific implementation
                                   //Benefits: Flexibility: Easily change the database implementation.
     public RemoveProductNotifier removeProductNotifier; // Week 3: Notifier for stock shortage alerts
+    public StockReservationManager reservationManager;  // holds the trolley's stock while the customer pays
+    public Executor uiExecutor = Platform::runLater;     // applies background results on the JavaFX Application Thread
+    private AsyncDatabaseRW asyncDatabaseRW;             // runs the database calls off the JavaFX thread
+    private CompletableFuture<?> pendingSearch = null;   // the search still running, cancelled by a newer one
+    private CompletableFuture<?> pendingLoadMore = null; // the next page still loading
+    private boolean checkOutInProgress = false;          // stock is being reserved for a checkout
 
     private Product theProduct =null; // product found from search
     private ArrayList<Product> trolley =  new ArrayList<>(); // a list of products in trolley
     private ArrayList<Product> searchResults = new ArrayList<>(); // Week 7: Multiple search results for flexible search
+    private static final int MAX_SIMILAR_RESULTS = 5; // suggestions shown when a search finds nothing
+    private static final int SEARCH_PAGE_SIZE = 20;   // search results loaded at once, more are fetched on scroll
+    private ProductPage lastSearchPage = null;        // the last page loaded for searchKeyword, null if none
+    private String searchKeyword = "";
 
     // Week 10: Customer type for different business rules (Standard, VIP, Prime)
     private String customerType = "Standard";
@@ -82,51 +100,144 @@ public class CustomerModel {
     /**
      * Week 7: Flexible search - accepts both Product ID and Product Name
      * Uses DatabaseRW.searchProduct() which searches by ID first, then by name if not found
+     * If nothing matches, falls back to DatabaseRW.searchProductFuzzy() to suggest similarly spelled products
+     * Only the first page of results is loaded, see loadMoreSearchResults()
      */
-    void search() throws SQLException {
+    void search() {
         String keyword = cusView.tfId.getText().trim();
+        cancelPendingSearch(); // a newer search replaces the results of the one still running
         if(!keyword.isEmpty()){
             // Week 7: Search by ID or name using unified search method
-            searchResults = databaseRW.searchProduct(keyword);
-            
-            if(!searchResults.isEmpty()){ 
-                // Week 7: If multiple results found, show list; if single result, show details
-                if(searchResults.size() == 1){
-                    theProduct = searchResults.get(0);
-                    if(theProduct.getStockQuantity() > 0){
-                        double unitPrice = theProduct.getUnitPrice();
-                        String description = theProduct.getProductDescription();
-                        int stock = theProduct.getStockQuantity();
-                        String productId = theProduct.getProductId(); // Week 7: Use actual product ID, not search keyword
-
-                        String baseInfo = String.format("Product_Id: %s\n%s,\nPrice: £%.2f", productId, description, unitPrice);
-                        String quantityInfo = stock < 100 ? String.format("\n%d units left.", stock) : "";
-                        displayLaSearchResult = baseInfo + quantityInfo;
-                        System.out.println("Product " + productId + " found (searched by: " + keyword + ")");
-                    } else {
-                        theProduct = null;
-                        displayLaSearchResult = "Product found but out of stock";
-                    }
+            // The query runs in the background, the result is shown on the JavaFX thread when it arrives
+            CompletableFuture<SearchOutcome> search = asyncDatabaseRW().call(db -> {
+                ProductPage page = db.searchProductPage(keyword, 0, SEARCH_PAGE_SIZE);
+                if (!page.getProducts().isEmpty()) {
+                    return new SearchOutcome(page, new ArrayList<>(page.getProducts()), false);
+                }
+                // probably a typo (e.g. "toastr"), suggest similar products instead of retrying
+                ArrayList<Product> similar = db.searchProductFuzzy(keyword, MAX_SIMILAR_RESULTS);
+                return similar.isEmpty() ? new SearchOutcome(page, similar, false)
+                                         : new SearchOutcome(null, similar, true); // suggestions are not paged
+            });
+            pendingSearch = search;
+            search.whenComplete((outcome, error) -> uiExecutor.execute(() -> {
+                if (search != pendingSearch) return; // superseded by a newer search, drop the stale result
+                pendingSearch = null;
+                if (error != null) {
+                    theProduct = null;
+                    searchResults.clear();
+                    lastSearchPage = null;
+                    displayLaSearchResult = "Search failed, please try again";
+                    System.out.println("Search failed for keyword: " + keyword + " (" + error + ")");
+                } else {
+                    showSearchResult(keyword, outcome);
+                }
+                updateView();
+            }));
+        }else{
+            theProduct = null;
+            searchResults.clear();
+            lastSearchPage = null;
+            displayLaSearchResult = "Please type Product ID or Name";
+            System.out.println("Please type Product ID or Name.");
+            updateView();
+        }
+    }
+
+    // The products found by a search, and whether they are only similarly spelled suggestions
+    private record SearchOutcome(ProductPage page, ArrayList<Product> products, boolean similarOnly) {
+    }
+
+    // Shows the result of a search that was not superseded, on the JavaFX Application Thread
+    private void showSearchResult(String keyword, SearchOutcome outcome) {
+        searchKeyword = keyword;
+        lastSearchPage = outcome.page();
+        searchResults = outcome.products();
+        boolean similarOnly = outcome.similarOnly();
+
+        if(similarOnly){
+            // the user picks the intended product from the list, even if there is only one suggestion
+            theProduct = null;
+            displayLaSearchResult = "No exact match for: " + keyword + "\n"
+                    + searchResults.size() + " similar products found. Select one to view details.";
+            System.out.println(searchResults.size() + " similar products found for keyword: " + keyword);
+        }else if(!searchResults.isEmpty()){ 
+            // Week 7: If multiple results found, show list; if single result, show details
+            if(searchResults.size() == 1){
+                theProduct = searchResults.get(0);
+                if(theProduct.getStockQuantity() > 0){
+                    double unitPrice = theProduct.getUnitPrice();
+                    String description = theProduct.getProductDescription();
+                    int stock = theProduct.getStockQuantity();
+                    String productId = theProduct.getProductId(); // Week 7: Use actual product ID, not search keyword
+
+                    String baseInfo = String.format("Product_Id: %s\n%s,\nPrice: £%.2f", productId, description, unitPrice);
+                    String quantityInfo = stock < 100 ? String.format("\n%d units left.", stock) : "";
+                    displayLaSearchResult = baseInfo + quantityInfo;
+                    System.out.println("Product " + productId + " found (searched by: " + keyword + ")");
                 } else {
-                    // Week 7: Multiple results - user will select from list
                     theProduct = null;
-                    displayLaSearchResult = searchResults.size() + " products found. Select one to view details.";
-                    System.out.println(searchResults.size() + " products found for keyword: " + keyword);
+                    displayLaSearchResult = "Product found but out of stock";
                 }
-            }else{
-                // Week 7: No results found
+            } else {
+                // Week 7: Multiple results - user will select from list
                 theProduct = null;
-                searchResults.clear();
-                displayLaSearchResult = "No product found with ID or Name: " + keyword;
-                System.out.println("No product found for keyword: " + keyword);
+                displayLaSearchResult = lastSearchPage.getTotalEstimate() + " products found. Select one to view details.";
+                System.out.println(lastSearchPage.getTotalEstimate() + " products found for keyword: " + keyword);
             }
         }else{
+            // Week 7: No results found
             theProduct = null;
             searchResults.clear();
-            displayLaSearchResult = "Please type Product ID or Name";
-            System.out.println("Please type Product ID or Name.");
+            displayLaSearchResult = "No product found with ID or Name: " + keyword;
+            System.out.println("No product found for keyword: " + keyword);
+        }
+    }
+
+    // Cancels the search and page load still running, so their results are never shown
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+        if (pendingLoadMore != null) {
+            pendingLoadMore.cancel(false);
+            pendingLoadMore = null;
         }
-        updateView();
+    }
+
+    /**
+     * Loads the next page of the current search and appends it to the search results list.
+     * Called by the view when the user scrolls to the end of the list; does nothing if there are no more pages
+     * or the next page is already being loaded. The page is read in the background.
+     */
+    void loadMoreSearchResults() {
+        if (lastSearchPage == null || !lastSearchPage.hasMore() || pendingLoadMore != null) return;
+        ProductPage current = lastSearchPage;
+        CompletableFuture<ProductPage> load =
+                asyncDatabaseRW().searchProductPage(searchKeyword, current.nextOffset(), SEARCH_PAGE_SIZE);
+        pendingLoadMore = load;
+        load.whenComplete((page, error) -> uiExecutor.execute(() -> {
+            if (load != pendingLoadMore) return; // a new search was started meanwhile
+            pendingLoadMore = null;
+            if (error != null) {
+                System.out.println("Loading more search results failed: " + error);
+                return;
+            }
+            lastSearchPage = page;
+            searchResults.addAll(page.getProducts());
+            if (cusView != null) {
+                cusView.appendSearchResults(page.getProducts());
+            }
+        }));
+    }
+
+    // The non-blocking variant of databaseRW, created on first use
+    private AsyncDatabaseRW asyncDatabaseRW() {
+        if (asyncDatabaseRW == null || asyncDatabaseRW.getDatabaseRW() != databaseRW) {
+            asyncDatabaseRW = DatabaseRWFactory.createAsyncDatabaseRW(databaseRW);
+        }
+        return asyncDatabaseRW;
     }
 
     /**
@@ -216,13 +327,11 @@ public class CustomerModel {
      * 4. → validateTrolley() ← throws exceptions
      * 5. Exception propagates back up: validateTrolley → checkOut → catch block
      * 
-     * checkOut() declares 'throws IOException, SQLException' for database/file errors
-     * but HANDLES MinimumPaymentException & ExcessiveOrderQuantityException with try-catch
-     * 
-     * @throws IOException if database/file operations fail
-     * @throws SQLException if database operations fail
+     * checkOut() HANDLES MinimumPaymentException & ExcessiveOrderQuantityException with try-catch.
+     * The stock is then reserved in the background; completeCheckOut() continues on the JavaFX thread
+     * and handles database/file errors itself.
      */
-    void checkOut() throws IOException, SQLException {
+    void checkOut() {
         if(!trolley.isEmpty()){
             // Week 6: Validate trolley before processing payment
             // Try-catch-finally block handles custom exceptions for business rule violations
@@ -248,98 +357,35 @@ public class CustomerModel {
             
             // Week 6: Validation successful - proceed with stock checking and payment
             System.out.println("All validations passed. Proceeding to stock verification...");
+            if (checkOutInProgress) return; // this trolley's stock is already being reserved
             
             // Group the products in the trolley by productId to optimize stock checking
-            // Check the database for sufficient stock for all products in the trolley.
-            // If any products are insufficient, the update will be rolled back.
-            // If all products are sufficient, the database will be updated, and insufficientProducts will be empty.
+            // Reserve the stock of all products in the trolley before asking for payment (reserve -> pay -> commit).
+            // If any products are insufficient, nothing is reserved and the reservation lists them.
+            // If all products are sufficient, the stock is held until the payment is confirmed or cancelled.
             // Note: If the trolley is already organized (merged and sorted), grouping is unnecessary.
             ArrayList<Product> groupedTrolley= groupProductsById(trolley);
-            ArrayList<Product> insufficientProducts= databaseRW.purchaseStocks(groupedTrolley);
+            ArrayList<Product> orderedTrolley = new ArrayList<>(trolley); // the trolley as it was checked out
+            checkOutInProgress = true;
 
-            if(insufficientProducts.isEmpty()){ // If stock is sufficient for all products
-                // Week 9: Calculate total for payment dialog
-                double totalAmount = 0.0;
-                for (Product p : trolley) {
-                    totalAmount += p.getUnitPrice() * p.getOrderedQuantity();
-                }
-                
-                // Week 9: Show payment dialog before finalizing order
-                // Week 10: Pass customer type to show Prime discount in payment dialog
-                PaymentDialog paymentDialog = new PaymentDialog();
-                PaymentResult paymentResult = paymentDialog.show(totalAmount, customerType);
-                
-                // Week 9: Check if payment was confirmed
-                if (!paymentResult.isConfirmed()) {
-                    System.out.println("Week 9: Payment cancelled by user. Checkout aborted.");
-                    updateView(); // Week 9: Keep trolley intact
-                    return; // Week 9: Exit checkout without creating order
-                }
-                
-                // Week 9: Payment confirmed - log payment method
-                System.out.println("Week 9: Payment confirmed via " + paymentResult.getPaymentMethod());
-                
-                //get OrderHub and tell it to make a new Order
-                // Week 6 debug: Log before creating order
-                System.out.println("Week 6 Debug: CustomerModel requesting OrderHub to create new order...");
-                
-                OrderHub orderHub =OrderHub.getOrderHub();
-                Order theOrder = orderHub.newOrder(trolley, customerType); // Week 10: Pass customer type to order
-                trolley.clear();
-                
-                // Week 10: Build receipt with customer type benefits
-                StringBuilder receiptBuilder = new StringBuilder();
-                receiptBuilder.append(String.format("Order_ID: %s\nOrdered_Date_Time: %s\n",
-                        theOrder.getOrderId(),
-                        theOrder.getOrderedDateTime()));
-                receiptBuilder.append(ProductListFormatter.buildString(theOrder.getProductList()));
-                
-                // Week 10: Add customer type benefits to receipt
-                if (customerType.equals("VIP")) {
-                    receiptBuilder.append("\n🌟 VIP Member Benefits:\n");
-                    receiptBuilder.append("   • No minimum order requirement\n");
-                    receiptBuilder.append("   • Fast delivery from warehouse\n"); // Week 10: In-store pickup context
-                } else if (customerType.equals("Prime")) {
-                    receiptBuilder.append("\n⭐ Prime Member Benefits:\n");
-                    receiptBuilder.append("   • No minimum order requirement\n");
-                    receiptBuilder.append("   • Express delivery from warehouse\n"); // Week 10: In-store pickup context
-                    receiptBuilder.append("   • 10% discount applied\n");
-                    // Week 10: Calculate and display discounted total for Prime members
-                    double originalTotal = totalAmount;
-                    double discountedTotal = originalTotal * 0.9; // 10% discount
-                    receiptBuilder.append(String.format("   Original Total: £%.2f\n", originalTotal));
-                    receiptBuilder.append(String.format("   Final Total: £%.2f (saved £%.2f)\n", 
-                            discountedTotal, originalTotal - discountedTotal));
-                }
-                
-                displayTaReceipt = receiptBuilder.toString();
-                
-                // Week 3: Close notifier window on successful checkout
-                removeProductNotifier.closeNotifierWindow();
-                
-                System.out.println(displayTaReceipt);
-            }
-            else{ // Some products have insufficient stock — build an error message to inform the customer
-                StringBuilder errorMsg = new StringBuilder();
-                for(Product p : insufficientProducts){
-                    errorMsg.append("\u2022 "+ p.getProductId()).append(", ")
-                            .append(p.getProductDescription()).append(" (Only ")
-                            .append(p.getStockQuantity()).append(" available, ")
-                            .append(p.getOrderedQuantity()).append(" requested)\n");
-                }
-                theProduct=null;
-
-                // Week 3: Remove products with insufficient stock from trolley by product ID
-                // Cannot use removeAll() as Product objects have different references and stock quantities
-                for(Product insufficientProd : insufficientProducts){
-                    trolley.removeIf(trolleyProd -> trolleyProd.getProductId().equals(insufficientProd.getProductId()));
-                }
-                
-                // Week 3: Show notification window with removed products information
-                removeProductNotifier.showRemovalMsg(errorMsg.toString());
-                
-                System.out.println("Insufficient stock: products removed from trolley");
-            }
+            // Reserving runs in the background, the payment dialog is shown once the stock is held
+            asyncDatabaseRW().call(db -> reservationManager.reserve(groupedTrolley))
+                    .whenComplete((reservation, error) -> uiExecutor.execute(() -> {
+                        checkOutInProgress = false;
+                        if (error != null) {
+                            System.out.println("Stock reservation failed: " + error);
+                            displayLaSearchResult = "Checkout failed, please try again.";
+                            updateView();
+                            return;
+                        }
+                        try {
+                            completeCheckOut(reservation, orderedTrolley);
+                        } catch (IOException | SQLException e) {
+                            System.out.println("Order could not be saved: " + e.getMessage());
+                            displayLaSearchResult = "Checkout failed, please try again.";
+                            updateView();
+                        }
+                    }));
         }
         else{
             displayLaSearchResult = "Your trolley is empty. Please add items to checkout.";
@@ -348,6 +394,123 @@ public class CustomerModel {
         updateView();
     }
 
+    /**
+     * Second half of checkOut, on the JavaFX Application Thread once the stock reservation is known:
+     * asks for payment and commits the reservation, or tells the customer which products are short.
+     *
+     * @param reservation    the reservation of the grouped trolley
+     * @param orderedTrolley the trolley as it was when the customer checked out
+     * @throws IOException if the order file cannot be written
+     * @throws SQLException if the order cannot be created
+     */
+    private void completeCheckOut(StockReservation reservation, ArrayList<Product> orderedTrolley)
+            throws IOException, SQLException {
+        ArrayList<Product> insufficientProducts= reservation.getInsufficientProducts();
+
+        if(reservation.isReserved()){ // If stock is sufficient for all products
+            // Week 9: Calculate total for payment dialog
+            double totalAmount = 0.0;
+            for (Product p : orderedTrolley) {
+                totalAmount += p.getUnitPrice() * p.getOrderedQuantity();
+            }
+            
+            // Week 9: Show payment dialog before finalizing order
+            // Week 10: Pass customer type to show Prime discount in payment dialog
+            PaymentDialog paymentDialog = new PaymentDialog();
+            PaymentResult paymentResult = paymentDialog.show(totalAmount, customerType);
+            
+            // Week 9: Check if payment was confirmed
+            if (!paymentResult.isConfirmed()) {
+                System.out.println("Week 9: Payment cancelled by user. Checkout aborted.");
+                releaseReservation(reservation); // give the held stock back at once
+                updateView(); // Week 9: Keep trolley intact
+                return; // Week 9: Exit checkout without creating order
+            }
+
+            // The reservation may have expired while the payment dialog was open; its stock is then released
+            if (!reservationManager.commit(reservation.getReservationId())) {
+                displayLaSearchResult = "Payment took too long and the reserved stock was released. Please check out again.";
+                System.out.println("Reservation expired during payment. Checkout aborted.");
+                updateView(); // keep trolley intact
+                return;
+            }
+            
+            // Week 9: Payment confirmed - log payment method
+            System.out.println("Week 9: Payment confirmed via " + paymentResult.getPaymentMethod());
+            
+            //get OrderHub and tell it to make a new Order
+            // Week 6 debug: Log before creating order
+            System.out.println("Week 6 Debug: CustomerModel requesting OrderHub to create new order...");
+            
+            OrderHub orderHub =OrderHub.getOrderHub();
+            Order theOrder = orderHub.newOrder(orderedTrolley, customerType); // Week 10: Pass customer type to order
+            trolley.clear();
+            
+            // Week 10: Build receipt with customer type benefits
+            StringBuilder receiptBuilder = new StringBuilder();
+            receiptBuilder.append(String.format("Order_ID: %s\nOrdered_Date_Time: %s\n",
+                    theOrder.getOrderId(),
+                    theOrder.getOrderedDateTime()));
+            receiptBuilder.append(ProductListFormatter.buildString(theOrder.getProductList()));
+            
+            // Week 10: Add customer type benefits to receipt
+            if (customerType.equals("VIP")) {
+                receiptBuilder.append("\n🌟 VIP Member Benefits:\n");
+                receiptBuilder.append("   • No minimum order requirement\n");
+                receiptBuilder.append("   • Fast delivery from warehouse\n"); // Week 10: In-store pickup context
+            } else if (customerType.equals("Prime")) {
+                receiptBuilder.append("\n⭐ Prime Member Benefits:\n");
+                receiptBuilder.append("   • No minimum order requirement\n");
+                receiptBuilder.append("   • Express delivery from warehouse\n"); // Week 10: In-store pickup context
+                receiptBuilder.append("   • 10% discount applied\n");
+                // Week 10: Calculate and display discounted total for Prime members
+                double originalTotal = totalAmount;
+                double discountedTotal = originalTotal * 0.9; // 10% discount
+                receiptBuilder.append(String.format("   Original Total: £%.2f\n", originalTotal));
+                receiptBuilder.append(String.format("   Final Total: £%.2f (saved £%.2f)\n", 
+                        discountedTotal, originalTotal - discountedTotal));
+            }
+            
+            displayTaReceipt = receiptBuilder.toString();
+            
+            // Week 3: Close notifier window on successful checkout
+            removeProductNotifier.closeNotifierWindow();
+            
+            System.out.println(displayTaReceipt);
+        }
+        else{ // Some products have insufficient stock — build an error message to inform the customer
+            StringBuilder errorMsg = new StringBuilder();
+            for(Product p : insufficientProducts){
+                errorMsg.append("\u2022 "+ p.getProductId()).append(", ")
+                        .append(p.getProductDescription()).append(" (Only ")
+                        .append(p.getStockQuantity()).append(" available, ")
+                        .append(p.getOrderedQuantity()).append(" requested)\n");
+            }
+            theProduct=null;
+
+            // Week 3: Remove products with insufficient stock from trolley by product ID
+            // Cannot use removeAll() as Product objects have different references and stock quantities
+            for(Product insufficientProd : insufficientProducts){
+                trolley.removeIf(trolleyProd -> trolleyProd.getProductId().equals(insufficientProd.getProductId()));
+            }
+            
+            // Week 3: Show notification window with removed products information
+            removeProductNotifier.showRemovalMsg(errorMsg.toString());
+            
+            System.out.println("Insufficient stock: products removed from trolley");
+        }
+        updateView();
+    }
+
+    // gives the reserved stock back in the background, the customer does not wait for it
+    private void releaseReservation(StockReservation reservation) {
+        asyncDatabaseRW().call(db -> reservationManager.release(reservation.getReservationId()))
+                .exceptionally(error -> {
+                    System.out.println("Reservation release failed, it expires instead: " + error);
+                    return false;
+                });
+    }
+
     /**
      * Week 6: Validates trolley contents before checkout
      * 
@@ -1,6 +1,7 @@
 package ci553.happyshop.client.customer;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.ListViewPager;
 import ci553.happyshop.utility.SoundManager;
 import ci553.happyshop.utility.UIStyle;
 import ci553.happyshop.utility.WinPosManager;
@@ -275,6 +276,8 @@ public class CustomerView  {
                 cusController.selectProduct(selectedProduct);
             }
         });
+        // fetch the next page of results when the user scrolls to the end of the list
+        ListViewPager.onScrolledToEnd(lvSearchResults, () -> cusController.loadMoreSearchResults());
         // Week 7: Custom cell factory for compact product display
         lvSearchResults.setCellFactory(param -> new ListCell<Product>() {
             @Override
@@ -486,6 +489,11 @@ public class CustomerView  {
         }
     }
 
+    // Appends a further page of search results without resetting the scroll position
+    void appendSearchResults(ArrayList<Product> moreProducts) {
+        lvSearchResults.getItems().addAll(moreProducts);
+    }
+
     // Replaces the last child of hbRoot with the specified page.
     // the last child is either vbTrolleyPage or vbReceiptPage.
     private void showTrolleyOrReceiptPage(Node pageToShow) {
@@ -1,6 +1,9 @@
 package ci553.happyshop.client.orderTracker;
 
+import ci553.happyshop.orderManagement.OrderHub;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
 /**
@@ -9,6 +12,7 @@ import javafx.stage.Stage;
  *
  * This client is simple and does not follow the MVC pattern, as it only registers with the OrderHub
  * to receive order status notifications. All logic is handled internally within the OrderTracker.
+ * With the derby-network backend (see StorageServer) it follows the orders of the clients in other JVMs.
  */
 
 public class OrderTrackerClient extends Application {
@@ -21,5 +25,11 @@ public class OrderTrackerClient extends Application {
     public void start(Stage window) {
         OrderTracker orderTracker = new OrderTracker();
         orderTracker.registerWithOrderHub();
+
+        if (DatabaseRWFactory.isNetworkBackend()) {
+            OrderHub orderHub = OrderHub.getOrderHub();
+            orderHub.initializeOrderMap();
+            orderHub.watchOrderFolders(Platform::runLater);
+        }
     }
 }
@@ -1,11 +1,16 @@
 package ci553.happyshop.client.picker;
 
+import ci553.happyshop.orderManagement.OrderHub;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
 /**
  * A standalone Order Picker Client that can be run independently without launching the full system.
  * Designed for early-stage testing, though full functionality may require other clients to be active.
+ * With the derby-network backend (see StorageServer) it is a full picker: it loads the orders from the orders folder
+ * and sees the orders placed by the customer clients of other JVMs.
  */
 
 public class PickerClient extends Application {
@@ -33,5 +38,11 @@ public class PickerClient extends Application {
 
         pickerModel.registerWithOrderHub();
         pickerView.start(window);
+
+        if (DatabaseRWFactory.isNetworkBackend()) {
+            OrderHub orderHub = OrderHub.getOrderHub();
+            orderHub.initializeOrderMap();
+            orderHub.watchOrderFolders(Platform::runLater);
+        }
     }
 }
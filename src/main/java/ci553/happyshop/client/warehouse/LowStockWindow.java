@@ -0,0 +1,84 @@
+package ci553.happyshop.client.warehouse;
+
+import ci553.happyshop.storageAccess.LowStockMonitor;
+import ci553.happyshop.utility.UIStyle;
+import ci553.happyshop.utility.WindowBounds;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.util.List;
+
+/**
+ * This class provides a window that lists the products with low stock, lowest first,
+ * and shows the latest low-stock alert above the list.
+ *
+ * - It is opened by the WarehouseModel when the LowStockMonitor pushes an alert, so nobody has to search for low stock.
+ * - As the HistoryWindow, the scene is created only once and the window only when needed
+ *   (again after the user closed it, when the next alert arrives).
+ * - The window is positioned on the left of the warehouse window, the history window is on its right.
+ */
+
+public class LowStockWindow {
+    private static int WIDTH = UIStyle.HistoryWinWidth;
+    private static int HEIGHT = UIStyle.AlertSimWinHeight;
+
+    public WarehouseView warehouseView;
+    private Stage window;
+    private Scene scene;
+    private Label laLatestAlert;
+    private TextArea taLowStock;
+
+    // Create the scene only once
+    private void createScene() {
+        laLatestAlert = new Label();
+        laLatestAlert.setWrapText(true);
+        laLatestAlert.setStyle(UIStyle.labelStyle);
+
+        taLowStock = new TextArea();
+        taLowStock.setPrefSize(150, 150);
+        taLowStock.setEditable(false);
+        taLowStock.setStyle(UIStyle.textFiledStyle);
+        VBox vbLowStock = new VBox(3, laLatestAlert, taLowStock);
+        vbLowStock.setStyle(UIStyle.rootStyleGray);
+        scene = new Scene(vbLowStock, WIDTH, HEIGHT);
+    }
+
+    // Create the window only when needed (not created yet, or closed by the user)
+    private void createWindow() {
+        if (scene == null) {
+            createScene();
+        }
+
+        window = new Stage();
+        window.setScene(scene);
+        window.setTitle("\u26A0 Low Stock"); // for emoji ⚠️
+        window.show();
+        WindowBounds bounds = warehouseView.getWindowBounds();
+        window.setX(bounds.x - WIDTH + 20);
+        window.setY(bounds.y);
+    }
+
+    /**
+     * Shows the latest alert and the products that are low now.
+     *
+     * @param latestAlert a one-line description of the threshold crossing
+     * @param lowStock    the products below the threshold, lowest stock first
+     * @param threshold   the low-stock threshold, for the list heading
+     */
+    public void showLowStock(String latestAlert, List<LowStockMonitor.StockLevel> lowStock, int threshold) {
+        if (window == null || !window.isShowing()) {
+            createWindow();
+        }
+        laLatestAlert.setText(latestAlert);
+        StringBuilder result = new StringBuilder();
+        result.append(lowStock.size()).append(" products below ").append(threshold).append(" units:\n");
+        for (LowStockMonitor.StockLevel level : lowStock) {
+            result.append(level.productId()).append("  ").append(level.stock()).append(" left  ")
+                    .append(level.description()).append("\n");
+        }
+        taLowStock.setText(result.toString());
+    }
+}
@@ -21,7 +21,7 @@ public class WarehouseClient extends Application {
      * It also creates the DatabaseRW instance via the DatabaseRWFactory and injects it into the Model.
      * Once the components are linked, the warehouse interface (view) is started.
      *
-     * Also creates the dependent HistoryWindow and AlertSimulator,
+     * Also creates the dependent HistoryWindow, AlertSimulator and LowStockWindow,
      * which track the position of the Warehouse window and are triggered by the Model when needed.
      * These components are linked after launching the Warehouse interface.
      */
@@ -40,11 +40,15 @@ public class WarehouseClient extends Application {
 
         HistoryWindow historyWindow = new HistoryWindow();
         AlertSimulator alertSimulator = new AlertSimulator();
+        LowStockWindow lowStockWindow = new LowStockWindow();
 
         // Link after start warehouse interface
         model.historyWindow = historyWindow;
         model.alertSimulator = alertSimulator;
         historyWindow.warehouseView = view;
         alertSimulator.warehouseView = view;
+        model.lowStockWindow = lowStockWindow;
+        lowStockWindow.warehouseView = view;
+        model.watchLowStock(DatabaseRWFactory.getLowStockMonitor()); // alerts pushed as stock changes
     }
 }
@@ -29,6 +29,23 @@ public class WarehouseController {
             case "Cancel":  // clear the editChild
                 model.doCancel();
                 break;
+            case "Import":
+                model.doImport();
+                break;
+            case "Export":
+                model.doExport();
+                break;
+            case "Load File":
+                model.doLoadDeliveryNote();
+                break;
+            case "Apply Delivery":
+                model.doApplyDelivery();
+                break;
         }
     }
+
+    // called when the product list is scrolled to the end
+    void loadMoreSearchResults() {
+        model.doLoadMoreSearchResults();
+    }
 }
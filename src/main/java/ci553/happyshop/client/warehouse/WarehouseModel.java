@@ -1,27 +1,49 @@
 package ci553.happyshop.client.warehouse;
 
+import ci553.happyshop.catalogue.DeliveryNote;
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRW;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
 import ci553.happyshop.storageAccess.DerbyRW;
 import ci553.happyshop.storageAccess.ImageFileManager;
+import ci553.happyshop.storageAccess.LowStockMonitor;
+import ci553.happyshop.storageAccess.ProductExporter;
+import ci553.happyshop.storageAccess.ProductImporter;
+import ci553.happyshop.storageAccess.ProductPage;
 import ci553.happyshop.utility.StorageLocation;
+import javafx.application.Platform;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class WarehouseModel {
     public WarehouseView view;
     public DatabaseRW databaseRW; //Interface type, not specific implementation
                          //Benefits: Flexibility: Easily change the database implementation.
+    public Executor uiExecutor = Platform::runLater; // applies background results on the JavaFX Application Thread
+    private AsyncDatabaseRW asyncDatabaseRW;         // runs the database calls off the JavaFX thread
+    private CompletableFuture<?> pendingSearch = null;   // the search still running, cancelled by a newer one
+    private CompletableFuture<?> pendingLoadMore = null; // the next page still loading
 
     private ArrayList<Product> productList = new ArrayList<>(); // search results fetched from the database
+    private static final int SEARCH_PAGE_SIZE = 30; // products loaded at once, more are fetched on scroll
+    private ProductPage lastSearchPage = null;      // the last page loaded for searchKeyword, null if none
+    private String searchKeyword = "";
+    private int searchTotal = 0;                    // number of products matching searchKeyword
     private Product theSelectedPro; // the product selected from the ListView before the user edits or deletes
     private String theNewProId;
+    private boolean bulkTransferRunning = false; // an import or export is running in the background
+    private String bulkSummary = "";             // outcome of the last import or export, for the history
+    private DeliveryNote pendingDelivery = null; // the delivery note being applied, null if none
 
     //information used to update editProduct child in WarehouseView
     String displayIdEdit="";
@@ -32,13 +54,18 @@ public class WarehouseModel {
 
     public HistoryWindow historyWindow;
     public AlertSimulator alertSimulator;
+    public LowStockWindow lowStockWindow;
+    private LowStockMonitor lowStockMonitor; // pushes low-stock alerts, null if not watched
     private String displayInputErrorMsg =""; //error message showing in the alertSimulator
     private ArrayList<String> displayManageHistory = new ArrayList<>();// Manage Product history
                                                                //shows in the HistoryWindow
     private enum ManageProductType{
         Edited,
         Deleted,
-        New
+        New,
+        Imported,
+        Exported,
+        Delivered
     }
 
     private enum UpdateForAction{
@@ -60,34 +87,128 @@ public class WarehouseModel {
         ShowInputErrorMsg
     }
 
-    void doSearch() throws SQLException {
+    // The search runs in the background; a newer search cancels the one still running, so its result is never shown
+    void doSearch() {
         String keyword = view.tfSearchKeyword.getText().trim();
+        cancelPendingSearch();
         if (!keyword.equals("")) {
-            productList = databaseRW.searchProduct(keyword);
+            CompletableFuture<ProductPage> search = asyncDatabaseRW().searchProductPage(keyword, 0, SEARCH_PAGE_SIZE);
+            pendingSearch = search;
+            search.whenComplete((page, error) -> uiExecutor.execute(() -> {
+                if (search != pendingSearch) return; // superseded by a newer search
+                pendingSearch = null;
+                if (error != null) {
+                    System.out.println("Search failed for keyword: " + keyword + " (" + error + ")");
+                    displayInputErrorMsg = "\u2022 Search failed, please try again.";
+                    updateView(UpdateForAction.ShowInputErrorMsg);
+                    return;
+                }
+                searchKeyword = keyword;
+                lastSearchPage = page;
+                productList = new ArrayList<>(page.getProducts());
+                searchTotal = page.getTotalEstimate();
+                updateView(UpdateForAction.BtnSearch);
+            }));
         }
         else{
             productList.clear();
+            lastSearchPage = null;
+            searchTotal = 0;
             System.out.println("please type product ID or name to search");
+            updateView(UpdateForAction.BtnSearch);
         }
-        updateView(UpdateForAction.BtnSearch);
     }
 
-    void doDelete() throws SQLException, IOException {
-        System.out.println("delete gets called in model");
-        Product pro  = view.obrLvProducts.getSelectionModel().getSelectedItem();
-        if (pro != null ) {
-            theSelectedPro = pro;
-            productList.remove(theSelectedPro); //remove the product from product List
+    // Loads the next page of the current search, called when the product list is scrolled to the end
+    void doLoadMoreSearchResults() {
+        if (lastSearchPage == null || !lastSearchPage.hasMore() || pendingLoadMore != null) return;
+        CompletableFuture<ProductPage> load =
+                asyncDatabaseRW().searchProductPage(searchKeyword, lastSearchPage.nextOffset(), SEARCH_PAGE_SIZE);
+        pendingLoadMore = load;
+        load.whenComplete((page, error) -> uiExecutor.execute(() -> {
+            if (load != pendingLoadMore) return; // a new search was started meanwhile
+            pendingLoadMore = null;
+            if (error != null) {
+                System.out.println("Loading more search results failed: " + error);
+                return;
+            }
+            lastSearchPage = page;
+            productList.addAll(page.getProducts());
+            view.appendObservableProductList(page.getProducts());
+        }));
+    }
+
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+        if (pendingLoadMore != null) {
+            pendingLoadMore.cancel(false);
+            pendingLoadMore = null;
+        }
+    }
+
+    // The non-blocking variant of databaseRW, created on first use
+    private AsyncDatabaseRW asyncDatabaseRW() {
+        if (asyncDatabaseRW == null || asyncDatabaseRW.getDatabaseRW() != databaseRW) {
+            asyncDatabaseRW = DatabaseRWFactory.createAsyncDatabaseRW(databaseRW);
+        }
+        return asyncDatabaseRW;
+    }
 
-            //update databse: delete the product from database
-            databaseRW.deleteProduct(theSelectedPro.getProductId());
+    /**
+     * Subscribes to the low-stock alerts of the shared monitor: every product that falls below the threshold,
+     * or is restocked, is shown in the LowStockWindow as it happens, without searching the database.
+     * The alert arrives on the thread that changed the stock and is handed to the JavaFX Application Thread.
+     */
+    public void watchLowStock(LowStockMonitor monitor) {
+        lowStockMonitor = monitor;
+        monitor.addListener((level, low) -> uiExecutor.execute(() -> showLowStockAlert(level, low)));
+    }
 
-            //delete the image from imageFolder "images/"
-            String imageName = theSelectedPro.getProductImageName(); //eg 0011.jpg;
-            ImageFileManager.deleteImageFile(StorageLocation.imageFolder, imageName);
+    private void showLowStockAlert(LowStockMonitor.StockLevel level, boolean low) {
+        String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm"));
+        String alert = low
+                ? "\u26A0 " + level.productId() + " " + level.description() + ": only " + level.stock() + " left, " + time
+                : "\u2714 " + level.productId() + " " + level.description() + " is no longer low, " + time;
+        System.out.println("Low stock alert: " + alert);
+        lowStockWindow.showLowStock(alert, lowStockMonitor.getLowStock(), lowStockMonitor.getThreshold());
+    }
 
-            updateView(UpdateForAction.BtnDelete);
-            theSelectedPro = null;
+    // Shows a failed background database call in the alertSimulator
+    private void showDatabaseError(String action, Throwable error) {
+        System.out.println(action + " failed: " + error);
+        displayInputErrorMsg = "\u2022 " + action + " failed, please try again.";
+        updateView(UpdateForAction.ShowInputErrorMsg);
+    }
+
+    void doDelete() {
+        System.out.println("delete gets called in model");
+        Product pro  = view.obrLvProducts.getSelectionModel().getSelectedItem();
+        if (pro != null ) {
+            //update databse in the background: delete the product from database
+            asyncDatabaseRW().deleteProduct(pro.getProductId())
+                    .whenComplete((done, error) -> uiExecutor.execute(() -> {
+                        if (error != null) {
+                            showDatabaseError("Delete", error);
+                            return;
+                        }
+                        theSelectedPro = pro;
+                        productList.remove(theSelectedPro); //remove the product from product List
+                        searchTotal = Math.max(0, searchTotal - 1);
+
+                        //delete the image from imageFolder "images/"
+                        String imageName = theSelectedPro.getProductImageName(); //eg 0011.jpg;
+                        try {
+                            ImageFileManager.deleteImageFile(StorageLocation.imageFolder, imageName);
+                        } catch (IOException e) {
+                            System.out.println("Image " + imageName + " could not be deleted: " + e.getMessage());
+                        }
+
+                        updateView(UpdateForAction.BtnDelete);
+                        theSelectedPro = null;
+                    }));
         }
         else{
             System.out.println("No product was selected");
@@ -98,18 +219,7 @@ public class WarehouseModel {
         System.out.println("Edit gets called in model");
         Product pro = view.obrLvProducts.getSelectionModel().getSelectedItem();
         if (pro != null) {
-            theSelectedPro = pro;
-            displayIdEdit = theSelectedPro.getProductId();
-            displayPriceEdit = String.format("%.2f", theSelectedPro.getUnitPrice());
-            displayStockEdit = String.valueOf (theSelectedPro.getStockQuantity());
-            displayDescriptionEdit = theSelectedPro.getProductDescription();
-
-            String relativeImageUri = StorageLocation.imageFolder + theSelectedPro.getProductImageName();
-            Path imageFullPath = Paths.get(relativeImageUri).toAbsolutePath();
-            displayImageUrlEdit = imageFullPath.toUri().toString();//build the full path Uri
-
-            System.out.println("get new pro image name: " + displayImageUrlEdit);
-            updateView(UpdateForAction.BtnEdit);
+            showInEditForm(pro);
         }
         else{
             System.out.println("No product was selected");
@@ -117,6 +227,33 @@ public class WarehouseModel {
 
     }
 
+    // Fills the edit form with the product; its version is kept in theSelectedPro until the edit is submitted
+    private void showInEditForm(Product pro) {
+        theSelectedPro = pro;
+        displayIdEdit = theSelectedPro.getProductId();
+        displayPriceEdit = String.format("%.2f", theSelectedPro.getUnitPrice());
+        displayStockEdit = String.valueOf (theSelectedPro.getStockQuantity());
+        displayDescriptionEdit = theSelectedPro.getProductDescription();
+
+        String relativeImageUri = StorageLocation.imageFolder + theSelectedPro.getProductImageName();
+        Path imageFullPath = Paths.get(relativeImageUri).toAbsolutePath();
+        displayImageUrlEdit = imageFullPath.toUri().toString();//build the full path Uri
+
+        System.out.println("get new pro image name: " + displayImageUrlEdit);
+        updateView(UpdateForAction.BtnEdit);
+    }
+
+    // Replaces a product shown in the search results with its current values
+    private void replaceInProductList(Product current) {
+        for (int i = 0; i < productList.size(); i++) {
+            if (productList.get(i).getProductId().equals(current.getProductId())) {
+                productList.set(i, current);
+                updateView(UpdateForAction.BtnSearch);
+                return;
+            }
+        }
+    }
+
     void doCancel(){
        if(view.theProFormMode.equals("EDIT")){
            updateView(UpdateForAction.BtnCancelEdit);
@@ -127,7 +264,7 @@ public class WarehouseModel {
            theNewProId = null;
        }
     }
-    void doSummit() throws SQLException, IOException {
+    void doSummit() throws IOException {
         if(view.theProFormMode.equals("EDIT")){
             doSubmitEdit();
         }
@@ -136,7 +273,7 @@ public class WarehouseModel {
         }
     }
 
-    private void doSubmitEdit() throws IOException, SQLException {
+    private void doSubmitEdit() throws IOException {
         System.out.println("ok edit is called");
         if(theSelectedPro!=null) {
             String id=theSelectedPro.getProductId();
@@ -161,11 +298,27 @@ public class WarehouseModel {
             else{
                 double price = Double.parseDouble(textPrice);
                 int stock= Integer.parseInt(textStock);
-                //update datbase
-                databaseRW.updateProduct(id,description,price,imageName,stock);
-
-                updateView(UpdateForAction.BtnSummitEdit);
-                theSelectedPro=null;
+                //update datbase in the background, the form is reset once it is done
+                //the update only happens if nobody changed the product since it was put in the form
+                Product edited = theSelectedPro;
+                String savedImageName = imageName;
+                asyncDatabaseRW().updateProduct(id,description,price,imageName,stock,edited.getVersion())
+                        .whenComplete((updated, error) -> uiExecutor.execute(() -> {
+                            if (error != null) {
+                                showDatabaseError("Update", error);
+                                return;
+                            }
+                            if (!updated) {
+                                showEditConflict(edited);
+                                return;
+                            }
+                            // the row now has the next version, so editing it again from the list is no conflict
+                            replaceInProductList(new Product(id, description, savedImageName, price, stock,
+                                    edited.getVersion() + 1));
+                            if (theSelectedPro != edited) return; // the user moved on to another product
+                            updateView(UpdateForAction.BtnSummitEdit);
+                            theSelectedPro=null;
+                        }));
             }
         }
         else{
@@ -173,6 +326,50 @@ public class WarehouseModel {
         }
     }
 
+    /**
+     * The edit was refused because the product changed after it was put in the form: a customer bought some,
+     * a delivery arrived, or the other warehouse saved an edit. Nothing was overwritten.
+     * The current product is read again and shown in the form, and the user is told what changed,
+     * so the edit can be made again on top of the current values.
+     */
+    private void showEditConflict(Product edited) {
+        String id = edited.getProductId();
+        asyncDatabaseRW().searchByProductId(id).whenComplete((current, error) -> uiExecutor.execute(() -> {
+            if (error != null) {
+                showDatabaseError("Reloading product " + id, error);
+                return;
+            }
+            StringBuilder message = new StringBuilder("\u2022 Product " + id + " was changed by someone else while you were editing it. "
+                    + "Your changes were not saved.\n");
+            if (current == null) {
+                message.append("\u2022 It has been deleted.");
+                productList.removeIf(p -> p.getProductId().equals(id));
+                updateView(UpdateForAction.BtnSearch);
+                if (theSelectedPro == edited) {
+                    updateView(UpdateForAction.BtnCancelEdit);
+                    theSelectedPro = null;
+                }
+            } else {
+                if (current.getStockQuantity() != edited.getStockQuantity()) {
+                    message.append("\u2022 Stock: ").append(edited.getStockQuantity()).append(" \u2192 ")
+                            .append(current.getStockQuantity()).append("\n");
+                }
+                if (current.getUnitPrice() != edited.getUnitPrice()) {
+                    message.append(String.format("\u2022 Price: %.2f \u2192 %.2f%n", edited.getUnitPrice(), current.getUnitPrice()));
+                }
+                if (!current.getProductDescription().equals(edited.getProductDescription())) {
+                    message.append("\u2022 Description: ").append(current.getProductDescription()).append("\n");
+                }
+                message.append("\u2022 The form now shows the current values, please make your edit again.");
+                replaceInProductList(current);
+                if (theSelectedPro == edited) showInEditForm(current);
+            }
+            System.out.println("Edit conflict on product " + id);
+            displayInputErrorMsg = message.toString();
+            updateView(UpdateForAction.ShowInputErrorMsg);
+        }));
+    }
+
     void doChangeStockBy(String addOrSub) throws SQLException {
         int oldStock = Integer.parseInt(view.tfStockEdit.getText().trim());
         int newStock =oldStock;
@@ -212,36 +409,162 @@ public class WarehouseModel {
         return true;
     }
 
-    private void doSubmitNew() throws SQLException, IOException {
+    private void doSubmitNew() {
         System.out.println("Adding new Pro in model");
 
         //all info(input from user) about the new product
-        theNewProId = view.tfIdNewPro.getText().trim();
+        String newProId = view.tfIdNewPro.getText().trim();
         String textPrice = view.tfPriceNewPro.getText().trim();
         String textStock = view.tfStockNewPro.getText().trim();
         String description = view.taDescriptionNewPro.getText().trim();
         String iPath = view.imageUriNewPro; //image Path from the imageChooser in View class
 
-        //validate input
-        if (validateInputNewProChild(theNewProId, textPrice, textStock, description, iPath) ==false) {
+        //check in the background that the ID is unique, then validate the input on the JavaFX thread
+        asyncDatabaseRW().isProIdAvailable(newProId)
+                .whenComplete((idAvailable, error) -> uiExecutor.execute(() -> {
+                    if (error != null) {
+                        showDatabaseError("Product ID check", error);
+                        return;
+                    }
+                    theNewProId = newProId;
+                    if (validateInputNewProChild(theNewProId, idAvailable, textPrice, textStock, description, iPath) ==false) {
+                        updateView(UpdateForAction.ShowInputErrorMsg);
+                    } else {
+                        insertNewProduct(newProId, description, Double.parseDouble(textPrice), Integer.parseInt(textStock));
+                    }
+                }));
+    }
+
+    private void insertNewProduct(String newProId, String description, double price, int stock) {
+        //copy the user selected image to project image folder and using productId as image name
+        //and get the image extension from the source image, we write this name to database
+        String imageNameWithExtension;
+        try {
+            imageNameWithExtension = ImageFileManager.copyFileToDestination(view.imageUriNewPro, StorageLocation.imageFolder, newProId);
+        } catch (IOException e) {
+            showDatabaseError("Image copy", e);
+            return;
+        }
+
+        //insertNewProduct to databse (String id, String des,double price,String image,int stock)
+        //a record in databse looks like ('0001', '40 inch TV', 269.00,'0001TV.jpg',100)"
+        asyncDatabaseRW().insertNewProduct(newProId,description,price,imageNameWithExtension,stock)
+                .whenComplete((done, error) -> uiExecutor.execute(() -> {
+                    if (error != null) {
+                        showDatabaseError("Insert", error);
+                        return;
+                    }
+                    updateView(UpdateForAction.BtnSummitNew);
+                    theNewProId = null;
+                }));
+    }
+
+    // Imports the products of view.bulkFile in the background, showing the progress after every committed chunk
+    void doImport() {
+        if (bulkTransferRunning || view.bulkFile == null) return;
+        Path file = view.bulkFile.toPath();
+        bulkTransferRunning = true;
+        view.updateBulkProgress("Importing " + file.getFileName() + " ...", -1);
+
+        asyncDatabaseRW().call(db -> {
+            ProductImporter.ImportReport report = new ProductImporter(db).importFile(file,
+                    (read, imported, failed) -> uiExecutor.execute(() -> view.updateBulkProgress(
+                            read + " rows read, " + imported + " imported, " + failed + " failed", -1)));
+            if (report.getErrorCount() > 0) {
+                report.writeErrorReport(Paths.get(file + ".errors.csv")); // next to the imported file
+            }
+            return report;
+        }).whenComplete((report, error) -> uiExecutor.execute(() -> {
+            bulkTransferRunning = false;
+            if (error != null) {
+                view.updateBulkProgress("Import failed: " + error.getMessage(), 0);
+                showDatabaseError("Import", error);
+                return;
+            }
+            String status = report.toString();
+            if (report.getErrorCount() > 0) {
+                status += "\nRows not imported are listed in " + file.getFileName() + ".errors.csv";
+            }
+            view.updateBulkProgress(status, 1);
+            bulkSummary = file.getFileName() + ": " + report;
+            showManageStockHistory(ManageProductType.Imported);
+        }));
+    }
+
+    // Writes every product to view.bulkFile in the background
+    void doExport() {
+        if (bulkTransferRunning || view.bulkFile == null) return;
+        Path file = view.bulkFile.toPath();
+        bulkTransferRunning = true;
+        view.updateBulkProgress("Exporting to " + file.getFileName() + " ...", -1);
+
+        asyncDatabaseRW().call(db -> new ProductExporter(db).exportFile(file,
+                        written -> uiExecutor.execute(() -> view.updateBulkProgress(written + " products written", -1))))
+                .whenComplete((written, error) -> uiExecutor.execute(() -> {
+                    bulkTransferRunning = false;
+                    if (error != null) {
+                        view.updateBulkProgress("Export failed: " + error.getMessage(), 0);
+                        showDatabaseError("Export", error);
+                        return;
+                    }
+                    view.updateBulkProgress(written + " products exported to " + file.getFileName(), 1);
+                    bulkSummary = written + " products exported to " + file.getFileName();
+                    showManageStockHistory(ManageProductType.Exported);
+                }));
+    }
+
+    // Loads the chosen delivery note file into the delivery note text area, where it can still be corrected
+    void doLoadDeliveryNote() {
+        if (view.deliveryNoteFile == null) return;
+        try {
+            String noteText = Files.readString(view.deliveryNoteFile.toPath());
+            view.updateDeliveryNote(noteText, view.deliveryNoteFile.getName() + " loaded, check it and apply.");
+        } catch (IOException e) {
+            displayInputErrorMsg = "\u2022 " + view.deliveryNoteFile.getName() + " could not be read.";
             updateView(UpdateForAction.ShowInputErrorMsg);
-        } else {
-            //copy the user selected image to project image folder and using productId as image name
-            //and get the image extension from the source image, we write this name to database
-            String imageNameWithExtension = ImageFileManager.copyFileToDestination(view.imageUriNewPro, StorageLocation.imageFolder,theNewProId);
-            double price = Double.parseDouble(textPrice);
-            int stock = Integer.parseInt(textStock);
-
-            //insertNewProduct to databse (String id, String des,double price,String image,int stock)
-            //a record in databse looks like ('0001', '40 inch TV', 269.00,'0001TV.jpg',100)"
-            databaseRW.insertNewProduct(theNewProId,description,price,imageNameWithExtension,stock);
-            updateView(UpdateForAction.BtnSummitNew);
-            theNewProId = null;
         }
     }
 
+    // Applies every stock change of the delivery note in one transaction, or none of them
+    void doApplyDelivery() {
+        if (pendingDelivery != null) return; // the previous delivery is still being applied
+        DeliveryNote note = DeliveryNote.parse(view.taDeliveryNote.getText());
+        if (!note.getErrors().isEmpty() || note.isEmpty()) {
+            StringBuilder errorMessage = new StringBuilder();
+            for (String error : note.getErrors()) {
+                errorMessage.append("\u2022 ").append(error).append("\n");
+            }
+            if (note.getErrors().isEmpty()) errorMessage.append("\u2022 The delivery note is empty.");
+            displayInputErrorMsg = errorMessage.toString();
+            updateView(UpdateForAction.ShowInputErrorMsg);
+            return;
+        }
+
+        pendingDelivery = note;
+        asyncDatabaseRW().call(db -> db.adjustStocks(note.getStockChanges()))
+                .whenComplete((failedIds, error) -> uiExecutor.execute(() -> {
+                    pendingDelivery = null;
+                    if (error != null) {
+                        showDatabaseError("Delivery", error);
+                        return;
+                    }
+                    if (!failedIds.isEmpty()) {
+                        displayInputErrorMsg = "\u2022 Nothing was changed. Unknown product or stock below 0:\n"
+                                + String.join(", ", failedIds);
+                        updateView(UpdateForAction.ShowInputErrorMsg);
+                        return;
+                    }
+                    bulkSummary = "Delivery of " + note.getStockChanges().size() + " products ("
+                            + note.getUnitsDelivered() + " units) applied";
+                    view.updateDeliveryNote("", bulkSummary + ".");
+                    showManageStockHistory(ManageProductType.Delivered);
+                    alertSimulator.closeAlertSimulatorWindow();//close AlertSimulatorWindow if exists
+                    if (!productList.isEmpty()) doSearch(); // show the new stock in the search results
+                }));
+    }
+
     private  boolean validateInputEditChild(String txPrice, String txStock,
-                                         String description) throws SQLException {
+                                         String description) {
 
         StringBuilder errorMessage = new StringBuilder();
 
@@ -289,16 +612,16 @@ public class WarehouseModel {
         return true;
     }
 
-    private  boolean validateInputNewProChild(String id, String txPrice, String txStock,
-                                   String description, String imageUri) throws SQLException {
+    private  boolean validateInputNewProChild(String id, boolean idAvailable, String txPrice, String txStock,
+                                   String description, String imageUri) {
 
         StringBuilder errorMessage = new StringBuilder();
-        // Validate Id (must be exactly 4 digits)
-        if (id == null || !id.matches("\\d{4}"))
-            errorMessage.append("\u2022 Product ID must be exactly 4 digits.\n");
+        // Validate Id (4 to 10 digits, the database column is VARCHAR(10))
+        if (id == null || !id.matches("\\d{4,10}"))
+            errorMessage.append("\u2022 Product ID must be 4 to 10 digits.\n");
 
         //check Id is unique
-        if(!databaseRW.isProIdAvailable(id))
+        if(!idAvailable)
             errorMessage.append("\u2022 Product ID " + id + " is not available.\n");
 
         // Validate Price (must be a positive number, and two digitals )
@@ -349,13 +672,13 @@ public class WarehouseModel {
     private void updateView(UpdateForAction updateFor){
         switch (updateFor) {
             case UpdateForAction.BtnSearch:
-                view.updateObservableProductList(productList);
+                view.updateObservableProductList(productList, searchTotal);
                 break;
             case UpdateForAction.BtnEdit:
                 view.updateEditProductChild(displayIdEdit,displayPriceEdit,displayStockEdit,displayDescriptionEdit,displayImageUrlEdit);
                 break;
             case UpdateForAction.BtnDelete:
-                view.updateObservableProductList(productList); //update search page in view
+                view.updateObservableProductList(productList, searchTotal); //update search page in view
                 showManageStockHistory(ManageProductType.Deleted);
                 view.resetEditChild();
                 alertSimulator.closeAlertSimulatorWindow();//close AlertSimulatorWindow if exists
@@ -405,6 +728,11 @@ public class WarehouseModel {
                 break;
             case ManageProductType.New :
                 record = theNewProId + " added to database successfully, " + dateTime;
+                break;
+            case ManageProductType.Imported:
+            case ManageProductType.Exported:
+            case ManageProductType.Delivered:
+                record = bulkSummary + ", " + dateTime;
         }
         if(!record.equals(""))
             displayManageHistory.add(record);
@@ -1,6 +1,7 @@
 package ci553.happyshop.client.warehouse;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.ListViewPager;
 import ci553.happyshop.utility.StorageLocation;
 import ci553.happyshop.utility.UIStyle;
 import ci553.happyshop.utility.WinPosManager;
@@ -84,6 +85,8 @@ public class WarehouseView  {
     ComboBox<String> cbProductFormMode; //the first child
     private VBox vbEditProduct; //the seceond child
     private VBox vbNewProduct; //another second child
+    private VBox vbBulkTransfer; //the third second child, importing and exporting the whole catalogue
+    private VBox vbDelivery; //the fourth second child, applying a delivery note to many products at once
     String theProFormMode ="EDIT";
     /** productFormPage has two children at a time,
      * 1. cbProductFormMode: A ComboBox that holds two action types for the product form:
@@ -94,6 +97,8 @@ public class WarehouseView  {
      * The following two second childeren swap based on the selected value of the ComboBox:
      * 2. vbEditProduct: contains the UI elements for editing an existing product (visible when "EDIT" is selected)
      * 2. vbNewProduct: contains the UI elements for adding a new product to stock (visible when "NEW" is selected)
+     * 2. vbBulkTransfer: imports products from a CSV/JSON file or exports all of them (visible when "BULK" is selected)
+     * 2. vbDelivery: changes the stock of every product on a delivery note at once (visible when "DELIVERY" is selected)
      */
 
     //some elements in vbEditProduct, we need to getValue from them and setValue for them
@@ -130,6 +135,18 @@ public class WarehouseView  {
     String imageUriNewPro; //user slected image Uri
     // URI of the image selected by the user for a new product. This value is retrieved from the image chooser.
 
+    //some elements in vbBulkTransfer
+    private Label laBulkStatus;
+    private ProgressBar pbBulk;
+    private Button btnImport;
+    private Button btnExport;
+    File bulkFile; // the file chosen for the import or export, read by the model
+
+    //some elements in vbDelivery
+    TextArea taDeliveryNote; // one "productID quantity" per line, read by the model
+    private Label laDeliveryStatus;
+    File deliveryNoteFile; // the delivery note file chosen to load into taDeliveryNote
+
     public void start(Stage window) {
         VBox vbSearchPage = createSearchPage();
         VBox vbProductFormPage = createProductFormPage();
@@ -199,6 +216,9 @@ public class WarehouseView  {
         obrLvProducts.setFixedCellSize(50);
         obrLvProducts.setStyle(UIStyle.listViewStyle);
 
+        // fetch the next page of search results when the user scrolls to the end of the list
+        ListViewPager.onScrolledToEnd(obrLvProducts, () -> controller.loadMoreSearchResults());
+
         VBox vbSearchResult = new VBox(3,hbLaBtns, obrLvProducts); // Week 11: Reduced spacing for compact layout
 
         /**
@@ -256,13 +276,16 @@ public class WarehouseView  {
     private VBox createProductFormPage() {
         cbProductFormMode = new ComboBox<>();
         cbProductFormMode.setStyle(UIStyle.comboBoxStyle);
-        cbProductFormMode.getItems().addAll("Edit Existing Product in Stock", "Add New Product to Stock");
+        cbProductFormMode.getItems().addAll("Edit Existing Product in Stock", "Add New Product to Stock",
+                "Import/Export Products", "Receive Delivery Note");
         // Set default selected value, so only when value changed trigger setOnAction
         cbProductFormMode.setValue("Edit Existing Product in Stock");
 
         vbEditProduct = createEditProdcutChild();
         disableEditProductChild(true); //disable editable component until user selects a product and cilck btnEdit
         vbNewProduct = createNewProductChild();
+        vbBulkTransfer = createBulkTransferChild();
+        vbDelivery = createDeliveryChild();
 
         // Initially set the second child (after ComboBox) to editProduct
         VBox vbProductFormPage = new VBox(5, cbProductFormMode, vbEditProduct); // Week 11: Reduced spacing for compact layout
@@ -278,6 +301,14 @@ public class WarehouseView  {
                 vbProductFormPage.getChildren().set(1,vbNewProduct);
                 theProFormMode = "NEW";
             }
+            if (cbProductFormMode.getValue().equals("Import/Export Products")) {
+                vbProductFormPage.getChildren().set(1,vbBulkTransfer);
+                theProFormMode = "BULK";
+            }
+            if (cbProductFormMode.getValue().equals("Receive Delivery Note")) {
+                vbProductFormPage.getChildren().set(1,vbDelivery);
+                theProFormMode = "DELIVERY";
+            }
         });
 
         vbProductFormPage.setPrefWidth(COLUMN_WIDTH+20);
@@ -455,6 +486,103 @@ public class WarehouseView  {
         return vbAddNewProductToStockChild;
     }
 
+    private VBox createBulkTransferChild() {
+        Label laInfo = new Label("CSV or JSON file with the columns\n"
+                + "productID, description, unitPrice, image, inStock.\n"
+                + "Images are found next to the file.");
+        laInfo.setStyle("-fx-font-size: 14px;");
+
+        btnImport = new Button("Import");
+        btnImport.setStyle(UIStyle.blueFillBtnStyle);
+        btnImport.setPrefWidth(100);
+        btnImport.setOnAction(event -> bulkFileChooser("Import"));
+
+        btnExport = new Button("Export");
+        btnExport.setStyle(UIStyle.greenFillBtnStyle);
+        btnExport.setPrefWidth(100);
+        btnExport.setOnAction(event -> bulkFileChooser("Export"));
+
+        HBox hbBulkBtns = new HBox(15, btnImport, btnExport);
+        hbBulkBtns.setAlignment(Pos.CENTER);
+
+        pbBulk = new ProgressBar(0);
+        pbBulk.setPrefWidth(COLUMN_WIDTH - 20);
+        laBulkStatus = new Label("");
+        laBulkStatus.setWrapText(true);
+        laBulkStatus.setStyle("-fx-font-size: 14px;");
+
+        VBox vbBulkTransferChild = new VBox(10, laInfo, hbBulkBtns, pbBulk, laBulkStatus);
+        vbBulkTransferChild.setStyle(UIStyle.manageStockChildStyle);
+        return vbBulkTransferChild;
+    }
+
+    private VBox createDeliveryChild() {
+        Label laInfo = new Label("One product per line: productID quantity\n"
+                + "(e.g. 0001 300, or 0003 -2 to correct the stock)");
+        laInfo.setStyle("-fx-font-size: 14px;");
+
+        taDeliveryNote = new TextArea();
+        taDeliveryNote.setPrefSize(COLUMN_WIDTH - 20, HEIGHT - 260);
+        taDeliveryNote.setStyle(UIStyle.textFiledStyle);
+
+        Button btnLoadNote = new Button("Load File");
+        btnLoadNote.setStyle(UIStyle.grayFillBtnStyle);
+        btnLoadNote.setPrefWidth(100);
+        btnLoadNote.setOnAction(event -> deliveryNoteChooser());
+
+        Button btnApplyDelivery = new Button("Apply Delivery");
+        btnApplyDelivery.setStyle(UIStyle.blueFillBtnStyle);
+        btnApplyDelivery.setPrefWidth(140);
+        btnApplyDelivery.setOnAction(this::buttonClick);
+
+        HBox hbDeliveryBtns = new HBox(15, btnLoadNote, btnApplyDelivery);
+        hbDeliveryBtns.setAlignment(Pos.CENTER);
+
+        laDeliveryStatus = new Label("");
+        laDeliveryStatus.setWrapText(true);
+        laDeliveryStatus.setStyle("-fx-font-size: 14px;");
+
+        VBox vbDeliveryChild = new VBox(10, laInfo, taDeliveryNote, hbDeliveryBtns, laDeliveryStatus);
+        vbDeliveryChild.setStyle(UIStyle.manageStockChildStyle);
+        return vbDeliveryChild;
+    }
+
+    //choose a delivery note file (e.g. the supplier's CSV), the model loads it into taDeliveryNote
+    private void deliveryNoteChooser() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Delivery notes", "*.csv", "*.txt"));
+        File file = fileChooser.showOpenDialog(viewWindow);
+        if (file != null) {
+            deliveryNoteFile = file;
+            try {
+                controller.process("Load File");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    //choose the file to import from or export to, then let the controller start the transfer
+    private void bulkFileChooser(String action) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Products", "*.csv", "*.json"));
+        File file;
+        if (action.equals("Import")) {
+            file = fileChooser.showOpenDialog(viewWindow);
+        } else {
+            fileChooser.setInitialFileName("products.csv");
+            file = fileChooser.showSaveDialog(viewWindow);
+        }
+        if (file != null) {
+            bulkFile = file;
+            try {
+                controller.process(action);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     //disable editable controls before user select a product and click the button edit
     private void disableEditProductChild(boolean disable) {
         tfPriceEdit.setDisable(disable);
@@ -515,15 +643,33 @@ public class WarehouseView  {
     }
 
     //update the product listVew of serachPage
-    void updateObservableProductList( ArrayList<Product> productList) {
-        int proCounter = productList.size();
-        System.out.println(proCounter);
-        laSearchSummary.setText(proCounter + " products found");
+    //productList holds the pages loaded so far, totalFound counts all matching products
+    void updateObservableProductList( ArrayList<Product> productList, int totalFound) {
+        System.out.println(totalFound);
+        laSearchSummary.setText(totalFound + " products found");
         laSearchSummary.setVisible(true);
         obeProductList.clear();
         obeProductList.addAll(productList);
     }
 
+    //append a further page of search results, keeping the scroll position
+    void appendObservableProductList(ArrayList<Product> moreProducts) {
+        obeProductList.addAll(moreProducts);
+    }
+
+    //show how far an import or export has got; progress is -1 while running (the total is unknown), 1 when done
+    void updateBulkProgress(String status, double progress) {
+        laBulkStatus.setText(status);
+        pbBulk.setProgress(progress);
+        btnImport.setDisable(progress < 0);
+        btnExport.setDisable(progress < 0);
+    }
+
+    void updateDeliveryNote(String noteText, String status) {
+        taDeliveryNote.setText(noteText);
+        laDeliveryStatus.setText(status);
+    }
+
     void updateBtnAddSub(String stock){
         tfStockEdit.setText(stock);
         tfChangeByEdit.clear();
@@ -1,5 +1,6 @@
 package ci553.happyshop.orderManagement;
 
+import ci553.happyshop.utility.Logger;
 import ci553.happyshop.utility.StorageLocation;
 
 import java.io.IOException;
@@ -13,13 +14,13 @@ import java.nio.channels.FileLock;
  * OrderCounter is responsible for generating unique, sequential orderIDs for new orders.
  *
  * <p>This class manages a persistent counter stored in an external text file:(ie,"orders/orderCounter.txt").
- * On first use, it creates the file and starts the counter at 1.
- * For subsequent calls, it reads the current number, increments it by 1, writes the updated value
- * back to the file, and returns the new order ID.</p>
+ * The file holds the highest order ID reserved so far. IDs are reserved idBlockSize at a time
+ * by an OrderIdAllocator and then handed out from memory, so a checkout no longer waits for a locked
+ * read and rewrite of the file (that original per-order version is kept as generateOrderIdWithFileLock).</p>
  *
  * <p>File access is synchronized using a file lock to ensure safe operation in a multi-threaded
- * or multi-process environment. The method is simple to use by OrderHub
- * or any component that needs to generate order numbers.</p>
+ * or multi-process environment: every process reserves its own blocks, so IDs never clash.
+ * IDs left in a block when the application crashes are skipped, never reused.</p>
  *
  * <p>FileChannel allows exclusive locking of files or specific regions of files,
  * which prevents other threads or processes from accessing the file simultaneously,
@@ -31,10 +32,39 @@ import java.nio.channels.FileLock;
  */
 
 public class OrderCounter {
+    private static final Logger log = Logger.getLogger(OrderCounter.class);
+    public static int idBlockSize = 1000; // order IDs reserved in the counter file at a time, see OrderIdAllocator
+
+    private static OrderIdAllocator allocator;
 
     public static int generateOrderId() throws IOException {
-        Path path = StorageLocation.orderCounterPath;
+        return getAllocator().nextId();
+    }
+
+    private static synchronized OrderIdAllocator getAllocator() {
+        if (allocator == null) {
+            allocator = new OrderIdAllocator(StorageLocation.orderCounterPath, idBlockSize);
+        }
+        return allocator;
+    }
+
+    /**
+     * Gives the reserved order IDs not used yet back to the counter file, called when the application stops.
+     */
+    public static synchronized void releaseUnusedIds() {
+        if (allocator == null) return;
+        try {
+            allocator.release();
+        } catch (IOException e) {
+            log.warn("Cannot release the unused order IDs, they are skipped: " + e.getMessage());
+        }
+    }
 
+    /**
+     * The original allocation of one ID per locked read and rewrite of the counter file.
+     * Kept for comparison in the order ID benchmark (see OrderIdAllocatorTest).
+     */
+    static int generateOrderIdWithFileLock(Path path) throws IOException {
         // Lock and increment the ID
         try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
              FileLock lock = channel.lock()) {
@@ -60,7 +90,7 @@ public class OrderCounter {
             //This wraps an existing byte array into a buffer — so you can write it with channel.write().
             channel.write(ByteBuffer.wrap(String.valueOf(newId).getBytes()));
 
-            System.out.println("OrderId was generated for now: " + newId);
+            log.debug(() -> "OrderId was generated for now: " + newId);
             return newId;
         }
     }
@@ -4,12 +4,13 @@ import ci553.happyshop.catalogue.Order;
 import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.client.orderTracker.OrderTracker;
 import ci553.happyshop.client.picker.PickerModel;
-import ci553.happyshop.storageAccess.OrderFileManager;
+import ci553.happyshop.storageAccess.OrderFolderWatcher;
+import ci553.happyshop.storageAccess.OrderStore;
+import ci553.happyshop.storageAccess.OrderStoreFactory;
+import ci553.happyshop.utility.Logger;
 import ci553.happyshop.utility.StorageLocation;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -17,10 +18,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>{@code OrderHub} serves as the heart of the ordering system.
@@ -30,27 +34,65 @@ import java.util.stream.Stream;
  * <p> It is the central coordinator responsible for managing all orders. It handles:
  *   Creating and tracking orders
  *   Maintaining and updating the internal order map, <OrderId, OrderState>
- *   Delegating file-related operations (e.g., updating state and moving files) to OrderFileManager class
- *   Loading orders in the "ordered" and "progressing" states from storage during system startup
+ *   Delegating storage (e.g., updating state and moving files) to the OrderStore chosen by OrderStoreFactory:
+ *   the order text files (FileOrderStore) or the append-only OrderJournal
+ *   Loading orders in the "ordered", "progressing" and "ready" states from storage during system startup
  *
  * <p> OrderHub also follows the Observer pattern: it notifies registered observers such as OrderTracker
  * and PickerModel whenever the order data changes, keeping the UI and business logic in sync.</p>
  *
+ * <p>When the clients run in several JVMs sharing the orders folder (see StorageServer), each JVM has its own
+ * OrderHub. watchOrderFolders makes it re-read the folders whenever another JVM creates or moves an order file,
+ * so its pickers and trackers see every order; OrderFileManager makes sure only one picker moves an order.</p>
+ *
+ * <p>Thread safety: orders are created, moved and removed from several threads (checkouts, pickers,
+ * the folder watcher and the scheduler removing collected orders).
+ * - Every order is one OrderRecord (state and customer type) in a ConcurrentSkipListMap, sorted by order ID.
+ * - A state change is first made in the order store, which refuses it if the order is no longer in the old state,
+ *   so of two pickers moving the same order only one succeeds. The record then changes by compare-and-set
+ *   from the old state, so it never goes back to a state the store has already left.
+ * - Observers get a copy of the orders, taken and sent under a lock so the last copy sent is the latest.</p>
+ *
  * <p>As the heart of the ordering system, OrderHub connects customers, pickers, and tracker,
  * managementing logic into a unified workflow.</p>
  */
 
 public class OrderHub  {
-    private static OrderHub orderHub; //singleton instance
+    private static final Logger log = Logger.getLogger(OrderHub.class);
+    private static volatile OrderHub orderHub; //singleton instance
+
+    /**
+     * An order as OrderHub tracks it: its state, changed only by compare-and-set,
+     * and its customer type (Week 10: Standard/VIP/Prime).
+     */
+    private static final class OrderRecord {
+        private final AtomicReference<OrderState> state;
+        private final String customerType;
+
+        private OrderRecord(OrderState state, String customerType) {
+            this.state = new AtomicReference<>(state);
+            this.customerType = customerType;
+        }
 
-    private final Path orderedPath = StorageLocation.orderedPath;
-    private final Path progressingPath = StorageLocation.progressingPath;
-    private final Path readyPath = StorageLocation.readyPath; // Week 6: Path for Ready state orders
-    private final Path collectedPath = StorageLocation.collectedPath;
+        private OrderState state() {
+            return state.get();
+        }
+
+        private boolean changeState(OrderState oldState, OrderState newState) {
+            return state.compareAndSet(oldState, newState);
+        }
+    }
+
+    // where the order IDs come from, OrderCounter unless given by a test
+    interface OrderIdSource {
+        int nextId() throws IOException;
+    }
 
-    private TreeMap<Integer,OrderState> orderMap = new TreeMap<>();
-    private TreeMap<Integer,OrderState> progressingOrderMap = new TreeMap<>(); // Week 6: Temporary map for filtering
-    private TreeMap<Integer,String> orderCustomerTypes = new TreeMap<>(); // Week 10: Map to track customer type for each order
+    private final OrderStore orderStore;
+    private final OrderIdSource orderIds;
+
+    private final ConcurrentSkipListMap<Integer, OrderRecord> orders = new ConcurrentSkipListMap<>();
+    private final Object notifyLock = new Object(); // observers are sent one copy of the orders at a time
 
     /**
      * Two Lists to hold all registered OrderTracker and PickerModel observers.
@@ -60,42 +102,59 @@ public class OrderHub  {
      *   but collected orders are shown for a limited time (10 seconds).
      * - PickerModels will be notified only of orders in the "ordered" or "progressing" states, filtering out collected orders.
      */
-    private ArrayList<OrderTracker> orderTrackerList = new ArrayList<>();
-    private ArrayList<PickerModel> pickerModelList = new ArrayList<>();
+    private final List<OrderTracker> orderTrackerList = new CopyOnWriteArrayList<>();
+    private final List<PickerModel> pickerModelList = new CopyOnWriteArrayList<>();
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private volatile Executor updateExecutor = Runnable::run; // where folder refreshes and collected-order removals run
+    private OrderFolderWatcher folderWatcher;
 
     //Singleton pattern
-    private OrderHub() {}
+    private OrderHub() {
+        this(OrderStoreFactory.createOrderStore(), OrderCounter::generateOrderId);
+    }
+
+    // for tests: an OrderHub on its own store and order IDs
+    OrderHub(OrderStore orderStore, OrderIdSource orderIds) {
+        this.orderStore = orderStore;
+        this.orderIds = orderIds;
+    }
+
     public static OrderHub getOrderHub() {
-        if (orderHub == null)
-            orderHub = new OrderHub();
-            return orderHub;
+        OrderHub hub = orderHub;
+        if (hub == null) {
+            synchronized (OrderHub.class) {
+                hub = orderHub;
+                if (hub == null) {
+                    hub = new OrderHub();
+                    orderHub = hub;
+                }
+            }
+        }
+        return hub;
     }
 
     //Creates a new order using the provided list of products.
     //and also notify picker and orderTracker
     // Week 10: Added customerType parameter for tracking customer tier (Standard/VIP/Prime)
     public Order newOrder(ArrayList<Product> trolley, String customerType) throws IOException, SQLException {
-        int orderId = OrderCounter.generateOrderId(); //get unique orderId
+        int orderId = orderIds.nextId(); //get unique orderId
         String orderedDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         //make an Order Object: id, Ordered_state, orderedDateTime, and productsList(trolley)
         // Week 10: Pass customerType to Order constructor
         Order theOrder = new Order(orderId,OrderState.Ordered,orderedDateTime,trolley,customerType);
 
         // Week 6 debug: Log new order creation
-        System.out.println("Week 6 Debug: Creating new order ID: " + orderId);
+        log.info("Creating new order ID: " + orderId);
 
-        //write order details to file for the orderId in orderedPath (ie. orders/ordered)
-        String orderDetail = theOrder.orderDetails();
-        Path path = orderedPath;
-        OrderFileManager.createOrderFile(path, orderId, orderDetail);
+        //store the order, e.g. write order details to file for the orderId in orders/ordered
+        orderStore.createOrder(theOrder);
+
+        //add the order with its customer type, state is Ordered initially
+        orders.put(orderId, new OrderRecord(theOrder.getState(), customerType));
 
-        orderMap.put(orderId, theOrder.getState()); //add the order to orderMap,state is Ordered initially
-        orderCustomerTypes.put(orderId, customerType); // Week 10: Track customer type for this order
-        
         // Week 6 debug: Log before notifications
-        System.out.println("Week 6 Debug: Order added to map. Total orders: " + orderMap.size());
+        log.debug(() -> "Order added to map. Total orders: " + orders.size());
         
         notifyOrderTrackers(); //notify OrderTrackers
         notifyPickerModels();//notify pickers
@@ -110,12 +169,17 @@ public class OrderHub  {
     public void registerOrderTracker(OrderTracker orderTracker){
         orderTrackerList.add(orderTracker);
         // Week 6: Send current state to newly registered tracker
-        orderTracker.setOrderMap(orderMap);
+        synchronized (notifyLock) {
+            orderTracker.setOrderMap(filterOrdersByState(OrderState.values()));
+        }
     }
      //Notifies all registered observer_OrderTrackers to update and display the latest orderMap.
     public void notifyOrderTrackers(){
-        for(OrderTracker orderTracker : orderTrackerList){
-            orderTracker.setOrderMap(orderMap);
+        synchronized (notifyLock) {
+            TreeMap<Integer, OrderState> orderMap = filterOrdersByState(OrderState.values());
+            for (OrderTracker orderTracker : orderTrackerList) {
+                orderTracker.setOrderMap(orderMap);
+            }
         }
     }
 
@@ -126,24 +190,14 @@ public class OrderHub  {
     public void registerPickerModel(PickerModel pickerModel){
         pickerModelList.add(pickerModel);
         // Week 6 debug: Log picker registration
-        System.out.println("Week 6 Debug: PickerModel registered. Total pickers: " + pickerModelList.size());
+        log.debug(() -> "PickerModel registered. Total pickers: " + pickerModelList.size());
         
         // Week 6: Send current state to newly registered picker
-        TreeMap<Integer,OrderState> orderMapForPicker = new TreeMap<>();
-        TreeMap<Integer,OrderState> orderedMap = filterOrdersByState(OrderState.Ordered);
-        TreeMap<Integer,OrderState> progressingMap = filterOrdersByState(OrderState.Progressing);
-        TreeMap<Integer,OrderState> readyMap = filterOrdersByState(OrderState.Ready);
-        orderMapForPicker.putAll(orderedMap);
-        orderMapForPicker.putAll(progressingMap);
-        orderMapForPicker.putAll(readyMap);
-        
-        // Week 10: Filter customer types for newly registered picker
-        TreeMap<Integer, String> customerTypesForPicker = new TreeMap<>();
-        for (Integer orderId : orderMapForPicker.keySet()) {
-            customerTypesForPicker.put(orderId, orderCustomerTypes.getOrDefault(orderId, "Standard"));
+        synchronized (notifyLock) {
+            TreeMap<Integer, OrderState> orderMapForPicker =
+                    filterOrdersByState(OrderState.Ordered, OrderState.Progressing, OrderState.Ready);
+            pickerModel.setOrderMap(orderMapForPicker, customerTypesOf(orderMapForPicker)); // Week 10: Pass customer types
         }
-        
-        pickerModel.setOrderMap(orderMapForPicker, customerTypesForPicker); // Week 10: Pass customer types
     }
 
     /**
@@ -152,92 +206,100 @@ public class OrderHub  {
      */
     public void notifyPickerModels(){
         // Week 6 debug: Log notification attempt
-        System.out.println("Week 6 Debug: notifyPickerModels() called. Registered pickers: " + pickerModelList.size());
-        
-        TreeMap<Integer,OrderState> orderMapForPicker = new TreeMap<>();
-        TreeMap<Integer,OrderState> orderedMap = filterOrdersByState(OrderState.Ordered);
-        progressingOrderMap = filterOrdersByState(OrderState.Progressing);
-        TreeMap<Integer,OrderState> readyMap = filterOrdersByState(OrderState.Ready); // Week 6: Include ready orders
-        
-        orderMapForPicker.putAll(orderedMap);
-        orderMapForPicker.putAll(progressingOrderMap);
-        orderMapForPicker.putAll(readyMap); // Week 6: Add ready orders to picker view
-        
-        // Week 6 debug: Log what we're sending to pickers
-        System.out.println("Week 6 Debug: Notifying pickers with " + orderMapForPicker.size() + " orders");
-        
-        // Week 10: Filter customer types for orders being sent to pickers
-        TreeMap<Integer, String> customerTypesForPicker = new TreeMap<>();
-        for (Integer orderId : orderMapForPicker.keySet()) {
-            customerTypesForPicker.put(orderId, orderCustomerTypes.getOrDefault(orderId, "Standard"));
-        }
+        log.debug(() -> "notifyPickerModels() called. Registered pickers: " + pickerModelList.size());
         
-        for(PickerModel pickerModel : pickerModelList){
-            pickerModel.setOrderMap(orderMapForPicker, customerTypesForPicker); // Week 10: Pass customer types
+        synchronized (notifyLock) {
+            // Week 6: Include ready orders in the picker view
+            TreeMap<Integer, OrderState> orderMapForPicker =
+                    filterOrdersByState(OrderState.Ordered, OrderState.Progressing, OrderState.Ready);
+
+            // Week 6 debug: Log what we're sending to pickers
+            log.debug(() -> "Notifying pickers with " + orderMapForPicker.size() + " orders");
+
+            // Week 10: Filter customer types for orders being sent to pickers
+            TreeMap<Integer, String> customerTypesForPicker = customerTypesOf(orderMapForPicker);
+            for (PickerModel pickerModel : pickerModelList) {
+                pickerModel.setOrderMap(orderMapForPicker, customerTypesForPicker); // Week 10: Pass customer types
+            }
         }
     }
 
-    // Filters orderMap that match the specified state, a helper class used by notifyPickerModel()
-    private TreeMap<Integer, OrderState> filterOrdersByState(OrderState state) {
+    /**
+     * Returns a copy of the orders in any of the given states, by order ID, e.g. for the observers.
+     */
+    TreeMap<Integer, OrderState> filterOrdersByState(OrderState... states) {
         TreeMap<Integer, OrderState> filteredOrderMap = new TreeMap<>(); // New map to hold filtered orders
-        // Loop through the orderMap and add matching orders to filteredOrders
-        for (Map.Entry<Integer, OrderState> entry : orderMap.entrySet()) {
-            if (entry.getValue() == state) {
-                filteredOrderMap.put(entry.getKey(), entry.getValue());
+        for (Map.Entry<Integer, OrderRecord> entry : orders.entrySet()) {
+            OrderState state = entry.getValue().state();
+            for (OrderState wanted : states) {
+                if (state == wanted) {
+                    filteredOrderMap.put(entry.getKey(), state);
+                    break;
+                }
             }
         }
         return filteredOrderMap;
     }
 
+    // the customer types of the given orders, Standard for an order removed meanwhile
+    private TreeMap<Integer, String> customerTypesOf(TreeMap<Integer, OrderState> orderMap) {
+        TreeMap<Integer, String> customerTypes = new TreeMap<>();
+        for (Integer orderId : orderMap.keySet()) {
+            OrderRecord record = orders.get(orderId);
+            customerTypes.put(orderId, record != null ? record.customerType : "Standard");
+        }
+        return customerTypes;
+    }
+
     /**
      * Changes the state of the specified order, updates its file, and moves it to the appropriate folder.
      * Week 6: Flexible state transitions - determines source path from current state
      * Triggered by PickerModel
      */
     public void changeOrderStateMoveFile(int orderId, OrderState newState) throws IOException {
-        if(orderMap.containsKey(orderId) && !orderMap.get(orderId).equals(newState))
-        {
-            // Week 6: Save old state before updating to determine source folder
-            OrderState oldState = orderMap.get(orderId);
-            
-            // Week 6: Determine source path based on OLD state
-            Path sourcePath = getPathForState(oldState);
-            Path targetPath = getPathForState(newState);
-            
-            // Week 6: Update file and move to new folder
-            OrderFileManager.updateAndMoveOrderFile(orderId, newState, sourcePath, targetPath);
-            
-            //change orderState in OrderMap, notify OrderTrackers and pickers
-            orderMap.put(orderId, newState);
-            notifyOrderTrackers();
-            notifyPickerModels();
+        OrderRecord record = orders.get(orderId);
+        if (record == null) return;
+        // Week 6: Save old state before updating to determine source folder
+        OrderState oldState = record.state();
+        if (oldState == newState) return;
 
-            // Week 6: Schedule removal for collected orders
-            if(newState == OrderState.Collected) {
-                removeCollectedOrder(orderId);
-            }
+        // Week 6: Update file and move to new folder (or whatever the order store does)
+        if (!orderStore.changeState(orderId, oldState, newState)) {
+            // another picker (or JVM) changed the order first, show what it did instead
+            log.warn("Order " + orderId + " is no longer " + oldState + ", reloading it");
+            reloadOrder(orderId, record, oldState);
+            return;
         }
-    }
-    
-    /**
-     * Week 6: Helper method to get directory path for a given order state
-     * Centralizes path logic for easier maintenance
-     */
-    private Path getPathForState(OrderState state) {
-        switch(state) {
-            case OrderState.Ordered:
-                return orderedPath;
-            case OrderState.Progressing:
-                return progressingPath;
-            case OrderState.Ready:
-                return readyPath;
-            case OrderState.Collected:
-                return collectedPath;
-            default:
-                return orderedPath; // Fallback
+
+        //change the order's state, unless a refresh has already seen the change; notify OrderTrackers and pickers
+        record.changeState(oldState, newState);
+        notifyOrderTrackers();
+        notifyPickerModels();
+
+        // Week 6: Schedule removal for collected orders
+        if (newState == OrderState.Collected) {
+            removeCollectedOrder(orderId, record);
         }
     }
 
+    // sets an order to the state the store has for it, if it is still in the state it was seen in
+    private void reloadOrder(int orderId, OrderRecord record, OrderState seenState) {
+        OrderState storedState = findStoredState(orderId);
+        boolean changed;
+        if (storedState == null) {
+            changed = orders.remove(orderId, record);
+        } else {
+            changed = record.changeState(seenState, storedState);
+            if (changed && storedState == OrderState.Collected) {
+                removeCollectedOrder(orderId, record);
+            }
+        }
+        if (changed) {
+            notifyOrderTrackers();
+            notifyPickerModels();
+        }
+    }
+    
     /**
      * Removes collected orders from the system after they have been collected for 10 seconds.
      *
@@ -246,15 +308,14 @@ public class OrderHub  {
      * "ordered" and "progressing" states.
      * The 10-second delay gives enough time for any final updates, and providing a short window for review of completed orders.
      */
-    private void removeCollectedOrder(int orderId) {
-        if (orderMap.containsKey(orderId)) {
-            // Schedule removal after a few seconds
-            scheduler.schedule(() -> {
-                orderMap.remove(orderId); //remove collected order
-                System.out.println("Order " + orderId + " removed from tracker and OrdersMap.");
+    private void removeCollectedOrder(int orderId, OrderRecord record) {
+        // Schedule removal after a few seconds
+        scheduler.schedule(() -> updateExecutor.execute(() -> {
+            if (orders.remove(orderId, record)) { //remove collected order, unless replaced meanwhile
+                log.info("Order " + orderId + " removed from tracker and OrdersMap.");
                 notifyOrderTrackers();
-            }, 10, TimeUnit.SECONDS );
-        }
+            }
+        }), 10, TimeUnit.SECONDS);
     }
 
     /**
@@ -262,138 +323,133 @@ public class OrderHub  {
      * Week 6: Now supports all order states (Ordered, Progressing, Ready)
      */
     public String getOrderDetailForPicker(int orderId) throws IOException {
-        OrderState state = orderMap.get(orderId);
-        if(state == null) {
+        OrderRecord record = orders.get(orderId);
+        if(record == null) {
             return "Order not found";
         }
-        
+
         // Week 6: Read from appropriate directory based on order state
-        switch(state) {
-            case OrderState.Ordered:
-                return OrderFileManager.readOrderFile(orderedPath, orderId);
-            case OrderState.Progressing:
-                return OrderFileManager.readOrderFile(progressingPath, orderId);
-            case OrderState.Ready:
-                return OrderFileManager.readOrderFile(readyPath, orderId);
-            case OrderState.Collected:
-                return OrderFileManager.readOrderFile(collectedPath, orderId);
-            default:
-                return "Unknown order state";
-        }
+        return orderStore.readOrderDetail(orderId, record.state());
     }
 
     /**
-     * Initializes the internal order map by loading the uncollected orders from the file system.
+     * Initializes the internal order map by loading the uncollected orders from the order store.
      * Week 6: Now includes Ready state orders
      * Called during system startup by the Main class.
      */
     public void initializeOrderMap(){
-        ArrayList<Integer> orderedIds = orderIdsLoader(orderedPath);
-        ArrayList<Integer> progressingIds = orderIdsLoader(progressingPath);
-        ArrayList<Integer> readyIds = orderIdsLoader(readyPath); // Week 6: Load ready orders
-        
-        if(orderedIds.size()>0){
-            for(Integer orderId : orderedIds){
-                orderMap.put(orderId, OrderState.Ordered);
-                // Week 10: Load customer type from order file
-                loadCustomerTypeFromFile(orderedPath, orderId);
-            }
-        }
-        if(progressingIds.size()>0){
-            for(Integer orderId : progressingIds){
-                orderMap.put(orderId, OrderState.Progressing);
-                // Week 10: Load customer type from order file
-                loadCustomerTypeFromFile(progressingPath, orderId);
-            }
+        List<OrderStore.StoredOrder> storedOrders;
+        try {
+            storedOrders = orderStore.loadOpenOrders();
+        } catch (IOException e) {
+            log.error("Cannot load the orders", e);
+            storedOrders = List.of();
         }
-        // Week 6: Load ready state orders
-        if(readyIds.size()>0){
-            for(Integer orderId : readyIds){
-                orderMap.put(orderId, OrderState.Ready);
-                // Week 10: Load customer type from order file
-                loadCustomerTypeFromFile(readyPath, orderId);
-            }
+        int[] countByState = new int[OrderState.values().length];
+        for (OrderStore.StoredOrder stored : storedOrders) {
+            // Week 10: customer type from the order
+            orders.put(stored.orderId(), new OrderRecord(stored.state(), stored.customerType()));
+            countByState[stored.state().ordinal()]++;
         }
-        
+
         notifyOrderTrackers();
         notifyPickerModels();
-        System.out.println("orderMap initialized. "+ orderMap.size() + " orders in total, including:");
-        System.out.println( orderedIds.size() + " Ordered orders, " +progressingIds.size() + " Progressing orders, " + readyIds.size() + " Ready orders" );
+        log.info("orderMap initialized. "+ orders.size() + " orders in total, including: "
+                + countByState[OrderState.Ordered.ordinal()] + " Ordered orders, "
+                + countByState[OrderState.Progressing.ordinal()] + " Progressing orders, "
+                + countByState[OrderState.Ready.ordinal()] + " Ready orders" );
     }
 
-    // Loads a list of order IDs from the specified directory.
-    // Used internally by initializeOrderMap().
-    private ArrayList<Integer> orderIdsLoader(Path dir) {
-        ArrayList<Integer> orderIds = new ArrayList<>();
-
-        if (Files.exists(dir) && Files.isDirectory(dir)) {
-            try (Stream<Path> fileStream = Files.list(dir)) {
-                // Process the stream without checking it separately
-                List<Path> files = fileStream.filter(Files::isRegularFile).toList();
-
-                if (files.isEmpty()) {
-                    System.out.println(dir + " is empty");
-                } else {
-                    for (Path file : files) {
-                        String fileName = file.getFileName().toString();
-                        if (fileName.endsWith(".txt")) { // Ensure it's a .txt file
-                            try {
-                                int orderId = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
-                                orderIds.add(orderId);
-                                System.out.println(orderId);
-                            } catch (NumberFormatException e) {
-                                System.out.println("Invalid file name: " + fileName);
-                            }
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                System.out.println("Error reading " + dir + ", " + e.getMessage());
-            }
-        } else {
-            System.out.println(dir + " does not exist.");
+    /**
+     * Starts re-reading the order folders whenever a file in them changes, to see the orders created and moved
+     * by other JVMs. The refreshes, and the removal of collected orders, run on the given executor:
+     * the JavaFX clients pass Platform::runLater, the thread their picker actions run on.
+     * Must be called after initializeOrderMap; a second call does nothing.
+     */
+    public synchronized void watchOrderFolders(Executor executor) {
+        if (folderWatcher != null) return;
+        updateExecutor = executor;
+        folderWatcher = new OrderFolderWatcher(List.of(StorageLocation.orderedPath, StorageLocation.progressingPath,
+                StorageLocation.readyPath, StorageLocation.collectedPath),
+                () -> executor.execute(this::refreshFromFolders), 200);
+        try {
+            folderWatcher.start();
+        } catch (IOException e) {
+            log.error("Cannot watch the order folders, orders of other processes are not shown", e);
         }
-        return orderIds;
     }
-    
+
     /**
-     * Week 10: Loads customer type from order file and stores it in orderCustomerTypes map
-     * This ensures customer type persists across application restarts
-     * @param dir The directory containing the order file
-     * @param orderId The order ID to load customer type for
+     * Brings the orderMap in line with the order store and notifies the observers if anything changed:
+     * new orders are added, moved orders get their new state, and orders that are no longer open
+     * are shown as Collected for 10 seconds (or dropped if the store does not know them).
+     * An order changed by this JVM while the store is read keeps that change (see reloadOrder).
      */
-    private void loadCustomerTypeFromFile(Path dir, int orderId) {
-        Path orderFile = dir.resolve(orderId + ".txt");
-        if (Files.exists(orderFile)) {
-            try {
-                // Week 10: Read order file and extract customer type line
-                String content = Files.readString(orderFile);
-                String[] lines = content.split("\n");
-                
-                for (String line : lines) {
-                    // Week 10: Look for "CustomerType: VIP" or "CustomerType: Prime" etc.
-                    if (line.startsWith("CustomerType:")) {
-                        String customerType = line.substring("CustomerType:".length()).trim();
-                        orderCustomerTypes.put(orderId, customerType);
-                        System.out.println("Week 10: Loaded customer type for order " + orderId + ": " + customerType);
-                        break; // Found it, no need to continue
-                    }
-                }
-                
-                // Week 10: If no customer type found, default to Standard
-                if (!orderCustomerTypes.containsKey(orderId)) {
-                    orderCustomerTypes.put(orderId, "Standard");
-                    System.out.println("Week 10: No customer type found for order " + orderId + ", defaulting to Standard");
+    public void refreshFromFolders() {
+        // the states before reading the store: only these are replaced by what the store has
+        TreeMap<Integer, OrderState> seen = filterOrdersByState(OrderState.values());
+        TreeMap<Integer, OrderStore.StoredOrder> found = new TreeMap<>();
+        try {
+            for (OrderStore.StoredOrder stored : orderStore.loadOpenOrders()) {
+                found.put(stored.orderId(), stored);
+            }
+        } catch (IOException e) {
+            log.error("Cannot reload the orders", e);
+            return;
+        }
+
+        boolean changed = false;
+        for (OrderStore.StoredOrder stored : found.values()) {
+            OrderRecord record = orders.get(stored.orderId());
+            if (record == null) {
+                changed |= orders.putIfAbsent(stored.orderId(),
+                        new OrderRecord(stored.state(), stored.customerType())) == null;
+            } else if (seen.containsKey(stored.orderId()) && seen.get(stored.orderId()) != stored.state()) {
+                changed |= record.changeState(seen.get(stored.orderId()), stored.state());
+            }
+        }
+        for (Map.Entry<Integer, OrderState> entry : seen.entrySet()) {
+            int orderId = entry.getKey();
+            OrderRecord record = orders.get(orderId);
+            if (record == null || entry.getValue() == OrderState.Collected || found.containsKey(orderId)) continue;
+            OrderState storedState = findStoredState(orderId);
+            if (storedState == OrderState.Collected) {
+                if (record.changeState(entry.getValue(), OrderState.Collected)) {
+                    removeCollectedOrder(orderId, record);
+                    changed = true;
                 }
-                
-            } catch (IOException e) {
-                System.out.println("Week 10: Error reading customer type from order file " + orderId + ": " + e.getMessage());
-                orderCustomerTypes.put(orderId, "Standard"); // Week 10: Default to Standard on error
+            } else if (storedState == null) {
+                changed |= orders.remove(orderId, record);
             }
-        } else {
-            System.out.println("Week 10: Order file not found: " + orderFile);
-            orderCustomerTypes.put(orderId, "Standard"); // Week 10: Default to Standard if file doesn't exist
         }
+
+        if (changed) {
+            log.debug(() -> "orderMap refreshed from the order store, " + orders.size() + " orders");
+            notifyOrderTrackers();
+            notifyPickerModels();
+        }
+    }
+
+    private OrderState findStoredState(int orderId) {
+        try {
+            return orderStore.findState(orderId);
+        } catch (IOException e) {
+            log.warn("Cannot find order " + orderId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Closes the order store (e.g. the journal files), called when the application stops.
+     */
+    public synchronized void shutdown() {
+        try {
+            if (folderWatcher != null) folderWatcher.close();
+            orderStore.close();
+        } catch (IOException e) {
+            log.warn("Closing the order store failed: " + e.getMessage());
+        }
+        scheduler.shutdownNow();
     }
 
 }
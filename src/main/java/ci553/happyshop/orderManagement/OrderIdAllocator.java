@@ -0,0 +1,140 @@
+package ci553.happyshop.orderManagement;
+
+import ci553.happyshop.utility.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OrderIdAllocator hands out unique order IDs from blocks reserved in the counter file,
+ * so most IDs come from memory instead of a locked read and rewrite of the file per order.
+ *
+ * How it works:
+ * - The counter file holds the highest ID reserved so far, as text (the same format as the old per-order counter,
+ *   so an existing orders/orderCounter.txt is simply continued).
+ * - When its block is used up, the allocator locks the lock file next to it (orderCounter.txt.lock), reads the
+ *   number N, writes N + blockSize and unlocks. IDs N+1 .. N+blockSize are then its own and are handed out
+ *   by an AtomicLong.
+ * - The new number is written to a temporary file, forced to disk and moved over the counter file in one atomic
+ *   rename, so a crash leaves either the old number or the new one, never a torn mix of their digits.
+ *   This happens before any ID of the block is used, so after a crash the next block starts above every ID
+ *   that was handed out; the unused rest of the block is skipped, never reused.
+ * - Several processes sharing the orders folder each reserve their own blocks under the lock, so their IDs
+ *   never clash, but IDs are no longer in creation order across processes. The lock is taken on the separate
+ *   lock file because the counter file itself is replaced by every write.
+ * - release() gives the unused rest of the block back if nobody reserved a block after it, to avoid gaps
+ *   after a normal shutdown.
+ *
+ * It is safe to use from several threads.
+ */
+
+public class OrderIdAllocator {
+    private static final Logger log = Logger.getLogger(OrderIdAllocator.class);
+
+    // a reserved range of IDs: next is the next one to hand out, last the highest one reserved
+    private record Block(AtomicLong next, long last) {
+    }
+
+    // a JVM may hold a FileLock on a file only once, so allocators of the same JVM take turns before locking it
+    private static final ReentrantLock fileLock = new ReentrantLock();
+
+    private final Path counterPath;
+    private final Path lockPath;
+    private final int blockSize;
+    private volatile Block block = new Block(new AtomicLong(1), 0); // empty until the first reservation
+
+    public OrderIdAllocator(Path counterPath, int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("blockSize must be at least 1");
+        this.counterPath = counterPath;
+        this.lockPath = counterPath.resolveSibling(counterPath.getFileName() + ".lock");
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns a new order ID, reserving a new block first if the current one is used up.
+     */
+    public int nextId() throws IOException {
+        while (true) {
+            Block current = block;
+            long id = current.next().getAndIncrement();
+            if (id <= current.last()) {
+                return Math.toIntExact(id);
+            }
+            synchronized (this) {
+                if (block == current) { // no other thread reserved a new block meanwhile
+                    block = reserveBlock();
+                }
+            }
+        }
+    }
+
+    private Block reserveBlock() throws IOException {
+        fileLock.lock(); // the threads of this JVM first, then the other processes
+        try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            long reserved = readCounter();
+            long last = reserved + blockSize;
+            writeCounter(last);
+            log.debug(() -> "Order IDs " + (reserved + 1) + " to " + last + " reserved");
+            return new Block(new AtomicLong(reserved + 1), last);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Gives the IDs not handed out yet back to the counter file, if no other process has reserved IDs since.
+     * No more IDs are handed out from the current block afterwards.
+     */
+    public synchronized void release() throws IOException {
+        Block current = block;
+        block = new Block(new AtomicLong(1), 0);
+        // claim the rest of the block, so a thread still using it moves on to a new block
+        long firstUnused = current.next().getAndSet(current.last() + 1);
+        if (firstUnused > current.last()) return;
+        fileLock.lock();
+        try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            if (readCounter() == current.last()) {
+                writeCounter(firstUnused - 1);
+                log.debug(() -> "Order IDs " + firstUnused + " to " + current.last() + " released");
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private long readCounter() throws IOException {
+        String content = Files.readString(counterPath, StandardCharsets.US_ASCII).trim();
+        return content.isEmpty() ? 0 : Long.parseLong(content);
+    }
+
+    // replaces the counter file and forces it to disk before any ID of a new block is handed out
+    private void writeCounter(long value) throws IOException {
+        Path tempPath = counterPath.resolveSibling(counterPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(StandardCharsets.US_ASCII.encode(String.valueOf(value)));
+            channel.force(true);
+        }
+        Files.move(tempPath, counterPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(counterPath.toAbsolutePath().getParent());
+    }
+
+    // makes the rename durable; not every platform can open a directory (e.g. Windows), there the move must do
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug(() -> "Cannot force the orders folder to disk: " + e.getMessage());
+        }
+    }
+}
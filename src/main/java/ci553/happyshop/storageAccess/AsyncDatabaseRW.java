@@ -0,0 +1,134 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * AsyncDatabaseRW is the non-blocking variant of DatabaseRW for the JavaFX clients.
+ * Each method runs the matching DatabaseRW call on a background executor and returns a CompletableFuture
+ * at once, so a slow query no longer freezes every window while it runs on the JavaFX Application Thread.
+ *
+ * How it works:
+ * - The calls run on the executor given to the constructor, normally the virtual-thread executor
+ *   shared through DatabaseRWFactory.getAsyncExecutor(): every call gets its own cheap thread,
+ *   and the ConnectionPool still limits how many queries reach Derby at once.
+ * - A failed call completes the future exceptionally with the original SQLException
+ *   (wrapped in a CompletionException by join(), or an ExecutionException by get()).
+ * - A future cancelled before its call has started (e.g. a search superseded by a newer one)
+ *   never runs the call. A call that has already started runs to the end, but its result is dropped.
+ * - Results are delivered on the background thread; the models apply them to the UI with Platform.runLater.
+ *
+ * Example usage:
+ *     asyncDatabaseRW.searchProductPage(keyword, 0, 20)
+ *             .whenComplete((page, error) -> Platform.runLater(() -> show(page, error)));
+ */
+
+public class AsyncDatabaseRW {
+    private final DatabaseRW delegate;
+    private final Executor executor;
+
+    /**
+     * A DatabaseRW call to run in the background, which may combine several calls, e.g. a search and its fallback.
+     */
+    @FunctionalInterface
+    public interface DatabaseCall<T> {
+        T call(DatabaseRW databaseRW) throws Exception;
+    }
+
+    public AsyncDatabaseRW(DatabaseRW delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the blocking DatabaseRW the calls are made on.
+     */
+    public DatabaseRW getDatabaseRW() {
+        return delegate;
+    }
+
+    /**
+     * Runs any DatabaseRW call (or sequence of calls) in the background.
+     */
+    public <T> CompletableFuture<T> call(DatabaseCall<T> databaseCall) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) return; // cancelled before it started
+                try {
+                    future.complete(databaseCall.call(delegate));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) { // the executor was shut down, e.g. the application is stopping
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<ArrayList<Product>> searchProduct(String keyword) {
+        return call(db -> db.searchProduct(keyword));
+    }
+
+    public CompletableFuture<ProductPage> searchProductPage(String keyword, int offset, int pageSize) {
+        return call(db -> db.searchProductPage(keyword, offset, pageSize));
+    }
+
+    public CompletableFuture<Product> searchByProductId(String productId) {
+        return call(db -> db.searchByProductId(productId));
+    }
+
+    public CompletableFuture<ArrayList<Product>> searchProductFuzzy(String keyword, int maxResults) {
+        return call(db -> db.searchProductFuzzy(keyword, maxResults));
+    }
+
+    public CompletableFuture<ArrayList<Product>> purchaseStocks(ArrayList<Product> proList) {
+        return call(db -> db.purchaseStocks(proList));
+    }
+
+    public CompletableFuture<Void> releaseStocks(ArrayList<Product> proList) {
+        return call(db -> {
+            db.releaseStocks(proList);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateProduct(String id, String des, double price, String imageName, int stock) {
+        return call(db -> {
+            db.updateProduct(id, des, price, imageName, stock);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> updateProduct(String id, String des, double price, String imageName, int stock,
+                                                    int expectedVersion) {
+        return call(db -> db.updateProduct(id, des, price, imageName, stock, expectedVersion));
+    }
+
+    public CompletableFuture<Void> deleteProduct(String id) {
+        return call(db -> {
+            db.deleteProduct(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> insertNewProduct(String id, String des, double price, String image, int stock) {
+        return call(db -> {
+            db.insertNewProduct(id, des, price, image, stock);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> isProIdAvailable(String productId) {
+        return call(db -> db.isProIdAvailable(productId));
+    }
+
+    public CompletableFuture<ArrayList<Product>> getAllProducts() {
+        return call(DatabaseRW::getAllProducts);
+    }
+}
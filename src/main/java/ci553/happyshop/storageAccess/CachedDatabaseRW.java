@@ -0,0 +1,236 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CachedDatabaseRW is a decorator that adds a read-through product cache in front of another DatabaseRW
+ * (normally DerbyRW). It implements the same interface, so CustomerModel and WarehouseModel do not notice it.
+ *
+ * - Reads (searchProduct, searchByProductId) are answered from the shared ProductCache when possible,
+ *   and only go to the wrapped DatabaseRW on a cache miss.
+ * - Writes (updateProduct, deleteProduct, insertNewProduct, purchaseStocks, releaseStocks) always go to the wrapped
+ *   DatabaseRW first, then update or invalidate the cached rows, so warehouse edits are visible to every client at once.
+ *
+ * Instances are created by DatabaseRWFactory and all share one ProductCache.
+ */
+
+public class CachedDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final ProductCache cache;
+
+    public CachedDatabaseRW(DatabaseRW delegate, ProductCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    //search by product ID first, then by name, like DerbyRW.searchProduct
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = searchByProductId(keyword);
+        if (product != null) {
+            productList.add(product);
+            return productList;
+        }
+
+        List<String> cachedIds = cache.getKeywordResult(keyword);
+        if (cachedIds != null) {
+            for (String id : cachedIds) {
+                ProductCache.Lookup lookup = cache.get(id);
+                if (!lookup.cached) { // a row was evicted, fall back to the database
+                    productList = null;
+                    break;
+                }
+                if (lookup.product != null) productList.add(lookup.product);
+            }
+            if (productList != null) return productList;
+        }
+
+        long generation = cache.currentGeneration();
+        productList = delegate.searchProduct(keyword);
+        cache.putKeywordResultIfUnchanged(generation, keyword, productList);
+        return productList;
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        ProductCache.Lookup lookup = cache.get(productId);
+        if (lookup.cached) {
+            return lookup.product;
+        }
+        long generation = cache.currentGeneration();
+        Product product = delegate.searchByProductId(productId);
+        cache.putIfUnchanged(generation, productId, product);
+        return product;
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return delegate.searchProductPage(keyword, offset, pageSize); // pages are not cached, only whole results
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return delegate.searchProductFuzzy(keyword, maxResults);
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> insufficientProducts;
+        try {
+            insufficientProducts = delegate.purchaseStocks(proList);
+        } catch (SQLException e) {
+            invalidate(proList); // outcome unknown, read again next time
+            throw e;
+        }
+        applyPurchase(proList, insufficientProducts);
+        return insufficientProducts;
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        List<ArrayList<Product>> results;
+        try {
+            results = delegate.purchaseStocksBatch(trolleys);
+        } catch (SQLException e) {
+            for (ArrayList<Product> trolley : trolleys) {
+                invalidate(trolley);
+            }
+            throw e;
+        }
+        for (int i = 0; i < trolleys.size(); i++) {
+            applyPurchase(trolleys.get(i), results.get(i));
+        }
+        return results;
+    }
+
+    // applies the outcome of one purchased trolley to the cached rows
+    private void applyPurchase(ArrayList<Product> proList, ArrayList<Product> insufficientProducts) {
+        if (insufficientProducts.isEmpty()) {
+            // all stock was reduced, apply the same change to the cached rows
+            for (Product product : proList) {
+                cache.addStock(product.getProductId(), -product.getOrderedQuantity(), 1); // one update per line
+            }
+        } else {
+            // nothing was changed, but we learned the current stock of the insufficient products
+            for (Product product : insufficientProducts) {
+                // the cached version is kept: if it is stale, a warehouse edit based on it is refused, never wrong
+                cache.updateStock(product.getProductId(), product.getStockQuantity(), 0);
+            }
+        }
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        ArrayList<Product> lines = new ArrayList<>(reservation.getLines());
+        ArrayList<Product> insufficientProducts;
+        try {
+            insufficientProducts = delegate.reserveStocks(reservation);
+        } catch (SQLException e) {
+            invalidate(lines); // outcome unknown, read again next time
+            throw e;
+        }
+        applyPurchase(lines, insufficientProducts);
+        return insufficientProducts;
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        try {
+            return delegate.endReservation(reservation, releaseStock);
+        } finally {
+            if (releaseStock) invalidate(new ArrayList<>(reservation.getLines())); // read the returned stock again
+        }
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return delegate.getOpenReservations();
+    }
+
+    private void invalidate(ArrayList<Product> proList) {
+        for (Product product : proList) {
+            cache.invalidate(product.getProductId());
+        }
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        try {
+            delegate.releaseStocks(proList);
+        } finally {
+            invalidate(proList); // read the returned stock again next time
+        }
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        try {
+            return delegate.adjustStocks(stockChanges);
+        } finally {
+            for (String productId : stockChanges.keySet()) {
+                cache.invalidate(productId); // read the new stock again next time
+            }
+        }
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        try {
+            delegate.updateProduct(id, des, price, imageName, stock);
+        } finally {
+            // the update is skipped for an unknown ID, so the row is re-read rather than guessed
+            cache.invalidate(id);
+            cache.clearKeywordResults();
+        }
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        try {
+            return delegate.updateProduct(id, des, price, imageName, stock, expectedVersion);
+        } finally {
+            // also after a conflict: the cached row is older than the one the edit lost against
+            cache.invalidate(id);
+            cache.clearKeywordResults();
+        }
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        try {
+            delegate.deleteProduct(id);
+        } catch (SQLException e) {
+            cache.invalidate(id);
+            throw e;
+        }
+        cache.remove(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        try {
+            delegate.insertNewProduct(id, des, price, image, stock);
+        } catch (SQLException e) {
+            cache.invalidate(id);
+            throw e;
+        }
+        cache.replace(new Product(id, des, image, price, stock));
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        try {
+            return delegate.insertNewProducts(products);
+        } finally {
+            // an import is far larger than the cache: the rows are read through when asked for,
+            // only the "not found" answers cached for the new IDs are dropped
+            for (Product product : products) {
+                cache.invalidate(product.getProductId());
+            }
+            cache.clearKeywordResults();
+        }
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return delegate.isProIdAvailable(productId); // must be exact before an insert, so never cached
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts(); // only used at startup, not worth caching
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return delegate.getProductsAfter(afterProductId, pageSize); // a full scan, would only evict the hot rows
+    }
+}
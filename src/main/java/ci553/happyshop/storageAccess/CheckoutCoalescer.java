@@ -0,0 +1,297 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CheckoutCoalescer is a decorator that groups concurrent checkouts into one database transaction (group commit).
+ * When many tills check out at the same moment, each purchaseStocks call used to be its own transaction
+ * with its own log flush; now the purchases waiting at the same time are committed together.
+ *
+ * How it works:
+ * - purchaseStocks (or submit) puts the trolley into a queue and waits for its own result.
+ * - One flusher thread takes the first waiting trolley plus every trolley queued behind it (up to maxBatchSize),
+ *   and purchases them with a single DatabaseRW.purchaseStocksBatch call: one transaction, one commit.
+ * - Each trolley is still all-or-nothing on its own, and each caller gets its own result or exception.
+ * - With maxWaitMillis = 0 nothing is delayed: a lone checkout is purchased at once, and checkouts that
+ *   arrive while a group is being committed form the next group. A small maxWaitMillis collects larger
+ *   groups at the cost of that much extra latency.
+ * - Throughput and latency are counted (see toString), so the effect can be measured under load.
+ *
+ * All other DatabaseRW calls are passed straight to the wrapped DatabaseRW.
+ * One instance is shared by all clients through DatabaseRWFactory, so checkouts from every till are grouped.
+ */
+
+public class CheckoutCoalescer implements DatabaseRW {
+    private static final Logger log = Logger.getLogger(CheckoutCoalescer.class);
+
+    private final DatabaseRW delegate;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final LinkedBlockingQueue<PendingCheckout> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong(); // from submit to result
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    // a trolley waiting to be purchased, and the future its caller waits on
+    private static final class PendingCheckout {
+        final ArrayList<Product> trolley;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<ArrayList<Product>> result = new CompletableFuture<>();
+
+        PendingCheckout(ArrayList<Product> trolley) {
+            this.trolley = trolley;
+        }
+    }
+
+    /**
+     * @param delegate      the DatabaseRW that purchases the groups, normally CachedDatabaseRW over DerbyRW
+     * @param maxBatchSize  the largest number of trolleys committed together
+     * @param maxWaitMillis how long the first trolley of a group may wait for others (0 = never wait)
+     */
+    public CheckoutCoalescer(DatabaseRW delegate, int maxBatchSize, long maxWaitMillis) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.flusher = new Thread(this::flushLoop, "happyshop-checkout-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a trolley for the next group commit.
+     *
+     * @return a future completed with the insufficient products of this trolley (empty if it was purchased),
+     *         or completed exceptionally with the SQLException of a failed purchase
+     */
+    public CompletableFuture<ArrayList<Product>> submit(ArrayList<Product> proList) {
+        PendingCheckout checkout = new PendingCheckout(new ArrayList<>(proList));
+        if (!running) {
+            checkout.result.completeExceptionally(new SQLException("Checkout coalescer is closed"));
+            return checkout.result;
+        }
+        queue.add(checkout);
+        // close() may have stopped the flusher between the check and add: fail the checkout if no one took it
+        if (!running && queue.remove(checkout)) {
+            checkout.result.completeExceptionally(new SQLException("Checkout coalescer is closed"));
+        }
+        return checkout.result;
+    }
+
+    /**
+     * Purchases the trolley as part of the next group commit and waits for its result.
+     * The wait is not interruptible: once queued, the purchase happens, and the caller must learn its outcome.
+     */
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        if (proList.isEmpty()) return new ArrayList<>();
+        try {
+            return submit(proList).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) throw sqlException;
+            throw new SQLException("Checkout failed", e.getCause());
+        }
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        return delegate.purchaseStocksBatch(trolleys); // already a group
+    }
+
+    private void flushLoop() {
+        ArrayList<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCheckout first = queue.poll(200, TimeUnit.MILLISECONDS); // wakes up to notice close()
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                if (maxWaitNanos > 0) {
+                    long deadline = first.submittedNanos + maxWaitNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        PendingCheckout next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (batch.isEmpty()) continue; // close() checks running, nothing was taken
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(ArrayList<PendingCheckout> batch) {
+        ArrayList<ArrayList<Product>> trolleys = new ArrayList<>(batch.size());
+        for (PendingCheckout checkout : batch) {
+            trolleys.add(checkout.trolley);
+        }
+
+        // counted before any caller is completed, so a caller reading the statistics sees its own group
+        batchCount.incrementAndGet();
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        try {
+            List<ArrayList<Product>> results = batch.size() == 1
+                    ? List.of(delegate.purchaseStocks(trolleys.get(0)))
+                    : delegate.purchaseStocksBatch(trolleys);
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), results.get(i), null);
+            }
+        } catch (Exception e) {
+            log.error("Group commit of " + batch.size() + " checkouts failed", e);
+            for (PendingCheckout checkout : batch) {
+                complete(checkout, null, e);
+            }
+        }
+        log.debug(() -> "Committed a group of " + batch.size() + " checkouts");
+    }
+
+    private void complete(PendingCheckout checkout, ArrayList<Product> insufficientProducts, Exception error) {
+        long latency = System.nanoTime() - checkout.submittedNanos;
+        requestCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        if (error == null) {
+            checkout.result.complete(insufficientProducts);
+        } else {
+            checkout.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Purchases the trolleys still queued, then stops the flusher thread. Later checkouts fail,
+     * and so do the ones the flusher did not take before it stopped, so no caller waits forever.
+     */
+    public void close() {
+        running = false;
+        try {
+            flusher.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingCheckout left;
+        while ((left = queue.poll()) != null) {
+            left.result.completeExceptionally(new SQLException("Checkout coalescer is closed"));
+        }
+        log.info(toString());
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) requestCount.get() / batches;
+    }
+
+    public double getAverageLatencyMillis() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0.0 : totalLatencyNanos.get() / 1_000_000.0 / requests;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CheckoutCoalescer[checkouts=%d, groups=%d, avgGroup=%.1f, largestGroup=%d, "
+                        + "avgLatency=%.2fms, maxLatency=%.2fms]",
+                getRequestCount(), getBatchCount(), getAverageBatchSize(), largestBatch.get(),
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+
+    // --- all other calls go straight to the wrapped DatabaseRW ---
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return delegate.searchProduct(keyword);
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return delegate.searchProductPage(keyword, offset, pageSize);
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return delegate.searchByProductId(productId);
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return delegate.searchProductFuzzy(keyword, maxResults);
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        delegate.releaseStocks(proList);
+    }
+
+    // a reservation records rows with its stock, so it is not grouped with the plain checkouts
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return delegate.reserveStocks(reservation);
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        return delegate.endReservation(reservation, releaseStock);
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return delegate.getOpenReservations();
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        return delegate.adjustStocks(stockChanges);
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        delegate.updateProduct(id, des, price, imageName, stock);
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        return delegate.updateProduct(id, des, price, imageName, stock, expectedVersion);
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        delegate.deleteProduct(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        delegate.insertNewProduct(id, des, price, image, stock);
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        return delegate.insertNewProducts(products);
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return delegate.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return delegate.getProductsAfter(afterProductId, pageSize);
+    }
+}
@@ -0,0 +1,313 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.utility.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ConnectionPool class keeps a bounded set of open JDBC connections that are shared by
+ * every DerbyRW instance, so that each database call borrows a warm connection instead of
+ * opening a new one with DriverManager and throwing it away.
+ *
+ * Responsibilities:
+ * - Warm-up: opens {@code minIdle} connections up front so the first searches are not slowed down.
+ * - Bounding: never more than {@code maxSize} connections are open; callers wait (up to a timeout) for a free one.
+ * - Idle eviction: a background task closes connections that stayed idle longer than {@code idleTimeoutMillis},
+ *   while always keeping {@code minIdle} connections ready.
+ * - Health checks: idle connections are validated with {@link Connection#isValid(int)} before they are reused.
+ * - Statement caching: every connection keeps an LRU StatementCache of up to {@code statementCacheSize} statements.
+ * - Statistics: counters for created, closed, borrowed and timed-out connections and
+ *   statement cache hits/misses (see {@link #getStats()}).
+ *
+ * Example Usage:
+ *     try (PooledConnection pooled = pool.borrow()) {
+ *         Connection conn = pooled.getConnection();
+ *         ...
+ *     } // close() hands the connection back to the pool
+ *
+ * The pool is created and configured by DatabaseRWFactory.
+ */
+
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(ConnectionPool.class);
+    private final String dbURL;
+    private final int maxSize;
+    private final int minIdle;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis; // idle time after which a connection is re-validated before reuse
+    private final int statementCacheSize;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Semaphore permits; // one permit per connection that may be borrowed at the same time
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    // statistics
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    public ConnectionPool(String dbURL, int maxSize, int minIdle, long idleTimeoutMillis, long borrowTimeoutMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.dbURL = dbURL;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalMillis = Math.min(30_000, idleTimeoutMillis);
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true); // fair, so waiting tills are served in order
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "happyshop-pool-evictor");
+            thread.setDaemon(true); // must not keep the JVM alive
+            return thread;
+        });
+        long period = Math.max(1_000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens connections until {@code minIdle} connections are waiting in the pool.
+     * Called once at startup so the first customer search does not pay the connection setup cost.
+     */
+    public void warmUp() throws SQLException {
+        while (!closed && idleConnections.size() < minIdle && openConnections.get() < maxSize) {
+            idleConnections.offerLast(openNewConnection());
+        }
+        log.info("Connection pool warmed up: " + idleConnections.size() + " connection(s) ready.");
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout if all connections are in use.
+     * The returned PooledConnection must be closed to give the connection back.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeHealthyIdleConnection();
+            if (pooled == null) {
+                pooled = openNewConnection();
+            }
+            pooled.markBorrowed();
+            borrowCount.incrementAndGet();
+            borrowWaitNanos.addAndGet(System.nanoTime() - start);
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release(); // nothing was handed out
+            throw e;
+        }
+    }
+
+    // Takes idle connections (most recently used first) until a healthy one is found, or returns null
+    private PooledConnection takeHealthyIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (pooled.idleMillis() < validationIntervalMillis || isHealthy(pooled)) {
+                return pooled;
+            }
+            validationFailureCount.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool.
+     * Any open transaction is rolled back and auto-commit is restored, so the next borrower gets a clean connection.
+     * Called by PooledConnection.close().
+     */
+    void release(PooledConnection pooled) {
+        try {
+            Connection conn = pooled.getConnection();
+            if (closed || conn.isClosed() || openConnections.get() > maxSize) {
+                destroy(pooled);
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback(); // discard anything the borrower did not commit
+                conn.setAutoCommit(true);
+            }
+            pooled.markIdle();
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            log.warn("Discarding broken pooled connection: " + e.getMessage());
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection openNewConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(dbURL);
+        openConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        StatementCache statementCache = new StatementCache(conn, statementCacheSize, statementCacheHits, statementCacheMisses);
+        return new PooledConnection(this, conn, statementCache);
+    }
+
+    private boolean isHealthy(PooledConnection pooled) {
+        try {
+            return pooled.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        pooled.getStatementCache().clear();
+        try {
+            pooled.getConnection().close();
+        } catch (SQLException e) {
+            log.warn("Error closing pooled connection: " + e.getMessage());
+        }
+        openConnections.decrementAndGet();
+        closedCount.incrementAndGet();
+    }
+
+    // Background task: closes connections idle for too long (keeping minIdle) and drops unhealthy ones
+    private void evictIdleConnections() {
+        if (closed) return;
+        ArrayList<PooledConnection> toDestroy = new ArrayList<>();
+        int kept = 0;
+        // Iterate from the least recently used end, so the warmest connections are kept
+        Iterator<PooledConnection> it = idleConnections.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            boolean expired = pooled.idleMillis() > idleTimeoutMillis && idleConnections.size() > minIdle;
+            if (expired || !isHealthy(pooled)) {
+                if (idleConnections.remove(pooled)) {
+                    if (!expired) validationFailureCount.incrementAndGet();
+                    toDestroy.add(pooled);
+                }
+            } else {
+                kept++;
+            }
+        }
+        for (PooledConnection pooled : toDestroy) {
+            destroy(pooled);
+        }
+        if (kept < minIdle) {
+            try {
+                warmUp(); // top the pool back up after unhealthy connections were dropped
+            } catch (SQLException e) {
+                log.warn("Connection pool could not refill idle connections: " + e.getMessage());
+            }
+        }
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(maxSize, openConnections.get(), idleConnections.size(),
+                maxSize - permits.availablePermits(), createdCount.get(), closedCount.get(),
+                borrowCount.get(), borrowWaitNanos.get(), timeoutCount.get(), validationFailureCount.get(),
+                statementCacheHits.get(), statementCacheMisses.get());
+    }
+
+    /**
+     * Closes all idle connections and refuses further borrowing.
+     * Connections that are still borrowed are closed when they are handed back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        log.info(() -> "Connection pool closed. " + getStats());
+    }
+
+    /**
+     * A read-only snapshot of the pool counters.
+     */
+    public static final class PoolStats {
+        public final int maxSize;
+        public final int open;
+        public final int idle;
+        public final int active;
+        public final long created;
+        public final long closed;
+        public final long borrowed;
+        public final long totalWaitNanos;
+        public final long timeouts;
+        public final long validationFailures;
+        public final long statementCacheHits;
+        public final long statementCacheMisses;
+
+        PoolStats(int maxSize, int open, int idle, int active, long created, long closed,
+                  long borrowed, long totalWaitNanos, long timeouts, long validationFailures,
+                  long statementCacheHits, long statementCacheMisses) {
+            this.maxSize = maxSize;
+            this.open = open;
+            this.idle = idle;
+            this.active = active;
+            this.created = created;
+            this.closed = closed;
+            this.borrowed = borrowed;
+            this.totalWaitNanos = totalWaitNanos;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+        }
+
+        // average time a caller waited to borrow a connection, in microseconds
+        public double averageWaitMicros() {
+            return borrowed == 0 ? 0 : totalWaitNanos / 1_000.0 / borrowed;
+        }
+
+        // share of prepareStatement calls served from the statement caches
+        public double statementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PoolStats[max=%d, open=%d, idle=%d, active=%d, created=%d, closed=%d, " +
+                            "borrowed=%d, avgWait=%.1fus, timeouts=%d, validationFailures=%d, " +
+                            "stmtCacheHits=%d, stmtCacheMisses=%d, stmtCacheHitRatio=%.2f]",
+                    maxSize, open, idle, active, created, closed, borrowed, averageWaitMicros(),
+                    timeouts, validationFailures, statementCacheHits, statementCacheMisses,
+                    statementCacheHitRatio());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DatabaseMetrics counts the DatabaseRW calls seen by MetricsDatabaseRW: how often each operation ran,
+ * how often it failed, and how long it took (average and slowest).
+ * One instance is shared by all clients through DatabaseRWFactory and logged when the application stops.
+ *
+ * How it works:
+ * - Each operation name (e.g. "purchaseStocks") has its own counters, created on first use.
+ * - The counters are LongAdders, so many clients can record at the same time without waiting for each other.
+ */
+
+public class DatabaseMetrics {
+
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    /**
+     * The counters of one operation.
+     */
+    public static class OperationStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public double getAverageMillis() {
+            long count = calls.sum();
+            return count == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, failures=%d, avg=%.2fms, max=%.2fms",
+                    getCalls(), getFailures(), getAverageMillis(), getMaxMillis());
+        }
+    }
+
+    /**
+     * Records one call of the given operation.
+     */
+    public void record(String operation, long elapsedNanos, boolean failed) {
+        OperationStats stats = operations.computeIfAbsent(operation, name -> new OperationStats());
+        stats.calls.increment();
+        if (failed) stats.failures.increment();
+        stats.totalNanos.add(elapsedNanos);
+        stats.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    /**
+     * Returns the counters of the given operation, or null if it has not run yet.
+     */
+    public OperationStats get(String operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Returns the counters of every operation that has run, by operation name.
+     */
+    public Map<String, OperationStats> snapshot() {
+        return new TreeMap<>(operations);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("DatabaseMetrics[");
+        snapshot().forEach((operation, stats) -> summary.append("\n  ").append(operation).append(": ").append(stats));
+        return summary.append("]").toString();
+    }
+}
@@ -4,15 +4,18 @@ import ci553.happyshop.catalogue.Product;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * The DatabaseRW interface defines the contract for interacting with the product database.
  * It is currently implemented by the DerbyRW class, which provides the actual functionality.
  *
  * Responsibilities:
- * - Searching for products by keyword or product ID.
- * - Performing stock updates and validations during purchases.
- * - Updating, deleting, or inserting products.
+ * - Searching for products by keyword or product ID, optionally tolerating typos.
+ * - Performing stock updates and validations during purchases and deliveries.
+ * - Updating, deleting, or inserting products, one at a time or in bulk.
  * - Checking whether a product ID is available before insertion.
  *
  * Why use this interface:
@@ -37,6 +40,29 @@ public interface DatabaseRW {
      */
     ArrayList<Product> searchProduct(String keyword) throws SQLException;
 
+    /**
+     * Paged variant of searchProduct: returns only the products from {@code offset} to {@code offset + pageSize},
+     * in the same order, so a broad keyword such as "a" does not load the whole catalogue at once.
+     * The default implementation pages a full searchProduct result; implementations should override it
+     * to read only the requested rows.
+     *
+     * @param keyword  the keyword to search for
+     * @param offset   the position of the first product to return (0 for the first page)
+     * @param pageSize the maximum number of products to return
+     * @return the page, which also tells whether more products follow (see ProductPage)
+     */
+    default ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return ProductPage.of(searchProduct(keyword), offset, pageSize);
+    }
+
+    /**
+     * Streaming variant of searchProduct: products are read lazily, one page of {@code pageSize} at a time,
+     * as the stream is consumed. Database errors while reading later pages surface as IllegalStateException.
+     */
+    default Stream<Product> streamProducts(String keyword, int pageSize) {
+        return ProductPage.stream(this, keyword, pageSize);
+    }
+
     /**
      * Searches for a product by its unique product ID.
      * @param productId the product ID
@@ -44,6 +70,19 @@ public interface DatabaseRW {
      */
     Product searchByProductId(String productId) throws SQLException;
 
+    /**
+     * Typo-tolerant search mode: finds products whose description is spelled similarly to the keyword,
+     * e.g. "Toaster" for "toastr". Meant as a fallback when searchProduct finds nothing.
+     * Implementations without a similarity index return an empty list.
+     *
+     * @param keyword    the (possibly misspelt) keyword
+     * @param maxResults the maximum number of products to return
+     * @return the most similar products, best match first
+     */
+    default ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return new ArrayList<>();
+    }
+
     /**
      * Attempts to purchase (reduce stocks of) the given list of products.
      * Behavior:
@@ -54,6 +93,107 @@ public interface DatabaseRW {
      */
     ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException;
 
+    /**
+     * Purchases several trolleys at once, e.g. the checkouts collected by CheckoutCoalescer.
+     * Each trolley is all-or-nothing on its own, exactly as in purchaseStocks; the result list holds
+     * the insufficient products of each trolley, in the same order (an empty list means purchased).
+     * The default implementation purchases the trolleys one by one; DerbyRW commits them together.
+     *
+     * @param trolleys the trolleys, each a list of products with requested quantities
+     * @return for each trolley, its insufficient products
+     */
+    default List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        List<ArrayList<Product>> results = new ArrayList<>(trolleys.size());
+        for (ArrayList<Product> trolley : trolleys) {
+            results.add(purchaseStocks(trolley));
+        }
+        return results;
+    }
+
+    /**
+     * Gives back stock taken by an earlier purchaseStocks call, e.g. when a stock reservation is released
+     * because the customer cancelled the payment (see StockReservationManager).
+     * Products that no longer exist are skipped.
+     *
+     * @param proList the products with the quantities to add back to the stock
+     */
+    void releaseStocks(ArrayList<Product> proList) throws SQLException;
+
+    /**
+     * Takes the stock of a trolley for a stock reservation (see StockReservationManager) and records the reservation
+     * in the same transaction, so stock is never taken without a record to give it back from after a crash.
+     * Like purchaseStocks: all products or none; if any product has insufficient stock, nothing is taken
+     * or recorded and the insufficient products are returned.
+     * The default implementation only purchases the stock and records nothing; DerbyRW keeps the reservations
+     * in the StockReservation table, InMemoryDatabaseRW in memory.
+     *
+     * @param reservation the reservation: its ID, its lines (products with quantities) and its expiry time
+     * @return the insufficient products (empty if the stock was taken and the reservation recorded)
+     */
+    default ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return purchaseStocks(new ArrayList<>(reservation.getLines()));
+    }
+
+    /**
+     * Ends a reservation recorded by reserveStocks: deletes its record and, if {@code releaseStock},
+     * gives its stock back, in one transaction. Only the first call for a reservation changes anything,
+     * so a commit racing a release or an expiry can never both succeed.
+     * The default implementation gives the stock back with releaseStocks and always returns true.
+     *
+     * @param releaseStock true to give the stock back (payment cancelled or expired), false to keep it (paid)
+     * @return true if this call ended the reservation, false if it had already been ended
+     */
+    default boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        if (releaseStock) releaseStocks(new ArrayList<>(reservation.getLines()));
+        return true;
+    }
+
+    /**
+     * Returns the reservations recorded by reserveStocks and not ended yet, e.g. left open when the application
+     * stopped during a payment. The default implementation records none and returns an empty list.
+     */
+    default List<StockReservation> getOpenReservations() throws SQLException {
+        return new ArrayList<>();
+    }
+
+
+    /**
+     * Changes the stock of many products at once by relative amounts, e.g. a warehouse delivery note
+     * (+300 of one product, +20 of another) or a stock correction (-2). Only the stock column is changed.
+     * Behavior (like purchaseStocks):
+     * - If every product exists and none would drop below zero, all changes are applied together
+     *   and an empty list is returned.
+     * - Otherwise nothing is changed, and the IDs of the products that failed are returned.
+     * The default implementation checks the products first and then uses purchaseStocks for the decreases
+     * and releaseStocks for the increases; it is only atomic per step. DerbyRW and InMemoryDatabaseRW
+     * apply the whole change under the product locks in one transaction.
+     *
+     * @param stockChanges the change of each product's stock by product ID, positive or negative
+     * @return the IDs of the products that do not exist or have too little stock (empty if all were applied)
+     */
+    default ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        ArrayList<String> failedIds = new ArrayList<>();
+        ArrayList<Product> decreases = new ArrayList<>();
+        ArrayList<Product> increases = new ArrayList<>();
+        for (Map.Entry<String, Integer> change : stockChanges.entrySet()) {
+            Product product = searchByProductId(change.getKey());
+            if (product == null || product.getStockQuantity() + change.getValue() < 0) {
+                failedIds.add(change.getKey());
+                continue;
+            }
+            Product line = new Product(change.getKey(), "", "", 0, 0);
+            line.setOrderedQuantity(Math.abs(change.getValue()));
+            if (change.getValue() < 0) decreases.add(line);
+            else if (change.getValue() > 0) increases.add(line);
+        }
+        if (!failedIds.isEmpty()) return failedIds;
+
+        for (Product insufficient : purchaseStocks(decreases)) {
+            failedIds.add(insufficient.getProductId()); // changed meanwhile, nothing was taken
+        }
+        if (failedIds.isEmpty()) releaseStocks(increases);
+        return failedIds;
+    }
 
     /**
      * Updates the details of a product identified by its ID.
@@ -66,6 +206,26 @@ public interface DatabaseRW {
      */
     void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException;
 
+    /**
+     * Updates the details of a product only if nobody changed the product since it was read (compare-and-set):
+     * the row version must still be {@code expectedVersion}, the version the product had when it was read.
+     * Every change of a row, also a purchase or a stock adjustment, raises its version,
+     * so an edit never overwrites a concurrent edit or stock sold in the meantime.
+     *
+     * The default checks the version and then updates, which is not atomic;
+     * DerbyRW and InMemoryDatabaseRW check and update in one step.
+     *
+     * @param expectedVersion the version of the product when the edit started (Product.getVersion)
+     * @return true if the product was updated, false if it was changed or deleted since it was read
+     */
+    default boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                  int expectedVersion) throws SQLException {
+        Product current = searchByProductId(id);
+        if (current == null || current.getVersion() != expectedVersion) return false;
+        updateProduct(id, des, price, imageName, stock);
+        return true;
+    }
+
 
     // Deletes a product identified by its ID.
     void deleteProduct(String id) throws SQLException;
@@ -80,12 +240,61 @@ public interface DatabaseRW {
      */
     void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException;
 
+    /**
+     * Inserts many new products at once, e.g. a supplier catalogue read by ProductImporter.
+     * Products whose ID is already in use are skipped and returned; all the others are inserted.
+     * The default implementation inserts them one by one; DerbyRW sends them in JDBC batches
+     * and commits them in one transaction.
+     *
+     * @param products the new products, with their initial stock quantity
+     * @return the products that were not inserted because their ID already exists
+     */
+    default ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        ArrayList<Product> rejectedProducts = new ArrayList<>();
+        for (Product product : products) {
+            try {
+                insertNewProduct(product.getProductId(), product.getProductDescription(), product.getUnitPrice(),
+                        product.getProductImageName(), product.getStockQuantity());
+            } catch (SQLException e) {
+                if (!"23505".equals(e.getSQLState())) throw e; // 23505 = duplicate primary key
+                rejectedProducts.add(product);
+            }
+        }
+        return rejectedProducts;
+    }
+
     /**
      * Checks whether the given product ID is available for use (i.e., not already in use).
      * @param productId the product ID to check
      * @return true if the ID is available, false if it already exists in the database
      */
     boolean isProIdAvailable(String productId) throws SQLException;
+
+    /**
+     * Returns every product in the database, ordered by product ID.
+     * Used at startup to build in-memory structures such as the ProductSearchIndex.
+     * @return all products (empty if there are none)
+     */
+    ArrayList<Product> getAllProducts() throws SQLException;
+
+    /**
+     * Returns the next page of the whole catalogue, ordered by product ID: up to {@code pageSize} products
+     * whose ID comes after {@code afterProductId} ("" for the first page).
+     * Used to read every product without holding them all in memory, e.g. by ProductExporter.
+     * The default implementation pages a full getAllProducts result; DerbyRW reads only the requested rows.
+     *
+     * @param afterProductId the ID of the last product of the previous page, or "" to start
+     * @param pageSize       the maximum number of products to return
+     * @return the page; fewer than pageSize products means it is the last one
+     */
+    default ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        ArrayList<Product> page = new ArrayList<>();
+        for (Product product : getAllProducts()) {
+            if (page.size() == pageSize) break;
+            if (product.getProductId().compareTo(afterProductId) > 0) page.add(product);
+        }
+        return page;
+    }
 }
 
 
@@ -1,17 +1,62 @@
 package ci553.happyshop.storageAccess;
 
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+import ci553.happyshop.utility.StorageLocation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * The DatabaseRWFactory class centralizes database configuration and object creation.
  * It acts as a factory pattern to provide flexible instantiation of the DatabaseRW interface.
  *
  * Responsibilities:
- * - Holds the database URL used to connect to the database.
- * - Creates instances of DatabaseRW (e.g., DerbyRW, MySQLRW, SQLiteRW).
+ * - Reads the deployment settings: the happyshop.properties file (or the file named by -Dhappyshop.config),
+ *   then any -Dhappyshop.db.* system properties, which win. Without either, the defaults below are used.
+ * - Chooses the backend (happyshop.db.backend):
+ *     derby-embedded  the happyShopDB database inside this process (default)
+ *     derby-network   the database of a Derby network server, at happyshop.db.network.host/port,
+ *                     e.g. the one hosted by systemSetup.StorageServer, so that clients in several JVMs share it
+ *     memory          InMemoryDatabaseRW, which never touches the disk and saves nothing
+ * - Stacks the decorators listed in happyshop.db.decorators on top of the backend, in the declared order:
+ *   the first one wraps the backend, the last one is called by the clients.
+ *     cache     CachedDatabaseRW, the shared ProductCache
+ *     coalesce  CheckoutCoalescer, group commit of concurrent checkouts
+ *     index     IndexedDatabaseRW, the shared ProductSearchIndex
+ *     metrics   MetricsDatabaseRW, call counts and times in the shared DatabaseMetrics
+ *     retry     RetryingDatabaseRW, retries temporary database errors
+ *     replica   ReplicaRoutingDatabaseRW, searches go to the database at happyshop.db.replica.url
+ *     lowstock  LowStockDatabaseRW, keeps the shared LowStockMonitor up to date for the warehouse alerts
+ *   The default is "cache,coalesce,index,lowstock" for derby-embedded and "index,lowstock" for the memory backend.
+ *   For derby-network it is "coalesce": the cache, the search index and the low-stock monitor only see the writes
+ *   of their own JVM, so with other JVMs writing to the same database they would show stale stock, miss new products
+ *   and send low-stock alerts for levels that are long out of date. Without "lowstock" the monitor is not built
+ *   at all, so the warehouse shows no alerts rather than wrong ones.
+ * - Holds the shared resources: the ConnectionPool, ProductCache, ProductSearchIndex, LowStockMonitor, StockLockManager,
+ *   StockReservationManager and the executor of the non-blocking AsyncDatabaseRW variant.
  *
  * Benefits:
  * - Database Abstraction: Keeps the system decoupled from specific database implementations.
  * - Easy Future Changes: To switch to a different database, only this factory needs updating.
  * - Centralized Creation: Simplifies maintenance by managing instantiation in one place.
+ * - Per-deployment tuning: performance features are switched on in happyshop.properties,
+ *   without changing Main, CustomerModel or WarehouseModel.
+ *
+ * Example happyshop.properties:
+ *     happyshop.db.backend=derby-network
+ *     happyshop.db.network.host=shop-db.local
+ *     happyshop.db.decorators=retry,metrics,cache,coalesce,index
  *
  * Example Usage:
  *     String url = DatabaseRWFactory.dbURL;
@@ -21,14 +66,416 @@ package ci553.happyshop.storageAccess;
  */
 
 public class DatabaseRWFactory {
+    private static final Logger log = Logger.getLogger(DatabaseRWFactory.class);
 
+    // Backend settings, see the class comment
+    public static String backend = "derby-embedded";
     public static String dbURL = "jdbc:derby:happyShopDB"; //or other database URL in the future (eg MySQLRW or SQLiteRW)
+    public static String networkHost = "localhost";           // Derby network server of the derby-network backend
+    public static int networkPort = 1527;
+    public static String networkDatabase = "happyShopDB";
+    public static String decorators = null;                   // null = the default list of the backend
+
+    // Connection pool settings, must be set before the pool is first used
+    public static int poolMaxSize = 8;                        // upper bound of open connections
+    public static int poolMinIdle = 2;                        // connections opened at warm-up and kept ready
+    public static long poolIdleTimeoutMillis = 5 * 60_000L;   // idle connections above minIdle are closed after this
+    public static long poolBorrowTimeoutMillis = 30_000L;     // how long a caller waits for a free connection
+    public static int statementCacheSize = 32;                // prepared statements kept per pooled connection
+
+    // Product cache settings
+    public static int productCacheMaxEntries = 10_000;        // products kept in memory before the oldest are evicted
+    public static long productCacheTtlMillis = 10 * 60_000L;  // cached rows are re-read from the database after this
+
+    // Locking settings
+    public static int stockLockStripes = 64;                  // per-product locks; products on different stripes change in parallel
+
+    // Stock reservation settings
+    public static long reservationTtlMillis = 5 * 60_000L;    // reserved stock is given back if payment takes longer
+    public static long reservationSweepMillis = 1_000L;       // how often expired reservations are looked for
+
+    // Checkout group-commit settings
+    public static int checkoutBatchMaxSize = 32;              // most checkouts committed in one transaction (1 = no grouping)
+    public static long checkoutBatchWaitMillis = 0;           // how long a checkout may wait for others to join its group
+
+    // Search settings
+    public static long fuzzySearchBudgetMillis = 50;          // typo-tolerant searches return their best matches after this
+
+    // Retry settings
+    public static int retryMaxAttempts = 3;                   // tries per call, including the first
+    public static long retryBackoffMillis = 50;               // wait before the second try, doubled for each further try
+
+    // Read replica settings
+    public static String replicaURL = "";                     // database the "replica" decorator sends searches to
+    public static long replicaStaleMillis = 2_000;            // reads stay on the primary this long after a write
+
+    // Bulk import settings, see ProductImporter
+    public static int importBatchSize = 500;                  // inserts sent to the database in one JDBC batch
+    public static int importCommitInterval = 5_000;           // imported rows committed in one transaction
+
+    // Low-stock alert settings, see LowStockMonitor
+    public static int lowStockThreshold = 10;                 // a product is low while its stock is below this
+
+    private static DatabaseRW databaseRW;         // the decorated backend, shared by every client
+    private static DatabaseRW backendRW;          // the undecorated backend
+    private static ConnectionPool connectionPool; // shared by every DerbyRW created by this factory
+    private static ConnectionPool replicaPool;    // connections to the read replica
+    private static ProductCache productCache;     // shared by every CachedDatabaseRW created by this factory
+    private static ProductSearchIndex searchIndex; // shared by every IndexedDatabaseRW created by this factory
+    private static LowStockMonitor lowStockMonitor; // shared by every LowStockDatabaseRW created by this factory
+    private static DatabaseMetrics databaseMetrics; // shared by every MetricsDatabaseRW created by this factory
+    private static StockLockManager stockLockManager; // shared by every DerbyRW in this process
+    private static StockReservationManager reservationManager; // shared by every customer client
+    private static CheckoutCoalescer checkoutCoalescer; // groups the checkouts of every client into shared commits
+    private static ExecutorService asyncExecutor; // runs the calls of every AsyncDatabaseRW, one virtual thread each
+
+    static {
+        configure(loadConfiguration());
+    }
 
     /**
-     * Creates an instance of DatabaseRW (currently returning DerbyRW, but can be modified to return other implementations).
+     * Reads the settings: the properties file first, then the happyshop.db.* and happyshop.orders.* system properties,
+     * which win. The happyshop.orders.* settings are used by OrderStoreFactory.
      */
-    public static DatabaseRW createDatabaseRW() {
-        return new DerbyRW(); // or other database implementations in the future (eg MySQLRW or SQLiteRW)
+    public static Properties loadConfiguration() {
+        Properties properties = new Properties();
+        Path configFile = Paths.get(System.getProperty("happyshop.config", StorageLocation.configFile));
+        if (Files.isRegularFile(configFile)) {
+            try (Reader reader = Files.newBufferedReader(configFile)) {
+                properties.load(reader);
+                log.info("Database settings read from " + configFile.toAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Cannot read " + configFile + ", using the default database settings", e);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("happyshop.db.") || name.startsWith("happyshop.orders.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Applies the given settings; settings not given keep their current value.
+     * Must be called before the first DatabaseRW is created.
+     */
+    public static synchronized void configure(Properties properties) {
+        backend = properties.getProperty("happyshop.db.backend", backend).trim();
+        networkHost = properties.getProperty("happyshop.db.network.host", networkHost).trim();
+        networkPort = intSetting(properties, "happyshop.db.network.port", networkPort);
+        networkDatabase = properties.getProperty("happyshop.db.network.database", networkDatabase).trim();
+        if (properties.containsKey("happyshop.db.url")) {
+            dbURL = properties.getProperty("happyshop.db.url").trim();
+        } else if (backendName().equals("derby-network")) {
+            dbURL = "jdbc:derby://" + networkHost + ":" + networkPort + "/" + networkDatabase;
+        }
+        decorators = properties.getProperty("happyshop.db.decorators", decorators);
+
+        poolMaxSize = intSetting(properties, "happyshop.db.pool.maxSize", poolMaxSize);
+        poolMinIdle = intSetting(properties, "happyshop.db.pool.minIdle", poolMinIdle);
+        poolIdleTimeoutMillis = longSetting(properties, "happyshop.db.pool.idleTimeoutMillis", poolIdleTimeoutMillis);
+        poolBorrowTimeoutMillis = longSetting(properties, "happyshop.db.pool.borrowTimeoutMillis", poolBorrowTimeoutMillis);
+        statementCacheSize = intSetting(properties, "happyshop.db.pool.statementCacheSize", statementCacheSize);
+        productCacheMaxEntries = intSetting(properties, "happyshop.db.cache.maxEntries", productCacheMaxEntries);
+        productCacheTtlMillis = longSetting(properties, "happyshop.db.cache.ttlMillis", productCacheTtlMillis);
+        stockLockStripes = intSetting(properties, "happyshop.db.lock.stripes", stockLockStripes);
+        reservationTtlMillis = longSetting(properties, "happyshop.db.reservation.ttlMillis", reservationTtlMillis);
+        reservationSweepMillis = longSetting(properties, "happyshop.db.reservation.sweepMillis", reservationSweepMillis);
+        checkoutBatchMaxSize = intSetting(properties, "happyshop.db.checkout.batchMaxSize", checkoutBatchMaxSize);
+        checkoutBatchWaitMillis = longSetting(properties, "happyshop.db.checkout.batchWaitMillis", checkoutBatchWaitMillis);
+        fuzzySearchBudgetMillis = longSetting(properties, "happyshop.db.search.fuzzyBudgetMillis", fuzzySearchBudgetMillis);
+        retryMaxAttempts = intSetting(properties, "happyshop.db.retry.maxAttempts", retryMaxAttempts);
+        retryBackoffMillis = longSetting(properties, "happyshop.db.retry.backoffMillis", retryBackoffMillis);
+        replicaURL = properties.getProperty("happyshop.db.replica.url", replicaURL).trim();
+        replicaStaleMillis = longSetting(properties, "happyshop.db.replica.staleMillis", replicaStaleMillis);
+        importBatchSize = intSetting(properties, "happyshop.db.import.batchSize", importBatchSize);
+        importCommitInterval = intSetting(properties, "happyshop.db.import.commitInterval", importCommitInterval);
+        lowStockThreshold = intSetting(properties, "happyshop.db.lowStock.threshold", lowStockThreshold);
+    }
+
+    static int intSetting(Properties properties, String name, int current) {
+        return (int) longSetting(properties, name, current);
+    }
+
+    static long longSetting(Properties properties, String name, long current) {
+        String value = properties.getProperty(name);
+        if (value == null) return current;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring " + name + "=" + value + ", not a number; using " + current);
+            return current;
+        }
+    }
+
+    // the backend setting in lower case, with "derby" accepted for "derby-embedded"
+    private static String backendName() {
+        String name = backend.toLowerCase(Locale.ROOT);
+        return name.equals("derby") ? "derby-embedded" : name;
+    }
+
+    /**
+     * Whether the backend is a Derby network server, which clients in other JVMs may be using at the same time.
+     */
+    public static boolean isNetworkBackend() {
+        return backendName().equals("derby-network");
+    }
+
+    /**
+     * Whether the backend is a Derby database (embedded or network), which has a schema to migrate.
+     */
+    public static boolean isDerbyBackend() {
+        return backendName().startsWith("derby");
+    }
+
+    /**
+     * Returns the DatabaseRW used by the clients: the backend wrapped in the configured decorators,
+     * built on first use and shared by every client (all the layers are thread-safe, and the cache, search index
+     * and checkout groups only work if every client goes through the same ones).
+     */
+    public static synchronized DatabaseRW createDatabaseRW() {
+        if (databaseRW == null) {
+            DatabaseRW stack = getBackendRW();
+            List<String> applied = new ArrayList<>();
+            for (String decorator : decoratorNames()) {
+                stack = decorate(stack, decorator);
+                applied.add(decorator);
+            }
+            databaseRW = stack;
+            log.info("Database backend " + backendName() + " (" + dbURL + "), decorators " + applied);
+        }
+        return databaseRW;
+    }
+
+    // the configured decorators, or the default list of the backend
+    static List<String> decoratorNames() {
+        String list = decorators != null ? decorators
+                : backendName().equals("memory") ? "index,lowstock"
+                : isNetworkBackend() ? "coalesce" : "cache,coalesce,index,lowstock";
+        List<String> names = new ArrayList<>();
+        for (String name : list.split(",")) {
+            if (!name.isBlank()) names.add(name.trim().toLowerCase(Locale.ROOT));
+        }
+        return names;
+    }
+
+    private static DatabaseRW decorate(DatabaseRW inner, String decorator) {
+        switch (decorator) {
+            case "cache":
+                return new CachedDatabaseRW(inner, getProductCache());
+            case "coalesce":
+                if (checkoutBatchMaxSize <= 1) return inner; // grouping switched off
+                checkoutCoalescer = new CheckoutCoalescer(inner, checkoutBatchMaxSize, checkoutBatchWaitMillis);
+                return checkoutCoalescer;
+            case "index":
+                return new IndexedDatabaseRW(inner, getSearchIndex(), fuzzySearchBudgetMillis);
+            case "metrics":
+                return new MetricsDatabaseRW(inner, getDatabaseMetrics());
+            case "retry":
+                return new RetryingDatabaseRW(inner, retryMaxAttempts, retryBackoffMillis);
+            case "replica":
+                if (replicaURL.isEmpty()) {
+                    log.warn("Decorator \"replica\" skipped: happyshop.db.replica.url is not set");
+                    return inner;
+                }
+                replicaPool = new ConnectionPool(replicaURL, poolMaxSize, 0,
+                        poolIdleTimeoutMillis, poolBorrowTimeoutMillis, statementCacheSize);
+                return new ReplicaRoutingDatabaseRW(inner, new DerbyRW(replicaPool), replicaStaleMillis);
+            case "lowstock":
+                return new LowStockDatabaseRW(inner, getLowStockMonitor());
+            default:
+                throw new IllegalArgumentException("Unknown DatabaseRW decorator: " + decorator);
+        }
+    }
+
+    /**
+     * Returns the configured backend without decorators, creating it on first use.
+     * The memory backend starts with the sample catalogue.
+     */
+    public static synchronized DatabaseRW getBackendRW() {
+        if (backendRW == null) {
+            switch (backendName()) {
+                case "derby-embedded", "derby-network" -> backendRW = new DerbyRW(getConnectionPool());
+                case "memory" -> {
+                    InMemoryDatabaseRW inMemoryRW = new InMemoryDatabaseRW(getStockLockManager());
+                    inMemoryRW.load(InMemoryDatabaseRW.sampleCatalogue());
+                    backendRW = inMemoryRW;
+                }
+                default -> throw new IllegalArgumentException("Unknown database backend: " + backend);
+            }
+        }
+        return backendRW;
     }
-}
 
+    /**
+     * Returns the checkout coalescer of the "coalesce" decorator, or null if it is not used.
+     */
+    public static synchronized CheckoutCoalescer getCheckoutCoalescer() {
+        createDatabaseRW();
+        return checkoutCoalescer;
+    }
+
+    /**
+     * Creates the non-blocking variant of createDatabaseRW(), used by the JavaFX clients
+     * so that database calls do not run on the JavaFX Application Thread.
+     */
+    public static AsyncDatabaseRW createAsyncDatabaseRW(DatabaseRW databaseRW) {
+        return new AsyncDatabaseRW(databaseRW, getAsyncExecutor());
+    }
+
+    /**
+     * Returns the executor shared by all AsyncDatabaseRW instances, creating it on first use.
+     * It starts a virtual thread per call; the connection pool bounds how many of them use the database at once.
+     */
+    public static synchronized ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * Prepares the shared resources before the first client is created:
+     * opens the pooled connections (not needed by the "memory" backend) and builds the search index
+     * and, if the "lowstock" decorator keeps them up to date, the low-stock levels from one read of the products.
+     * Called once at startup (see Main).
+     */
+    public static void warmUp() {
+        ProductSearchIndex index = getSearchIndex();
+        try {
+            ArrayList<Product> products = getBackendRW().getAllProducts();
+            index.rebuild(products);
+            log.info("Search index built with " + index.size() + " products");
+            if (decoratorNames().contains("lowstock")) {
+                LowStockMonitor monitor = getLowStockMonitor();
+                monitor.rebuild(products);
+                log.info("Low-stock monitor started, " + monitor.getLowStock().size() + " products below "
+                        + monitor.getThreshold());
+            }
+        } catch (SQLException e) {
+            // searches fall back to the database until the index is built, and no low-stock alerts are sent
+            log.error("Search index build failed", e);
+        }
+    }
+
+    /**
+     * Returns the search index shared by all clients, creating it (empty, not yet built) on first use.
+     */
+    public static synchronized ProductSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new ProductSearchIndex();
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Returns the low-stock monitor shared by all clients, creating it (empty, not yet built) on first use.
+     */
+    public static synchronized LowStockMonitor getLowStockMonitor() {
+        if (lowStockMonitor == null) {
+            lowStockMonitor = new LowStockMonitor(lowStockThreshold);
+        }
+        return lowStockMonitor;
+    }
+
+    /**
+     * Returns the call metrics of the "metrics" decorator, creating them on first use.
+     */
+    public static synchronized DatabaseMetrics getDatabaseMetrics() {
+        if (databaseMetrics == null) {
+            databaseMetrics = new DatabaseMetrics();
+        }
+        return databaseMetrics;
+    }
+
+    /**
+     * Returns the per-product lock manager shared by all DerbyRW instances, creating it on first use.
+     */
+    public static synchronized StockLockManager getStockLockManager() {
+        if (stockLockManager == null) {
+            stockLockManager = new StockLockManager(stockLockStripes);
+        }
+        return stockLockManager;
+    }
+
+    /**
+     * Returns the stock reservation manager shared by all customer clients, creating and starting it on first use.
+     * Starting it gives back the stock of reservations left open when the application last stopped.
+     */
+    public static synchronized StockReservationManager getReservationManager() {
+        if (reservationManager == null) {
+            reservationManager = new StockReservationManager(createDatabaseRW(), reservationTtlMillis);
+            reservationManager.start(reservationSweepMillis);
+        }
+        return reservationManager;
+    }
+
+    /**
+     * Returns the product cache shared by all clients, creating it on first use.
+     */
+    public static synchronized ProductCache getProductCache() {
+        if (productCache == null) {
+            productCache = new ProductCache(productCacheMaxEntries, productCacheTtlMillis);
+        }
+        return productCache;
+    }
+
+    /**
+     * Returns the shared connection pool, creating and warming it up on first use.
+     */
+    public static synchronized ConnectionPool getConnectionPool() {
+        if (connectionPool == null) {
+            connectionPool = new ConnectionPool(dbURL, poolMaxSize, poolMinIdle,
+                    poolIdleTimeoutMillis, poolBorrowTimeoutMillis, statementCacheSize);
+            try {
+                connectionPool.warmUp();
+            } catch (SQLException e) {
+                // the pool still works, connections will be opened on demand
+                log.warn("Connection pool warm-up failed: " + e.getMessage());
+            }
+        }
+        return connectionPool;
+    }
+
+    /**
+     * Releases open stock reservations and closes the shared connection pools. Called when the application stops.
+     */
+    public static synchronized void shutdown() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow(); // calls still running finish or fail when the pool closes
+            asyncExecutor = null;
+        }
+        if (reservationManager != null) {
+            reservationManager.shutdown(); // gives back the stock of payments that can no longer complete
+            reservationManager = null;
+        }
+        if (checkoutCoalescer != null) {
+            checkoutCoalescer.close(); // commits the checkouts still queued, logs its statistics
+            checkoutCoalescer = null;
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+            replicaPool = null;
+        }
+        if (productCache != null) {
+            log.info(productCache.toString());
+            productCache = null;
+        }
+        if (databaseMetrics != null) {
+            log.info(databaseMetrics.toString());
+            databaseMetrics = null;
+        }
+        if (stockLockManager != null) {
+            log.info(stockLockManager.toString());
+        }
+        searchIndex = null;
+        lowStockMonitor = null;
+        databaseRW = null;
+        backendRW = null;
+    }
+}
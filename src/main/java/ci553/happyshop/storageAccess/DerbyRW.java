@@ -1,26 +1,58 @@
 package ci553.happyshop.storageAccess;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
-/** ProductTable definition
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** ProductTable definition (after the SchemaMigrator migrations)
  * "CREATE TABLE ProductTable(" +
- *         "productID CHAR(4) PRIMARY KEY," +
+ *         "productID VARCHAR(10) PRIMARY KEY," +
  *         "description VARCHAR(100)," +
- *         "unitPrice DOUBLE," +
+ *         "unitPrice DECIMAL(10,2)," +
  *         "image VARCHAR(100)," +
  *         "inStock INT," +
+ *         "version INT NOT NULL DEFAULT 0," +   // raised by every change of the row
  *         "CHECK (inStock >= 0)" +
  *           ")",
+ *
+ * StockReservation definition (one row per reserved trolley line, see reserveStocks)
+ * "CREATE TABLE StockReservation(" +
+ *         "reservationID VARCHAR(36) NOT NULL," +
+ *         "lineNo INT NOT NULL," +
+ *         "productID VARCHAR(10) NOT NULL," +
+ *         "quantity INT NOT NULL," +
+ *         "expiresAt BIGINT NOT NULL," +        // epoch millis
+ *         "owner VARCHAR(100) NOT NULL DEFAULT ''," + // "pid@host" of the client holding it
+ *         "PRIMARY KEY (reservationID, lineNo)" +
+ *           ")",
  */
 
 public class DerbyRW implements DatabaseRW {
-    private static String dbURL = DatabaseRWFactory.dbURL; // Shared by all instances
-    private  Lock lock = new ReentrantLock(); // Each instance has its own lock
+    private static final Logger log = Logger.getLogger(DerbyRW.class);
+    private final ConnectionPool connectionPool; // Shared by all instances, see DatabaseRWFactory
+    private final StockLockManager lockManager;  // per-product locks shared by all instances, see DatabaseRWFactory
+
+    public DerbyRW() {
+        this(DatabaseRWFactory.getConnectionPool());
+    }
+
+    public DerbyRW(ConnectionPool connectionPool) {
+        this(connectionPool, DatabaseRWFactory.getStockLockManager());
+    }
+
+    public DerbyRW(ConnectionPool connectionPool, StockLockManager lockManager) {
+        this.connectionPool = connectionPool;
+        this.lockManager = lockManager;
+    }
 
     //search product by product Id or name, return a list of products or null
     //search by Id at first, if get null, search by product name
@@ -37,9 +69,9 @@ public class DerbyRW implements DatabaseRW {
             productList = searchByProName(keyword);
         }
 
-        // If still no products found, print a message
+        // If still no products found, log a message
         if (productList.isEmpty()) {
-            System.out.println("Product " + keyword + " not found.");
+            log.debug(() -> "Product " + keyword + " not found.");
         }
         return productList;
     }
@@ -49,22 +81,22 @@ public class DerbyRW implements DatabaseRW {
         Product product = null;
         String query = "SELECT * FROM ProductTable WHERE productID = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement pstmt = pooled.prepareStatement(query); // cached, not closed here
             // Set the productId parameter
             pstmt.setString(1, proId);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()){
                     product= makeProObjFromDbRecord(rs);
-                    System.out.println("Product " + proId + " found.");
+                    log.debug(() -> "Product " + proId + " found.");
                 }else{
-                    System.out.println("Product " + proId + " not found.");
+                    log.debug(() -> "Product " + proId + " not found.");
                 }
 
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Database query error, search by ID: " + proId, e);
         }
         return product;
     }
@@ -75,8 +107,8 @@ public class DerbyRW implements DatabaseRW {
         ArrayList<Product> productList = new ArrayList<>();
         String query = "SELECT * FROM ProductTable WHERE LOWER(description) LIKE LOWER(?)";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement(query);
 
             stmt.setString(1, "%" + name.toLowerCase() + "%");
 
@@ -86,17 +118,106 @@ public class DerbyRW implements DatabaseRW {
                 }
 
                 if (productList.isEmpty()) {
-                    System.out.println("Product " + name + " not found.");
+                    log.debug(() -> "Product " + name + " not found.");
                 }
             }
 
         } catch (SQLException e) {
-            System.out.println("Database query error, search by name: " + name + " " + e.getMessage());
+            log.error("Database query error, search by name: " + name, e);
         }
 
         return productList; // could be empty if no matches
     }
 
+    //search one page of products by product Id or name, like searchProduct
+    //only the requested rows are read, plus one more to know whether another page follows
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        if (offset == 0) {
+            Product product = searchByProductId(keyword);
+            if (product != null) {
+                ArrayList<Product> productList = new ArrayList<>();
+                productList.add(product);
+                return new ProductPage(productList, 0, 1, false);
+            }
+        }
+
+        String pattern = "%" + keyword.toLowerCase() + "%";
+        String query = "SELECT * FROM ProductTable WHERE LOWER(description) LIKE ? "
+                + "ORDER BY productID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+        ArrayList<Product> productList = new ArrayList<>();
+        boolean hasMore = false;
+
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement(query);
+            stmt.setString(1, pattern);
+            stmt.setInt(2, offset);
+            stmt.setInt(3, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (productList.size() == pageSize) {
+                        hasMore = true; // the extra row belongs to the next page
+                        break;
+                    }
+                    productList.add(makeProObjFromDbRecord(rs));
+                }
+            }
+
+            int totalEstimate = offset + productList.size() + (hasMore ? 1 : 0);
+            if (offset == 0 && hasMore) {
+                // only the first page pays for an exact count, later pages keep the client's first estimate
+                PreparedStatement countStmt = pooled.prepareStatement(
+                        "SELECT COUNT(*) FROM ProductTable WHERE LOWER(description) LIKE ?");
+                countStmt.setString(1, pattern);
+                try (ResultSet rs = countStmt.executeQuery()) {
+                    if (rs.next()) totalEstimate = rs.getInt(1);
+                }
+            }
+            return new ProductPage(productList, offset, totalEstimate, hasMore);
+        }
+    }
+
+    //load every product, used to build the in-memory search index at startup
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable ORDER BY productID";
+
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement(query);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productList.add(makeProObjFromDbRecord(rs));
+                }
+            }
+        }
+        return productList;
+    }
+
+    //keyset paging over the primary key index: the cost of a page does not grow with its position
+    @Override
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable WHERE productID > ? ORDER BY productID FETCH NEXT ? ROWS ONLY";
+
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement(query);
+            stmt.setString(1, afterProductId);
+            stmt.setInt(2, Math.max(1, pageSize));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productList.add(makeProObjFromDbRecord(rs));
+                }
+            }
+        }
+        return productList;
+    }
+
+    //one-line description of the current record, for debug logging
+    private static String describeRecord(ResultSet rs) throws SQLException {
+        return "ID: " + rs.getString("productID") + ", Description: " + rs.getString("description")
+                + ", Unit Price: " + rs.getDouble("unitPrice") + ", Stock: " + rs.getInt("inStock")
+                + ", Image: " + rs.getString("image");
+    }
+
     //make a Product object from the database record
     private Product makeProObjFromDbRecord(ResultSet rs) throws SQLException {
         Product product = null;
@@ -105,135 +226,403 @@ public class DerbyRW implements DatabaseRW {
         String imagePath = rs.getString("image");
         double unitPrice = rs.getDouble("unitPrice");
         int inStock = rs.getInt("inStock");
-        product =new Product(productId,description,imagePath,unitPrice,inStock);
-
-        // Show product details
-        System.out.println("Product ID: " + productId);
-        System.out.println("Description: " + description);
-        System.out.println("Image: " + imagePath);
-        System.out.println("unitPrice: " + unitPrice);
+        int version = rs.getInt("version");
+        product =new Product(productId,description,imagePath,unitPrice,inStock,version);
 
-        // Check availability and display message
-        if(inStock <= 0){
-            System.out.println("Product " + productId+ " is NOT in stock");
-        }
-        else if(inStock < 10) {
-            System.out.println("Product " + productId+ "low stock warning!" + inStock + " units left.");
-        }
-        else {
-            System.out.println("Product " + productId+ " is available");
-        }
-
-        System.out.println("-----"); // Divider for readability
+        // Log product details and availability, only built when DEBUG is enabled (once per row)
+        log.debug(() -> "Product ID: " + productId + ", Description: " + description + ", Image: " + imagePath
+                + ", unitPrice: " + unitPrice + ", " + (inStock <= 0 ? "NOT in stock"
+                : inStock < 10 ? "low stock warning! " + inStock + " units left" : "available"));
         return product;
     }
 
+    /**
+     * Reduces the stock of every trolley line in one transaction, or of none of them.
+     *
+     * Each line is a conditional update that only succeeds if there is enough stock:
+     *     UPDATE ProductTable SET inStock = inStock - ?, version = version + 1 WHERE productID = ? AND inStock >= ?
+     * The updates are sent as one batch, and an update count of 0 means the line could not be reserved.
+     * The database checks and decrements each row atomically, so two clients (or two DerbyRW instances)
+     * can never both take the last unit.
+     * The stripes of all trolley products are taken from the shared StockLockManager first (in its fixed order),
+     * and the rows are updated in productID order, so two checkouts sharing products wait for each other
+     * instead of deadlocking inside Derby, while checkouts on different products run in parallel.
+     * If any line fails, the transaction is rolled back and one follow-up query reads the current stock
+     * of the failed products, to tell the customer how many are left.
+     * Products that no longer exist are skipped, as before.
+     */
     public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
-        lock.lock();  // Lock the critical section to prevent concurrent access
+        return purchase(proList, null);
+    }
+
+    /**
+     * Purchases the reservation's lines like purchaseStocks and, in the same transaction,
+     * inserts a StockReservation row for each line. A crash therefore leaves either both or neither,
+     * and getOpenReservations finds every reservation whose stock is still taken.
+     */
+    @Override
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return purchase(new ArrayList<>(reservation.getLines()), reservation);
+    }
+
+    // purchaseStocks, also recording the reservation if one is given
+    private ArrayList<Product> purchase(ArrayList<Product> proList, StockReservation reservation) throws SQLException {
         ArrayList<Product> insufficientProducts = new ArrayList<>();
+        if (proList.isEmpty() && reservation == null) return insufficientProducts;
 
-        String checkSql = "SELECT inStock FROM ProductTable WHERE productId = ?";
-        String updateSql = "UPDATE ProductTable SET inStock = inStock - ? WHERE productId = ?";
+        // update the rows in a fixed order, so Derby takes its row locks in the same order for every checkout
+        ArrayList<Product> lines = sortedById(proList);
 
-        // Use try-with-resources for Connection and PreparedStatements
-        try (Connection conn = DriverManager.getConnection(dbURL)) {
+        try (StockLockManager.Locked locked = lockManager.lockProducts(productIdsOf(List.of(lines)));
+             PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
             conn.setAutoCommit(false); // Turn off auto-commit for transaction
 
-            // Use a second try-with-resources for the PreparedStatements
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-                 PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-
-                boolean allSufficient = true; // Flag to track if all products have sufficient stock
-
-                for (Product product : proList) {
-                    checkStmt.setString(1, product.getProductId());
-                    ResultSet rs = checkStmt.executeQuery();
-
-                    if (rs.next()) {
-                        int currentStock = rs.getInt("inStock");
-                        int newStock = currentStock - product.getOrderedQuantity();
-
-                        // Debugging: Print values before update
-                        System.out.println("Product ID: " + product.getProductId());
-                        System.out.println("Before change: " + currentStock);
-                        System.out.println("Quantity Ordered: " + product.getOrderedQuantity());
-
-                        if (newStock >= 0) { // Ensure stock doesn't go negative
-                            updateStmt.setInt(1, product.getOrderedQuantity());
-                            updateStmt.setString(2, product.getProductId());
-                            updateStmt.addBatch();
-
-                            // Debugging: Print values after update
-                            System.out.println("After change: " + newStock);
-                            System.out.println("Update successful for Product ID: " + product.getProductId());
-                        } else {
-                            // Week 3: Create new Product with current stock from database for accurate notification
-                            Product productWithCurrentStock = new Product(
-                                product.getProductId(),
-                                product.getProductDescription(),
-                                product.getProductImageName(),
-                                product.getUnitPrice(),
-                                currentStock  // Use actual current stock from database
-                            );
-                            productWithCurrentStock.setOrderedQuantity(product.getOrderedQuantity());
-                            insufficientProducts.add(productWithCurrentStock);
-                            allSufficient = false; // Mark that there's at least one insufficient product
-                            System.out.println("Not enough stock for Product ID: " + product.getProductId());
-                        }
-                        System.out.println("--------------------------------");
+            try {
+                insufficientProducts = lines.isEmpty() ? new ArrayList<>() : reduceStock(pooled, lines);
+
+                if (insufficientProducts.isEmpty()) {
+                    if (reservation != null) insertReservation(pooled, reservation);
+                    conn.commit();  // Commit all updates if every existing product had enough stock
+                    log.debug(() -> "Database update successful for " + proList.size() + " products.");
+                } else {
+                    conn.rollback(); // If there's insufficient stock for any product, rollback the entire transaction
+                    log.info("Insufficient stock for " + insufficientProducts.size()
+                            + " products, all updates rolled back.");
+                }
+            } catch (SQLException e) {
+                conn.rollback();  // Rollback if anything failed inside
+                log.error("Database update error, update failed", e);
+                throw e; // the caller must not treat a failed update as a successful purchase
+            }
+        }
+
+        return insufficientProducts;
+    }
+
+    /**
+     * Purchases several trolleys in one transaction and one commit (group commit), see CheckoutCoalescer.
+     * Each trolley is still all-or-nothing: it runs inside its own savepoint, which is rolled back
+     * if any of its products is insufficient, without affecting the other trolleys.
+     * The stripes of all products of all trolleys are taken at once, in the StockLockManager's fixed order.
+     * If the transaction itself fails, every trolley is retried on its own, so one bad request
+     * does not fail the others.
+     */
+    @Override
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        ArrayList<ArrayList<Product>> sortedTrolleys = new ArrayList<>(trolleys.size());
+        for (ArrayList<Product> trolley : trolleys) {
+            sortedTrolleys.add(sortedById(trolley));
+        }
+
+        ArrayList<ArrayList<Product>> results = new ArrayList<>(trolleys.size());
+        try (StockLockManager.Locked locked = lockManager.lockProducts(productIdsOf(sortedTrolleys));
+             PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                for (ArrayList<Product> lines : sortedTrolleys) {
+                    if (lines.isEmpty()) {
+                        results.add(new ArrayList<>());
+                        continue;
+                    }
+                    Savepoint savepoint = conn.setSavepoint();
+                    ArrayList<Product> insufficientProducts = reduceStock(pooled, lines);
+                    if (insufficientProducts.isEmpty()) {
+                        conn.releaseSavepoint(savepoint);
+                    } else {
+                        conn.rollback(savepoint); // only this trolley is undone
                     }
+                    results.add(insufficientProducts);
                 }
+                conn.commit(); // one commit, one log flush, for the whole group
+                log.debug(() -> "Group commit of " + trolleys.size() + " checkouts");
+                return results;
+            } catch (SQLException e) {
+                conn.rollback();
+                log.warn("Group commit of " + trolleys.size() + " checkouts failed, purchasing them one by one", e);
+            }
+        }
 
-                if (allSufficient) {
-                    // If all products have sufficient stock, execute the batch and commit
-                    updateStmt.executeBatch();
-                    conn.commit();  // Commit all updates if all updates succeed
-                    System.out.println("Database update successful.");
-                } else {
-                    // If there's insufficient stock for any product, rollback the entire transaction
+        // outside the group's locks, each trolley is purchased in its own transaction
+        results.clear();
+        for (ArrayList<Product> trolley : trolleys) {
+            results.add(purchaseStocks(trolley));
+        }
+        return results;
+    }
+
+    // Runs the conditional updates of one trolley inside the current transaction, without committing.
+    // Returns the insufficient products with their current stock; the caller rolls back if there are any.
+    private ArrayList<Product> reduceStock(PooledConnection pooled, ArrayList<Product> lines) throws SQLException {
+        String updateSql = "UPDATE ProductTable SET inStock = inStock - ?, version = version + 1 WHERE productID = ? AND inStock >= ?";
+
+        // The PreparedStatement comes from the connection's statement cache and stays open for reuse
+        PreparedStatement updateStmt = pooled.prepareStatement(updateSql);
+        for (Product product : lines) {
+            updateStmt.setInt(1, product.getOrderedQuantity());
+            updateStmt.setString(2, product.getProductId());
+            updateStmt.setInt(3, product.getOrderedQuantity());
+            updateStmt.addBatch();
+        }
+        int[] updateCounts = updateStmt.executeBatch();
+
+        // lines whose update changed no row: not enough stock, or the product no longer exists
+        ArrayList<Product> failedLines = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updateCounts[i] == 0) failedLines.add(lines.get(i));
+        }
+        return failedLines.isEmpty() ? new ArrayList<>() : readCurrentStock(pooled, failedLines);
+    }
+
+    private static ArrayList<Product> sortedById(ArrayList<Product> proList) {
+        ArrayList<Product> lines = new ArrayList<>(proList);
+        lines.sort(Comparator.comparing(Product::getProductId));
+        return lines;
+    }
+
+    private static HashSet<String> productIdsOf(List<ArrayList<Product>> trolleys) {
+        HashSet<String> productIds = new HashSet<>();
+        for (ArrayList<Product> trolley : trolleys) {
+            for (Product product : trolley) {
+                productIds.add(product.getProductId());
+            }
+        }
+        return productIds;
+    }
+
+    // Inserts the rows of a reservation inside the current transaction, without committing
+    private void insertReservation(PooledConnection pooled, StockReservation reservation) throws SQLException {
+        PreparedStatement insertStmt = pooled.prepareStatement("INSERT INTO StockReservation "
+                + "(reservationID, lineNo, productID, quantity, expiresAt, owner) VALUES (?, ?, ?, ?, ?, ?)");
+        List<Product> lines = reservation.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            insertStmt.setString(1, reservation.getReservationId());
+            insertStmt.setInt(2, i);
+            insertStmt.setString(3, lines.get(i).getProductId());
+            insertStmt.setInt(4, lines.get(i).getOrderedQuantity());
+            insertStmt.setLong(5, reservation.getExpiresAtMillis());
+            insertStmt.setString(6, reservation.getOwner());
+            insertStmt.addBatch();
+        }
+        insertStmt.executeBatch();
+    }
+
+    /**
+     * Adds the given quantities back to the stock in one transaction, e.g. when a reservation is released.
+     * Takes the same product stripes as purchaseStocks and updates the rows in the same order.
+     */
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        if (proList.isEmpty()) return;
+        ArrayList<Product> lines = sortedById(proList);
+
+        try (StockLockManager.Locked locked = lockManager.lockProducts(productIdsOf(List.of(lines)));
+             PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                addStock(pooled, lines);
+                conn.commit();
+                log.debug(() -> "Stock released for " + lines.size() + " products.");
+            } catch (SQLException e) {
+                conn.rollback();
+                log.error("Database update error, stock release failed", e);
+                throw e;
+            }
+        }
+    }
+
+    // Adds the lines' quantities back to the stock inside the current transaction, without committing
+    private void addStock(PooledConnection pooled, ArrayList<Product> lines) throws SQLException {
+        String updateSql = "UPDATE ProductTable SET inStock = inStock + ?, version = version + 1 WHERE productID = ?";
+        PreparedStatement updateStmt = pooled.prepareStatement(updateSql);
+        for (Product product : lines) {
+            updateStmt.setInt(1, product.getOrderedQuantity());
+            updateStmt.setString(2, product.getProductId());
+            updateStmt.addBatch();
+        }
+        int[] updateCounts = updateStmt.executeBatch();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updateCounts[i] == 0) {
+                log.warn("Product " + lines.get(i).getProductId() + " not found, stock not released");
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows of a reservation and, if releaseStock, gives its stock back, in one transaction.
+     * The delete decides who ends the reservation: if its rows are already gone (committed, released
+     * or expired by another call, possibly in another JVM), nothing is changed and false is returned.
+     */
+    @Override
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        ArrayList<Product> lines = sortedById(new ArrayList<>(reservation.getLines()));
+        try (StockLockManager.Locked locked = lockManager.lockProducts(
+                releaseStock ? productIdsOf(List.of(lines)) : new HashSet<>());
+             PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement deleteStmt = pooled.prepareStatement(
+                        "DELETE FROM StockReservation WHERE reservationID = ?");
+                deleteStmt.setString(1, reservation.getReservationId());
+                if (deleteStmt.executeUpdate() == 0) {
                     conn.rollback();
-                    System.out.println("Insufficient stock for some products, all updates rolled back.");
+                    return false;
                 }
+                if (releaseStock) addStock(pooled, lines);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                log.error("Database update error, ending reservation " + reservation.getReservationId() + " failed", e);
+                throw e;
+            }
+        }
+    }
+
+    // every reservation still recorded, with its lines in the order they were reserved
+    @Override
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        LinkedHashMap<String, ArrayList<Product>> linesById = new LinkedHashMap<>();
+        HashMap<String, Long> expiresAtById = new HashMap<>();
+        HashMap<String, String> ownerById = new HashMap<>();
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement("SELECT reservationID, productID, quantity, expiresAt, owner "
+                    + "FROM StockReservation ORDER BY reservationID, lineNo");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String reservationId = rs.getString("reservationID");
+                    Product line = new Product(rs.getString("productID"), "", "", 0, 0);
+                    line.setOrderedQuantity(rs.getInt("quantity"));
+                    linesById.computeIfAbsent(reservationId, id -> new ArrayList<>()).add(line);
+                    expiresAtById.put(reservationId, rs.getLong("expiresAt"));
+                    ownerById.put(reservationId, rs.getString("owner"));
+                }
+            }
+        }
+        ArrayList<StockReservation> open = new ArrayList<>();
+        for (Map.Entry<String, ArrayList<Product>> entry : linesById.entrySet()) {
+            String reservationId = entry.getKey();
+            open.add(new StockReservation(reservationId, entry.getValue(),
+                    expiresAtById.get(reservationId), ownerById.get(reservationId)));
+        }
+        return open;
+    }
 
+    /**
+     * Applies relative stock changes (e.g. a delivery note) in one transaction, or none of them.
+     *
+     * Each change is a conditional update that only succeeds if the product exists and keeps a stock of 0 or more:
+     *     UPDATE ProductTable SET inStock = inStock + ?, version = version + 1 WHERE productID = ? AND inStock + ? >= 0
+     * The updates are sent as one batch, in productID order and under the products' stripes,
+     * like purchaseStocks, so deliveries and checkouts on the same products never deadlock.
+     * An update count of 0 marks a failed change; then the whole transaction is rolled back.
+     * Unlike updateProduct, no other column is rewritten and no row is read back.
+     */
+    @Override
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        ArrayList<String> failedIds = new ArrayList<>();
+        if (stockChanges.isEmpty()) return failedIds;
+        String updateSql = "UPDATE ProductTable SET inStock = inStock + ?, version = version + 1 WHERE productID = ? AND inStock + ? >= 0";
+        ArrayList<Map.Entry<String, Integer>> changes = new ArrayList<>(new TreeMap<>(stockChanges).entrySet());
+
+        try (StockLockManager.Locked locked = lockManager.lockProducts(stockChanges.keySet());
+             PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement updateStmt = pooled.prepareStatement(updateSql);
+                for (Map.Entry<String, Integer> change : changes) {
+                    updateStmt.setInt(1, change.getValue());
+                    updateStmt.setString(2, change.getKey());
+                    updateStmt.setInt(3, change.getValue());
+                    updateStmt.addBatch();
+                }
+                int[] updateCounts = updateStmt.executeBatch();
+                for (int i = 0; i < changes.size(); i++) {
+                    if (updateCounts[i] == 0) failedIds.add(changes.get(i).getKey());
+                }
+
+                if (failedIds.isEmpty()) {
+                    conn.commit();
+                    log.info("Stock adjusted for " + changes.size() + " products.");
+                } else {
+                    conn.rollback();
+                    log.info("Stock adjustment rejected for " + failedIds + ", nothing changed.");
+                }
             } catch (SQLException e) {
-                conn.rollback();  // Rollback if anything failed inside
-                System.out.println("Database update error, update failed");
+                conn.rollback();
+                log.error("Database update error, stock adjustment failed", e);
+                throw e;
+            }
+        }
+        return failedIds;
+    }
+
+    // Reads the stock of the given trolley lines one row at a time, inside the purchase transaction.
+    // It uses the single-row select of the other lookups: an IN (...) list sized to the trolley would be new SQL
+    // for every trolley size and push the hot statements out of the connection's statement cache.
+    // Returns the lines as products carrying the current stock; products that no longer exist are left out.
+    private ArrayList<Product> readCurrentStock(PooledConnection pooled, ArrayList<Product> lines) throws SQLException {
+        HashMap<String, Integer> currentStock = new HashMap<>();
+        PreparedStatement stmt = pooled.prepareStatement("SELECT * FROM ProductTable WHERE productID = ?");
+        for (Product line : lines) {
+            stmt.setString(1, line.getProductId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    currentStock.put(rs.getString("productID").trim(), rs.getInt("inStock"));
+                }
             }
-        } finally {
-            lock.unlock(); // Always release the lock after the operation
         }
 
+        ArrayList<Product> insufficientProducts = new ArrayList<>();
+        for (Product product : lines) {
+            Integer stock = currentStock.get(product.getProductId().trim());
+            if (stock == null) {
+                log.warn("Product " + product.getProductId() + " not found, skipped in purchase");
+                continue;
+            }
+            // Week 3: Create new Product with current stock from database for accurate notification
+            Product productWithCurrentStock = new Product(
+                product.getProductId(),
+                product.getProductDescription(),
+                product.getProductImageName(),
+                product.getUnitPrice(),
+                stock  // Use actual current stock from database
+            );
+            productWithCurrentStock.setOrderedQuantity(product.getOrderedQuantity());
+            insufficientProducts.add(productWithCurrentStock);
+            log.info(() -> "Not enough stock for Product ID: " + product.getProductId()
+                    + " (in stock: " + stock + ", ordered: " + product.getOrderedQuantity() + ")");
+        }
         return insufficientProducts;
     }
 
 
     //warehouse edits an existing product
     public void updateProduct(String id, String des, double price, String iName, int stock) throws SQLException {
-        lock.lock();
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
         String updateSql = "UPDATE ProductTable SET " +
                 "description = ?, " +
                 "unitPrice = ?, " +
                 "image = ?, "+
-                "inStock = ? " +
+                "inStock = ?, " +
+                "version = version + 1 " +
                 "WHERE productID = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+        try (StockLockManager.Locked locked = lockManager.lockProduct(id);
+             PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement selectStmt = pooled.prepareStatement(selectSql);
+            PreparedStatement updateStmt = pooled.prepareStatement(updateSql);
 
-            // Print Before Update
+            // Check the product exists, log it before the update
             selectStmt.setString(1, id);
             try (ResultSet rs = selectStmt.executeQuery()) {
                 if (rs.next()) {
-                    System.out.println("Before Update:");
-                    System.out.println("ID: " + rs.getString("productID"));
-                    System.out.println("Description: " + rs.getString("description"));
-                    System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
-                    System.out.println("Stock: " + rs.getInt("inStock"));
-                    System.out.println("Image: " + rs.getString("image"));
+                    if (log.isDebugEnabled()) log.debug("Before Update: " + describeRecord(rs));
                 } else {
-                    System.out.println("Product not found: " + id);
+                    log.warn("Product not found: " + id);
                     return; // Exit if product doesn't exist
                 }
             }
@@ -246,45 +635,69 @@ public class DerbyRW implements DatabaseRW {
             updateStmt.setString(5, id);
             updateStmt.executeUpdate();
 
-            // Print After Update
-            try (ResultSet rs = selectStmt.executeQuery()) {
-                if (rs.next()) {
-                    System.out.println("After Update:");
-                    System.out.println("ID: " + rs.getString("productID"));
-                    System.out.println("Description: " + rs.getString("description"));
-                    System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
-                    System.out.println("Stock: " + rs.getInt("inStock"));
-                    System.out.println("image: " + rs.getString("image"));
+            // Log After Update, the extra query only runs when DEBUG is enabled
+            if (log.isDebugEnabled()) {
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    if (rs.next()) log.debug("After Update: " + describeRecord(rs));
                 }
             }
-        }
-        finally {
-            lock.unlock(); // Always release the lock after the operation
+        } // the product lock is always released here, also after an exception
+    }
+
+    /**
+     * Warehouse edit with compare-and-set: the product is only updated if its row version is still
+     * the one the warehouse read, in one conditional update that also raises the version:
+     *     UPDATE ProductTable SET description = ?, unitPrice = ?, image = ?, inStock = ?, version = version + 1
+     *     WHERE productID = ? AND version = ?
+     * Derby checks the version and writes the row under its row lock, so no product stripe is taken and
+     * the check also holds against other processes using the same database (e.g. over a network server).
+     * An update count of 0 means the product was changed or deleted since it was read.
+     */
+    @Override
+    public boolean updateProduct(String id, String des, double price, String iName, int stock,
+                                 int expectedVersion) throws SQLException {
+        String updateSql = "UPDATE ProductTable SET " +
+                "description = ?, " +
+                "unitPrice = ?, " +
+                "image = ?, " +
+                "inStock = ?, " +
+                "version = version + 1 " +
+                "WHERE productID = ? AND version = ?";
+
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement updateStmt = pooled.prepareStatement(updateSql);
+            updateStmt.setString(1, des);
+            updateStmt.setDouble(2, price);
+            updateStmt.setString(3, iName);
+            updateStmt.setInt(4, stock);
+            updateStmt.setString(5, id);
+            updateStmt.setInt(6, expectedVersion);
+            boolean updated = updateStmt.executeUpdate() == 1;
+            if (!updated) {
+                log.info("Product " + id + " not updated, changed since version " + expectedVersion + " was read");
+            }
+            return updated;
         }
     }
 
 //warehouse delete an existing product
     public void deleteProduct(String proId) throws SQLException {
-        lock.lock();
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
         String deleteSql = "DELETE FROM ProductTable WHERE productID = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-            conn.setAutoCommit(true); // Set auto-commit to true immediately
+        try (StockLockManager.Locked locked = lockManager.lockProduct(proId);
+             PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement selectStmt = pooled.prepareStatement(selectSql);
+            PreparedStatement deleteStmt = pooled.prepareStatement(deleteSql);
+            pooled.getConnection().setAutoCommit(true); // Set auto-commit to true immediately
 
-            // print product details before deletion
+            // check the product exists, log it before deletion
             selectStmt.setString(1, proId);
             try (ResultSet rs = selectStmt.executeQuery()) {
                 if (rs.next()) {
-                    System.out.println("Before delete:");
-                    System.out.println("ID: " + rs.getString("productID"));
-                    System.out.println("Description: " + rs.getString("description"));
-                    System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
-                    System.out.println("Stock: " + rs.getInt("inStock"));
+                    if (log.isDebugEnabled()) log.debug("Before delete: " + describeRecord(rs));
                 } else {
-                    System.out.println("Product not found: " + proId);
+                    log.warn("Product not found: " + proId);
                     return; // Exit if product does not exist
                 }
             }
@@ -292,12 +705,8 @@ public class DerbyRW implements DatabaseRW {
             // delete from database
             deleteStmt.setString(1, proId);
             deleteStmt.executeUpdate();
-            System.out.println("Product " + proId + " deleted from database.");
-        }
-
-        finally {
-            lock.unlock(); // Always release the lock after the operation
-        }
+            log.info("Product " + proId + " deleted from database.");
+        } // the product lock is always released here, also after an exception
     }
 
     //check if product ID is unique
@@ -305,17 +714,18 @@ public class DerbyRW implements DatabaseRW {
     public boolean isProIdAvailable(String proId) throws SQLException {
         String query = "SELECT COUNT(*) FROM ProductTable WHERE productID = ?";
                              //the count of records that match the given proId.
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement stmt = pooled.prepareStatement(query);
             stmt.setString(1, proId);
-            ResultSet rs = stmt.executeQuery();
-            // the rs is the COUNT(*) result (a single number): how many records that match the given proId.
-            // If count > 0, the ID is already in the database, so it's not available, return false
-            // If count = 0, the ID is available, return true
-            if (rs.next()) { // Move cursor to the first (and only) row
-                int count = rs.getInt(1); // Get the first column value (the count)
-                if (count == 0) return true;
-                else return false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                // the rs is the COUNT(*) result (a single number): how many records that match the given proId.
+                // If count > 0, the ID is already in the database, so it's not available, return false
+                // If count = 0, the ID is available, return true
+                if (rs.next()) { // Move cursor to the first (and only) row
+                    int count = rs.getInt(1); // Get the first column value (the count)
+                    if (count == 0) return true;
+                    else return false;
+                }
             }
             return false; // Default case (should not happen)
         }
@@ -324,13 +734,13 @@ public class DerbyRW implements DatabaseRW {
     //   /images/0001TV.jpg
     //warehouse adds a new product to database
     public void insertNewProduct(String id, String des,double price,String image,int stock) throws SQLException {
-        lock.lock();
-        String insertSql = "INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)";
+        String insertSql = "INSERT INTO ProductTable (productID, description, unitPrice, image, inStock) VALUES(?, ?, ?, ?, ?)";
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
-        try (Connection conn = DriverManager.getConnection(dbURL);
-        PreparedStatement insertStmt = conn.prepareStatement(insertSql);
-        PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-            conn.setAutoCommit(true); // Set auto-commit to true immediately
+        try (StockLockManager.Locked locked = lockManager.lockProduct(id);
+             PooledConnection pooled = connectionPool.borrow()) {
+            PreparedStatement insertStmt = pooled.prepareStatement(insertSql);
+            PreparedStatement selectStmt = pooled.prepareStatement(selectSql);
+            pooled.getConnection().setAutoCommit(true); // Set auto-commit to true immediately
             insertStmt.setString(1, id);
             insertStmt.setString(2, des);
             insertStmt.setDouble(3, price);
@@ -338,18 +748,80 @@ public class DerbyRW implements DatabaseRW {
             insertStmt.setInt(5, stock);
             selectStmt.setString(1, id);
             insertStmt.executeUpdate();
-            ResultSet rs = selectStmt.executeQuery();
-            if (rs.next()) { //print the inserted record
-                System.out.println("Insert successful for Product ID: \" + id");
-                System.out.println("ID: " + rs.getString("productID"));
-                System.out.println("Description: " + rs.getString("description"));
-                System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
-                System.out.println("Stock: " + rs.getInt("inStock"));
+            log.info("Insert successful for Product ID: " + id);
+            if (log.isDebugEnabled()) { // read the inserted record back only to log it
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    if (rs.next()) log.debug("Inserted: " + describeRecord(rs));
+                }
+            }
+        } // the product lock is always released here, also after an exception
+    }
+
+    /**
+     * Inserts the products in one transaction, sent to Derby in JDBC batches of
+     * DatabaseRWFactory.importBatchSize rows, so a chunk of an import costs one commit instead of one per row.
+     * No product locks are taken: the products are new, and the primary key rejects a duplicate ID.
+     * If a batch fails (normally on a duplicate ID), the transaction is rolled back and the rows are inserted
+     * again one at a time; Derby only undoes the failed statement, so the duplicates are skipped and returned
+     * and the others are committed together.
+     */
+    @Override
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        ArrayList<Product> rejectedProducts = new ArrayList<>();
+        if (products.isEmpty()) return rejectedProducts;
+        String insertSql = "INSERT INTO ProductTable (productID, description, unitPrice, image, inStock) VALUES(?, ?, ?, ?, ?)";
+        int batchSize = Math.max(1, DatabaseRWFactory.importBatchSize);
+
+        try (PooledConnection pooled = connectionPool.borrow()) {
+            Connection conn = pooled.getConnection();
+            PreparedStatement insertStmt = pooled.prepareStatement(insertSql);
+            conn.setAutoCommit(false);
+            try {
+                try {
+                    int batched = 0;
+                    for (Product product : products) {
+                        bindInsert(insertStmt, product);
+                        insertStmt.addBatch();
+                        if (++batched == batchSize) {
+                            insertStmt.executeBatch();
+                            batched = 0;
+                        }
+                    }
+                    if (batched > 0) insertStmt.executeBatch();
+                } catch (BatchUpdateException e) {
+                    insertStmt.clearBatch();
+                    conn.rollback();
+                    log.debug(() -> "Batch insert failed (" + e.getSQLState() + "), inserting row by row");
+                    for (Product product : products) {
+                        bindInsert(insertStmt, product);
+                        try {
+                            insertStmt.executeUpdate();
+                        } catch (SQLException rowError) {
+                            if (!"23505".equals(rowError.getSQLState())) throw rowError; // 23505 = duplicate ID
+                            rejectedProducts.add(product);
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                log.error("Bulk insert of " + products.size() + " products failed, rolled back", e);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
-        finally {
-            lock.unlock(); // Always release the lock after the operation
-        }
+        log.info("Bulk insert: " + (products.size() - rejectedProducts.size()) + " products added, "
+                + rejectedProducts.size() + " IDs already in use.");
+        return rejectedProducts;
+    }
+
+    private static void bindInsert(PreparedStatement insertStmt, Product product) throws SQLException {
+        insertStmt.setString(1, product.getProductId());
+        insertStmt.setString(2, product.getProductDescription());
+        insertStmt.setDouble(3, product.getUnitPrice());
+        insertStmt.setString(4, product.getProductImageName());
+        insertStmt.setInt(5, product.getStockQuantity());
     }
 
 }
@@ -0,0 +1,350 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.utility.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * FileOrderStore keeps every order as a text file (e.g. 12.txt) in the folder of its state:
+ * ordered/, progressing/, ready/ and collected/ under the orders folder. The files are written and moved
+ * by OrderFileManager, see there for their format.
+ *
+ * This is the original storage of the orders. It is what clients in several JVMs share (see StorageServer),
+ * and it is the readable copy kept up to date by the OrderJournal and the MappedOrderStore.
+ *
+ * Startup index (optional, when an index file is given):
+ * - loadOpenOrders would list three folders and read every order file to find its CustomerType line.
+ *   Instead, the open orders (ID, state, customer type, time of the last state change) are kept in memory
+ *   and written to a compact index file (orders/orderIndex.dat) every indexEveryChanges changes and on close.
+ * - At startup the index is read in one sequential read. It is only trusted if its checksum matches and
+ *   the ordered, progressing and ready folders have not been modified since it was written (their modification
+ *   times are stored in it). Otherwise, e.g. after a crash, the folders are scanned with the order files read
+ *   in parallel, and a new index is written.
+ * - The index is not used when other JVMs change the folders too (see OrderStoreFactory).
+ */
+
+public class FileOrderStore implements OrderStore {
+    private static final Logger log = Logger.getLogger(FileOrderStore.class);
+    private static final int INDEX_MAGIC = 0x4853494E; // "HSIN"
+    private static final OrderState[] OPEN_STATES = {OrderState.Ordered, OrderState.Progressing, OrderState.Ready};
+
+    // an open order as kept in the startup index
+    private record IndexEntry(OrderState state, String customerType, long sinceMillis) {
+    }
+
+    private final Path orderedPath;
+    private final Path progressingPath;
+    private final Path readyPath;
+    private final Path collectedPath;
+    private final Path indexPath;                 // null: no startup index
+    private final int indexEveryChanges;
+    private final TreeMap<Integer, IndexEntry> index = new TreeMap<>(); // the open orders, guarded by this
+    private boolean indexTracked = false;         // true once index holds every open order (after loadOpenOrders)
+    private int changesSinceIndex = 0;
+
+    public FileOrderStore(Path ordersPath) {
+        this(ordersPath, null, 0);
+    }
+
+    /**
+     * @param indexPath         the startup index file, or null for none
+     * @param indexEveryChanges write the index after this many order changes (and on close)
+     */
+    public FileOrderStore(Path ordersPath, Path indexPath, int indexEveryChanges) {
+        this.orderedPath = ordersPath.resolve("ordered");
+        this.progressingPath = ordersPath.resolve("progressing");
+        this.readyPath = ordersPath.resolve("ready");
+        this.collectedPath = ordersPath.resolve("collected");
+        this.indexPath = indexPath;
+        this.indexEveryChanges = indexEveryChanges;
+    }
+
+    // the folder of the orders in the given state
+    public Path getPathForState(OrderState state) {
+        return switch (state) {
+            case Ordered -> orderedPath;
+            case Progressing -> progressingPath;
+            case Ready -> readyPath;
+            case Collected -> collectedPath;
+        };
+    }
+
+    // the state folders, for OrderFolderWatcher
+    public List<Path> getStatePaths() {
+        return List.of(orderedPath, progressingPath, readyPath, collectedPath);
+    }
+
+    // synchronized so that the index never describes folders changed by a call still running
+    public synchronized void createOrder(Order order) throws IOException {
+        OrderFileManager.createOrderFile(getPathForState(order.getState()), order.getOrderId(), order.orderDetails());
+        if (indexTracked) {
+            index.put(order.getOrderId(),
+                    new IndexEntry(order.getState(), order.getCustomerType(), System.currentTimeMillis()));
+            indexChanged();
+        }
+    }
+
+    public synchronized boolean changeState(int orderId, OrderState oldState, OrderState newState) throws IOException {
+        boolean moved = OrderFileManager.updateAndMoveOrderFile(orderId, newState,
+                getPathForState(oldState), getPathForState(newState));
+        if (moved && indexTracked) {
+            IndexEntry entry = index.remove(orderId);
+            if (newState != OrderState.Collected) {
+                index.put(orderId, new IndexEntry(newState, entry != null ? entry.customerType() : "Standard",
+                        System.currentTimeMillis()));
+            }
+            indexChanged();
+        }
+        return moved;
+    }
+
+    public String readOrderDetail(int orderId, OrderState state) throws IOException {
+        return OrderFileManager.readOrderFile(getPathForState(state), orderId);
+    }
+
+    public synchronized List<StoredOrder> loadOpenOrders() {
+        if (indexPath == null) {
+            return scanFolders();
+        }
+        if (!readIndex()) {
+            long start = System.nanoTime();
+            index.clear();
+            for (StoredOrder order : scanFolders()) {
+                index.put(order.orderId(), new IndexEntry(order.state(), order.customerType(), 0));
+            }
+            log.info("Order folders scanned in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                    + " ms, " + index.size() + " open orders");
+            indexTracked = true;
+            writeIndex();
+        }
+        indexTracked = true;
+
+        List<StoredOrder> orders = new ArrayList<>();
+        for (Map.Entry<Integer, IndexEntry> entry : index.entrySet()) {
+            orders.add(new StoredOrder(entry.getKey(), entry.getValue().state(), entry.getValue().customerType()));
+        }
+        orders.sort(Comparator.comparing(StoredOrder::state)); // stable: by order ID within a state
+        return orders;
+    }
+
+    /**
+     * The time of the last state change of an open order, in epoch milliseconds, as kept in the startup index;
+     * 0 if not known (no index, scanned from the folders, or not an open order).
+     */
+    public synchronized long getStateSince(int orderId) {
+        IndexEntry entry = index.get(orderId);
+        return entry == null ? 0 : entry.sinceMillis();
+    }
+
+    public synchronized void close() {
+        if (indexTracked && changesSinceIndex > 0) {
+            writeIndex();
+        }
+    }
+
+    // lists the open-state folders, then reads the order files for their customer types in parallel
+    private List<StoredOrder> scanFolders() {
+        List<StoredOrder> listed = new ArrayList<>();
+        for (OrderState state : OPEN_STATES) {
+            for (Integer orderId : orderIdsLoader(getPathForState(state))) {
+                listed.add(new StoredOrder(orderId, state, null));
+            }
+        }
+        return listed.parallelStream()
+                .map(order -> new StoredOrder(order.orderId(), order.state(),
+                        loadCustomerTypeFromFile(getPathForState(order.state()), order.orderId())))
+                .sorted(Comparator.comparing(StoredOrder::state).thenComparingInt(StoredOrder::orderId))
+                .toList();
+    }
+
+    private void indexChanged() {
+        if (++changesSinceIndex >= indexEveryChanges) {
+            writeIndex();
+        }
+    }
+
+    // the modification times of the open-state folders, which change whenever an order file is added or removed
+    private long[] folderTimes() throws IOException {
+        long[] times = new long[OPEN_STATES.length];
+        for (int i = 0; i < OPEN_STATES.length; i++) {
+            try {
+                times[i] = Files.getLastModifiedTime(getPathForState(OPEN_STATES[i])).to(TimeUnit.NANOSECONDS);
+            } catch (NoSuchFileException e) {
+                times[i] = -1;
+            }
+        }
+        return times;
+    }
+
+    // writes the index to a temp file, then replaces the old one, so a crash leaves one or the other
+    private void writeIndex() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (long time : folderTimes()) {
+                out.writeLong(time);
+            }
+            out.writeInt(index.size());
+            for (Map.Entry<Integer, IndexEntry> entry : index.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeByte(entry.getValue().state().ordinal());
+                out.writeUTF(entry.getValue().customerType());
+                out.writeLong(entry.getValue().sinceMillis());
+            }
+            byte[] body = bytes.toByteArray();
+            CRC32C crc = new CRC32C();
+            crc.update(body);
+            ByteBuffer file = ByteBuffer.allocate(12 + body.length);
+            file.putInt(INDEX_MAGIC).putInt(body.length).putInt((int) crc.getValue()).put(body);
+
+            Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            Files.write(tempPath, file.array());
+            Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            changesSinceIndex = 0;
+        } catch (IOException e) {
+            log.warn("Cannot write the order index, the next start scans the order folders: " + e.getMessage());
+        }
+    }
+
+    // fills index from the index file if it is intact and the folders did not change since; false otherwise
+    private boolean readIndex() {
+        if (!Files.isRegularFile(indexPath)) {
+            log.info("No order index yet, scanning the order folders");
+            return false;
+        }
+        try {
+            byte[] file = Files.readAllBytes(indexPath);
+            ByteBuffer header = ByteBuffer.wrap(file);
+            if (file.length < 12 || header.getInt() != INDEX_MAGIC || header.getInt() != file.length - 12) {
+                log.warn("Order index is damaged, scanning the order folders");
+                return false;
+            }
+            int checksum = header.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(file, 12, file.length - 12);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Order index is damaged, scanning the order folders");
+                return false;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(file, 12, file.length - 12));
+            long[] currentTimes = folderTimes();
+            for (long currentTime : currentTimes) {
+                if (in.readLong() != currentTime) {
+                    log.info("Order folders changed since the order index was written, scanning them");
+                    return false;
+                }
+            }
+            index.clear();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int orderId = in.readInt();
+                index.put(orderId, new IndexEntry(OrderState.values()[in.readByte()], in.readUTF(), in.readLong()));
+            }
+            log.info("Order index read, " + count + " open orders");
+            return true;
+        } catch (IOException e) {
+            log.warn("Cannot read the order index, scanning the order folders: " + e.getMessage());
+            index.clear();
+            return false;
+        }
+    }
+
+    public OrderState findState(int orderId) {
+        for (OrderState state : OrderState.values()) {
+            if (Files.exists(getPathForState(state).resolve(orderId + ".txt"))) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    // Loads a list of order IDs from the specified directory.
+    private ArrayList<Integer> orderIdsLoader(Path dir) {
+        ArrayList<Integer> orderIds = new ArrayList<>();
+
+        if (Files.exists(dir) && Files.isDirectory(dir)) {
+            try (Stream<Path> fileStream = Files.list(dir)) {
+                // Process the stream without checking it separately
+                List<Path> files = fileStream.filter(Files::isRegularFile).toList();
+
+                if (files.isEmpty()) {
+                    log.debug(() -> dir + " is empty");
+                } else {
+                    for (Path file : files) {
+                        String fileName = file.getFileName().toString();
+                        if (fileName.endsWith("_temp.txt")) continue; // being updated by OrderFileManager
+                        if (fileName.endsWith(".txt")) { // Ensure it's a .txt file
+                            try {
+                                int orderId = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
+                                orderIds.add(orderId);
+                                log.debug(() -> "Found order " + orderId + " in " + dir);
+                            } catch (NumberFormatException e) {
+                                log.warn("Invalid file name: " + fileName);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error reading " + dir, e);
+            }
+        } else {
+            log.warn(dir + " does not exist.");
+        }
+        return orderIds;
+    }
+
+    /**
+     * Week 10: Loads customer type from order file
+     * This ensures customer type persists across application restarts
+     * @param dir The directory containing the order file
+     * @param orderId The order ID to load customer type for
+     * @return the customer type, "Standard" if the file has none or cannot be read
+     */
+    private String loadCustomerTypeFromFile(Path dir, int orderId) {
+        Path orderFile = dir.resolve(orderId + ".txt");
+        if (Files.exists(orderFile)) {
+            try {
+                // Week 10: Read order file and extract customer type line
+                String content = Files.readString(orderFile);
+                String[] lines = content.split("\n");
+
+                for (String line : lines) {
+                    // Week 10: Look for "CustomerType: VIP" or "CustomerType: Prime" etc.
+                    if (line.startsWith("CustomerType:")) {
+                        String customerType = line.substring("CustomerType:".length()).trim();
+                        log.debug(() -> "Loaded customer type for order " + orderId + ": " + customerType);
+                        return customerType;
+                    }
+                }
+
+                // Week 10: If no customer type found, default to Standard
+                log.info("No customer type found for order " + orderId + ", defaulting to Standard");
+            } catch (IOException e) {
+                log.warn("Error reading customer type from order file " + orderId + ": " + e.getMessage());
+            }
+        } else {
+            log.warn("Order file not found: " + orderFile);
+        }
+        return "Standard";
+    }
+}
@@ -1,5 +1,7 @@
 package ci553.happyshop.storageAccess;
 
+import ci553.happyshop.utility.Logger;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,6 +20,8 @@ import java.nio.file.StandardCopyOption;
  */
 
 public class ImageFileManager {
+    private static final Logger log = Logger.getLogger(ImageFileManager.class);
+
     /**
      * Deletes an image file from the specified folder.
      *
@@ -62,7 +66,7 @@ public class ImageFileManager {
 
         // Copy the file to the destination folder with the specified name
         Files.copy(sourcePath, destinationPath, StandardCopyOption.REPLACE_EXISTING);
-        System.out.println("File copied successfully to: " + destinationPath);
+        log.debug(() -> "File copied successfully to: " + destinationPath); // once per product of an import
         return fileNameWithExtension;
     }
 
@@ -0,0 +1,314 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InMemoryDatabaseRW is a DatabaseRW that keeps the products in memory instead of in the Derby database.
+ * It needs no happyShopDB folder (and no db.lck), so it is used for unit tests, load-test baselines
+ * and demo instances. Select it with the system property -Dhappyshop.db.backend=memory (see DatabaseRWFactory).
+ * Nothing is saved: the products are lost when the application stops.
+ *
+ * How it works:
+ * - The products are kept in a ConcurrentSkipListMap, ordered by product ID like the database query results,
+ *   so searches and getAllProducts never lock.
+ * - Each product's stock is an AtomicInteger, read without locking.
+ * - Changes to the stock (purchases, releases and adjustStocks) take the product stripes from a StockLockManager,
+ *   like DerbyRW, so purchaseStocks is all-or-nothing: every line is checked first, and only if all have
+ *   enough stock are they all reduced.
+ *   Two checkouts can never both take the last unit, and a failed checkout never takes anything.
+ * - Stock reservations (reserveStocks) are kept in a map next to the products.
+ * - Each product has a row version, raised after every change of its row (always under its stripe),
+ *   so the compare-and-set updateProduct checks and writes it under the same stripe, like Derby's row lock.
+ * - The results follow DerbyRW: insufficient products carry the current stock, products that no longer
+ *   exist are skipped, and updating or deleting a missing product is logged and ignored.
+ */
+
+public class InMemoryDatabaseRW implements DatabaseRW {
+    private static final Logger log = Logger.getLogger(InMemoryDatabaseRW.class);
+
+    private final ConcurrentSkipListMap<String, Row> rows = new ConcurrentSkipListMap<>();
+    private final StockLockManager lockManager;
+    private final ConcurrentHashMap<String, StockReservation> reservations = new ConcurrentHashMap<>();
+
+    // one product; description, price and image are replaced together, the stock and version counters are kept
+    private record Row(String description, double unitPrice, String imageName, AtomicInteger stock,
+                       AtomicInteger version) {
+    }
+
+    public InMemoryDatabaseRW() {
+        this(new StockLockManager(DatabaseRWFactory.stockLockStripes));
+    }
+
+    public InMemoryDatabaseRW(StockLockManager lockManager) {
+        this.lockManager = lockManager;
+    }
+
+    /**
+     * Adds the given products (replacing any with the same ID), e.g. the sample catalogue at startup.
+     */
+    public void load(Collection<Product> products) {
+        for (Product product : products) {
+            rows.put(key(product.getProductId()), new Row(product.getProductDescription(),
+                    product.getUnitPrice(), product.getProductImageName(),
+                    new AtomicInteger(product.getStockQuantity()), new AtomicInteger(product.getVersion())));
+        }
+    }
+
+    /**
+     * The products SetDatabase puts into a new database, used to fill an in-memory backend for a demo.
+     */
+    public static List<Product> sampleCatalogue() {
+        return List.of(
+                new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100),
+                new Product("0002", "DAB Radio", "0002.jpg", 29.99, 100),
+                new Product("0003", "Toaster", "0003.jpg", 19.99, 100),
+                new Product("0004", "Watch", "0004.jpg", 29.99, 100),
+                new Product("0005", "Digital Camera", "0005.jpg", 89.99, 100),
+                new Product("0006", "MP3 player", "0006.jpg", 7.99, 100),
+                new Product("0007", "USB drive", "0007.jpg", 6.99, 100),
+                new Product("0008", "USB2 drive", "0008.jpg", 7.99, 100),
+                new Product("0009", "USB3 drive", "0009.jpg", 8.99, 100),
+                new Product("0010", "USB4 drive", "0010.jpg", 9.99, 100),
+                new Product("0011", "USB5 drive", "0011.jpg", 10.99, 100),
+                new Product("0012", "USB6 drive", "0011.jpg", 10.99, 100));
+    }
+
+    // product IDs were padded CHAR(4) before schema migration 2, so padding never makes a different product
+    private static String key(String productId) {
+        return productId.trim();
+    }
+
+    // the version is read before the stock: a product read during a change then carries the old version,
+    // so an edit based on it is refused rather than accepted with a stale stock
+    private static Product toProduct(String id, Row row) {
+        int version = row.version().get();
+        return new Product(id, row.description(), row.imageName(), row.unitPrice(), row.stock().get(), version);
+    }
+
+    //search by product Id at first, if not found, search by product name
+    public ArrayList<Product> searchProduct(String keyword) {
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = searchByProductId(keyword);
+        if (product != null) {
+            productList.add(product);
+            return productList;
+        }
+
+        String name = keyword.toLowerCase();
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            if (entry.getValue().description().toLowerCase().contains(name)) {
+                productList.add(toProduct(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (productList.isEmpty()) {
+            log.debug(() -> "Product " + keyword + " not found.");
+        }
+        return productList;
+    }
+
+    public Product searchByProductId(String productId) {
+        String id = key(productId);
+        Row row = rows.get(id);
+        return row == null ? null : toProduct(id, row);
+    }
+
+    /**
+     * Checks every line first and reduces the stock only if all of them have enough, under the product stripes.
+     */
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) {
+        ArrayList<Product> insufficientProducts = new ArrayList<>();
+        if (proList.isEmpty()) return insufficientProducts;
+
+        // a product ordered on two lines must have enough stock for both
+        LinkedHashMap<String, Integer> totals = new LinkedHashMap<>();
+        for (Product product : proList) {
+            totals.merge(key(product.getProductId()), product.getOrderedQuantity(), Integer::sum);
+        }
+
+        try (StockLockManager.Locked locked = lockManager.lockProducts(totals.keySet())) {
+            for (Product product : proList) {
+                String id = key(product.getProductId());
+                Row row = rows.get(id);
+                if (row == null) {
+                    log.warn("Product " + product.getProductId() + " not found, skipped in purchase");
+                    continue;
+                }
+                int stock = row.stock().get();
+                if (stock < totals.get(id)) {
+                    Product productWithCurrentStock = new Product(product.getProductId(),
+                            product.getProductDescription(), product.getProductImageName(),
+                            product.getUnitPrice(), stock);
+                    productWithCurrentStock.setOrderedQuantity(product.getOrderedQuantity());
+                    insufficientProducts.add(productWithCurrentStock);
+                }
+            }
+
+            if (insufficientProducts.isEmpty()) {
+                for (Map.Entry<String, Integer> total : totals.entrySet()) {
+                    Row row = rows.get(total.getKey());
+                    if (row != null) {
+                        row.stock().addAndGet(-total.getValue());
+                        row.version().incrementAndGet();
+                    }
+                }
+                log.debug(() -> "Stock reduced for " + proList.size() + " products.");
+            } else {
+                log.info("Insufficient stock for " + insufficientProducts.size() + " products, nothing reduced.");
+            }
+        }
+        return insufficientProducts;
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) {
+        if (proList.isEmpty()) return;
+        ArrayList<String> ids = new ArrayList<>();
+        for (Product product : proList) {
+            ids.add(key(product.getProductId()));
+        }
+
+        try (StockLockManager.Locked locked = lockManager.lockProducts(ids)) {
+            for (Product product : proList) {
+                Row row = rows.get(key(product.getProductId()));
+                if (row == null) {
+                    log.warn("Product " + product.getProductId() + " not found, stock not released");
+                } else {
+                    row.stock().addAndGet(product.getOrderedQuantity());
+                    row.version().incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // the reservation is kept in memory like the products, so it is lost with them when the application stops
+    @Override
+    public ArrayList<Product> reserveStocks(StockReservation reservation) {
+        ArrayList<Product> insufficientProducts = purchaseStocks(new ArrayList<>(reservation.getLines()));
+        if (insufficientProducts.isEmpty()) {
+            reservations.put(reservation.getReservationId(), reservation);
+        }
+        return insufficientProducts;
+    }
+
+    // removing the reservation decides which call ends it
+    @Override
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) {
+        if (reservations.remove(reservation.getReservationId()) == null) return false;
+        if (releaseStock) releaseStocks(new ArrayList<>(reservation.getLines()));
+        return true;
+    }
+
+    @Override
+    public List<StockReservation> getOpenReservations() {
+        return new ArrayList<>(reservations.values());
+    }
+
+    /**
+     * Checks every change first and applies them only if all products exist and none drops below zero.
+     */
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) {
+        ArrayList<String> failedIds = new ArrayList<>();
+        LinkedHashMap<String, Integer> totals = new LinkedHashMap<>(); // "0001" and "0001 " are one product
+        for (Map.Entry<String, Integer> change : stockChanges.entrySet()) {
+            totals.merge(key(change.getKey()), change.getValue(), Integer::sum);
+        }
+
+        try (StockLockManager.Locked locked = lockManager.lockProducts(totals.keySet())) {
+            for (Map.Entry<String, Integer> total : totals.entrySet()) {
+                Row row = rows.get(total.getKey());
+                if (row == null || row.stock().get() + total.getValue() < 0) failedIds.add(total.getKey());
+            }
+            if (failedIds.isEmpty()) {
+                for (Map.Entry<String, Integer> total : totals.entrySet()) {
+                    Row row = rows.get(total.getKey());
+                    row.stock().addAndGet(total.getValue());
+                    row.version().incrementAndGet();
+                }
+            }
+        }
+        return failedIds;
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) {
+        try (StockLockManager.Locked locked = lockManager.lockProduct(id)) {
+            Row updated = rows.computeIfPresent(key(id),
+                    (k, old) -> new Row(des, price, imageName, old.stock(), old.version()));
+            if (updated == null) {
+                log.warn("Product not found: " + id);
+                return;
+            }
+            updated.stock().set(stock);
+            updated.version().incrementAndGet();
+        }
+    }
+
+    /**
+     * Updates the product only if its version is still {@code expectedVersion}, checked and written under its stripe.
+     */
+    @Override
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) {
+        try (StockLockManager.Locked locked = lockManager.lockProduct(id)) {
+            Row row = rows.get(key(id));
+            if (row == null || row.version().get() != expectedVersion) {
+                log.info("Product " + id + " not updated, changed since version " + expectedVersion + " was read");
+                return false;
+            }
+            Row updated = new Row(des, price, imageName, row.stock(), row.version());
+            rows.put(key(id), updated);
+            updated.stock().set(stock);
+            updated.version().incrementAndGet();
+            return true;
+        }
+    }
+
+    public void deleteProduct(String id) {
+        try (StockLockManager.Locked locked = lockManager.lockProduct(id)) {
+            if (rows.remove(key(id)) == null) {
+                log.warn("Product not found: " + id);
+            } else {
+                log.info("Product " + id + " deleted.");
+            }
+        }
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        Row row = new Row(des, price, image, new AtomicInteger(stock), new AtomicInteger(0));
+        if (rows.putIfAbsent(key(id), row) != null) {
+            // same SQLState as Derby's duplicate primary key
+            throw new SQLException("Product ID " + id + " already exists", "23505");
+        }
+        log.info("Product " + id + " added.");
+    }
+
+    public boolean isProIdAvailable(String productId) {
+        return !rows.containsKey(key(productId));
+    }
+
+    public ArrayList<Product> getAllProducts() {
+        ArrayList<Product> productList = new ArrayList<>(rows.size());
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+            productList.add(toProduct(entry.getKey(), entry.getValue()));
+        }
+        return productList;
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) {
+        ArrayList<Product> productList = new ArrayList<>();
+        for (Map.Entry<String, Row> entry : rows.tailMap(key(afterProductId), false).entrySet()) {
+            if (productList.size() == pageSize) break;
+            productList.add(toProduct(entry.getKey(), entry.getValue()));
+        }
+        return productList;
+    }
+}
@@ -0,0 +1,190 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IndexedDatabaseRW is a decorator that answers name searches from the in-memory ProductSearchIndex
+ * instead of a {@code LIKE '%keyword%'} scan of ProductTable.
+ *
+ * - searchProduct still tries the keyword as a product ID first, like DerbyRW.
+ *   Otherwise the index returns the matching IDs, best match first, and the rows are loaded
+ *   by ID through the wrapped DatabaseRW (normally a CachedDatabaseRW, so most rows come from memory).
+ * - insertNewProduct(s), updateProduct and deleteProduct update the index after the wrapped DatabaseRW succeeded.
+ * - searchProductPage pages the ranked IDs and only loads the rows of the requested page.
+ * - searchProductFuzzy ranks products by trigram similarity (see ProductSearchIndex.searchFuzzy),
+ *   within a time budget of {@code fuzzyTimeBudgetMillis}.
+ * - Until the index has been built, searches fall back to the wrapped DatabaseRW.
+ *
+ * Instances are created by DatabaseRWFactory and all share one ProductSearchIndex,
+ * so the customer and warehouse clients see the same search results.
+ */
+
+public class IndexedDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final ProductSearchIndex searchIndex;
+    private final long fuzzyTimeBudgetMillis;
+
+    public IndexedDatabaseRW(DatabaseRW delegate, ProductSearchIndex searchIndex) {
+        this(delegate, searchIndex, 50);
+    }
+
+    public IndexedDatabaseRW(DatabaseRW delegate, ProductSearchIndex searchIndex, long fuzzyTimeBudgetMillis) {
+        this.delegate = delegate;
+        this.searchIndex = searchIndex;
+        this.fuzzyTimeBudgetMillis = fuzzyTimeBudgetMillis;
+    }
+
+    //search by product ID first, then by name using the index
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        if (!searchIndex.isBuilt()) {
+            return delegate.searchProduct(keyword);
+        }
+
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = delegate.searchByProductId(keyword);
+        if (product != null) {
+            productList.add(product);
+            return productList;
+        }
+
+        for (String productId : searchIndex.search(keyword)) {
+            Product match = delegate.searchByProductId(productId);
+            if (match != null) { // may have been deleted by another client in the meantime
+                productList.add(match);
+            }
+        }
+        return productList;
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        if (!searchIndex.isBuilt()) {
+            return delegate.searchProductPage(keyword, offset, pageSize);
+        }
+
+        if (offset == 0) {
+            Product product = delegate.searchByProductId(keyword);
+            if (product != null) {
+                ArrayList<Product> productList = new ArrayList<>();
+                productList.add(product);
+                return new ProductPage(productList, 0, 1, false);
+            }
+        }
+
+        List<String> rankedIds = searchIndex.search(keyword);
+        int from = Math.min(Math.max(0, offset), rankedIds.size());
+        int to = Math.min(from + Math.max(0, pageSize), rankedIds.size());
+        ArrayList<Product> productList = new ArrayList<>();
+        for (String productId : rankedIds.subList(from, to)) {
+            Product match = delegate.searchByProductId(productId);
+            if (match != null) {
+                productList.add(match);
+            }
+        }
+        return new ProductPage(productList, from, to, rankedIds.size(), to < rankedIds.size());
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        if (!searchIndex.isBuilt()) {
+            return delegate.searchProductFuzzy(keyword, maxResults);
+        }
+
+        ArrayList<Product> productList = new ArrayList<>();
+        for (ProductSearchIndex.FuzzyMatch match : searchIndex.searchFuzzy(keyword, maxResults, fuzzyTimeBudgetMillis)) {
+            Product product = delegate.searchByProductId(match.productId);
+            if (product != null) {
+                productList.add(product);
+            }
+        }
+        return productList;
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return delegate.searchByProductId(productId);
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        return delegate.purchaseStocks(proList); // only stock changes, descriptions stay indexed
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        return delegate.purchaseStocksBatch(trolleys);
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        delegate.releaseStocks(proList);
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return delegate.reserveStocks(reservation);
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        return delegate.endReservation(reservation, releaseStock);
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return delegate.getOpenReservations();
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        return delegate.adjustStocks(stockChanges);
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        delegate.updateProduct(id, des, price, imageName, stock);
+        if (delegate.searchByProductId(id) != null) {
+            searchIndex.put(id, des);
+        }
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        boolean updated = delegate.updateProduct(id, des, price, imageName, stock, expectedVersion);
+        if (updated) {
+            searchIndex.put(id, des);
+        }
+        return updated;
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        delegate.deleteProduct(id);
+        searchIndex.remove(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        delegate.insertNewProduct(id, des, price, image, stock);
+        searchIndex.put(id, des);
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        ArrayList<Product> rejectedProducts = delegate.insertNewProducts(products);
+        HashSet<String> rejectedIds = new HashSet<>();
+        for (Product product : rejectedProducts) {
+            rejectedIds.add(product.getProductId());
+        }
+        for (Product product : products) {
+            if (!rejectedIds.contains(product.getProductId())) {
+                searchIndex.put(product.getProductId(), product.getProductDescription());
+            }
+        }
+        return rejectedProducts;
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return delegate.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return delegate.getProductsAfter(afterProductId, pageSize);
+    }
+}
@@ -0,0 +1,165 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LowStockDatabaseRW is a decorator that keeps the shared LowStockMonitor up to date with every stock change
+ * made through it, so low-stock alerts need no queries of their own.
+ *
+ * - purchaseStocks and releaseStocks change the monitored stock by the trolley quantities,
+ *   but only if the wrapped DatabaseRW changed the database (all products or none).
+ *   purchaseStocksBatch does the same for every trolley that could be bought.
+ * - reserveStocks and endReservation (with the stock given back) do the same as purchaseStocks and releaseStocks.
+ * - adjustStocks applies the stock changes once they were all made.
+ * - insertNewProduct(s) and updateProduct set the stock of the product, deleteProduct forgets it.
+ * - Everything else is passed through unchanged.
+ *
+ * It is the outermost decorator by default (see DatabaseRWFactory), so it sees the calls of every client.
+ */
+
+public class LowStockDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final LowStockMonitor monitor;
+
+    public LowStockDatabaseRW(DatabaseRW delegate, LowStockMonitor monitor) {
+        this.delegate = delegate;
+        this.monitor = monitor;
+    }
+
+    // the trolley quantities per product, negated for a purchase
+    private static Map<String, Integer> stockChanges(List<Product> proList, int sign) {
+        HashMap<String, Integer> changes = new HashMap<>();
+        for (Product product : proList) {
+            changes.merge(product.getProductId(), sign * product.getOrderedQuantity(), Integer::sum);
+        }
+        return changes;
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return delegate.searchProduct(keyword);
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return delegate.searchProductPage(keyword, offset, pageSize);
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return delegate.searchProductFuzzy(keyword, maxResults);
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return delegate.searchByProductId(productId);
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> insufficientProducts = delegate.purchaseStocks(proList);
+        if (insufficientProducts.isEmpty()) {
+            monitor.stockChanged(stockChanges(proList, -1));
+        }
+        return insufficientProducts;
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        List<ArrayList<Product>> results = delegate.purchaseStocksBatch(trolleys);
+        ArrayList<Product> purchased = new ArrayList<>();
+        for (int i = 0; i < trolleys.size(); i++) {
+            if (results.get(i).isEmpty()) {
+                purchased.addAll(trolleys.get(i));
+            }
+        }
+        monitor.stockChanged(stockChanges(purchased, -1));
+        return results;
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        delegate.releaseStocks(proList);
+        monitor.stockChanged(stockChanges(proList, 1));
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        ArrayList<Product> lines = new ArrayList<>(reservation.getLines());
+        ArrayList<Product> insufficientProducts = delegate.reserveStocks(reservation);
+        if (insufficientProducts.isEmpty()) {
+            monitor.stockChanged(stockChanges(lines, -1));
+        }
+        return insufficientProducts;
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        boolean ended = delegate.endReservation(reservation, releaseStock);
+        if (ended && releaseStock) {
+            monitor.stockChanged(stockChanges(new ArrayList<>(reservation.getLines()), 1));
+        }
+        return ended;
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return delegate.getOpenReservations();
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        ArrayList<String> failedIds = delegate.adjustStocks(stockChanges);
+        if (failedIds.isEmpty()) {
+            monitor.stockChanged(stockChanges);
+        }
+        return failedIds;
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        delegate.updateProduct(id, des, price, imageName, stock);
+        monitor.productChanged(id, des, stock, false); // an unknown ID was not updated
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        boolean updated = delegate.updateProduct(id, des, price, imageName, stock, expectedVersion);
+        if (updated) {
+            monitor.productChanged(id, des, stock, false);
+        }
+        return updated;
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        delegate.deleteProduct(id);
+        monitor.productRemoved(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        delegate.insertNewProduct(id, des, price, image, stock);
+        monitor.productChanged(id, des, stock, true);
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        ArrayList<Product> rejectedProducts = delegate.insertNewProducts(products);
+        HashSet<String> rejectedIds = new HashSet<>();
+        for (Product product : rejectedProducts) {
+            rejectedIds.add(product.getProductId());
+        }
+        for (Product product : products) {
+            if (!rejectedIds.contains(product.getProductId())) {
+                monitor.productChanged(product.getProductId(), product.getProductDescription(),
+                        product.getStockQuantity(), true);
+            }
+        }
+        return rejectedProducts;
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return delegate.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return delegate.getProductsAfter(afterProductId, pageSize);
+    }
+}
@@ -0,0 +1,181 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * LowStockMonitor knows the stock level of every product and tells its listeners (the warehouse clients)
+ * as soon as a product falls below the low-stock threshold, or is restocked to the threshold or above.
+ * Before, a low stock was only noticed in the debug log when DerbyRW happened to read the product.
+ *
+ * How it works:
+ * - The stock levels are kept in memory, sorted by stock then product ID, so the products below the threshold
+ *   are the head of the sorted set and getLowStock returns them lowest first without scanning the catalogue.
+ * - The levels are filled from the database once at startup (see DatabaseRWFactory.warmUp) and then kept up to
+ *   date by LowStockDatabaseRW from the writes that go through it: purchases and releases change the level by the
+ *   quantities of the trolley, adjustStocks by its stock changes, and inserts and updates set it.
+ *   ProductTable is never queried again to find low stock.
+ * - A change that crosses the threshold is pushed to every Listener, on the thread that made the change,
+ *   after the levels were updated. Listeners must return quickly; the warehouse hands the event to its UI thread.
+ * - Writes made outside this process (e.g. by another shop on the same network database) are not seen
+ *   until the next rebuild.
+ *
+ * The threshold is DatabaseRWFactory.lowStockThreshold (happyshop.db.lowStock.threshold): a product is low
+ * while its stock is below it. It is safe to use from several threads.
+ */
+
+public class LowStockMonitor {
+
+    /**
+     * The stock level of one product, as known to the monitor.
+     */
+    public record StockLevel(String productId, String description, int stock) {
+    }
+
+    /**
+     * Told when a product crosses the threshold.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param level the new stock level of the product
+         * @param low   true if the product fell below the threshold (or was added below it),
+         *              false if it was restocked to the threshold or above, or deleted
+         */
+        void thresholdCrossed(StockLevel level, boolean low);
+    }
+
+    private static final Comparator<StockLevel> BY_STOCK =
+            Comparator.comparingInt(StockLevel::stock).thenComparing(StockLevel::productId);
+
+    private final int threshold;
+    private final HashMap<String, StockLevel> levels = new HashMap<>(); // productID -> level
+    private final TreeSet<StockLevel> sortedLevels = new TreeSet<>(BY_STOCK); // guarded by this, like levels
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean built = false;
+
+    public LowStockMonitor(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    // true once the levels have been filled from the database
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Replaces all levels with the stock of the given products. Called at startup; nobody is told.
+     */
+    public synchronized void rebuild(Collection<Product> products) {
+        levels.clear();
+        sortedLevels.clear();
+        for (Product product : products) {
+            StockLevel level = new StockLevel(product.getProductId(), product.getProductDescription(),
+                    product.getStockQuantity());
+            levels.put(level.productId(), level);
+            sortedLevels.add(level);
+        }
+        built = true;
+    }
+
+    /**
+     * The products below the threshold, lowest stock first.
+     */
+    public synchronized List<StockLevel> getLowStock() {
+        return new ArrayList<>(sortedLevels.headSet(new StockLevel("", "", threshold), false));
+    }
+
+    // the known stock level of a product, or null
+    public synchronized StockLevel getLevel(String productId) {
+        return levels.get(productId);
+    }
+
+    /**
+     * Changes the stock of several products by the given amounts (negative for purchases).
+     * Products the monitor does not know are ignored.
+     */
+    public void stockChanged(Map<String, Integer> stockChanges) {
+        List<StockLevel> crossings = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Integer> change : stockChanges.entrySet()) {
+                StockLevel old = levels.get(change.getKey());
+                if (old != null) {
+                    replace(old, new StockLevel(old.productId(), old.description(), old.stock() + change.getValue()),
+                            crossings);
+                }
+            }
+        }
+        notifyListeners(crossings);
+    }
+
+    /**
+     * Sets the description and stock of a new product, or of an existing one if {@code addIfMissing} is false.
+     */
+    public void productChanged(String productId, String description, int stock, boolean addIfMissing) {
+        List<StockLevel> crossings = new ArrayList<>();
+        synchronized (this) {
+            StockLevel old = levels.get(productId);
+            if (old == null && !addIfMissing) return;
+            replace(old, new StockLevel(productId, description, stock), crossings);
+        }
+        notifyListeners(crossings);
+    }
+
+    /**
+     * Forgets a deleted product; if it was low, the listeners are told it no longer is.
+     */
+    public void productRemoved(String productId) {
+        StockLevel old;
+        synchronized (this) {
+            old = levels.remove(productId);
+            if (old == null) return;
+            sortedLevels.remove(old);
+        }
+        if (old.stock() < threshold) {
+            for (Listener listener : listeners) {
+                listener.thresholdCrossed(old, false);
+            }
+        }
+    }
+
+    // swaps the old level (null for a new product) for the new one, and notes a threshold crossing
+    private void replace(StockLevel old, StockLevel level, List<StockLevel> crossings) {
+        if (old != null) sortedLevels.remove(old);
+        levels.put(level.productId(), level);
+        sortedLevels.add(level);
+        boolean wasLow = old != null && old.stock() < threshold;
+        boolean isLow = level.stock() < threshold;
+        if (wasLow != isLow) {
+            crossings.add(level);
+        }
+    }
+
+    // tells the listeners outside the lock, so a listener can call back into the monitor
+    private void notifyListeners(List<StockLevel> crossings) {
+        for (StockLevel level : crossings) {
+            for (Listener listener : listeners) {
+                listener.thresholdCrossed(level, level.stock() < threshold);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.utility.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MappedOrderStore keeps the state of every order in a fixed-width record of a memory-mapped file,
+ * found directly by the order ID. A state change writes a timestamp and one state byte in place,
+ * instead of rewriting and moving the text file of the order.
+ *
+ * Files in its folder (orders/mapped):
+ * - orderStates.dat: a 64-byte header (magic, record size, highest order ID), then one 64-byte record per order ID:
+ *     byte 0       state: 0 for no order, else 1 + OrderState.ordinal()
+ *     byte 1       length of the customer type
+ *     bytes 2-17   customer type, ASCII
+ *     bytes 24-55  epoch millis of entering Ordered, Progressing, Ready and Collected (0 if not yet)
+ *     bytes 56-63  offset of the order text in orderItems.dat
+ * - orderItems.dat: append-only, the text of every order as created (Order.orderDetails, with its line items),
+ *   each as [length][UTF-8 bytes]. readOrderDetail fills in the current state and times from the record.
+ *
+ * How it works:
+ * - The state byte is written last, so a record is either complete or still empty after a crash,
+ *   and a state change is a single byte write that needs no lock file.
+ * - The mapping grows (doubling) when an order ID beyond it is stored.
+ * - forceEvery sets the fsync policy: 1 forces the changed pages to disk after every write,
+ *   N after every N writes, 0 only on close (the operating system writes them back meanwhile, but a power cut
+ *   can lose the latest changes).
+ * - If a projection is given (normally a FileOrderStore), the text files are kept up to date as well,
+ *   as a readable copy.
+ *
+ * Like the OrderJournal, it belongs to one process. It is safe to use from several threads.
+ */
+
+public class MappedOrderStore implements OrderStore {
+    private static final Logger log = Logger.getLogger(MappedOrderStore.class);
+
+    private static final int MAGIC = 0x48534F4D; // "HSOM"
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 64;
+    private static final int MAX_CUSTOMER_TYPE_BYTES = 16;
+    private static final int CUSTOMER_TYPE_OFFSET = 2;
+    private static final int TIMES_OFFSET = 24;
+    private static final int ITEMS_OFFSET = 56;
+    private static final int INITIAL_CAPACITY = 1024; // order IDs mapped at first
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final FileChannel stateChannel;
+    private final FileChannel itemsChannel;
+    private final int forceEvery;
+    private final OrderStore projection;
+    private MappedByteBuffer states;
+    private int capacity;          // order IDs below this are mapped
+    private int highestOrderId;
+    private int unforcedWrites;
+
+    /**
+     * Opens the store in the given folder, creating its files if missing.
+     *
+     * @param forceEvery force the changes to disk after this many writes, 0 for only on close
+     * @param projection the store to copy every change to, or null
+     */
+    public MappedOrderStore(Path storeDir, int forceEvery, OrderStore projection) throws IOException {
+        this.forceEvery = forceEvery;
+        this.projection = projection;
+        Files.createDirectories(storeDir);
+        stateChannel = FileChannel.open(storeDir.resolve("orderStates.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        itemsChannel = FileChannel.open(storeDir.resolve("orderItems.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = stateChannel.size();
+        boolean isNew = size < HEADER_BYTES;
+        capacity = isNew ? INITIAL_CAPACITY : (int) ((size - HEADER_BYTES) / RECORD_BYTES);
+        states = stateChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+        if (isNew) {
+            states.putInt(0, MAGIC).putInt(4, RECORD_BYTES).putInt(8, 0);
+            states.force();
+        } else if (states.getInt(0) != MAGIC || states.getInt(4) != RECORD_BYTES) {
+            throw new IOException("Not an order state file: " + storeDir.resolve("orderStates.dat"));
+        }
+        highestOrderId = states.getInt(8);
+        log.info("Mapped order store opened, highest order ID " + highestOrderId);
+    }
+
+    public synchronized void createOrder(Order order) throws IOException {
+        int orderId = order.getOrderId();
+        if (orderId <= 0) throw new IOException("Order ID must be positive: " + orderId);
+        ensureCapacity(orderId);
+        int record = recordOffset(orderId);
+        if (states.get(record) != 0) {
+            throw new IOException("Order " + orderId + " already exists in the order store");
+        }
+
+        // the line items first, so a record never points to text that is not written
+        byte[] text = order.orderDetails().getBytes(StandardCharsets.UTF_8);
+        long itemsOffset = itemsChannel.size();
+        ByteBuffer item = ByteBuffer.allocate(4 + text.length).putInt(text.length).put(text).flip();
+        while (item.hasRemaining()) {
+            itemsChannel.write(item, itemsOffset + item.position());
+        }
+        if (forceEvery > 0) itemsChannel.force(false);
+
+        byte[] customerType = order.getCustomerType().getBytes(StandardCharsets.US_ASCII);
+        int typeLength = Math.min(customerType.length, MAX_CUSTOMER_TYPE_BYTES);
+        states.put(record + 1, (byte) typeLength);
+        states.put(record + CUSTOMER_TYPE_OFFSET, customerType, 0, typeLength);
+        states.putLong(record + TIMES_OFFSET + 8 * order.getState().ordinal(), System.currentTimeMillis());
+        states.putLong(record + ITEMS_OFFSET, itemsOffset);
+        if (orderId > highestOrderId) { // before the state byte: a scan skips an empty record, never misses a full one
+            highestOrderId = orderId;
+            states.putInt(8, highestOrderId);
+        }
+        states.put(record, (byte) (1 + order.getState().ordinal())); // last: the record is complete now
+        written();
+
+        if (projection != null) {
+            try {
+                projection.createOrder(order);
+            } catch (IOException e) {
+                log.warn("Order " + orderId + " stored, but its text file was not written: " + e);
+            }
+        }
+    }
+
+    public synchronized boolean changeState(int orderId, OrderState oldState, OrderState newState) throws IOException {
+        if (stateOf(orderId) != oldState) {
+            return false;
+        }
+        int record = recordOffset(orderId);
+        states.putLong(record + TIMES_OFFSET + 8 * newState.ordinal(), System.currentTimeMillis());
+        states.put(record, (byte) (1 + newState.ordinal())); // the change itself: one byte in place
+        written();
+
+        if (projection != null) {
+            try {
+                if (!projection.changeState(orderId, oldState, newState)) {
+                    log.warn("Text file of order " + orderId + " was not in " + oldState + ", not moved");
+                }
+            } catch (IOException e) {
+                log.warn("Order " + orderId + " stored as " + newState + ", but its text file was not moved: " + e);
+            }
+        }
+        return true;
+    }
+
+    public synchronized String readOrderDetail(int orderId, OrderState state) throws IOException {
+        OrderState current = stateOf(orderId);
+        if (current == null) {
+            throw new IOException("Order not found in the order store: " + orderId);
+        }
+        int record = recordOffset(orderId);
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long itemsOffset = states.getLong(record + ITEMS_OFFSET);
+        itemsChannel.read(length, itemsOffset);
+        ByteBuffer text = ByteBuffer.allocate(length.flip().getInt());
+        while (text.hasRemaining() && itemsChannel.read(text, itemsOffset + 4 + text.position()) >= 0) {
+            // read the whole text
+        }
+        String detail = new String(text.array(), StandardCharsets.UTF_8);
+
+        // fill in the state changes since the order was created, as the text files would show them
+        for (OrderState passed : OrderState.values()) {
+            long time = states.getLong(record + TIMES_OFFSET + 8 * passed.ordinal());
+            if (passed != OrderState.Ordered && time > 0) {
+                detail = OrderFileManager.updateOrderDetail(detail, passed, LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(time), ZoneId.systemDefault()).format(DATE_TIME));
+            }
+        }
+        return detail.replaceFirst("(?m)^State:.*$", "State: " + current);
+    }
+
+    public synchronized List<StoredOrder> loadOpenOrders() {
+        List<StoredOrder> open = new ArrayList<>();
+        for (int orderId = 1; orderId <= highestOrderId; orderId++) {
+            OrderState state = stateOf(orderId);
+            if (state != null && state != OrderState.Collected) {
+                open.add(new StoredOrder(orderId, state, customerTypeOf(orderId)));
+            }
+        }
+        return open;
+    }
+
+    public synchronized OrderState findState(int orderId) {
+        return stateOf(orderId);
+    }
+
+    /**
+     * The time an order entered a state, in epoch milliseconds, or 0 if it has not (or the order is unknown).
+     */
+    public synchronized long getStateTime(int orderId, OrderState state) {
+        if (stateOf(orderId) == null) return 0;
+        return states.getLong(recordOffset(orderId) + TIMES_OFFSET + 8 * state.ordinal());
+    }
+
+    public synchronized void close() throws IOException {
+        states.force();
+        itemsChannel.force(true);
+        stateChannel.close();
+        itemsChannel.close();
+        if (projection != null) {
+            projection.close();
+        }
+    }
+
+    private OrderState stateOf(int orderId) {
+        if (orderId <= 0 || orderId >= capacity) return null;
+        byte state = states.get(recordOffset(orderId));
+        return state == 0 ? null : OrderState.values()[state - 1];
+    }
+
+    private String customerTypeOf(int orderId) {
+        int record = recordOffset(orderId);
+        byte[] customerType = new byte[states.get(record + 1)];
+        states.get(record + CUSTOMER_TYPE_OFFSET, customerType);
+        return new String(customerType, StandardCharsets.US_ASCII);
+    }
+
+    private static int recordOffset(int orderId) {
+        return HEADER_BYTES + orderId * RECORD_BYTES;
+    }
+
+    // maps a larger file when the order ID is beyond the mapping
+    private void ensureCapacity(int orderId) throws IOException {
+        if (orderId < capacity) return;
+        states.force();
+        long newCapacity = Math.max(2L * capacity, orderId + 1L);
+        if (HEADER_BYTES + newCapacity * RECORD_BYTES > Integer.MAX_VALUE) {
+            newCapacity = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+            if (orderId >= newCapacity) throw new IOException("Order ID too large for the order store: " + orderId);
+        }
+        capacity = (int) newCapacity;
+        states = stateChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+    }
+
+    private void written() {
+        if (forceEvery > 0 && ++unforcedWrites >= forceEvery) {
+            states.force();
+            unforcedWrites = 0;
+        }
+    }
+}
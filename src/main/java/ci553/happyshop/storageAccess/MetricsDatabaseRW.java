@@ -0,0 +1,132 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MetricsDatabaseRW is a decorator that times every call to the wrapped DatabaseRW and records it
+ * in a shared DatabaseMetrics (count, failures, average and slowest time per operation).
+ * Enabled with the "metrics" decorator in DatabaseRWFactory; where it is placed in the decorator list
+ * decides what is measured, e.g. before "cache" it times only the calls that reach the database.
+ */
+
+public class MetricsDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final DatabaseMetrics metrics;
+
+    // one call to the wrapped DatabaseRW
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws SQLException;
+    }
+
+    public MetricsDatabaseRW(DatabaseRW delegate, DatabaseMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    private <T> T measure(String operation, Call<T> call) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(operation, System.nanoTime() - start, failed);
+        }
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return measure("searchProduct", () -> delegate.searchProduct(keyword));
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return measure("searchProductPage", () -> delegate.searchProductPage(keyword, offset, pageSize));
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return measure("searchByProductId", () -> delegate.searchByProductId(productId));
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return measure("searchProductFuzzy", () -> delegate.searchProductFuzzy(keyword, maxResults));
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        return measure("purchaseStocks", () -> delegate.purchaseStocks(proList));
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        return measure("purchaseStocksBatch", () -> delegate.purchaseStocksBatch(trolleys));
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        measure("releaseStocks", () -> {
+            delegate.releaseStocks(proList);
+            return null;
+        });
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return measure("reserveStocks", () -> delegate.reserveStocks(reservation));
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        return measure("endReservation", () -> delegate.endReservation(reservation, releaseStock));
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return measure("getOpenReservations", delegate::getOpenReservations);
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        return measure("adjustStocks", () -> delegate.adjustStocks(stockChanges));
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        measure("updateProduct", () -> {
+            delegate.updateProduct(id, des, price, imageName, stock);
+            return null;
+        });
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        return measure("updateProduct", () -> delegate.updateProduct(id, des, price, imageName, stock, expectedVersion));
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        measure("deleteProduct", () -> {
+            delegate.deleteProduct(id);
+            return null;
+        });
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        measure("insertNewProduct", () -> {
+            delegate.insertNewProduct(id, des, price, image, stock);
+            return null;
+        });
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        return measure("insertNewProducts", () -> delegate.insertNewProducts(products));
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return measure("isProIdAvailable", () -> delegate.isProIdAvailable(productId));
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return measure("getAllProducts", delegate::getAllProducts);
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return measure("getProductsAfter", () -> delegate.getProductsAfter(afterProductId, pageSize));
+    }
+}
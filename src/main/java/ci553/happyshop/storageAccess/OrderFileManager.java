@@ -1,16 +1,21 @@
 package ci553.happyshop.storageAccess;
 
 import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.utility.Logger;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages creation, updating, and relocation of order files.
@@ -40,16 +45,26 @@ import java.time.format.DateTimeFormatter;
  *  1. update state from Ordered to Progressing, (then move the file to progressing folder)
  *  2. update state from Progressing to Collected (then move the file to collected folder)
  * </p>
+ *
+ * <p>
+ * Clients in several JVMs can share the orders folder (see StorageServer). A state change therefore holds
+ * an exclusive lock on orders/orderState.lock, as OrderCounter does on its file, so that two pickers cannot
+ * move the same order at once; the one that comes second finds the file gone and gets false.
+ * </p>
  */
 
 public class OrderFileManager {
+    private static final Logger log = Logger.getLogger(OrderFileManager.class);
+    private static final String STATE_LOCK_FILE = "orderState.lock";
+    // a JVM may hold a FileLock only once, so the threads of this JVM take turns before locking the file
+    private static final ReentrantLock stateLock = new ReentrantLock();
 
     //Creates a new order file in the specified directory with the given content.
     public static void createOrderFile(Path dir, int orderId, String orderDetail) throws IOException {
         // Week 6 fix: Ensure parent directories exist before creating file
         if (Files.notExists(dir)) {
             Files.createDirectories(dir);
-            System.out.println("Week 6 Debug: Created directory: " + dir);
+            log.info("Created directory: " + dir);
         }
         
         String orderFileName = String.valueOf(orderId)+".txt";
@@ -59,11 +74,11 @@ public class OrderFileManager {
             try (BufferedWriter writer = Files.newBufferedWriter(path)) {
                 writer.write(orderDetail);
                 writer.newLine();
-                System.out.println(path + " created");
+                log.debug(() -> path + " created");
             }
         }
         else{
-            System.out.println(path + " already exists");
+            log.warn(path + " already exists");
         }
     }
 
@@ -71,11 +86,23 @@ public class OrderFileManager {
     //Ordered state in orders/ordered
     //Progressing state in orders/progressing
     //Collected state in orders/collected
+    // Returns false if the order file is not in sourceDir, e.g. because another JVM moved it first.
     public static boolean updateAndMoveOrderFile(int orderId, OrderState newState, Path sourceDir, Path targetDir) throws IOException {
+        Path lockPath = sourceDir.resolveSibling(STATE_LOCK_FILE); // eg. orders/orderState.lock
+        stateLock.lock();
+        try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            return updateAndMove(orderId, newState, sourceDir, targetDir);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private static boolean updateAndMove(int orderId, OrderState newState, Path sourceDir, Path targetDir) throws IOException {
         // Week 6 fix: Ensure target directory exists before moving file
         if (Files.notExists(targetDir)) {
             Files.createDirectories(targetDir);
-            System.out.println("Week 6 Debug: Created target directory: " + targetDir);
+            log.info("Created target directory: " + targetDir);
         }
         
         String orderFileName = String.valueOf(orderId)+".txt";
@@ -88,7 +115,7 @@ public class OrderFileManager {
             return true;
         }
         else{
-            System.out.println(sourcePath + " not found in ");
+            log.warn(sourcePath + " not found");
             return false;
         }
     }
@@ -107,15 +134,9 @@ public class OrderFileManager {
         try (BufferedReader reader = Files.newBufferedReader(sourcePath, StandardCharsets.UTF_8);
              BufferedWriter writer = Files.newBufferedWriter(tempFilePath, StandardCharsets.UTF_8)) {
             String line;
+            String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
             while ((line = reader.readLine()) != null) {
-                if (line.startsWith("State")) {
-                    line = "State: " + newState;
-                } else if (newState.equals(OrderState.Progressing) && line.startsWith("ProgressingDateTime")) {
-                    line = "ProgressingDateTime: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                } else if (newState.equals(OrderState.Collected) && line.startsWith("CollectedDateTime")) {
-                    line = "CollectedDateTime: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                }
-                writer.write(line);
+                writer.write(updateDetailLine(line, newState, now));
                 writer.newLine();
             }
         }
@@ -124,11 +145,35 @@ public class OrderFileManager {
         try {
             Files.move(tempFilePath, sourcePath, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            System.err.println("Move failed: " + e.getMessage());
+            log.error("Move failed: " + tempFilePath + " -> " + sourcePath, e);
             Files.deleteIfExists(tempFilePath); // Delete temp file ONLY IF move failed and it still exists
         }
     }
 
+    /**
+     * Applies a state change to the text of an order (see Order.orderDetails): the State line and,
+     * for Progressing and Collected, the time of the change. Also used by the stores that keep the text elsewhere.
+     */
+    public static String updateOrderDetail(String orderDetail, OrderState newState, String dateTime) {
+        StringBuilder updated = new StringBuilder();
+        for (String line : orderDetail.split("\n", -1)) {
+            if (!updated.isEmpty()) updated.append('\n');
+            updated.append(updateDetailLine(line, newState, dateTime));
+        }
+        return updated.toString();
+    }
+
+    private static String updateDetailLine(String line, OrderState newState, String dateTime) {
+        if (line.startsWith("State")) {
+            return "State: " + newState;
+        } else if (newState.equals(OrderState.Progressing) && line.startsWith("ProgressingDateTime")) {
+            return "ProgressingDateTime: " + dateTime;
+        } else if (newState.equals(OrderState.Collected) && line.startsWith("CollectedDateTime")) {
+            return "CollectedDateTime: " + dateTime;
+        }
+        return line;
+    }
+
     //Reads the content of an order file as a single string.
     public static String readOrderFile(Path dir, int orderId) throws IOException {
         String orderFileName = String.valueOf(orderId)+".txt";
@@ -0,0 +1,92 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.utility.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderFolderWatcher tells its listener when order files are created, changed or moved in the order state folders,
+ * so an OrderHub sees the orders placed and picked in other JVMs that share the orders folder (see StorageServer).
+ *
+ * How it works:
+ * - A WatchService is registered on every folder; a daemon thread waits for its events.
+ * - Events are debounced: after the first event the thread waits {@code debounceMillis} and drains the events
+ *   that came meanwhile, so moving an order (a temp file, a rename and a move) gives one call, not five.
+ * - The listener only learns that something changed, it re-reads the folders itself. The changes made by this JVM
+ *   are reported too; re-reading them finds nothing new.
+ */
+
+public class OrderFolderWatcher implements Closeable {
+    private static final Logger log = Logger.getLogger(OrderFolderWatcher.class);
+
+    private final List<Path> folders;
+    private final Runnable listener;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Thread thread;
+
+    public OrderFolderWatcher(List<Path> folders, Runnable listener, long debounceMillis) {
+        this.folders = folders;
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Starts watching; folders that do not exist yet are created.
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path folder : folders) {
+            Files.createDirectories(folder);
+            folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        thread = new Thread(this::watch, "order-folder-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching " + folders.size() + " order folders for changes made by other processes");
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                drain(watchService.take());
+                TimeUnit.MILLISECONDS.sleep(debounceMillis);
+                WatchKey key;
+                while ((key = watchService.poll()) != null) {
+                    drain(key);
+                }
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    log.error("Order folder listener failed", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    public synchronized void close() throws IOException {
+        if (thread == null) return;
+        thread.interrupt();
+        watchService.close();
+        thread = null;
+    }
+}
@@ -0,0 +1,502 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.utility.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * OrderJournal stores the orders as an append-only log of events: an order was created, an order changed state.
+ * A state change is one small append to the end of a file, instead of reading, rewriting, renaming and moving
+ * the text file of the order.
+ *
+ * How it works:
+ * - The events are appended to segment files in the journal folder (segment-0000000001.log, ...).
+ *   Every record is framed as [length][CRC32C checksum][event], and forced to disk before the call returns
+ *   if forceWrites is set.
+ * - The current state of every order is kept in memory and rebuilt from the journal when it is opened.
+ *   A record that is cut short or fails its checksum at the end of the last segment (a crash during the write)
+ *   is cut off; anywhere else it is an error, as the events after it cannot be trusted.
+ * - A write or force that fails while the journal is running may have left part of its record in the segment.
+ *   The segment is cut back to where the record started, so the next record does not follow a torn one;
+ *   if even that fails, the journal refuses every further write until it is opened again.
+ * - When a segment reaches segmentMaxBytes, or after snapshotEveryEvents events, the journal starts a new segment N
+ *   and writes snapshot-N.snap: the state of every order not collected yet, with its own checksum. The older
+ *   segments and snapshots are then deleted, so collected orders are compacted away and opening the journal
+ *   reads one snapshot and the few segments after it. This happens after the event that triggered it is durable,
+ *   so a failed snapshot is logged and tried again at the next event, and the event itself still succeeds.
+ * - If a projection is given (normally a FileOrderStore), every change is also made there, so the human-readable
+ *   text files under orders/ still exist. They are a copy: a failed projection write is logged, not thrown.
+ *
+ * The journal belongs to one process: clients in several JVMs must use FileOrderStore (see StorageServer).
+ * It is safe to use from several threads.
+ */
+
+public class OrderJournal implements OrderStore {
+    private static final Logger log = Logger.getLogger(OrderJournal.class);
+
+    private static final byte ORDER_CREATED = 1;
+    private static final byte STATE_CHANGED = 2;
+    private static final int SNAPSHOT_MAGIC = 0x48534F53; // "HSOS"
+    private static final int HEADER_BYTES = 8;             // record length and checksum
+    private static final int MAX_RECORD_BYTES = 16 << 20;  // a larger length is a corrupt header
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // the state of one order as rebuilt from the journal
+    private static final class JournalOrder {
+        OrderState state;
+        final String customerType;
+        String detail;                                    // the text of the order, with its current state and times
+        final long[] stateTimes = new long[OrderState.values().length]; // epoch millis of entering each state
+
+        JournalOrder(OrderState state, String customerType, String detail) {
+            this.state = state;
+            this.customerType = customerType;
+            this.detail = detail;
+        }
+    }
+
+    private final Path journalDir;
+    private final long segmentMaxBytes;
+    private final int snapshotEveryEvents;
+    private final boolean forceWrites;
+    private final OrderStore projection;                  // the readable copy, or null
+
+    private final TreeMap<Integer, JournalOrder> orders = new TreeMap<>();
+    private FileChannel segment;
+    private long segmentNumber;
+    private long segmentSize;
+    private int eventsSinceSnapshot;
+    private IOException failure;                          // a failed append that could not be undone, or null
+
+    /**
+     * Opens the journal in the given folder (created if missing) and rebuilds the orders from it.
+     *
+     * @param projection the store to copy every change to, or null
+     */
+    public OrderJournal(Path journalDir, long segmentMaxBytes, int snapshotEveryEvents, boolean forceWrites,
+                        OrderStore projection) throws IOException {
+        this.journalDir = journalDir;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.snapshotEveryEvents = snapshotEveryEvents;
+        this.forceWrites = forceWrites;
+        this.projection = projection;
+        Files.createDirectories(journalDir);
+        recover();
+    }
+
+    public synchronized void createOrder(Order order) throws IOException {
+        if (orders.containsKey(order.getOrderId())) {
+            throw new IOException("Order " + order.getOrderId() + " already exists in the journal");
+        }
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ORDER_CREATED);
+        out.writeInt(order.getOrderId());
+        out.writeLong(now);
+        out.writeByte(order.getState().ordinal());
+        out.writeUTF(order.getCustomerType());
+        writeText(out, order.orderDetails());
+        append(bytes.toByteArray());
+        applyCreated(order.getOrderId(), now, order.getState(), order.getCustomerType(), order.orderDetails());
+
+        if (projection != null) {
+            try {
+                projection.createOrder(order);
+            } catch (IOException e) {
+                log.warn("Order " + order.getOrderId() + " journaled, but its text file was not written: " + e);
+            }
+        }
+        rollIfDue();
+    }
+
+    public synchronized boolean changeState(int orderId, OrderState oldState, OrderState newState) throws IOException {
+        JournalOrder order = orders.get(orderId);
+        if (order == null || order.state != oldState) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STATE_CHANGED);
+        out.writeInt(orderId);
+        out.writeLong(now);
+        out.writeByte(newState.ordinal());
+        append(bytes.toByteArray());
+        applyStateChanged(orderId, now, newState);
+
+        if (projection != null) {
+            try {
+                if (!projection.changeState(orderId, oldState, newState)) {
+                    log.warn("Text file of order " + orderId + " was not in " + oldState + ", not moved");
+                }
+            } catch (IOException e) {
+                log.warn("Order " + orderId + " journaled as " + newState + ", but its text file was not moved: " + e);
+            }
+        }
+        rollIfDue();
+        return true;
+    }
+
+    public synchronized String readOrderDetail(int orderId, OrderState state) throws IOException {
+        JournalOrder order = orders.get(orderId);
+        if (order == null) {
+            throw new IOException("Order not found in the journal: " + orderId);
+        }
+        return order.detail;
+    }
+
+    public synchronized List<StoredOrder> loadOpenOrders() {
+        List<StoredOrder> open = new ArrayList<>();
+        for (Map.Entry<Integer, JournalOrder> entry : orders.entrySet()) {
+            if (entry.getValue().state != OrderState.Collected) {
+                open.add(new StoredOrder(entry.getKey(), entry.getValue().state, entry.getValue().customerType));
+            }
+        }
+        return open;
+    }
+
+    public synchronized OrderState findState(int orderId) {
+        JournalOrder order = orders.get(orderId);
+        return order == null ? null : order.state;
+    }
+
+    /**
+     * The time an order entered a state, in epoch milliseconds, or 0 if it has not (or the order is unknown).
+     */
+    public synchronized long getStateTime(int orderId, OrderState state) {
+        JournalOrder order = orders.get(orderId);
+        return order == null ? 0 : order.stateTimes[state.ordinal()];
+    }
+
+    // the segment files currently in the journal folder, for tests and tools
+    public synchronized List<Path> getSegments() throws IOException {
+        return listFiles("segment-", ".log");
+    }
+
+    /**
+     * Starts a new segment and writes a snapshot now, compacting the journal.
+     */
+    public synchronized void snapshot() throws IOException {
+        rollAndSnapshot();
+    }
+
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force(true);
+            segment.close();
+            segment = null;
+        }
+        if (projection != null) {
+            projection.close();
+        }
+    }
+
+    // ---------------- writing ----------------
+
+    private void append(byte[] event) throws IOException {
+        if (segment == null) throw new IOException("Order journal is closed");
+        if (failure != null) throw new IOException("Order journal stopped after a failed write, reopen it", failure);
+        CRC32C crc = new CRC32C();
+        crc.update(event);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + event.length);
+        record.putInt(event.length).putInt((int) crc.getValue()).put(event).flip();
+        try {
+            writeRecord(record);
+            if (forceWrites) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            undoAppend(e);
+            throw e;
+        }
+        segmentSize += HEADER_BYTES + event.length;
+        eventsSinceSnapshot++;
+    }
+
+    // writes a whole record at the end of the current segment
+    void writeRecord(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            segment.write(record);
+        }
+    }
+
+    // cuts off what a failed append left in the segment; if that fails too, no more writes are accepted
+    private void undoAppend(IOException cause) {
+        try {
+            segment.truncate(segmentSize);
+            segment.position(segmentSize);
+            if (forceWrites) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+            log.error("Order journal segment " + segmentNumber + " could not be cut back after a failed write, "
+                    + "no more orders are journaled until it is opened again", e);
+        }
+    }
+
+    // called after an event is durable, so a failure is only logged: the event must not be reported as failed.
+    // The journal stays usable (the segment is only replaced once the next one is open) and tries again next event
+    private void rollIfDue() {
+        if (segmentSize >= segmentMaxBytes || eventsSinceSnapshot >= snapshotEveryEvents) {
+            try {
+                rollAndSnapshot();
+            } catch (IOException e) {
+                log.warn("Order journal snapshot failed, retried at the next event: " + e);
+            }
+        }
+    }
+
+    // starts segment N+1, snapshots the orders not collected into snapshot-(N+1), then deletes what it replaces
+    private void rollAndSnapshot() throws IOException {
+        FileChannel previous = segment;
+        previous.force(true);
+        openSegment(segmentNumber + 1); // if this fails, the journal goes on in the current segment
+        previous.close();
+
+        orders.values().removeIf(order -> order.state == OrderState.Collected);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(orders.size());
+        for (Map.Entry<Integer, JournalOrder> entry : orders.entrySet()) {
+            JournalOrder order = entry.getValue();
+            out.writeInt(entry.getKey());
+            out.writeByte(order.state.ordinal());
+            out.writeUTF(order.customerType);
+            writeText(out, order.detail);
+            for (long time : order.stateTimes) {
+                out.writeLong(time);
+            }
+        }
+        byte[] body = bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        ByteBuffer file = ByteBuffer.allocate(12 + body.length);
+        file.putInt(SNAPSHOT_MAGIC).putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+
+        Path snapshotPath = journalDir.resolve(String.format("snapshot-%010d.snap", segmentNumber));
+        Path tempPath = journalDir.resolve(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (file.hasRemaining()) {
+                channel.write(file);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        eventsSinceSnapshot = 0;
+
+        // compaction: everything before the snapshot is in it now
+        for (Path old : listFiles("segment-", ".log")) {
+            if (fileNumber(old) < segmentNumber) Files.delete(old);
+        }
+        for (Path old : listFiles("snapshot-", ".snap")) {
+            if (fileNumber(old) < segmentNumber) Files.delete(old);
+        }
+        log.info("Order journal snapshot " + snapshotPath.getFileName() + " written, " + orders.size() + " open orders");
+    }
+
+    private void openSegment(long number) throws IOException {
+        Path path = journalDir.resolve(String.format("segment-%010d.log", number));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            channel.position(size);
+            segmentSize = size;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        segment = channel;
+        segmentNumber = number;
+    }
+
+    // ---------------- recovery ----------------
+
+    private void recover() throws IOException {
+        long base = 0;
+        List<Path> snapshots = listFiles("snapshot-", ".snap");
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (loadSnapshot(snapshots.get(i))) {
+                base = fileNumber(snapshots.get(i));
+                break;
+            }
+            log.warn("Order journal snapshot " + snapshots.get(i).getFileName() + " is damaged, trying an older one");
+            orders.clear();
+        }
+
+        List<Path> segments = new ArrayList<>();
+        for (Path path : listFiles("segment-", ".log")) {
+            if (fileNumber(path) >= base) segments.add(path);
+        }
+        int events = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            events += replaySegment(segments.get(i), i == segments.size() - 1);
+        }
+        eventsSinceSnapshot = events;
+
+        long last = segments.isEmpty() ? Math.max(base, 1) : fileNumber(segments.get(segments.size() - 1));
+        openSegment(last);
+        log.info("Order journal opened: " + orders.size() + " orders from " + (base > 0 ? "a snapshot and " : "")
+                + events + " events in " + segments.size() + " segments");
+    }
+
+    private boolean loadSnapshot(Path path) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        if (file.length < 12) return false;
+        ByteBuffer header = ByteBuffer.wrap(file, 0, 12);
+        int magic = header.getInt();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (magic != SNAPSHOT_MAGIC || length != file.length - 12) return false;
+        CRC32C crc = new CRC32C();
+        crc.update(file, 12, length);
+        if ((int) crc.getValue() != checksum) return false;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(file, 12, length));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int orderId = in.readInt();
+            OrderState state = OrderState.values()[in.readByte()];
+            JournalOrder order = new JournalOrder(state, in.readUTF(), readText(in));
+            for (int s = 0; s < order.stateTimes.length; s++) {
+                order.stateTimes[s] = in.readLong();
+            }
+            orders.put(orderId, order);
+        }
+        return true;
+    }
+
+    // applies the events of one segment, returns how many; a damaged tail of the last segment is cut off
+    private int replaySegment(Path path, boolean lastSegment) throws IOException {
+        int events = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer content = ByteBuffer.allocate((int) size);
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // read the whole segment in one go
+            }
+            content.flip();
+
+            while (content.remaining() > 0) {
+                int start = content.position();
+                byte[] event = nextRecord(content);
+                if (event == null) {
+                    if (!lastSegment) {
+                        throw new IOException("Order journal segment " + path.getFileName() + " is damaged at byte "
+                                + start + ", the events after it cannot be trusted");
+                    }
+                    log.warn("Order journal " + path.getFileName() + " ends with a damaged record at byte " + start
+                            + " (" + (size - start) + " bytes), cut off");
+                    channel.truncate(start);
+                    channel.force(true);
+                    break;
+                }
+                applyEvent(event);
+                events++;
+            }
+        }
+        return events;
+    }
+
+    // the next complete record with a matching checksum, or null
+    private static byte[] nextRecord(ByteBuffer content) {
+        if (content.remaining() < HEADER_BYTES) return null;
+        int length = content.getInt();
+        int checksum = content.getInt();
+        if (length <= 0 || length > MAX_RECORD_BYTES || content.remaining() < length) return null;
+        byte[] event = new byte[length];
+        content.get(event);
+        CRC32C crc = new CRC32C();
+        crc.update(event);
+        return (int) crc.getValue() == checksum ? event : null;
+    }
+
+    private void applyEvent(byte[] event) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(event));
+        byte type = in.readByte();
+        int orderId = in.readInt();
+        long time = in.readLong();
+        OrderState state = OrderState.values()[in.readByte()];
+        if (type == ORDER_CREATED) {
+            applyCreated(orderId, time, state, in.readUTF(), readText(in));
+        } else if (type == STATE_CHANGED) {
+            applyStateChanged(orderId, time, state);
+        } else {
+            throw new IOException("Unknown order journal event type " + type);
+        }
+    }
+
+    private void applyCreated(int orderId, long time, OrderState state, String customerType, String detail) {
+        JournalOrder order = new JournalOrder(state, customerType, detail);
+        order.stateTimes[state.ordinal()] = time;
+        orders.put(orderId, order);
+    }
+
+    private void applyStateChanged(int orderId, long time, OrderState newState) {
+        JournalOrder order = orders.get(orderId);
+        if (order == null) return; // collected and compacted away
+        order.state = newState;
+        order.stateTimes[newState.ordinal()] = time;
+        String dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).format(DATE_TIME);
+        order.detail = OrderFileManager.updateOrderDetail(order.detail, newState, dateTime);
+    }
+
+    // ---------------- helpers ----------------
+
+    // order texts can be longer than writeUTF allows
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) throw new EOFException("Bad text length " + length);
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    // the files with the given prefix and suffix, by number
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long fileNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+}
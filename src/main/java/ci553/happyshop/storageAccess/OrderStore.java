@@ -0,0 +1,64 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.orderManagement.OrderState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The OrderStore interface defines where OrderHub keeps its orders, as DatabaseRW does for the products.
+ * It is implemented by:
+ * - FileOrderStore, one text file per order in a folder per state (orders/ordered, orders/progressing, ...)
+ * - OrderJournal, an append-only event log, which can keep the text files up to date as a readable copy
+ * - MappedOrderStore, fixed-width state records in a memory-mapped file, changed in place, also with the text files
+ *
+ * The implementation is chosen by OrderStoreFactory (happyshop.orders.store).
+ */
+
+public interface OrderStore extends Closeable {
+
+    /**
+     * An order as OrderHub needs it at startup: its ID, state and customer type.
+     */
+    record StoredOrder(int orderId, OrderState state, String customerType) {
+    }
+
+    /**
+     * Stores a new order, in the state it has (normally Ordered).
+     */
+    void createOrder(Order order) throws IOException;
+
+    /**
+     * Changes the state of an order and records the time of the change.
+     *
+     * @return false if the order is not in {@code oldState} (anymore), e.g. because another picker moved it first;
+     *         nothing is changed then
+     */
+    boolean changeState(int orderId, OrderState oldState, OrderState newState) throws IOException;
+
+    /**
+     * Returns the text of an order as shown to the picker (see Order.orderDetails), with its current state and times.
+     *
+     * @param state the state OrderHub knows the order in
+     * @throws IOException if the order is not found
+     */
+    String readOrderDetail(int orderId, OrderState state) throws IOException;
+
+    /**
+     * Returns the orders not collected yet (Ordered, Progressing and Ready), by order ID.
+     */
+    List<StoredOrder> loadOpenOrders() throws IOException;
+
+    /**
+     * Returns the current state of an order, or null if the store does not know it (anymore).
+     */
+    OrderState findState(int orderId) throws IOException;
+
+    /**
+     * Releases the files held open, called when the application stops.
+     */
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,111 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.utility.Logger;
+import ci553.happyshop.utility.StorageLocation;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The OrderStoreFactory chooses where OrderHub keeps the orders, as DatabaseRWFactory does for the products.
+ * The settings are read from the same happyshop.properties file (or -Dhappyshop.orders.* system properties).
+ *
+ * - happyshop.orders.store:
+ *     files    FileOrderStore, a text file per order in the folder of its state (default)
+ *     journal  OrderJournal, an append-only event log in orders/journal, with the text files as a copy
+ *     mapped   MappedOrderStore, fixed-width state records in a memory-mapped file in orders/mapped,
+ *              the line items in an append-only file next to it, with the text files as a copy
+ * - happyshop.orders.files.index                 keep a startup index of the open orders (orders/orderIndex.dat),
+ *                                                 read instead of every order file (default true)
+ * - happyshop.orders.files.indexEveryChanges     rewrite the index after this many order changes (and on close)
+ * - happyshop.orders.journal.textFiles            keep the text files up to date as well (default true)
+ * - happyshop.orders.journal.forceWrites          force every event to disk before returning (default true)
+ * - happyshop.orders.journal.segmentMaxBytes      start a new segment and snapshot above this size
+ * - happyshop.orders.journal.snapshotEveryEvents  or after this many events
+ * - happyshop.orders.mapped.textFiles             keep the text files up to date as well (default true)
+ * - happyshop.orders.mapped.forceEvery            force the mapped changes to disk after this many writes
+ *                                                 (default 1, every write; 0 only when the application stops)
+ *
+ * The journal, the mapped store and the startup index belong to one process, so with the derby-network backend
+ * (clients in several JVMs) the files store is used without an index, whatever the settings.
+ *
+ * Example happyshop.properties:
+ *     happyshop.orders.store=journal
+ *     happyshop.orders.journal.textFiles=false
+ */
+
+public class OrderStoreFactory {
+    private static final Logger log = Logger.getLogger(OrderStoreFactory.class);
+
+    public static String store = "files";
+    public static boolean filesIndex = true;
+    public static int filesIndexEveryChanges = 50;
+    public static boolean journalTextFiles = true;
+    public static boolean journalForceWrites = true;
+    public static long journalSegmentMaxBytes = 4L << 20;
+    public static int journalSnapshotEveryEvents = 10_000;
+    public static boolean mappedTextFiles = true;
+    public static int mappedForceEvery = 1;
+
+    static {
+        configure(DatabaseRWFactory.loadConfiguration());
+    }
+
+    /**
+     * Applies the given settings; settings not given keep their current value.
+     */
+    public static synchronized void configure(Properties properties) {
+        store = properties.getProperty("happyshop.orders.store", store).trim().toLowerCase(Locale.ROOT);
+        filesIndex = Boolean.parseBoolean(properties.getProperty("happyshop.orders.files.index",
+                String.valueOf(filesIndex)).trim());
+        filesIndexEveryChanges = DatabaseRWFactory.intSetting(properties, "happyshop.orders.files.indexEveryChanges",
+                filesIndexEveryChanges);
+        journalTextFiles = Boolean.parseBoolean(properties.getProperty("happyshop.orders.journal.textFiles",
+                String.valueOf(journalTextFiles)).trim());
+        journalForceWrites = Boolean.parseBoolean(properties.getProperty("happyshop.orders.journal.forceWrites",
+                String.valueOf(journalForceWrites)).trim());
+        journalSegmentMaxBytes = DatabaseRWFactory.longSetting(properties, "happyshop.orders.journal.segmentMaxBytes",
+                journalSegmentMaxBytes);
+        journalSnapshotEveryEvents = DatabaseRWFactory.intSetting(properties,
+                "happyshop.orders.journal.snapshotEveryEvents", journalSnapshotEveryEvents);
+        mappedTextFiles = Boolean.parseBoolean(properties.getProperty("happyshop.orders.mapped.textFiles",
+                String.valueOf(mappedTextFiles)).trim());
+        mappedForceEvery = DatabaseRWFactory.intSetting(properties, "happyshop.orders.mapped.forceEvery",
+                mappedForceEvery);
+    }
+
+    /**
+     * Creates the configured OrderStore. If the journal or mapped store cannot be opened,
+     * the text files are used instead.
+     */
+    public static synchronized OrderStore createOrderStore() {
+        // the text files as a copy of the journal or the mapped store are never read at startup: no index
+        FileOrderStore files = new FileOrderStore(StorageLocation.ordersPath);
+        switch (store) {
+            case "files":
+                return filesIndex && !DatabaseRWFactory.isNetworkBackend()
+                        ? new FileOrderStore(StorageLocation.ordersPath, StorageLocation.orderIndexPath,
+                                filesIndexEveryChanges)
+                        : files;
+            case "journal", "mapped":
+                if (DatabaseRWFactory.isNetworkBackend()) {
+                    log.warn("The order " + store + " store is not shared between JVMs, "
+                            + "using the order files with derby-network");
+                    return files;
+                }
+                try {
+                    return store.equals("journal")
+                            ? new OrderJournal(StorageLocation.orderJournalPath, journalSegmentMaxBytes,
+                                    journalSnapshotEveryEvents, journalForceWrites, journalTextFiles ? files : null)
+                            : new MappedOrderStore(StorageLocation.orderMappedStorePath, mappedForceEvery,
+                                    mappedTextFiles ? files : null);
+                } catch (IOException e) {
+                    log.error("Cannot open the order " + store + " store, using the order files", e);
+                    return files;
+                }
+            default:
+                throw new IllegalArgumentException("Unknown order store: " + store);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A JDBC connection borrowed from the ConnectionPool.
+ *
+ * It is used with try-with-resources: closing a PooledConnection does not close the
+ * underlying JDBC connection, it hands the connection back to the pool for reuse.
+ *
+ * Each pooled connection also owns a StatementCache, so statements obtained through
+ * {@link #prepareStatement(String)} are parsed and planned by the database only once per connection.
+ */
+
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private volatile long lastReturnedAt = System.currentTimeMillis();
+    private boolean borrowed = false;
+
+    PooledConnection(ConnectionPool pool, Connection connection, StatementCache statementCache) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = statementCache;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns a cached PreparedStatement for the SQL text, preparing it only on first use.
+     * The statement is owned by the cache: close the ResultSets it produces, but do not close the statement.
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return statementCache.prepare(sql);
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    void markIdle() {
+        borrowed = false;
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    // how long this connection has been waiting in the pool
+    long idleMillis() {
+        return System.currentTimeMillis() - lastReturnedAt;
+    }
+
+    //Returns the connection to the pool (calling close() twice has no further effect)
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProductCache holds product rows in memory, keyed by productID, and is shared by every
+ * CachedDatabaseRW created by DatabaseRWFactory, so an edit made through one client is seen by all of them.
+ *
+ * What is cached:
+ * - Product rows by ID, including "not found" entries, so repeated searches for a keyword that is not an ID
+ *   (e.g. "usb") do not ask the database every time.
+ * - The list of matching product IDs for each keyword searched by name.
+ *
+ * Eviction:
+ * - Every entry expires {@code ttlMillis} after it was loaded.
+ * - When more than {@code maxEntries} products are cached, the oldest entries are evicted.
+ *
+ * Consistency:
+ * Every change (update, delete, insert, purchase) increments a generation counter before it changes the maps.
+ * A value read from the database is only stored if no change happened while it was being read. The generation
+ * is checked again inside compute, while the entry is locked, so a change either comes before the store and
+ * prevents it, or comes after and overwrites it: a slow read can never put an outdated row back after an edit.
+ *
+ * Products are stored as private copies and copied again when read, because Product is mutable
+ * (e.g. setOrderedQuantity is called on trolley items).
+ */
+
+public class ProductCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, CacheEntry> products = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, KeywordEntry> keywordResults = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProductCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+    }
+
+    // A cached row; product is null when the database has no product with this ID
+    private static final class CacheEntry {
+        final Product product;
+        final long loadedAt;
+
+        CacheEntry(Product product, long loadedAt) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class KeywordEntry {
+        final List<String> productIds;
+        final long loadedAt;
+
+        KeywordEntry(List<String> productIds, long loadedAt) {
+            this.productIds = productIds;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * The result of a cache lookup by ID.
+     * {@code cached} tells whether the cache knew the answer; {@code product} may be null for a known missing ID.
+     */
+    public static final class Lookup {
+        static final Lookup MISS = new Lookup(false, null);
+        public final boolean cached;
+        public final Product product;
+
+        Lookup(boolean cached, Product product) {
+            this.cached = cached;
+            this.product = product;
+        }
+    }
+
+    // Reads the current generation, to be passed to the put methods after reading from the database
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public Lookup get(String productId) {
+        CacheEntry entry = products.get(productId);
+        if (entry == null || isExpired(entry.loadedAt)) {
+            if (entry != null) products.remove(productId, entry);
+            misses.incrementAndGet();
+            return Lookup.MISS;
+        }
+        hits.incrementAndGet();
+        return new Lookup(true, copyOf(entry.product));
+    }
+
+    /**
+     * Returns the IDs matching a name search, or null if the keyword is not cached.
+     */
+    public List<String> getKeywordResult(String keyword) {
+        String key = keyword.toLowerCase();
+        KeywordEntry entry = keywordResults.get(key);
+        if (entry == null || isExpired(entry.loadedAt)) {
+            if (entry != null) keywordResults.remove(key, entry);
+            return null;
+        }
+        return entry.productIds;
+    }
+
+    /**
+     * Stores a row read from the database (product may be null for "not found"),
+     * unless the catalogue changed since {@code readGeneration}.
+     */
+    public void putIfUnchanged(long readGeneration, String productId, Product product) {
+        if (generation.get() != readGeneration) return;
+        CacheEntry entry = new CacheEntry(copyOf(product), System.currentTimeMillis());
+        products.compute(productId, (id, old) -> generation.get() == readGeneration ? entry : old);
+        evictIfFull();
+    }
+
+    // Stores the rows and the matching IDs of a name search, unless the catalogue changed meanwhile
+    public void putKeywordResultIfUnchanged(long readGeneration, String keyword, List<Product> result) {
+        if (generation.get() != readGeneration) return;
+        long now = System.currentTimeMillis();
+        ArrayList<String> ids = new ArrayList<>();
+        for (Product product : result) {
+            CacheEntry entry = new CacheEntry(copyOf(product), now);
+            products.compute(product.getProductId(), (id, old) -> generation.get() == readGeneration ? entry : old);
+            ids.add(product.getProductId());
+        }
+        KeywordEntry keywordEntry = new KeywordEntry(List.copyOf(ids), now);
+        keywordResults.compute(keyword.toLowerCase(),
+                (key, old) -> generation.get() == readGeneration ? keywordEntry : old);
+        evictIfFull();
+    }
+
+    /**
+     * Replaces a row after a successful write (update or insert) and drops the keyword results,
+     * because a new description may change which keywords match.
+     */
+    public void replace(Product product) {
+        generation.incrementAndGet();
+        products.put(product.getProductId(), new CacheEntry(copyOf(product), System.currentTimeMillis()));
+        keywordResults.clear();
+    }
+
+    // Marks a product as deleted
+    public void remove(String productId) {
+        generation.incrementAndGet();
+        products.put(productId, new CacheEntry(null, System.currentTimeMillis()));
+        keywordResults.clear();
+    }
+
+    /**
+     * Sets the stock level of a cached row in place, e.g. after a purchase.
+     * Keyword results stay valid because only the stock changed.
+     *
+     * @param versionIncrease how much the row version went up with the change (0 if the row was only read)
+     */
+    public void updateStock(String productId, int newStock, int versionIncrease) {
+        generation.incrementAndGet();
+        products.computeIfPresent(productId, (id, entry) -> {
+            if (entry.product == null) return entry;
+            Product p = entry.product;
+            return new CacheEntry(new Product(p.getProductId(), p.getProductDescription(),
+                    p.getProductImageName(), p.getUnitPrice(), newStock, p.getVersion() + versionIncrease),
+                    entry.loadedAt);
+        });
+    }
+
+    /**
+     * Adds a change to the stock level of a cached row, e.g. minus the ordered quantity after a purchase.
+     * The change is applied to the entry atomically, so purchases of the same product by several clients
+     * at the same time all count, and it is neither a hit nor a miss.
+     * A "not found" entry is dropped, since the database evidently has the product.
+     *
+     * @param versionIncrease how much the row version went up with the change
+     */
+    public void addStock(String productId, int delta, int versionIncrease) {
+        generation.incrementAndGet();
+        products.computeIfPresent(productId, (id, entry) -> {
+            if (entry.product == null) return null;
+            Product p = entry.product;
+            return new CacheEntry(new Product(p.getProductId(), p.getProductDescription(), p.getProductImageName(),
+                    p.getUnitPrice(), p.getStockQuantity() + delta, p.getVersion() + versionIncrease),
+                    entry.loadedAt);
+        });
+    }
+
+    // Drops a single row, so it is read again from the database next time
+    public void invalidate(String productId) {
+        generation.incrementAndGet();
+        products.remove(productId);
+    }
+
+    // Drops all cached name searches, e.g. after a description changed
+    public void clearKeywordResults() {
+        generation.incrementAndGet();
+        keywordResults.clear();
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        products.clear();
+        keywordResults.clear();
+    }
+
+    private boolean isExpired(long loadedAt) {
+        return System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+
+    // Evicts expired entries first, then the oldest ones, until the cache is back to 90% of its capacity
+    private void evictIfFull() {
+        if (products.size() <= maxEntries) return;
+        synchronized (this) {
+            if (products.size() <= maxEntries) return;
+            products.entrySet().removeIf(e -> {
+                boolean expired = isExpired(e.getValue().loadedAt);
+                if (expired) evictions.incrementAndGet();
+                return expired;
+            });
+            int target = (int) (maxEntries * 0.9);
+            if (products.size() > target) {
+                List<Map.Entry<String, CacheEntry>> oldestFirst = new ArrayList<>(products.entrySet());
+                oldestFirst.sort(Comparator.comparingLong(e -> e.getValue().loadedAt));
+                for (int i = 0; i < oldestFirst.size() && products.size() > target; i++) {
+                    if (products.remove(oldestFirst.get(i).getKey(), oldestFirst.get(i).getValue())) {
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+            keywordResults.clear(); // they may point to evicted rows
+        }
+    }
+
+    private static Product copyOf(Product p) {
+        if (p == null) return null;
+        return new Product(p.getProductId(), p.getProductDescription(), p.getProductImageName(),
+                p.getUnitPrice(), p.getStockQuantity(), p.getVersion());
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProductCache[size=%d, hits=%d, misses=%d, evictions=%d]",
+                size(), getHits(), getMisses(), getEvictions());
+    }
+}
@@ -0,0 +1,154 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * ProductExporter writes every product of ProductTable to a CSV or JSON file, in the format ProductImporter reads,
+ * e.g. to hand the catalogue to another shop or to restore it later.
+ * It is started from the warehouse client or headless with systemSetup.ProductTransfer.
+ *
+ * How it works:
+ * - The products are read a page at a time with DatabaseRW.getProductsAfter (keyset paging on the product ID),
+ *   and each page is written out before the next is read, so the catalogue is never held in memory at once.
+ * - The format is chosen by the file extension: .csv (with a header line) or .json (an array, one product per line).
+ * - The image column holds the image file name in the image folder, which the importer accepts as it is.
+ * - The file is written to a temporary file next to it and moved into place at the end,
+ *   so a failed export never leaves half a file behind.
+ */
+
+public class ProductExporter {
+    private static final Logger log = Logger.getLogger(ProductExporter.class);
+
+    private final DatabaseRW databaseRW;
+    private final int pageSize;
+
+    public ProductExporter(DatabaseRW databaseRW) {
+        this(databaseRW, 1_000);
+    }
+
+    public ProductExporter(DatabaseRW databaseRW, int pageSize) {
+        this.databaseRW = databaseRW;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Writes every product to the given .csv or .json file.
+     *
+     * @param file     the file to write (replaced if it exists)
+     * @param progress told the number of products written after every page, may be null
+     * @return the number of products written
+     * @throws IllegalArgumentException if the file is neither .csv nor .json
+     */
+    public int exportFile(Path file, IntConsumer progress) throws IOException, SQLException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".json");
+        if (!json && !name.endsWith(".csv")) {
+            throw new IllegalArgumentException("Unknown export format, expected a .csv or .json file: " + file);
+        }
+
+        long start = System.nanoTime();
+        Path folder = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(folder, name, ".part");
+        int written = 0;
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(json ? "[" : String.join(",", ProductRecordReader.COLUMNS));
+                writer.newLine();
+
+                String lastId = "";
+                ArrayList<Product> page;
+                do {
+                    page = databaseRW.getProductsAfter(lastId, pageSize);
+                    for (Product product : page) {
+                        if (json) {
+                            if (written > 0) {
+                                writer.write(",");
+                                writer.newLine();
+                            }
+                            writer.write(jsonRecord(product));
+                        } else {
+                            writer.write(csvRecord(product));
+                            writer.newLine();
+                        }
+                        written++;
+                    }
+                    if (!page.isEmpty()) lastId = page.get(page.size() - 1).getProductId();
+                    if (progress != null) progress.accept(written);
+                } while (page.size() == pageSize);
+
+                if (json) {
+                    if (written > 0) writer.newLine();
+                    writer.write("]");
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary); // only still there if the export failed
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Exported " + written + " products to " + file.getFileName() + " in " + millis + " ms");
+        return written;
+    }
+
+    // the price as written in the database, e.g. 6.99 and not 6.9899999...
+    private static String price(Product product) {
+        return BigDecimal.valueOf(product.getUnitPrice()).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static String csvRecord(Product product) {
+        return csvField(product.getProductId()) + "," + csvField(product.getProductDescription()) + ","
+                + price(product) + "," + csvField(product.getProductImageName()) + "," + product.getStockQuantity();
+    }
+
+    private static String jsonRecord(Product product) {
+        return "  {\"productID\": " + jsonString(product.getProductId())
+                + ", \"description\": " + jsonString(product.getProductDescription())
+                + ", \"unitPrice\": " + price(product)
+                + ", \"image\": " + jsonString(product.getProductImageName())
+                + ", \"inStock\": " + product.getStockQuantity() + "}";
+    }
+
+    // a CSV field, quoted if it contains a comma, quote or line break
+    static String csvField(String text) {
+        if (text == null) return "";
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String text) {
+        if (text == null) return "null";
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
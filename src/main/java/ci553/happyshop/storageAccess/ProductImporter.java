@@ -0,0 +1,320 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+import ci553.happyshop.utility.StorageLocation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ProductImporter adds the products of a CSV or JSON file (e.g. a supplier catalogue of 50,000 products)
+ * to the database, instead of entering them one at a time in the warehouse form.
+ * It is started from the warehouse client or headless with systemSetup.ProductTransfer.
+ *
+ * How it works:
+ * - The file is read one record at a time (see ProductRecordReader), so its size does not matter.
+ * - Each record is checked like the warehouse form checks a new product: a 4 to 10 digit ID,
+ *   a description, a positive price with at most two decimals, a stock of 0 or more and an image.
+ *   A bad record, or an ID that appears twice in the file, is put in the error report and skipped.
+ * - Valid products are collected into chunks of {@code commitInterval} and inserted with one
+ *   DatabaseRW.insertNewProducts call each: one transaction per chunk, sent in JDBC batches of
+ *   DatabaseRWFactory.importBatchSize. Products whose ID is already in use are reported, not changed.
+ * - The image column names a file, relative to the folder of the import file (or absolute).
+ *   The images of the inserted products are copied into the image folder by ImageFileManager on a small
+ *   thread pool, while the next chunk is read and inserted; as in the warehouse form, the copy is named
+ *   after the product ID. An image name that is already in the image folder (e.g. in an exported file)
+ *   is used as it is.
+ * - After each chunk the ProgressListener is told how far the import has got.
+ * - If the database fails, the import stops: the chunks committed before stay imported,
+ *   the products of the failed chunk are reported as not imported.
+ */
+
+public class ProductImporter {
+    private static final Logger log = Logger.getLogger(ProductImporter.class);
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99"); // DECIMAL(10,2)
+    private static final int MAX_DESCRIPTION_LENGTH = 100;                     // VARCHAR(100)
+
+    /**
+     * Told after every committed chunk, on the importing thread.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(int rowsRead, int rowsImported, int rowsFailed);
+    }
+
+    private final DatabaseRW databaseRW;
+    private final String imageFolder;
+    private final int commitInterval;
+    private final int imageCopyThreads;
+
+    // a checked product waiting for its chunk to be inserted, with the image file still to copy (or null)
+    private record PendingProduct(int row, Product product, Path imageSource) {
+    }
+
+    public ProductImporter(DatabaseRW databaseRW) {
+        this(databaseRW, StorageLocation.imageFolder, DatabaseRWFactory.importCommitInterval, 4);
+    }
+
+    public ProductImporter(DatabaseRW databaseRW, String imageFolder, int commitInterval, int imageCopyThreads) {
+        this.databaseRW = databaseRW;
+        this.imageFolder = imageFolder;
+        this.commitInterval = Math.max(1, commitInterval);
+        this.imageCopyThreads = Math.max(1, imageCopyThreads);
+    }
+
+    /**
+     * Imports the products of a .csv or .json file.
+     *
+     * @param file     the file to import
+     * @param listener told after every chunk, may be null
+     * @return the numbers of rows read and imported, and the rows that were not imported
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the file is neither .csv nor .json
+     */
+    public ImportReport importFile(Path file, ProgressListener listener) throws IOException {
+        ImportReport report = new ImportReport();
+        Path sourceFolder = file.toAbsolutePath().getParent();
+        HashSet<String> idsInFile = new HashSet<>();
+        ArrayList<PendingProduct> chunk = new ArrayList<>();
+        List<CompletableFuture<Void>> imageCopies = new ArrayList<>();
+        ExecutorService imageCopier = Executors.newFixedThreadPool(imageCopyThreads, runnable -> {
+            Thread thread = new Thread(runnable, "happyshop-image-copy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+
+        try (ProductRecordReader reader = ProductRecordReader.open(file)) {
+            boolean databaseOk = true;
+            while (databaseOk) {
+                Map<String, String> record;
+                try {
+                    record = reader.next();
+                } catch (IOException e) {
+                    report.addError(reader.recordNumber() + 1, "", "File cannot be read from here on: " + e.getMessage());
+                    report.stopped = true;
+                    break;
+                }
+                if (record == null) break;
+                report.rowsRead++;
+
+                PendingProduct pending = check(reader.recordNumber(), record, sourceFolder, report);
+                if (pending == null) continue;
+                if (!idsInFile.add(pending.product().getProductId())) {
+                    report.addError(pending.row(), pending.product().getProductId(), "Product ID appears twice in the file");
+                    continue;
+                }
+                chunk.add(pending);
+                if (chunk.size() >= commitInterval) {
+                    databaseOk = insertChunk(chunk, report, imageCopier, imageCopies);
+                    notify(listener, report);
+                }
+            }
+            if (!chunk.isEmpty()) { // the rest, also the valid rows before a broken part of the file
+                insertChunk(chunk, report, imageCopier, imageCopies);
+            }
+        } finally {
+            CompletableFuture.allOf(imageCopies.toArray(new CompletableFuture<?>[0])).join(); // errors are in the report
+            imageCopier.shutdown();
+        }
+        notify(listener, report);
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Imported " + report.getRowsImported() + " of " + report.getRowsRead() + " products from "
+                + file.getFileName() + " in " + millis + " ms, " + report.getErrorCount() + " errors");
+        return report;
+    }
+
+    private static void notify(ProgressListener listener, ImportReport report) {
+        if (listener != null) {
+            listener.progress(report.getRowsRead(), report.getRowsImported(), report.getErrorCount());
+        }
+    }
+
+    // checks one record, returns null (and reports why) if it cannot be imported
+    private PendingProduct check(int row, Map<String, String> record, Path sourceFolder, ImportReport report) {
+        String id = field(record, "productID");
+        String description = field(record, "description");
+        String textPrice = field(record, "unitPrice");
+        String textStock = field(record, "inStock");
+        String image = field(record, "image");
+
+        ArrayList<String> problems = new ArrayList<>();
+        if (!id.matches("\\d{4,10}")) problems.add("Product ID must be 4 to 10 digits");
+        if (description.isEmpty()) problems.add("Description cannot be empty");
+        if (description.length() > MAX_DESCRIPTION_LENGTH) problems.add("Description is longer than 100 characters");
+
+        BigDecimal price = null;
+        try {
+            price = new BigDecimal(textPrice);
+            if (price.signum() <= 0) problems.add("Price must be a positive number");
+            else if (price.stripTrailingZeros().scale() > 2) problems.add("Price can have at most two decimal places");
+            else if (price.compareTo(MAX_PRICE) > 0) problems.add("Price is too high");
+        } catch (NumberFormatException e) {
+            problems.add("Invalid price: " + textPrice);
+        }
+
+        int stock = 0;
+        try {
+            stock = Integer.parseInt(textStock);
+            if (stock < 0) problems.add("Stock quantity cannot be negative");
+        } catch (NumberFormatException e) {
+            problems.add("Invalid stock quantity: " + textStock);
+        }
+
+        String imageName = image;
+        Path imageSource = null;
+        if (image.isEmpty()) {
+            problems.add("An image must be given");
+        } else {
+            Path source = sourceFolder.resolve(image);
+            int dot = image.lastIndexOf('.');
+            if (Files.isRegularFile(source) && dot >= 0) {
+                imageSource = source;
+                imageName = id + image.substring(dot); // the name ImageFileManager gives the copy
+            } else if (!Files.isRegularFile(Paths.get(imageFolder, image))) {
+                problems.add("Image file not found: " + image);
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            report.addError(row, id, String.join("; ", problems));
+            return null;
+        }
+        return new PendingProduct(row, new Product(id, description, imageName, price.doubleValue(), stock), imageSource);
+    }
+
+    private static String field(Map<String, String> record, String column) {
+        String value = record.get(column.toLowerCase(Locale.ROOT));
+        return value == null ? "" : value.trim();
+    }
+
+    // inserts one chunk in one transaction and starts copying its images; false if the database failed
+    private boolean insertChunk(ArrayList<PendingProduct> chunk, ImportReport report,
+                                ExecutorService imageCopier, List<CompletableFuture<Void>> imageCopies) {
+        ArrayList<Product> products = new ArrayList<>(chunk.size());
+        for (PendingProduct pending : chunk) {
+            products.add(pending.product());
+        }
+
+        ArrayList<Product> rejectedProducts;
+        try {
+            rejectedProducts = databaseRW.insertNewProducts(products);
+        } catch (SQLException e) {
+            log.error("Import stopped, a chunk of " + chunk.size() + " products was not inserted", e);
+            for (PendingProduct pending : chunk) {
+                report.addError(pending.row(), pending.product().getProductId(), "Not imported, database error: " + e.getMessage());
+            }
+            report.stopped = true;
+            chunk.clear();
+            return false;
+        }
+
+        HashSet<String> rejectedIds = new HashSet<>();
+        for (Product product : rejectedProducts) {
+            rejectedIds.add(product.getProductId());
+        }
+        for (PendingProduct pending : chunk) {
+            String id = pending.product().getProductId();
+            if (rejectedIds.contains(id)) {
+                report.addError(pending.row(), id, "Product ID is already in use");
+                continue;
+            }
+            report.rowsImported++;
+            if (pending.imageSource() != null) {
+                imageCopies.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        ImageFileManager.copyFileToDestination(pending.imageSource().toString(), imageFolder, id);
+                    } catch (IOException e) {
+                        report.addError(pending.row(), id, "Imported, but the image was not copied: " + e.getMessage());
+                    }
+                }, imageCopier));
+            }
+        }
+        chunk.clear();
+        return true;
+    }
+
+    /**
+     * The outcome of an import: how many rows were read and imported, and why the others were not.
+     */
+    public static class ImportReport {
+        /**
+         * One row that was not imported (or imported without its image).
+         */
+        public record RowError(int row, String productId, String message) {
+        }
+
+        private int rowsRead = 0;
+        private int rowsImported = 0;
+        private boolean stopped = false;
+        private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>()); // image copies add too
+
+        private void addError(int row, String productId, String message) {
+            errors.add(new RowError(row, productId, message));
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getRowsImported() {
+            return rowsImported;
+        }
+
+        public int getErrorCount() {
+            return errors.size();
+        }
+
+        // true if the import ended early, because the file was broken or the database failed
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        // the errors sorted by row
+        public List<RowError> getErrors() {
+            synchronized (errors) {
+                ArrayList<RowError> sorted = new ArrayList<>(errors);
+                sorted.sort((a, b) -> Integer.compare(a.row(), b.row()));
+                return sorted;
+            }
+        }
+
+        /**
+         * Writes the errors as a CSV file with the columns row, productID and error.
+         */
+        public void writeErrorReport(Path file) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("row,productID,error");
+                writer.newLine();
+                for (RowError error : getErrors()) {
+                    writer.write(error.row() + "," + ProductExporter.csvField(error.productId()) + ","
+                            + ProductExporter.csvField(error.message()));
+                    writer.newLine();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return rowsImported + " of " + rowsRead + " products imported, " + errors.size() + " errors"
+                    + (stopped ? " (stopped early)" : "");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ProductPage is one page of search results, returned by DatabaseRW.searchProductPage.
+ * Instead of loading every matching product at once, a client asks for a page (offset and page size)
+ * and fetches the next page only when the user scrolls to the end of the list.
+ *
+ * Fields:
+ * - products: the products on this page, in the same order as searchProduct would return them.
+ * - offset: the position of the first product of this page in the full result.
+ * - totalEstimate: the number of matching products. It is exact on the first page; on later pages
+ *   an implementation may return a lower bound (offset + products on this page, +1 if there are more).
+ * - hasMore: true if at least one more product follows this page.
+ */
+
+public class ProductPage {
+    private final ArrayList<Product> products;
+    private final int offset;
+    private final int nextOffset;
+    private final int totalEstimate;
+    private final boolean hasMore;
+
+    public ProductPage(ArrayList<Product> products, int offset, int totalEstimate, boolean hasMore) {
+        this(products, offset, offset + products.size(), totalEstimate, hasMore);
+    }
+
+    // nextOffset differs from offset + products.size() when rows vanished between ranking and loading
+    public ProductPage(ArrayList<Product> products, int offset, int nextOffset, int totalEstimate, boolean hasMore) {
+        this.products = products;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.totalEstimate = totalEstimate;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Cuts one page out of a fully loaded result list.
+     * Used by implementations that have no cheaper way to page (see DatabaseRW.searchProductPage).
+     */
+    public static ProductPage of(List<Product> allProducts, int offset, int pageSize) {
+        int from = Math.min(Math.max(0, offset), allProducts.size());
+        int to = Math.min(from + Math.max(0, pageSize), allProducts.size());
+        return new ProductPage(new ArrayList<>(allProducts.subList(from, to)), from,
+                allProducts.size(), to < allProducts.size());
+    }
+
+    public ArrayList<Product> getProducts() {
+        return products;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotalEstimate() {
+        return totalEstimate;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // the offset to pass to searchProductPage for the page after this one
+    public int nextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Returns the search results as a lazy stream: a page is only read from the database
+     * when the stream reaches it, so a consumer that stops early never loads the rest.
+     * A SQLException while reading a later page is rethrown as an IllegalStateException.
+     */
+    static Stream<Product> stream(DatabaseRW databaseRW, String keyword, int pageSize) {
+        Iterator<Product> iterator = new Iterator<>() {
+            private ProductPage page = null;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (page == null || index >= page.products.size()) {
+                    if (page != null && !page.hasMore) return false;
+                    int nextOffset = page == null ? 0 : page.nextOffset();
+                    try {
+                        page = databaseRW.searchProductPage(keyword, nextOffset, pageSize);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Failed to read search results: " + e.getMessage(), e);
+                    }
+                    index = 0;
+                    if (page.nextOffset() <= nextOffset) return !page.products.isEmpty(); // no progress, stop
+                }
+                return true;
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return page.products.get(index++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
@@ -0,0 +1,249 @@
+package ci553.happyshop.storageAccess;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ProductRecordReader reads the products of an import file one record at a time, so a supplier catalogue
+ * of any size is never held in memory at once. Used by ProductImporter; ProductExporter writes the same formats.
+ *
+ * Formats (chosen by the file extension):
+ * - .csv  a header line naming the columns, then one product per line. Fields may be quoted ("..."),
+ *         a quoted field may contain commas, line breaks and doubled quotes ("").
+ * - .json an array of objects, one per product: [{"productID": "0001", "unitPrice": 269.00, ...}, ...]
+ *
+ * The columns are productID, description, unitPrice, image and inStock (names are not case-sensitive,
+ * other columns are ignored). Each record is returned as a map from the lower-case column name to its text;
+ * checking the values is left to ProductImporter, so a bad record is reported instead of stopping the import.
+ */
+
+abstract class ProductRecordReader implements Closeable {
+    static final List<String> COLUMNS = List.of("productID", "description", "unitPrice", "image", "inStock");
+
+    protected final BufferedReader reader;
+    private int recordNumber = 0;
+
+    ProductRecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    static ProductRecordReader open(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        if (name.endsWith(".csv")) return new Csv(reader);
+        if (name.endsWith(".json")) return new Json(reader);
+        reader.close();
+        throw new IllegalArgumentException("Unknown import format, expected a .csv or .json file: " + file);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the fields of the record by lower-case column name, or null at the end of the file
+     * @throws IOException if the file cannot be read or is not valid CSV or JSON
+     */
+    Map<String, String> next() throws IOException {
+        Map<String, String> record = readRecord();
+        if (record != null) recordNumber++;
+        return record;
+    }
+
+    // the number of the record last returned by next(), counting from 1 (the CSV header is not counted)
+    int recordNumber() {
+        return recordNumber;
+    }
+
+    protected abstract Map<String, String> readRecord() throws IOException;
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // --- CSV ---
+
+    private static final class Csv extends ProductRecordReader {
+        private List<String> header;
+
+        Csv(BufferedReader reader) {
+            super(reader);
+        }
+
+        protected Map<String, String> readRecord() throws IOException {
+            if (header == null) {
+                List<String> names = readLine();
+                if (names == null) return null; // empty file
+                header = new ArrayList<>();
+                for (String columnName : names) {
+                    header.add(columnName.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            List<String> fields;
+            do {
+                fields = readLine();
+                if (fields == null) return null;
+            } while (fields.size() == 1 && fields.get(0).isBlank()); // skip empty lines
+
+            Map<String, String> record = new LinkedHashMap<>();
+            for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                record.put(header.get(i), fields.get(i));
+            }
+            return record;
+        }
+
+        // the fields of one CSV line, which may continue over several lines inside quotes
+        private List<String> readLine() throws IOException {
+            int c = reader.read();
+            if (c == -1) return null;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) throw new IOException("Unclosed quote at end of file");
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"'); // "" inside quotes is one quote
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == -1 || c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') reader.reset();
+                    break;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    // --- JSON ---
+
+    private static final class Json extends ProductRecordReader {
+        private boolean started = false;
+        private boolean finished = false;
+
+        Json(BufferedReader reader) {
+            super(reader);
+        }
+
+        protected Map<String, String> readRecord() throws IOException {
+            if (finished) return null;
+            int c = skipWhitespace();
+            if (!started) {
+                if (c == -1) return null; // empty file
+                if (c != '[') throw new IOException("Expected a JSON array of products");
+                started = true;
+                c = skipWhitespace();
+                if (c == ']') {
+                    finished = true;
+                    return null;
+                }
+            } else if (c == ',') {
+                c = skipWhitespace();
+            } else if (c == ']') {
+                finished = true;
+                return null;
+            } else {
+                throw new IOException("Expected ',' or ']' after product " + recordNumber());
+            }
+            if (c != '{') throw new IOException("Expected a JSON object for product " + (recordNumber() + 1));
+            return readObject();
+        }
+
+        // the fields of one object, its '{' already read
+        private Map<String, String> readObject() throws IOException {
+            Map<String, String> record = new LinkedHashMap<>();
+            int c = skipWhitespace();
+            if (c == '}') return record;
+            while (true) {
+                if (c != '"') throw new IOException("Expected a field name in product " + (recordNumber() + 1));
+                String name = readString().toLowerCase(Locale.ROOT);
+                if (skipWhitespace() != ':') throw new IOException("Expected ':' after \"" + name + "\"");
+                String value = readValue(skipWhitespace());
+                if (value != null) record.put(name, value);
+                c = skipWhitespace();
+                if (c == '}') return record;
+                if (c != ',') throw new IOException("Expected ',' or '}' in product " + (recordNumber() + 1));
+                c = skipWhitespace();
+            }
+        }
+
+        // a string, number, true, false or null (as Java null); nested objects and arrays are not expected
+        private String readValue(int c) throws IOException {
+            if (c == '"') return readString();
+            if (c == -1 || c == ',' || c == '}') throw new IOException("Missing value in product " + (recordNumber() + 1));
+            StringBuilder literal = new StringBuilder();
+            while (c != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+                if (c == '{' || c == '[') throw new IOException("Nested values are not supported");
+                literal.append((char) c);
+                reader.mark(1);
+                c = reader.read();
+            }
+            reader.reset(); // the delimiter is read again by the caller
+            String text = literal.toString();
+            return text.equals("null") ? null : text;
+        }
+
+        // a string, its opening quote already read
+        private String readString() throws IOException {
+            StringBuilder text = new StringBuilder();
+            while (true) {
+                int c = reader.read();
+                if (c == -1) throw new IOException("Unclosed string at end of file");
+                if (c == '"') return text.toString();
+                if (c != '\\') {
+                    text.append((char) c);
+                    continue;
+                }
+                int escaped = reader.read();
+                switch (escaped) {
+                    case 'n' -> text.append('\n');
+                    case 't' -> text.append('\t');
+                    case 'r' -> text.append('\r');
+                    case 'b' -> text.append('\b');
+                    case 'f' -> text.append('\f');
+                    case 'u' -> {
+                        char[] hex = new char[4];
+                        if (reader.read(hex, 0, 4) != 4) throw new IOException("Bad \\u escape");
+                        text.append((char) Integer.parseInt(new String(hex), 16));
+                    }
+                    case -1 -> throw new IOException("Unclosed string at end of file");
+                    default -> text.append((char) escaped); // \" \\ \/
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = reader.read();
+            } while (c != -1 && Character.isWhitespace(c));
+            return c;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ProductSearchIndex is an in-memory inverted index over product descriptions.
+ * It replaces the {@code LOWER(description) LIKE '%keyword%'} table scan for name searches.
+ *
+ * How it works:
+ * - Tokenization: a description such as "USB2 drive" is lower-cased and split into the tokens "usb2" and "drive".
+ * - Postings: each token maps to the set of productIDs whose description contains it.
+ *   Tokens are kept in a sorted map, so all tokens starting with a prefix can be found with one range lookup.
+ * - Matching: every token of the search keyword must match a description token, either exactly or as a prefix
+ *   ("usb" matches "usb2", "cam" matches "camera").
+ * - Ranking: exact token matches score higher than prefix matches, and descriptions containing the whole
+ *   keyword as a phrase, or starting with it, rank first. Ties are broken by shorter description, then productID.
+ *
+ * Typo-tolerant search:
+ * - searchFuzzy is used when a normal search finds nothing, e.g. for "toastr" or "camra".
+ * - Every word of the keyword is compared with the indexed words by trigram similarity (see TrigramIndex).
+ *   A product scores the average, over the keyword's words, of its best word similarity.
+ * - Only the top results are returned, and the search stops after a fixed time budget
+ *   with the best matches found so far, so a misspelt keyword can never make the client hang.
+ *
+ * The index is rebuilt from the database at startup (see DatabaseRWFactory) and updated incrementally by
+ * IndexedDatabaseRW whenever a product is inserted, updated or deleted. It is safe to use from several threads.
+ */
+
+public class ProductSearchIndex {
+    private static final double EXACT_TOKEN_SCORE = 3.0;
+    private static final double PREFIX_TOKEN_SCORE = 2.0;
+    private static final double PHRASE_BONUS = 2.0;
+    private static final double STARTS_WITH_BONUS = 1.0;
+    private static final double MIN_FUZZY_SIMILARITY = 0.3; // below this, words are considered unrelated
+
+    // token -> productIDs of descriptions containing the token
+    private final ConcurrentSkipListMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+    // productID -> lower-cased description, used for removal and phrase ranking
+    private final ConcurrentHashMap<String, String> descriptions = new ConcurrentHashMap<>();
+    // similarly spelled words, for searchFuzzy
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+    private volatile boolean built = false;
+
+    /**
+     * Replaces the whole index with the given products. Called at startup.
+     */
+    public synchronized void rebuild(Collection<Product> products) {
+        postings.clear();
+        descriptions.clear();
+        trigramIndex.clear();
+        for (Product product : products) {
+            put(product.getProductId(), product.getProductDescription());
+        }
+        built = true;
+    }
+
+    // true once the index has been filled from the database
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Adds or replaces the description of a product.
+     */
+    public synchronized void put(String productId, String description) {
+        remove(productId);
+        String text = description == null ? "" : description.toLowerCase();
+        descriptions.put(productId, text);
+        for (String token : tokenize(text)) {
+            postings.computeIfAbsent(token, t -> {
+                trigramIndex.addWord(t); // first product using this word
+                return ConcurrentHashMap.newKeySet();
+            }).add(productId);
+        }
+    }
+
+    public synchronized void remove(String productId) {
+        String oldText = descriptions.remove(productId);
+        if (oldText == null) return;
+        for (String token : tokenize(oldText)) {
+            postings.computeIfPresent(token, (t, ids) -> {
+                ids.remove(productId);
+                if (!ids.isEmpty()) return ids;
+                trigramIndex.removeWord(t); // last product using this word
+                return null; // drops the token
+            });
+        }
+    }
+
+    /**
+     * Returns the IDs of all products matching every token of the keyword, best match first.
+     */
+    public List<String> search(String keyword) {
+        List<String> queryTokens = tokenize(keyword.toLowerCase());
+        if (queryTokens.isEmpty()) return new ArrayList<>();
+
+        // productID -> accumulated score; a product must match every query token to stay in the map
+        Map<String, Double> scores = null;
+        for (String queryToken : queryTokens) {
+            Map<String, Double> tokenScores = scoreToken(queryToken);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                Map<String, Double> combined = new HashMap<>();
+                for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                    Double tokenScore = tokenScores.get(entry.getKey());
+                    if (tokenScore != null) combined.put(entry.getKey(), entry.getValue() + tokenScore);
+                }
+                scores = combined;
+            }
+            if (scores.isEmpty()) return new ArrayList<>();
+        }
+
+        String phrase = String.join(" ", queryTokens);
+        ArrayList<ScoredId> ranked = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            String text = descriptions.get(entry.getKey());
+            if (text == null) continue; // removed while searching
+            double score = entry.getValue();
+            if (queryTokens.size() > 1 && text.contains(phrase)) score += PHRASE_BONUS;
+            if (text.startsWith(phrase)) score += STARTS_WITH_BONUS;
+            ranked.add(new ScoredId(entry.getKey(), score, text.length()));
+        }
+        ranked.sort(null);
+
+        ArrayList<String> ids = new ArrayList<>(ranked.size());
+        for (ScoredId scoredId : ranked) {
+            ids.add(scoredId.productId);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns up to {@code maxResults} products whose descriptions are spelled similarly to the keyword,
+     * best match first. Gives up after {@code timeBudgetMillis} and returns the best matches found by then.
+     */
+    public List<FuzzyMatch> searchFuzzy(String keyword, int maxResults, long timeBudgetMillis) {
+        List<String> queryTokens = tokenize(keyword.toLowerCase());
+        if (queryTokens.isEmpty() || maxResults <= 0) return new ArrayList<>();
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+
+        // productID -> sum over the query tokens of the best similarity of one of its words
+        HashMap<String, Double> scores = new HashMap<>();
+        for (String queryToken : queryTokens) {
+            HashMap<String, Double> tokenScores = new HashMap<>();
+            for (Map.Entry<String, Double> word :
+                    trigramIndex.similarWords(queryToken, MIN_FUZZY_SIMILARITY, deadline).entrySet()) {
+                Set<String> ids = postings.get(word.getKey());
+                if (ids == null) continue;
+                for (String productId : ids) {
+                    tokenScores.merge(productId, word.getValue(), Math::max);
+                }
+            }
+            tokenScores.forEach((productId, score) -> scores.merge(productId, score, Double::sum));
+            if (System.nanoTime() > deadline) break; // out of time, rank what we have
+        }
+
+        // keep only the best maxResults with a min-heap, instead of sorting every candidate
+        PriorityQueue<FuzzyMatch> best = new PriorityQueue<>(
+                (a, b) -> b.compareTo(a)); // worst match at the head
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            double score = entry.getValue() / queryTokens.size();
+            if (score < MIN_FUZZY_SIMILARITY) continue;
+            best.add(new FuzzyMatch(entry.getKey(), score));
+            if (best.size() > maxResults) best.poll();
+        }
+        ArrayList<FuzzyMatch> ranked = new ArrayList<>(best);
+        ranked.sort(null);
+        return ranked;
+    }
+
+    // Scores every product containing a token equal to, or starting with, the query token
+    private Map<String, Double> scoreToken(String queryToken) {
+        Map<String, Double> tokenScores = new HashMap<>();
+        // all tokens between queryToken and queryToken + Character.MAX_VALUE start with queryToken
+        for (Map.Entry<String, Set<String>> entry :
+                postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).entrySet()) {
+            double score = entry.getKey().equals(queryToken) ? EXACT_TOKEN_SCORE : PREFIX_TOKEN_SCORE;
+            for (String productId : entry.getValue()) {
+                tokenScores.merge(productId, score, Math::max); // best match of this query token counts once
+            }
+        }
+        return tokenScores;
+    }
+
+    /**
+     * Splits lower-cased text into tokens of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) tokens.add(current.toString());
+        return tokens;
+    }
+
+    public int size() {
+        return descriptions.size();
+    }
+
+    /**
+     * A product found by searchFuzzy, with its similarity score between 0 and 1.
+     */
+    public static final class FuzzyMatch implements Comparable<FuzzyMatch> {
+        public final String productId;
+        public final double score;
+
+        FuzzyMatch(String productId, double score) {
+            this.productId = productId;
+            this.score = score;
+        }
+
+        // Higher score first, then productID
+        @Override
+        public int compareTo(FuzzyMatch other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : productId.compareTo(other.productId);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.2f)", productId, score);
+        }
+    }
+
+    // Higher score first, then shorter description (closer match), then productID
+    private static final class ScoredId implements Comparable<ScoredId> {
+        final String productId;
+        final double score;
+        final int length;
+
+        ScoredId(String productId, double score, int length) {
+            this.productId = productId;
+            this.score = score;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(other.score, score);
+            if (byScore != 0) return byScore;
+            int byLength = Integer.compare(length, other.length);
+            if (byLength != 0) return byLength;
+            return productId.compareTo(other.productId);
+        }
+    }
+}
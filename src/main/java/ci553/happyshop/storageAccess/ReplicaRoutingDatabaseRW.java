@@ -0,0 +1,188 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReplicaRoutingDatabaseRW is a decorator that sends product searches to a read replica,
+ * a copy of the database kept up to date outside HappyShop (e.g. a second Derby network server),
+ * so browsing customers do not compete with checkouts and warehouse edits for the primary database.
+ * Enabled with the "replica" decorator and the happyshop.db.replica.url setting in DatabaseRWFactory.
+ *
+ * How it works:
+ * - Writes (purchases, stock releases, product edits) always go to the primary DatabaseRW.
+ * - isProIdAvailable also goes to the primary: a replica that is behind could allow a duplicate product ID.
+ * - Other reads go to the replica, except during staleMillis after a write through this DatabaseRW:
+ *   a replica that is slightly behind would otherwise show the old stock right after a checkout or edit.
+ * - If the replica fails, the read is made on the primary instead, so a replica outage only costs speed.
+ */
+
+public class ReplicaRoutingDatabaseRW implements DatabaseRW {
+    private static final Logger log = Logger.getLogger(ReplicaRoutingDatabaseRW.class);
+
+    private final DatabaseRW primary;
+    private final DatabaseRW replica;
+    private final long staleNanos;
+    private final AtomicLong lastWriteNanos;
+
+    // one read call, made on the replica or on the primary
+    @FunctionalInterface
+    private interface Read<T> {
+        T call(DatabaseRW databaseRW) throws SQLException;
+    }
+
+    /**
+     * @param primary    the DatabaseRW every write and the fresh reads go to
+     * @param replica    the DatabaseRW of the read replica
+     * @param staleMillis how long after a write reads stay on the primary (the replica's expected lag)
+     */
+    public ReplicaRoutingDatabaseRW(DatabaseRW primary, DatabaseRW replica, long staleMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.staleNanos = staleMillis * 1_000_000L;
+        this.lastWriteNanos = new AtomicLong(System.nanoTime() - staleNanos);
+    }
+
+    private <T> T read(String operation, Read<T> read) throws SQLException {
+        if (System.nanoTime() - lastWriteNanos.get() < staleNanos) {
+            return read.call(primary); // the replica may not have the latest write yet
+        }
+        try {
+            return read.call(replica);
+        } catch (SQLException e) {
+            log.warn("Replica " + operation + " failed, reading from the primary: " + e.getMessage());
+            return read.call(primary);
+        }
+    }
+
+    private void wrote() {
+        lastWriteNanos.set(System.nanoTime());
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return read("searchProduct", db -> db.searchProduct(keyword));
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return read("searchProductPage", db -> db.searchProductPage(keyword, offset, pageSize));
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return read("searchByProductId", db -> db.searchByProductId(productId));
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return read("searchProductFuzzy", db -> db.searchProductFuzzy(keyword, maxResults));
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return read("getAllProducts", DatabaseRW::getAllProducts);
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return read("getProductsAfter", db -> db.getProductsAfter(afterProductId, pageSize));
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return primary.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        try {
+            return primary.purchaseStocks(proList);
+        } finally {
+            wrote();
+        }
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        try {
+            return primary.purchaseStocksBatch(trolleys);
+        } finally {
+            wrote();
+        }
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        try {
+            primary.releaseStocks(proList);
+        } finally {
+            wrote();
+        }
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        try {
+            return primary.reserveStocks(reservation);
+        } finally {
+            wrote();
+        }
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        try {
+            return primary.endReservation(reservation, releaseStock);
+        } finally {
+            wrote();
+        }
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return primary.getOpenReservations(); // must see every reservation, also one made just now
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        try {
+            return primary.adjustStocks(stockChanges);
+        } finally {
+            wrote();
+        }
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        try {
+            primary.updateProduct(id, des, price, imageName, stock);
+        } finally {
+            wrote();
+        }
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        try {
+            return primary.updateProduct(id, des, price, imageName, stock, expectedVersion);
+        } finally {
+            wrote();
+        }
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        try {
+            primary.deleteProduct(id);
+        } finally {
+            wrote();
+        }
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        try {
+            primary.insertNewProduct(id, des, price, image, stock);
+        } finally {
+            wrote();
+        }
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        try {
+            return primary.insertNewProducts(products);
+        } finally {
+            wrote();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RetryingDatabaseRW is a decorator that retries calls failing with a temporary database error,
+ * such as a lock timeout, a deadlock, or no free pooled connection, instead of showing the error to the user.
+ * Enabled with the "retry" decorator in DatabaseRWFactory.
+ *
+ * How it works:
+ * - A call is tried up to maxAttempts times, waiting backoffMillis, then twice as long, and so on between tries.
+ * - Reads are retried after any temporary error: SQLTransientException, or an SQLState of class
+ *   "08" (connection) or "40" (transaction rolled back).
+ * - Writes are only retried when they certainly did not happen: after class "40" errors, where the database
+ *   has rolled the transaction back, or when no connection could be obtained (SQLTransientConnectionException,
+ *   e.g. the ConnectionPool timed out). After a connection is lost the write may or may not have been committed,
+ *   and retrying a purchase could take the stock twice, so that error is passed on.
+ * - Other errors (e.g. a duplicate product ID) are passed on at once.
+ */
+
+public class RetryingDatabaseRW implements DatabaseRW {
+    private static final Logger log = Logger.getLogger(RetryingDatabaseRW.class);
+
+    private final DatabaseRW delegate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    // one call to the wrapped DatabaseRW
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws SQLException;
+    }
+
+    public RetryingDatabaseRW(DatabaseRW delegate, int maxAttempts, long backoffMillis) {
+        this.delegate = delegate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(0, backoffMillis);
+    }
+
+    private <T> T read(String operation, Call<T> call) throws SQLException {
+        return retry(operation, call, false);
+    }
+
+    private <T> T write(String operation, Call<T> call) throws SQLException {
+        return retry(operation, call, true);
+    }
+
+    private <T> T retry(String operation, Call<T> call, boolean isWrite) throws SQLException {
+        long wait = backoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                if (attempt >= maxAttempts || !isRetryable(e, isWrite)) throw e;
+                log.warn("Retrying " + operation + " after attempt " + attempt + " failed: " + e.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                wait *= 2;
+            }
+        }
+    }
+
+    /**
+     * Whether the error is temporary and the call may be tried again.
+     */
+    static boolean isRetryable(SQLException e, boolean isWrite) {
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("40")) return true; // deadlock or lock timeout, rolled back
+        if (e instanceof SQLTransientConnectionException) return true; // no connection was obtained, nothing was sent
+        if (isWrite) return false;
+        return e instanceof SQLTransientException || (state != null && state.startsWith("08"));
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return read("searchProduct", () -> delegate.searchProduct(keyword));
+    }
+
+    public ProductPage searchProductPage(String keyword, int offset, int pageSize) throws SQLException {
+        return read("searchProductPage", () -> delegate.searchProductPage(keyword, offset, pageSize));
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return read("searchByProductId", () -> delegate.searchByProductId(productId));
+    }
+
+    public ArrayList<Product> searchProductFuzzy(String keyword, int maxResults) throws SQLException {
+        return read("searchProductFuzzy", () -> delegate.searchProductFuzzy(keyword, maxResults));
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        return write("purchaseStocks", () -> delegate.purchaseStocks(proList));
+    }
+
+    public List<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> trolleys) throws SQLException {
+        return write("purchaseStocksBatch", () -> delegate.purchaseStocksBatch(trolleys));
+    }
+
+    public void releaseStocks(ArrayList<Product> proList) throws SQLException {
+        write("releaseStocks", () -> {
+            delegate.releaseStocks(proList);
+            return null;
+        });
+    }
+
+    public ArrayList<Product> reserveStocks(StockReservation reservation) throws SQLException {
+        return write("reserveStocks", () -> delegate.reserveStocks(reservation));
+    }
+
+    public boolean endReservation(StockReservation reservation, boolean releaseStock) throws SQLException {
+        return write("endReservation", () -> delegate.endReservation(reservation, releaseStock));
+    }
+
+    public List<StockReservation> getOpenReservations() throws SQLException {
+        return read("getOpenReservations", delegate::getOpenReservations);
+    }
+
+    public ArrayList<String> adjustStocks(Map<String, Integer> stockChanges) throws SQLException {
+        return write("adjustStocks", () -> delegate.adjustStocks(stockChanges));
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        write("updateProduct", () -> {
+            delegate.updateProduct(id, des, price, imageName, stock);
+            return null;
+        });
+    }
+
+    public boolean updateProduct(String id, String des, double price, String imageName, int stock,
+                                 int expectedVersion) throws SQLException {
+        return write("updateProduct", () -> delegate.updateProduct(id, des, price, imageName, stock, expectedVersion));
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        write("deleteProduct", () -> {
+            delegate.deleteProduct(id);
+            return null;
+        });
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        write("insertNewProduct", () -> {
+            delegate.insertNewProduct(id, des, price, image, stock);
+            return null;
+        });
+    }
+
+    public ArrayList<Product> insertNewProducts(List<Product> products) throws SQLException {
+        return write("insertNewProducts", () -> delegate.insertNewProducts(products));
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return read("isProIdAvailable", () -> delegate.isProIdAvailable(productId));
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return read("getAllProducts", delegate::getAllProducts);
+    }
+
+    public ArrayList<Product> getProductsAfter(String afterProductId, int pageSize) throws SQLException {
+        return read("getProductsAfter", () -> delegate.getProductsAfter(afterProductId, pageSize));
+    }
+}
@@ -0,0 +1,87 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.utility.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of PreparedStatements for one pooled connection, keyed by SQL text.
+ *
+ * DerbyRW runs the same handful of SQL strings over and over (search by ID, search by name,
+ * the stock check/update pair of a checkout). Preparing a statement makes Derby parse and plan
+ * the SQL again, so each pooled connection keeps its prepared statements and hands them out again.
+ *
+ * - The cache holds at most {@code maxSize} statements; the least recently used one is closed when a new one is added.
+ * - Hit and miss counts are added to counters shared by the whole pool (see ConnectionPool.PoolStats).
+ * - A statement handed out by the cache belongs to the cache: callers close their ResultSets, but never the statement.
+ *
+ * A connection is only used by one thread at a time (it is borrowed from the pool), so the cache is not synchronized.
+ */
+
+class StatementCache {
+    private static final Logger log = Logger.getLogger(StatementCache.class);
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    StatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        // accessOrder = true turns the LinkedHashMap into an LRU list
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the SQL text, or prepares and caches a new one.
+     * Parameters and batches left over from the previous use are cleared.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+        misses.incrementAndGet();
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    // Closes every cached statement, used before the connection itself is closed
+    void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("Error closing cached statement: " + e.getMessage());
+        }
+    }
+}
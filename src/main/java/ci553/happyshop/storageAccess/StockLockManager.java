@@ -0,0 +1,185 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StockLockManager serializes stock changes per product across every DatabaseRW in this process
+ * (one instance is shared through DatabaseRWFactory.getStockLockManager()).
+ * It replaces the ReentrantLock that each DerbyRW used to own, which neither stopped two customer clients
+ * from changing the same product at once, nor let one client work on unrelated products in parallel.
+ *
+ * Striping:
+ * - There is a fixed number of locks (stripes). A productID is mapped to a stripe by its hash,
+ *   so products on different stripes can be changed in parallel, and the memory used does not
+ *   grow with the catalogue.
+ * - Two different products may share a stripe; they are then serialized, which is safe, just slower.
+ *
+ * Deadlock freedom:
+ * - Operations on several products (e.g. purchaseStocks over a trolley) take all their stripes at once
+ *   with lockProducts, which always locks in ascending stripe order. Two checkouts can therefore never
+ *   each hold a stripe the other is waiting for.
+ *
+ * Statistics:
+ * - For every stripe it counts acquisitions, how many of them had to wait (contention), and the total wait time.
+ *
+ * Example usage:
+ *     try (StockLockManager.Locked locked = lockManager.lockProducts(productIds)) {
+ *         // change the stock of these products
+ *     }
+ */
+
+public class StockLockManager {
+    private final ReentrantLock[] stripes;
+    private final AtomicLong[] acquisitions;
+    private final AtomicLong[] contended;
+    private final AtomicLong[] waitNanos;
+
+    /**
+     * @param stripeCount number of locks, rounded up to a power of two
+     */
+    public StockLockManager(int stripeCount) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new ReentrantLock[size];
+        acquisitions = new AtomicLong[size];
+        contended = new AtomicLong[size];
+        waitNanos = new AtomicLong[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+            acquisitions[i] = new AtomicLong();
+            contended[i] = new AtomicLong();
+            waitNanos[i] = new AtomicLong();
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    // the stripe of a productID; the hash is spread so IDs like "0001".."0099" use all stripes
+    int stripeOf(String productId) {
+        int h = productId.trim().hashCode();
+        h ^= (h >>> 16);
+        h *= 0x9E3779B1; // golden-ratio multiplier
+        return (h >>> 16) & (stripes.length - 1);
+    }
+
+    /**
+     * Locks the stripe of a single product.
+     */
+    public Locked lockProduct(String productId) {
+        return lockStripes(List.of(stripeOf(productId)));
+    }
+
+    /**
+     * Locks the stripes of all given products, in ascending stripe order so that it cannot deadlock.
+     * Each stripe is locked once, even if several products share it.
+     */
+    public Locked lockProducts(Collection<String> productIds) {
+        TreeSet<Integer> ordered = new TreeSet<>();
+        for (String productId : productIds) {
+            ordered.add(stripeOf(productId));
+        }
+        return lockStripes(new ArrayList<>(ordered));
+    }
+
+    private Locked lockStripes(List<Integer> orderedStripes) {
+        ArrayList<Integer> held = new ArrayList<>(orderedStripes.size());
+        try {
+            for (int stripe : orderedStripes) {
+                ReentrantLock lock = stripes[stripe];
+                if (!lock.tryLock()) {
+                    contended[stripe].incrementAndGet();
+                    long start = System.nanoTime();
+                    lock.lock();
+                    waitNanos[stripe].addAndGet(System.nanoTime() - start);
+                }
+                acquisitions[stripe].incrementAndGet();
+                held.add(stripe);
+            }
+        } catch (RuntimeException | Error e) {
+            unlock(held);
+            throw e;
+        }
+        return new Locked(held);
+    }
+
+    private void unlock(List<Integer> held) {
+        for (int i = held.size() - 1; i >= 0; i--) { // reverse order of locking
+            stripes[held.get(i)].unlock();
+        }
+    }
+
+    /**
+     * The stripes held by one operation. Closing it releases them; it must be closed by the locking thread.
+     */
+    public final class Locked implements AutoCloseable {
+        private final List<Integer> heldStripes;
+        private boolean released = false;
+
+        private Locked(List<Integer> heldStripes) {
+            this.heldStripes = heldStripes;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            unlock(heldStripes);
+        }
+    }
+
+    /**
+     * Contention statistics of one stripe.
+     */
+    public static final class StripeStats {
+        public final int stripe;
+        public final long acquisitions;
+        public final long contended;     // acquisitions that had to wait for another thread
+        public final long totalWaitNanos;
+
+        StripeStats(int stripe, long acquisitions, long contended, long totalWaitNanos) {
+            this.stripe = stripe;
+            this.acquisitions = acquisitions;
+            this.contended = contended;
+            this.totalWaitNanos = totalWaitNanos;
+        }
+
+        public double contentionRatio() {
+            return acquisitions == 0 ? 0.0 : (double) contended / acquisitions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("stripe %d: acquisitions=%d, contended=%d, wait=%.2fms",
+                    stripe, acquisitions, contended, totalWaitNanos / 1_000_000.0);
+        }
+    }
+
+    public List<StripeStats> getStripeStats() {
+        ArrayList<StripeStats> stats = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            stats.add(new StripeStats(i, acquisitions[i].get(), contended[i].get(), waitNanos[i].get()));
+        }
+        return stats;
+    }
+
+    // One-line summary for the log, plus the most contended stripe
+    @Override
+    public String toString() {
+        long totalAcquisitions = 0, totalContended = 0, totalWait = 0;
+        StripeStats hottest = null;
+        for (StripeStats s : getStripeStats()) {
+            totalAcquisitions += s.acquisitions;
+            totalContended += s.contended;
+            totalWait += s.totalWaitNanos;
+            if (hottest == null || s.contended > hottest.contended) hottest = s;
+        }
+        return String.format("StockLockManager[stripes=%d, acquisitions=%d, contended=%d, wait=%.2fms, hottest=%s]",
+                stripes.length, totalAcquisitions, totalContended, totalWait / 1_000_000.0, hottest);
+    }
+}
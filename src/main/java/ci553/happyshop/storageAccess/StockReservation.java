@@ -0,0 +1,93 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of StockReservationManager.reserve: either a reservation holding the stock of a trolley
+ * until it is committed, released or expires, or the list of products that did not have enough stock.
+ *
+ * A StockReservation does not change after it is created; whether it is still active is tracked
+ * by the StockReservationManager.
+ *
+ * The owner is the process that holds the reservation ("pid@host"), so that with a shared database
+ * (derby-network) a client only recovers the reservations of processes that are no longer running.
+ */
+
+public class StockReservation {
+    static final String THIS_PROCESS = ProcessHandle.current().pid() + "@" + hostName();
+
+    private final String reservationId;              // null if nothing was reserved
+    private final List<Product> lines;               // the reserved products and quantities
+    private final long expiresAtMillis;
+    private final String owner;                      // "pid@host" of the process holding it
+    private final List<Product> insufficientProducts; // empty if the stock was reserved
+
+    StockReservation(String reservationId, List<Product> lines, long expiresAtMillis) {
+        this(reservationId, lines, expiresAtMillis, THIS_PROCESS);
+    }
+
+    StockReservation(String reservationId, List<Product> lines, long expiresAtMillis, String owner) {
+        this.reservationId = reservationId;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.expiresAtMillis = expiresAtMillis;
+        this.owner = owner;
+        this.insufficientProducts = Collections.emptyList();
+    }
+
+    // a failed reservation, carrying the products with their current stock
+    StockReservation(List<Product> insufficientProducts) {
+        this.reservationId = null;
+        this.lines = Collections.emptyList();
+        this.expiresAtMillis = 0;
+        this.owner = THIS_PROCESS;
+        this.insufficientProducts = Collections.unmodifiableList(new ArrayList<>(insufficientProducts));
+    }
+
+    /**
+     * @return true if all the stock was reserved, false if some products did not have enough stock
+     */
+    public boolean isReserved() {
+        return reservationId != null;
+    }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public List<Product> getLines() {
+        return lines;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public ArrayList<Product> getInsufficientProducts() {
+        return new ArrayList<>(insufficientProducts);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isReserved()
+                ? "Reservation " + reservationId + " (" + lines.size() + " products)"
+                : "No reservation (" + insufficientProducts.size() + " products with insufficient stock)";
+    }
+}
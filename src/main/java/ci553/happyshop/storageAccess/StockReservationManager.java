@@ -0,0 +1,267 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StockReservationManager holds the stock of a trolley while the customer is in the payment dialog.
+ * Before, checkOut reduced the stock and then showed the PaymentDialog; if the payment was cancelled,
+ * the stock was never given back.
+ *
+ * How it works:
+ * - reserve: takes the stock with DatabaseRW.reserveStocks (all products or none), so other clients
+ *   see the reduced stock at once. The database records the reservation in the same transaction
+ *   (the StockReservation table in Derby), so a crash can never leave stock taken without its record.
+ *   The reservation is also kept in memory, to expire it.
+ * - commit: the payment was confirmed, the record is deleted and the stock stays taken.
+ * - release: the payment was cancelled, the record is deleted and the stock given back, in one transaction
+ *   (DatabaseRW.endReservation).
+ * - Expiry: a scheduler thread releases reservations that were neither committed nor released
+ *   within the time-to-live, e.g. a dialog left open. Committing an expired reservation returns false.
+ * - Recovery: reservations still recorded in the database whose client has stopped (e.g. it crashed during
+ *   a payment) are released, at start and then every ORPHAN_SWEEP_FACTOR sweeps. With derby-network several
+ *   clients share the StockReservation table, so a reservation held by another client is only released when
+ *   its owner process is no longer running on this host, or once it has expired (an owner on another host
+ *   cannot be checked). A running client's reservation is never taken away before its time-to-live.
+ *
+ * commit, release and expiry may race (e.g. the customer confirms just as the reservation expires);
+ * removing the reservation from the active map decides which one wins in this process, and deleting
+ * its record in the database decides it for good, so the stock is never both kept for an order and given back.
+ *
+ * Example usage:
+ *     StockReservation reservation = reservationManager.reserve(groupedTrolley);
+ *     if (reservation.isReserved()) {
+ *         if (paymentConfirmed) reservationManager.commit(reservation.getReservationId());
+ *         else reservationManager.release(reservation.getReservationId());
+ *     }
+ */
+
+public class StockReservationManager {
+    private static final Logger log = Logger.getLogger(StockReservationManager.class);
+    static final int ORPHAN_SWEEP_FACTOR = 30; // recover() runs once every 30 expiry sweeps
+
+    private final DatabaseRW databaseRW;
+    private final long ttlMillis;
+    private final String owner; // recorded with every reservation, see StockReservation.getOwner
+    private final ConcurrentHashMap<String, StockReservation> active = new ConcurrentHashMap<>();
+    private final AtomicLong committedCount = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private ScheduledExecutorService scheduler; // started by start()
+
+    /**
+     * @param databaseRW used to take and give back the stock, and to record the reservations
+     * @param ttlMillis  how long a reservation is held before it expires
+     */
+    public StockReservationManager(DatabaseRW databaseRW, long ttlMillis) {
+        this(databaseRW, ttlMillis, StockReservation.THIS_PROCESS);
+    }
+
+    // with another owner than this process, e.g. to stand for another client in tests
+    StockReservationManager(DatabaseRW databaseRW, long ttlMillis, String owner) {
+        this.databaseRW = databaseRW;
+        this.ttlMillis = ttlMillis;
+        this.owner = owner;
+    }
+
+    /**
+     * Releases the reservations left open by stopped clients, then starts the expiry scheduler,
+     * which also looks for such reservations every ORPHAN_SWEEP_FACTOR sweeps.
+     *
+     * @param sweepIntervalMillis how often the scheduler looks for expired reservations
+     */
+    public synchronized void start(long sweepIntervalMillis) {
+        recover();
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "happyshop-reservation-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::expireReservations,
+                    sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+            long orphanIntervalMillis = sweepIntervalMillis * ORPHAN_SWEEP_FACTOR;
+            scheduler.scheduleWithFixedDelay(this::recover,
+                    orphanIntervalMillis, orphanIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Gives back the stock of reservations that are recorded in the database but not held in memory
+     * and whose owner has stopped or which have expired. Returns the number of reservations released.
+     */
+    int recover() {
+        int recovered = 0;
+        long now = System.currentTimeMillis();
+        try {
+            for (StockReservation reservation : databaseRW.getOpenReservations()) {
+                if (active.containsKey(reservation.getReservationId())) continue;
+                if (reservation.getExpiresAtMillis() > now && !ownerStopped(reservation.getOwner())) continue;
+                try {
+                    if (databaseRW.endReservation(reservation, true)) recovered++;
+                } catch (SQLException e) {
+                    log.error("Could not release reservation " + reservation.getReservationId()
+                            + " left open, will retry", e);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Open stock reservations could not be read", e);
+        }
+        if (recovered > 0) {
+            log.info(recovered + " reservations left open by stopped clients were released");
+        }
+        return recovered;
+    }
+
+    // true if the owner ("pid@host") is another process on this host that is no longer running;
+    // this process and owners on other hosts are never taken for stopped
+    static boolean ownerStopped(String owner) {
+        int at = owner.indexOf('@');
+        if (at < 0 || owner.equals(StockReservation.THIS_PROCESS)) return false;
+        if (!owner.substring(at + 1).equals(StockReservation.THIS_PROCESS.substring(
+                StockReservation.THIS_PROCESS.indexOf('@') + 1))) return false;
+        try {
+            long pid = Long.parseLong(owner.substring(0, at));
+            return ProcessHandle.of(pid).map(process -> !process.isAlive()).orElse(true);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reserves the stock of all given products, or of none of them.
+     *
+     * @param proList the products with the quantities to reserve, grouped by product ID
+     * @return the reservation, or a StockReservation listing the products with insufficient stock
+     * @throws SQLException if the stock could not be read or changed, or the reservation not recorded
+     */
+    public StockReservation reserve(ArrayList<Product> proList) throws SQLException {
+        StockReservation reservation = new StockReservation(UUID.randomUUID().toString(), proList,
+                System.currentTimeMillis() + ttlMillis, owner);
+        active.put(reservation.getReservationId(), reservation); // before its record, so recover never takes it
+        ArrayList<Product> insufficientProducts;
+        try {
+            insufficientProducts = databaseRW.reserveStocks(reservation);
+        } catch (SQLException e) {
+            active.remove(reservation.getReservationId());
+            throw e;
+        }
+        if (!insufficientProducts.isEmpty()) {
+            active.remove(reservation.getReservationId());
+            return new StockReservation(insufficientProducts);
+        }
+        log.debug(() -> reservation + " held for " + ttlMillis + "ms");
+        return reservation;
+    }
+
+    /**
+     * Keeps the reserved stock for good, once the payment is confirmed.
+     *
+     * @return true if committed, false if the reservation had already expired or been released
+     * @throws SQLException if the record could not be deleted; the reservation then stays open and expires
+     */
+    public boolean commit(String reservationId) throws SQLException {
+        StockReservation reservation = active.remove(reservationId);
+        if (reservation == null) {
+            log.info("Reservation " + reservationId + " could not be committed, it expired or was released");
+            return false;
+        }
+        boolean ended;
+        try {
+            ended = databaseRW.endReservation(reservation, false);
+        } catch (SQLException e) {
+            active.putIfAbsent(reservationId, reservation);
+            throw e;
+        }
+        if (!ended) {
+            log.info("Reservation " + reservationId + " could not be committed, its record was already ended");
+            return false;
+        }
+        committedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gives the reserved stock back, e.g. when the payment is cancelled.
+     *
+     * @return true if released, false if the reservation had already been committed, released or expired
+     */
+    public boolean release(String reservationId) throws SQLException {
+        StockReservation reservation = active.remove(reservationId);
+        if (reservation == null || !giveBack(reservation)) return false;
+        releasedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Releases every reservation whose time-to-live has passed. Called by the scheduler.
+     *
+     * @return the number of reservations that expired
+     */
+    public int expireReservations() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (StockReservation reservation : active.values()) {
+            if (reservation.getExpiresAtMillis() > now) continue;
+            if (!active.remove(reservation.getReservationId(), reservation)) continue; // committed meanwhile
+            try {
+                if (!giveBack(reservation)) continue;
+                expiredCount.incrementAndGet();
+                expired++;
+                log.info(reservation + " expired, stock released");
+            } catch (SQLException e) {
+                log.error("Could not release expired " + reservation + ", will retry", e);
+            }
+        }
+        return expired;
+    }
+
+    // deletes the record and gives the stock back, false if the record was already ended;
+    // on a database error the reservation stays open to be retried
+    private boolean giveBack(StockReservation reservation) throws SQLException {
+        try {
+            return databaseRW.endReservation(reservation, true);
+        } catch (SQLException e) {
+            active.putIfAbsent(reservation.getReservationId(), reservation);
+            throw e;
+        }
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Stops the scheduler and gives back the stock of all open reservations,
+     * since no payment can be confirmed once the application stops.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        for (StockReservation reservation : new ArrayList<>(active.values())) {
+            try {
+                release(reservation.getReservationId());
+            } catch (SQLException e) {
+                log.error("Could not release " + reservation + " at shutdown, it is released once it expires", e);
+            }
+        }
+        log.info(toString());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StockReservationManager[active=%d, committed=%d, released=%d, expired=%d]",
+                active.size(), committedCount.get(), releasedCount.get(), expiredCount.get());
+    }
+}
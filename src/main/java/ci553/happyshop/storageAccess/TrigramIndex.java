@@ -0,0 +1,97 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TrigramIndex finds words that are spelled similarly to a mistyped word, e.g. "toaster" for "toastr"
+ * or "camera" for "camra". It is owned by ProductSearchIndex and indexes the words (tokens) of the
+ * product descriptions, not the products themselves, so it stays small even for a large catalogue.
+ *
+ * How it works:
+ * - Each word is padded ("  toaster ") and cut into overlapping three-letter pieces (trigrams):
+ *   "  t", " to", "toa", "oas", "ast", "ste", "ter", "er ".
+ * - Each trigram maps to the words containing it.
+ * - The similarity of two words is the number of shared trigrams divided by the number of distinct
+ *   trigrams of both words (1.0 = same word, 0.0 = nothing in common).
+ *   "toastr" and "toaster" share 5 of 10 trigrams, a similarity of 0.5.
+ *
+ * Not thread-safe on its own: ProductSearchIndex calls addWord and removeWord while holding its lock.
+ * Lookups only read concurrent collections and may run in parallel with updates.
+ */
+
+class TrigramIndex {
+    // trigram -> words containing it
+    private final ConcurrentHashMap<String, Set<String>> wordsByTrigram = new ConcurrentHashMap<>();
+    // word -> number of distinct trigrams, needed for the similarity
+    private final ConcurrentHashMap<String, Integer> trigramCounts = new ConcurrentHashMap<>();
+
+    void addWord(String word) {
+        if (trigramCounts.containsKey(word)) return;
+        Set<String> trigrams = trigrams(word);
+        trigramCounts.put(word, trigrams.size());
+        for (String trigram : trigrams) {
+            wordsByTrigram.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(word);
+        }
+    }
+
+    void removeWord(String word) {
+        if (trigramCounts.remove(word) == null) return;
+        for (String trigram : trigrams(word)) {
+            wordsByTrigram.computeIfPresent(trigram, (t, words) -> {
+                words.remove(word);
+                return words.isEmpty() ? null : words;
+            });
+        }
+    }
+
+    void clear() {
+        wordsByTrigram.clear();
+        trigramCounts.clear();
+    }
+
+    /**
+     * Returns the indexed words with a similarity of at least {@code minSimilarity} to the given word.
+     * Stops early and returns what it has found so far once {@code deadlineNanos} (System.nanoTime) has passed.
+     */
+    Map<String, Double> similarWords(String word, double minSimilarity, long deadlineNanos) {
+        Set<String> queryTrigrams = trigrams(word);
+        // candidate word -> number of trigrams shared with the query word
+        HashMap<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> words = wordsByTrigram.get(trigram);
+            if (words == null) continue;
+            for (String candidate : words) {
+                shared.merge(candidate, 1, Integer::sum);
+            }
+            if (System.nanoTime() > deadlineNanos) break;
+        }
+
+        HashMap<String, Double> similar = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            Integer candidateCount = trigramCounts.get(entry.getKey());
+            if (candidateCount == null) continue; // removed meanwhile
+            int common = entry.getValue();
+            double similarity = (double) common / (queryTrigrams.size() + candidateCount - common);
+            if (similarity >= minSimilarity) similar.put(entry.getKey(), similarity);
+        }
+        return similar;
+    }
+
+    int size() {
+        return trigramCounts.size();
+    }
+
+    // Distinct trigrams of a padded word, e.g. "usb" -> "  u", " us", "usb", "sb "
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
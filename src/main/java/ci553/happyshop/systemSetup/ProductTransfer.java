@@ -0,0 +1,60 @@
+package ci553.happyshop.systemSetup;
+
+import ci553.happyshop.storageAccess.DatabaseRW;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.storageAccess.ProductExporter;
+import ci553.happyshop.storageAccess.ProductImporter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+
+/**
+ * ProductTransfer imports or exports the product catalogue without starting the JavaFX clients,
+ * e.g. to load a supplier catalogue from a script or to back up ProductTable.
+ * The database is the one configured for DatabaseRWFactory (see happyshop.properties).
+ *
+ * Usage:
+ *     ProductTransfer import <file.csv|file.json> [error-report.csv]
+ *     ProductTransfer export <file.csv|file.json>
+ *
+ * The import prints its progress after every committed chunk and writes the rows it could not import
+ * to the error report (by default the import file name with ".errors.csv" appended).
+ * Batch size and commit interval are the happyshop.db.import.* settings of DatabaseRWFactory.
+ */
+
+public class ProductTransfer {
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.out.println("Usage: ProductTransfer import <file.csv|file.json> [error-report.csv]");
+            System.out.println("       ProductTransfer export <file.csv|file.json>");
+            return;
+        }
+
+        if (DatabaseRWFactory.isDerbyBackend()) {
+            new SchemaMigrator(DatabaseRWFactory.dbURL).migrate(); // the import needs the current columns
+        }
+        DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
+        Path file = Paths.get(args[1]);
+        try {
+            if (args[0].equals("import")) {
+                ProductImporter.ImportReport report = new ProductImporter(databaseRW).importFile(file,
+                        (read, imported, failed) ->
+                                System.out.println(read + " rows read, " + imported + " imported, " + failed + " failed"));
+                System.out.println(report);
+                if (report.getErrorCount() > 0) {
+                    Path errorReport = Paths.get(args.length > 2 ? args[2] : args[1] + ".errors.csv");
+                    report.writeErrorReport(errorReport);
+                    System.out.println("Rows not imported are listed in " + errorReport.toAbsolutePath());
+                }
+            } else {
+                int written = new ProductExporter(databaseRW).exportFile(file, null);
+                System.out.println(written + " products exported to " + file.toAbsolutePath());
+            }
+        } finally {
+            DatabaseRWFactory.shutdown();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package ci553.happyshop.systemSetup;
+
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.utility.Logger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * SchemaMigrator brings the database schema up to date, one numbered migration at a time,
+ * without dropping any data (unlike SetDatabase, which recreates everything).
+ * It is run at startup (see Main) and after SetDatabase has created a fresh database.
+ *
+ * How it works:
+ * - The table SchemaVersion records every migration applied, with its version number and time.
+ * - migrate() applies, in order, every migration whose version is higher than the recorded one.
+ *   Each migration runs in its own transaction together with its SchemaVersion row,
+ *   so it is either applied and recorded completely, or not at all.
+ * - The SchemaVersion table is locked while migrating, so two applications starting at the same time
+ *   against a Derby network server do not apply the same migration twice.
+ * - Running migrate() again does nothing: it is safe to call at every startup.
+ *
+ * Migrations:
+ *   1  ProductTable as created by SetDatabase (only created here if it does not exist)
+ *   2  productID widened from CHAR(4) to VARCHAR(10), unitPrice stored as DECIMAL(10,2) instead of DOUBLE
+ *   3  indexes on description and inStock, for ad-hoc and reporting queries such as a prefix match
+ *      (description LIKE 'TV%'), ordering by description or finding low stock (inStock < ?).
+ *      The application's own queries do not use them: DerbyRW searches with LOWER(description) LIKE '%...%',
+ *      which no index can serve, and low stock is tracked in memory by LowStockMonitor.
+ *   4  row version of every product, for the warehouse's compare-and-set edits (see DatabaseRW.updateProduct)
+ *   5  StockReservation table, the stock reservations held during payment (see DatabaseRW.reserveStocks)
+ *   6  owner of every stock reservation, so clients sharing a network server only recover each other's
+ *      reservations once the owner has stopped (see StockReservationManager.recover)
+ *
+ * New migrations are added at the end of MIGRATIONS with the next version number; applied ones are never changed.
+ */
+
+public class SchemaMigrator {
+    private static final Logger log = Logger.getLogger(SchemaMigrator.class);
+
+    /**
+     * One step of the schema history.
+     */
+    public interface Migration {
+        int version();
+
+        String description();
+
+        void apply(Connection connection) throws SQLException;
+    }
+
+    // a migration made of plain SQL statements
+    private record SqlMigration(int version, String description, List<String> statements) implements Migration {
+        public void apply(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.executeUpdate(sql);
+                }
+            }
+        }
+    }
+
+    // migration 1: the original ProductTable, only created if SetDatabase has not created it
+    private static final Migration PRODUCT_TABLE = new Migration() {
+        public int version() {
+            return 1;
+        }
+
+        public String description() {
+            return "ProductTable";
+        }
+
+        public void apply(Connection connection) throws SQLException {
+            if (tableExists(connection, "PRODUCTTABLE")) return;
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE ProductTable(" +
+                        "productID CHAR(4) PRIMARY KEY," +
+                        "description VARCHAR(100)," +
+                        "unitPrice DOUBLE," +
+                        "image VARCHAR(100)," +
+                        "inStock INT," +
+                        "CHECK (inStock >= 0))");
+            }
+        }
+    };
+
+    // migration 5: the stock reservations, only created if a table left over from an earlier database is missing
+    private static final Migration STOCK_RESERVATION_TABLE = new Migration() {
+        public int version() {
+            return 5;
+        }
+
+        public String description() {
+            return "StockReservation table";
+        }
+
+        public void apply(Connection connection) throws SQLException {
+            if (tableExists(connection, "STOCKRESERVATION")) return;
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE StockReservation(" +
+                        "reservationID VARCHAR(36) NOT NULL," +
+                        "lineNo INT NOT NULL," +
+                        "productID VARCHAR(10) NOT NULL," +
+                        "quantity INT NOT NULL," +
+                        "expiresAt BIGINT NOT NULL," +
+                        "PRIMARY KEY (reservationID, lineNo))");
+            }
+        }
+    };
+
+    // migration 6: the owner of every reservation, unless a left-over StockReservation table already has it
+    private static final Migration RESERVATION_OWNER = new Migration() {
+        public int version() {
+            return 6;
+        }
+
+        public String description() {
+            return "StockReservation owner column";
+        }
+
+        public void apply(Connection connection) throws SQLException {
+            if (columnExists(connection, "STOCKRESERVATION", "OWNER")) return;
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE StockReservation ADD COLUMN owner VARCHAR(100) NOT NULL DEFAULT ''");
+            }
+        }
+    };
+
+    static final List<Migration> MIGRATIONS = List.of(
+            PRODUCT_TABLE,
+
+            // Derby cannot change a column from CHAR to VARCHAR or from DOUBLE to DECIMAL in place,
+            // nor rename a table with a check constraint, so the rows are copied out and back into a new table
+            // with the same columns in the same order
+            new SqlMigration(2, "VARCHAR(10) product IDs and DECIMAL(10,2) prices", List.of(
+                    "CREATE TABLE ProductTable_v1(" +
+                            "productID CHAR(4)," +
+                            "description VARCHAR(100)," +
+                            "unitPrice DOUBLE," +
+                            "image VARCHAR(100)," +
+                            "inStock INT)",
+                    "INSERT INTO ProductTable_v1 SELECT productID, description, unitPrice, image, inStock FROM ProductTable",
+                    "DROP TABLE ProductTable",
+                    "CREATE TABLE ProductTable(" +
+                            "productID VARCHAR(10) PRIMARY KEY," +
+                            "description VARCHAR(100)," +
+                            "unitPrice DECIMAL(10,2)," +
+                            "image VARCHAR(100)," +
+                            "inStock INT," +
+                            "CHECK (inStock >= 0))",
+                    "INSERT INTO ProductTable (productID, description, unitPrice, image, inStock) " +
+                            "SELECT RTRIM(productID), description, CAST(unitPrice AS DECIMAL(10,2)), image, inStock " +
+                            "FROM ProductTable_v1",
+                    "DROP TABLE ProductTable_v1")),
+
+            new SqlMigration(3, "indexes on description and inStock", List.of(
+                    "CREATE INDEX ProductTable_Description ON ProductTable(description)",
+                    "CREATE INDEX ProductTable_InStock ON ProductTable(inStock)")),
+
+            new SqlMigration(4, "row version column", List.of(
+                    "ALTER TABLE ProductTable ADD COLUMN version INT NOT NULL DEFAULT 0")),
+
+            STOCK_RESERVATION_TABLE,
+            RESERVATION_OWNER
+    );
+
+    private final String dbURL;
+
+    public SchemaMigrator(String dbURL) {
+        this.dbURL = dbURL;
+    }
+
+    /**
+     * Applies every migration not applied yet, in version order.
+     *
+     * @return the number of migrations applied (0 if the schema was already up to date)
+     */
+    public int migrate() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(dbURL)) {
+            return migrate(connection, MIGRATIONS);
+        }
+    }
+
+    static int migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        connection.setAutoCommit(false);
+        createVersionTable(connection);
+
+        int applied = 0;
+        for (Migration migration : migrations) {
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LOCK TABLE SchemaVersion IN EXCLUSIVE MODE"); // until commit or rollback
+                }
+                if (currentVersion(connection) >= migration.version()) {
+                    connection.commit();
+                    continue; // already applied, here or by another application
+                }
+                migration.apply(connection);
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO SchemaVersion (version, description, appliedAt) VALUES (?, ?, CURRENT_TIMESTAMP)")) {
+                    insert.setInt(1, migration.version());
+                    insert.setString(2, migration.description());
+                    insert.executeUpdate();
+                }
+                connection.commit();
+                applied++;
+                log.info("Schema migration " + migration.version() + " applied: " + migration.description());
+            } catch (SQLException e) {
+                connection.rollback();
+                log.error("Schema migration " + migration.version() + " failed, rolled back", e);
+                throw e;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the version of the last migration applied, or 0 if none has been.
+     */
+    public int currentVersion() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(dbURL)) {
+            return tableExists(connection, "SCHEMAVERSION") ? currentVersion(connection) : 0;
+        }
+    }
+
+    static int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(version) FROM SchemaVersion")) {
+            return rs.next() ? rs.getInt(1) : 0; // MAX of no rows is NULL, read as 0
+        }
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        if (tableExists(connection, "SCHEMAVERSION")) return;
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE SchemaVersion(" +
+                    "version INT PRIMARY KEY," +
+                    "description VARCHAR(200)," +
+                    "appliedAt TIMESTAMP)");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            if (!"X0Y32".equals(e.getSQLState())) throw e; // X0Y32 = created meanwhile by another application
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String upperCaseName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, null, upperCaseName, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private static boolean columnExists(Connection connection, String upperCaseTable, String upperCaseColumn)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getColumns(null, null, upperCaseTable, upperCaseColumn)) {
+            return rs.next();
+        }
+    }
+
+    //applies the migrations to the database of DatabaseRWFactory, e.g. after restoring an old backup
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : DatabaseRWFactory.dbURL;
+        SchemaMigrator migrator = new SchemaMigrator(url);
+        int applied = migrator.migrate();
+        System.out.println(applied + " migrations applied, schema version is now " + migrator.currentVersion());
+    }
+}
@@ -22,6 +22,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * 1. Deletes all existing tables in the database.
  * 2. Recreates the database tables based on the initial schema.
  * 3. Inserts default values into the newly created tables.
+ *    Then SchemaMigrator brings the new tables up to the current schema.
  * 4. Deletes all existing image files from the working image folder (images/).
  * 5. Copies all image files from the backup folder (images_resetDB/) into the working image folder.
  */
@@ -35,7 +36,7 @@ public class SetDatabase {
     private static Path imageWorkingFolderPath = StorageLocation.imageFolderPath;
     private static Path imageBackupFolderPath = StorageLocation.imageResetFolderPath;
 
-    private String[] tables = {"ProductTable"};
+    private String[] tables = {"ProductTable", "StockReservation", "SchemaVersion"};
     // Currently only "ProductTable" exists, but using an array allows easy expansion
     // if more tables need to be processed in the future without changing the logic structure.
 
@@ -45,6 +46,7 @@ public class SetDatabase {
         SetDatabase setDB = new SetDatabase();
         setDB.clearTables(); // clear all tables in the tables array from database if they are existing
         setDB.initializeTable();//create and initialize databse and tables
+        new SchemaMigrator(dbURL).migrate(); // widen the new tables to the current schema
         setDB.queryTableAfterInitilization();
         deleteFilesInFolder(imageWorkingFolderPath);
         copyFolderContents(imageBackupFolderPath, imageWorkingFolderPath);
@@ -19,7 +19,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * 1. Deletes all existing files inside the orders folder (but retains the folder structure).
  * 2. Ensures that all required order-related folders exist:
  *    - The main orders folder (`orders/`)
- *    - Subfolders for each order state: `ordered/`, `progressing/`, and `collected/`
+ *    - Subfolders for each order state: `ordered/`, `progressing/`, `ready/` and `collected/`
  * 3. Creates the orderCounter.txt file inside the 'orders/' folder if it does not already exist, initializing it to "0".
  *   - The `orderCounter.txt`
  *
@@ -35,6 +35,7 @@ public class SetOrderFileSystem {
             StorageLocation.ordersPath,
             StorageLocation.orderedPath,
             StorageLocation.progressingPath,
+            StorageLocation.readyPath,
             StorageLocation.collectedPath
     };
 
@@ -44,6 +45,15 @@ public class SetOrderFileSystem {
         createOrderCounterFile(orderCounterPath);
     }
 
+    /**
+     * Creates the folders and the orderCounter file that are missing, keeping all existing orders.
+     * Used by StorageServer before the clients of other JVMs start.
+     */
+    public static void createMissing() throws IOException {
+        createFolders(foldersPaths);
+        createOrderCounterFile(orderCounterPath);
+    }
+
     // Recursively deletes all files in folder
     public static void deleteFilesInFolder(Path folder) throws IOException {
         if (Files.exists(folder)) {
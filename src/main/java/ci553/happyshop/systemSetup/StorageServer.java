@@ -0,0 +1,89 @@
+package ci553.happyshop.systemSetup;
+
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.utility.Logger;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * StorageServer is the HappyShop storage process: it hosts the happyShopDB database in a Derby network server,
+ * so customer, picker and warehouse clients running in separate JVMs share one store
+ * (with the embedded backend, only one JVM can open the database).
+ *
+ * How to use it:
+ * - Start this class first, from the project folder (the database and the orders folder are found relative to it).
+ * - Start each client JVM with happyshop.db.backend=derby-network (in happyshop.properties or as -Dhappyshop.db.backend),
+ *   and the same happyshop.db.network.host/port/database settings, see DatabaseRWFactory.
+ * - Stop it with Ctrl+C once the clients have stopped; the database is shut down cleanly.
+ *
+ * How it works:
+ * - The network server is started by the embedded Derby engine when it boots (derby.drda.startNetworkServer),
+ *   listening on DatabaseRWFactory.networkHost and networkPort, by default localhost:1527 only.
+ * - Before the clients connect, the schema is migrated through the embedded URL, and the order folders are created
+ *   if missing. Orders stay files under StorageLocation.ordersPath: every client JVM reads and moves them itself,
+ *   state changes are serialized across JVMs by a file lock (see OrderFileManager),
+ *   and each OrderHub watches the folders for the changes made by the other JVMs (see OrderFolderWatcher).
+ * - The network server accepts clients without user names, so it must not listen on a public interface.
+ */
+
+public class StorageServer {
+    private static final Logger log = Logger.getLogger(StorageServer.class);
+
+    public static void main(String[] args) throws SQLException, IOException, InterruptedException {
+        String host = DatabaseRWFactory.networkHost;
+        int port = DatabaseRWFactory.networkPort;
+        String database = DatabaseRWFactory.networkDatabase;
+
+        // must be set before the embedded engine boots, which happens on the first connection below
+        System.setProperty("derby.drda.startNetworkServer", "true");
+        System.setProperty("derby.drda.host", host);
+        System.setProperty("derby.drda.portNumber", String.valueOf(port));
+
+        SchemaMigrator migrator = new SchemaMigrator("jdbc:derby:" + database);
+        migrator.migrate();
+        SetOrderFileSystem.createMissing();
+        waitForNetworkServer("jdbc:derby://" + host + ":" + port + "/" + database);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shutdownDerby();
+            log.info("Storage server stopped");
+            Logger.shutdown();
+            stopped.countDown();
+        }));
+        System.out.println("HappyShop storage server: " + database + " (schema version " + migrator.currentVersion()
+                + ") on " + host + ":" + port + ". Press Ctrl+C to stop.");
+        log.info("Storage server listening on " + host + ":" + port);
+        stopped.await();
+    }
+
+    // the network server starts in the background; a client connection tells when it accepts connections
+    private static void waitForNetworkServer(String clientURL) throws SQLException, InterruptedException {
+        SQLException lastError = null;
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try (Connection ignored = DriverManager.getConnection(clientURL)) {
+                return;
+            } catch (SQLException e) {
+                lastError = e;
+                Thread.sleep(200);
+            }
+        }
+        log.error("Network server not reachable at " + clientURL, lastError);
+        throw lastError;
+    }
+
+    // shuts down every database and the engine, which also stops the network server
+    private static void shutdownDerby() {
+        try {
+            DriverManager.getConnection("jdbc:derby:;shutdown=true");
+        } catch (SQLException e) {
+            if (!"XJ015".equals(e.getSQLState())) { // XJ015 is the normal answer to a system shutdown
+                log.warn("Derby shutdown failed: " + e.getMessage());
+            }
+        }
+    }
+}
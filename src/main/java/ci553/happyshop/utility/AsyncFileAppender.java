@@ -0,0 +1,223 @@
+package ci553.happyshop.utility;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AsyncFileAppender writes log events to a rotating file on a background thread,
+ * so the thread that logs (e.g. the JavaFX thread running a search) never waits for disk I/O.
+ *
+ * How it works:
+ * - Ring buffer: Logger puts each event into a fixed-size circular buffer (an ArrayBlockingQueue) and returns.
+ *   If the buffer is full, the event is dropped and counted instead of blocking the caller;
+ *   the number of dropped events is written to the file once there is room again.
+ * - Writer thread: a daemon thread takes events from the buffer in batches, formats them as
+ *   structured key=value lines and flushes once the buffer is empty.
+ * - Rotation: when the file exceeds {@code maxFileBytes}, happyshop.log is renamed to happyshop.1.log,
+ *   happyshop.1.log to happyshop.2.log, and so on; only {@code maxFiles} old files are kept.
+ *
+ * Example line:
+ *   ts=2025-05-01T10:15:30.123 level=WARN logger=DerbyRW thread="JavaFX Application Thread" msg="Product 0004 is NOT in stock"
+ */
+
+public class AsyncFileAppender {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int BATCH_SIZE = 256;
+
+    private final Path logFile;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final ArrayBlockingQueue<LogEvent> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong(); // events accepted into the buffer
+    private final AtomicLong flushed = new AtomicLong();  // events written and flushed to the file
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private BufferedWriter writer; // only used by the writer thread
+    private long fileBytes;
+
+    /**
+     * One log record, built by Logger on the calling thread and formatted on the writer thread.
+     */
+    public record LogEvent(long timeMillis, LogLevel level, String loggerName, String threadName,
+                           String message, Throwable error) {
+    }
+
+    public AsyncFileAppender(Path logFile, int bufferCapacity, long maxFileBytes, int maxFiles) {
+        this.logFile = logFile;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(16, bufferCapacity));
+        this.writerThread = new Thread(this::writeLoop, "happyshop-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Adds an event to the buffer without blocking. Returns false if the buffer was full and the event dropped.
+     */
+    public boolean append(LogEvent event) {
+        if (!running || !buffer.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        appended.incrementAndGet();
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes every buffered event and stops the writer thread. Waits at most {@code timeoutMillis}.
+     */
+    public void close(long timeoutMillis) {
+        running = false; // no interrupt: it would close the file channel in the middle of a write
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every event appended so far has been written and flushed, or the timeout passes.
+     */
+    public void flush(long timeoutMillis) {
+        long target = appended.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (flushed.get() < target && writerThread.isAlive() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        ArrayList<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        long taken = 0;
+        try {
+            openWriter();
+            while (running || !buffer.isEmpty()) {
+                if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                    try {
+                        LogEvent first = buffer.poll(200, TimeUnit.MILLISECONDS); // wakes up to notice close()
+                        if (first == null) continue;
+                        batch.add(first);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                writeDroppedCount();
+                for (LogEvent event : batch) {
+                    write(format(event));
+                }
+                taken += batch.size();
+                batch.clear();
+                if (buffer.isEmpty()) {
+                    writer.flush();
+                    flushed.set(taken);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Logging stopped, cannot write " + logFile + ": " + e.getMessage());
+        } finally {
+            try {
+                if (writer != null) writer.close();
+            } catch (IOException e) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    private void writeDroppedCount() throws IOException {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            write(format(new LogEvent(System.currentTimeMillis(), LogLevel.WARN, "AsyncFileAppender",
+                    Thread.currentThread().getName(), lost + " log events dropped, buffer was full", null)));
+        }
+    }
+
+    private void write(String line) throws IOException {
+        if (fileBytes + line.length() > maxFileBytes && fileBytes > 0) {
+            rotate();
+        }
+        writer.write(line);
+        fileBytes += line.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void openWriter() throws IOException {
+        Path folder = logFile.toAbsolutePath().getParent();
+        if (folder != null) Files.createDirectories(folder);
+        writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(logFile);
+    }
+
+    // happyshop.log -> happyshop.1.log -> happyshop.2.log ..., the oldest is deleted
+    private void rotate() throws IOException {
+        writer.close();
+        Files.deleteIfExists(rotatedFile(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = rotatedFile(i);
+            if (Files.exists(older)) {
+                Files.move(older, rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(logFile, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+        openWriter();
+    }
+
+    Path rotatedFile(int index) {
+        String name = logFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String rotatedName = dot < 0 ? name + "." + index
+                : name.substring(0, dot) + "." + index + name.substring(dot);
+        return logFile.resolveSibling(rotatedName);
+    }
+
+    // ts=... level=... logger=... thread="..." msg="...", followed by the stack trace if there is one
+    static String format(LogEvent event) {
+        StringBuilder line = new StringBuilder(128);
+        line.append("ts=").append(TIME_FORMAT.format(Instant.ofEpochMilli(event.timeMillis())))
+                .append(" level=").append(event.level())
+                .append(" logger=").append(event.loggerName())
+                .append(" thread=").append(quote(event.threadName()))
+                .append(" msg=").append(quote(event.message()));
+        if (event.error() != null) {
+            line.append(" error=").append(quote(event.error().toString())).append(System.lineSeparator());
+            StringWriter stackTrace = new StringWriter();
+            event.error().printStackTrace(new PrintWriter(stackTrace));
+            line.append(stackTrace);
+        } else {
+            line.append(System.lineSeparator());
+        }
+        return line.toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) return "\"\"";
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n").replace("\r", "") + "\"";
+    }
+}
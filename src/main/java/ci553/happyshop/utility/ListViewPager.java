@@ -0,0 +1,88 @@
+package ci553.happyshop.utility;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
+
+/**
+ * ListViewPager lets a ListView fetch search results page by page ("fetch on scroll").
+ * Instead of filling the list with every matching product up front, the view shows the first page
+ * and asks for the next one when the user scrolls close to the end of the list.
+ *
+ * Usage:
+ *     ListViewPager.onScrolledToEnd(lvSearchResults, () -> controller.loadMoreSearchResults());
+ *
+ * The callback runs on the JavaFX Application Thread and is expected to append the next page to the list;
+ * it should do nothing when there are no more pages.
+ *
+ * A list whose pages do not fill it has no scroll bar to scroll, so the callback is also run after the items
+ * or the size of the list change while the visible list still has room below its last item: pages are then
+ * loaded one after another until the list is full or there are no more.
+ */
+
+public final class ListViewPager {
+    private static final double NEAR_END = 0.95; // load the next page when 95% of the list has been scrolled
+
+    private ListViewPager() {
+        throw new UnsupportedOperationException("ListViewPager is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Runs {@code loadMore} whenever the vertical scroll bar of the list reaches its end,
+     * or the list is shown without a scroll bar because its items do not fill it.
+     * The scroll bar only exists once the list has a skin (i.e. is shown), so it is looked up then.
+     */
+    public static void onScrolledToEnd(ListView<?> listView, Runnable loadMore) {
+        if (listView.getSkin() != null) {
+            attach(listView, loadMore);
+        } else {
+            listView.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+                if (oldSkin == null && newSkin != null) {
+                    Platform.runLater(() -> attach(listView, loadMore)); // scroll bars are created with the skin
+                }
+            });
+        }
+    }
+
+    private static void attach(ListView<?> listView, Runnable loadMore) {
+        ScrollBar verticalBar = null;
+        for (Node node : listView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                verticalBar = bar;
+                bar.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    double nearEnd = bar.getMin() + (bar.getMax() - bar.getMin()) * NEAR_END;
+                    if (oldValue.doubleValue() < nearEnd && newValue.doubleValue() >= nearEnd) {
+                        loadMore.run();
+                    }
+                });
+            }
+        }
+
+        ScrollBar bar = verticalBar;
+        Runnable check = () -> loadMoreIfUnfilled(listView, bar, loadMore);
+        ListChangeListener<Object> itemsChanged = change -> check.run();
+        listView.getItems().addListener(itemsChanged);
+        listView.itemsProperty().addListener((obs, oldItems, newItems) -> {
+            if (oldItems != null) oldItems.removeListener(itemsChanged);
+            if (newItems != null) newItems.addListener(itemsChanged);
+            check.run();
+        });
+        listView.visibleProperty().addListener((obs, wasVisible, isVisible) -> check.run());
+        listView.heightProperty().addListener((obs, oldHeight, newHeight) -> check.run());
+        check.run();
+    }
+
+    // after the next layout, runs loadMore if the list is shown with items but without a scroll bar to scroll
+    private static void loadMoreIfUnfilled(ListView<?> listView, ScrollBar bar, Runnable loadMore) {
+        Platform.runLater(() -> {
+            listView.layout(); // the scroll bar is shown or hidden by the layout
+            boolean unfilled = bar == null || !bar.isVisible();
+            if (listView.isVisible() && !listView.getItems().isEmpty() && unfilled) {
+                loadMore.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package ci553.happyshop.utility;
+
+/**
+ * Severity levels used by Logger, from the most detailed to the most severe.
+ * A Logger only records messages at or above the configured level,
+ * e.g. at WARN the DEBUG and INFO messages are skipped without even being built.
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF; // records nothing
+
+    /**
+     * Parses a level name such as "warn" (case-insensitive), returning {@code defaultLevel} if it is unknown.
+     */
+    public static LogLevel parse(String name, LogLevel defaultLevel) {
+        if (name == null) return defaultLevel;
+        try {
+            return LogLevel.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+}
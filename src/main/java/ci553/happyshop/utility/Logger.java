@@ -0,0 +1,150 @@
+package ci553.happyshop.utility;
+
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+/**
+ * Logger replaces System.out.println for diagnostic messages in the storage and order classes.
+ * Messages are written asynchronously to logs/happyshop.log (see AsyncFileAppender), so logging
+ * never makes a search or a checkout wait for console or disk I/O.
+ *
+ * Levels:
+ * - Only messages at or above the configured level are recorded (DEBUG < INFO < WARN < ERROR < OFF).
+ * - The level is read from the system property {@code happyshop.log.level} (default INFO),
+ *   e.g. {@code -Dhappyshop.log.level=WARN} in production, and can be changed at runtime with setLevel.
+ *
+ * Lazy messages:
+ * - Use the Supplier variants for messages that are costly to build, e.g.
+ *       log.debug(() -> "Product " + id + " found: " + description);
+ *   The lambda is only called if DEBUG is enabled, so a disabled message costs one comparison.
+ *
+ * Other system properties:
+ * - happyshop.log.dir: the folder for the log files (default "logs", see StorageLocation.logsFolder)
+ * - happyshop.log.maxFileBytes / happyshop.log.maxFiles: rotation size and number of old files kept
+ * - happyshop.log.console: if true, recorded messages are also printed to the console, as before
+ *
+ * Example usage:
+ *     private static final Logger log = Logger.getLogger(DerbyRW.class);
+ *     log.warn("Product " + productId + " is NOT in stock");
+ */
+
+public final class Logger {
+    private static volatile LogLevel level =
+            LogLevel.parse(System.getProperty("happyshop.log.level"), LogLevel.INFO);
+    private static final boolean CONSOLE = Boolean.getBoolean("happyshop.log.console");
+    private static volatile AsyncFileAppender appender; // created on the first recorded message
+    private static boolean shutdownHookAdded = false;
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static LogLevel getLevel() {
+        return level;
+    }
+
+    public static void setLevel(LogLevel newLevel) {
+        level = newLevel;
+    }
+
+    public boolean isEnabled(LogLevel messageLevel) {
+        return messageLevel != LogLevel.OFF && messageLevel.compareTo(level) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(LogLevel.DEBUG, message, null);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) log(LogLevel.DEBUG, message.get(), null);
+    }
+
+    public void info(String message) {
+        log(LogLevel.INFO, message, null);
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) log(LogLevel.INFO, message.get(), null);
+    }
+
+    public void warn(String message) {
+        log(LogLevel.WARN, message, null);
+    }
+
+    public void warn(String message, Throwable error) {
+        log(LogLevel.WARN, message, error);
+    }
+
+    public void error(String message) {
+        log(LogLevel.ERROR, message, null);
+    }
+
+    public void error(String message, Throwable error) {
+        log(LogLevel.ERROR, message, error);
+    }
+
+    private void log(LogLevel messageLevel, String message, Throwable error) {
+        if (!isEnabled(messageLevel)) return;
+        Thread thread = Thread.currentThread();
+        getAppender().append(new AsyncFileAppender.LogEvent(System.currentTimeMillis(), messageLevel,
+                name, thread.getName(), message, error));
+        if (CONSOLE) {
+            System.out.println(messageLevel + " " + name + ": " + message);
+        }
+    }
+
+    private static AsyncFileAppender getAppender() {
+        AsyncFileAppender current = appender;
+        return current != null ? current : createAppender();
+    }
+
+    private static synchronized AsyncFileAppender createAppender() {
+        if (appender == null) {
+            String folder = System.getProperty("happyshop.log.dir", StorageLocation.logsFolder);
+            long maxFileBytes = Long.getLong("happyshop.log.maxFileBytes", 5L * 1024 * 1024);
+            int maxFiles = Integer.getInteger("happyshop.log.maxFiles", 5);
+            appender = new AsyncFileAppender(Paths.get(folder, "happyshop.log"),
+                    8192, maxFileBytes, maxFiles);
+            if (!shutdownHookAdded) {
+                // write what is still buffered when the JVM exits, e.g. after EmergencyExit
+                try {
+                    Runtime.getRuntime().addShutdownHook(new Thread(Logger::shutdown, "happyshop-log-shutdown"));
+                    shutdownHookAdded = true;
+                } catch (IllegalStateException e) {
+                    // the JVM is already shutting down
+                }
+            }
+        }
+        return appender;
+    }
+
+    /**
+     * Waits until every message recorded so far has been written to the log file.
+     */
+    public static void flush() {
+        AsyncFileAppender current = appender;
+        if (current != null) current.flush(2_000);
+    }
+
+    /**
+     * Writes the remaining messages and stops the writer thread. Called when the application stops.
+     */
+    public static void shutdown() {
+        AsyncFileAppender current;
+        synchronized (Logger.class) {
+            current = appender;
+            appender = null;
+        }
+        if (current != null) current.close(2_000);
+    }
+}
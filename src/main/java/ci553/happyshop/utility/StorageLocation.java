@@ -28,12 +28,30 @@ import java.nio.file.Paths;
  *         Week 6: Added for improved order workflow management.
  *    - collectedPath:
  *         Subfolder to store orders in the "Collected" state (e.g., customer collected).
+ *    - orderJournalPath:
+ *         Subfolder for the segments and snapshots of the OrderJournal, when it stores the orders
+ *         (happyshop.orders.store=journal).
+ *    - orderMappedStorePath:
+ *         Subfolder for the memory-mapped state records and line items of the MappedOrderStore
+ *         (happyshop.orders.store=mapped).
+ *    - orderIndexPath:
+ *         The startup index of the open orders (orders/orderIndex.dat), written by the FileOrderStore
+ *         so that OrderHub does not have to read every order file when it starts.
  *
  * 3. Order ID Tracking:
  *    - orderCounterFile / orderCounterPath:
  *         A text file (orders/orderCounter.txt) used to track and increment the unique order ID
  *         when a new order is created.
  *
+ * 4. Logging:
+ *    - logsFolder / logsPath:
+ *         Folder for the rotating log files written by Logger (logs/happyshop.log).
+ *
+ * 5. Configuration:
+ *    - configFile / configPath:
+ *         The optional properties file read by DatabaseRWFactory at startup (happyshop.properties),
+ *         e.g. to choose the database backend and its decorators for one deployment.
+ *
  * These static paths ensure consistent folder usage throughout the application and simplify
  * file-related operations such as reset, loading, and persistence.
  *
@@ -64,8 +82,19 @@ public class StorageLocation {
     public static final Path progressingPath = ordersPath.resolve("progressing");// orders/progressing to store orders at Progressing state
     public static final Path readyPath = ordersPath.resolve("ready");// Week 6: orders/ready to store orders at Ready state
     public static final Path collectedPath = ordersPath.resolve("collected");//orders/collected to store orders at Collected state
+    public static final Path orderJournalPath = ordersPath.resolve("journal");// orders/journal for the OrderJournal
+    public static final Path orderMappedStorePath = ordersPath.resolve("mapped");// orders/mapped for the MappedOrderStore
+    public static final Path orderIndexPath = ordersPath.resolve("orderIndex.dat");// startup index of the open orders
 
     //OrderCounter File and its Path, ie orders/orderCounter.txt
     public static final String orderCounterFile = "orderCounter.txt";
     public static final Path orderCounterPath = ordersPath.resolve(orderCounterFile);
+
+    // Log files written by Logger, ie logs/happyshop.log
+    public static final String logsFolder = "logs";
+    public static final Path logsPath = Paths.get(logsFolder);
+
+    // Optional deployment settings read by DatabaseRWFactory, ie happyshop.properties
+    public static final String configFile = "happyshop.properties";
+    public static final Path configPath = Paths.get(configFile);
 }
@@ -0,0 +1,43 @@
+package ci553.happyshop.catalogue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading a warehouse delivery note.
+ */
+@DisplayName("DeliveryNote Tests")
+public class DeliveryNoteTest {
+
+    @Test
+    @DisplayName("Header, comments and both separators are read; repeated products are added up")
+    void testParse() {
+        DeliveryNote note = DeliveryNote.parse("""
+                productID,quantity
+                0001,300
+                0007 +20   # second pallet
+
+                0003 , -2
+                0001,5
+                """);
+        assertTrue(note.getErrors().isEmpty(), note.getErrors().toString());
+        assertEquals(Map.of("0001", 305, "0007", 20, "0003", -2), note.getStockChanges());
+        assertEquals(List.of("0001", "0007", "0003"), List.copyOf(note.getStockChanges().keySet()));
+        assertEquals(325, note.getUnitsDelivered());
+    }
+
+    @Test
+    @DisplayName("Every bad line is reported with its number")
+    void testErrors() {
+        DeliveryNote note = DeliveryNote.parse("0001 10\n12 5\n0002 lots\n0003\n0004 0");
+        assertEquals(4, note.getErrors().size());
+        assertTrue(note.getErrors().get(0).startsWith("Line 2:"));
+        assertEquals(Map.of("0001", 10), note.getStockChanges());
+        assertTrue(DeliveryNote.parse("  \n# nothing\n").isEmpty());
+    }
+}
@@ -0,0 +1,142 @@
+package ci553.happyshop.orderManagement;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.FileOrderStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for OrderHub: many threads creating orders and moving the same orders at once,
+ * on an order store and counter in a temp folder. Every order must end up in one state,
+ * the same in OrderHub and in the store, and no state change may be lost or undone.
+ */
+@DisplayName("OrderHub Stress Tests")
+public class OrderHubStressTest {
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 50;
+    private static final OrderState[] NEXT = {OrderState.Progressing, OrderState.Ready, OrderState.Collected};
+
+    @TempDir
+    Path ordersDir;
+
+    private FileOrderStore store;
+    private OrderHub hub;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path counterPath = ordersDir.resolve("orderCounter.txt");
+        Files.writeString(counterPath, "0");
+        OrderIdAllocator allocator = new OrderIdAllocator(counterPath, 100);
+        store = new FileOrderStore(ordersDir);
+        hub = new OrderHub(store, allocator::nextId);
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        hub.shutdown();
+    }
+
+    private static ArrayList<Product> trolley() {
+        Product product = new Product("0003", "Toaster", "0003.jpg", 19.99, 12);
+        product.setOrderedQuantity(1);
+        return new ArrayList<>(List.of(product));
+    }
+
+    // runs the task on every thread at once and rethrows the first failure
+    private void runOnAllThreads(StressTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.call();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private interface StressTask {
+        void call() throws Exception;
+    }
+
+    private void assertHubMatchesStore(int expectedOrders) throws IOException {
+        TreeMap<Integer, OrderState> hubStates = hub.filterOrdersByState(OrderState.values());
+        assertEquals(expectedOrders, hubStates.size());
+        for (Map.Entry<Integer, OrderState> entry : hubStates.entrySet()) {
+            assertEquals(store.findState(entry.getKey()), entry.getValue(), "order " + entry.getKey());
+        }
+    }
+
+    @Test
+    @DisplayName("Orders created while others are moved all end up in the same state in OrderHub and the store")
+    void testCreateAndMove() throws Exception {
+        List<Integer> created = new CopyOnWriteArrayList<>();
+        runOnAllThreads(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                created.add(hub.newOrder(trolley(), i % 5 == 0 ? "VIP" : "Standard").getOrderId());
+                // move a random order on, often one another thread moves at the same time
+                int orderId = created.get(random.nextInt(created.size()));
+                hub.changeOrderStateMoveFile(orderId, NEXT[random.nextInt(NEXT.length)]);
+            }
+        });
+
+        assertEquals(THREADS * ORDERS_PER_THREAD, created.size());
+        assertEquals(created.size(), created.stream().distinct().count(), "order IDs are unique");
+        assertHubMatchesStore(created.size());
+    }
+
+    @Test
+    @DisplayName("Pickers racing to move the same orders: every move is made once and the orders end up Collected")
+    void testRacingPickers() throws Exception {
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * ORDERS_PER_THREAD / 4; i++) {
+            orderIds.add(hub.newOrder(trolley(), "Standard").getOrderId());
+        }
+
+        runOnAllThreads(() -> {
+            for (OrderState next : NEXT) {
+                for (int orderId : orderIds) {
+                    hub.changeOrderStateMoveFile(orderId, next);
+                }
+            }
+        });
+
+        assertHubMatchesStore(orderIds.size());
+        assertEquals(orderIds.size(), hub.filterOrdersByState(OrderState.Collected).size());
+        assertTrue(store.loadOpenOrders().isEmpty());
+        for (int orderId : orderIds) {
+            String detail = Files.readString(ordersDir.resolve("collected").resolve(orderId + ".txt"));
+            assertTrue(Pattern.compile("(?m)^CollectedDateTime: \\d").matcher(detail).find(),
+                    "order " + orderId + " collected");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ci553.happyshop.orderManagement;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for OrderIdAllocator: block reservation in the counter file, no reuse after a crash or between allocators
+ * sharing the file, and a benchmark against the original one-ID-per-file-lock OrderCounter
+ * (tagged "benchmark", run with mvn test -Pbenchmarks).
+ */
+@DisplayName("OrderIdAllocator Tests")
+public class OrderIdAllocatorTest {
+
+    @TempDir
+    Path ordersDir;
+
+    private Path counterFile(String content) throws IOException {
+        Path path = ordersDir.resolve("orderCounter.txt");
+        Files.writeString(path, content);
+        return path;
+    }
+
+    @Test
+    @DisplayName("IDs continue the existing counter and the file holds the end of the reserved block")
+    void testBlockReservation() throws IOException {
+        Path path = counterFile("41");
+        OrderIdAllocator allocator = new OrderIdAllocator(path, 10);
+
+        assertEquals(42, allocator.nextId());
+        assertEquals("51", Files.readString(path));
+        for (int i = 43; i <= 51; i++) {
+            assertEquals(i, allocator.nextId());
+        }
+        assertEquals(52, allocator.nextId(), "next block");
+        assertEquals("61", Files.readString(path));
+
+        allocator.release();
+        assertEquals("52", Files.readString(path), "unused IDs given back");
+        assertEquals(53, new OrderIdAllocator(path, 10).nextId());
+    }
+
+    @Test
+    @DisplayName("A crashed allocator's block is skipped, and allocators sharing the file never clash")
+    void testNoReuse() throws Exception {
+        Path path = counterFile("0");
+        OrderIdAllocator crashed = new OrderIdAllocator(path, 100);
+        assertEquals(1, crashed.nextId()); // then the process dies without release()
+        assertEquals(101, new OrderIdAllocator(path, 100).nextId());
+
+        // two allocators, as in two processes, each used by several threads
+        OrderIdAllocator first = new OrderIdAllocator(path, 7);
+        OrderIdAllocator second = new OrderIdAllocator(path, 7);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                OrderIdAllocator allocator = t % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        assertTrue(ids.add(allocator.nextId()), "duplicate ID");
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(4000, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id > 101));
+    }
+
+    @Test
+    @DisplayName("The counter file is replaced whole, and a lower number can be written over a longer one")
+    void testCounterFileReplaced() throws IOException {
+        Path path = counterFile("99990");
+        OrderIdAllocator allocator = new OrderIdAllocator(path, 100_000);
+        assertEquals(99991, allocator.nextId());
+        assertEquals("199990", Files.readString(path));
+        allocator.release();
+        assertEquals("99991", Files.readString(path));
+        assertFalse(Files.exists(ordersDir.resolve("orderCounter.txt.tmp")), "temporary file moved into place");
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Benchmark: IDs per second, block allocation vs one file lock per ID, same number of threads")
+    void benchmarkAgainstFileLock() throws Exception {
+        int threads = 4;
+        int perThread = 500;
+        Path oldPath = counterFile("0");
+        Object turn = new Object(); // a JVM may hold the file lock only once, so its threads take turns
+        double fileLockRate = idsPerSecond(threads, perThread, () -> {
+            synchronized (turn) {
+                return OrderCounter.generateOrderIdWithFileLock(oldPath);
+            }
+        });
+
+        Path newPath = ordersDir.resolve("blockCounter.txt");
+        Files.writeString(newPath, "0");
+        OrderIdAllocator allocator = new OrderIdAllocator(newPath, 1000);
+        double blockRate = idsPerSecond(threads, perThread, allocator::nextId);
+        allocator.release();
+
+        System.out.printf("File lock per ID:      %d IDs, %.0f IDs/s (%d threads)%n",
+                threads * perThread, fileLockRate, threads);
+        System.out.printf("Blocks of 1000 IDs:    %d IDs, %.0f IDs/s (%d threads)%n",
+                threads * perThread, blockRate, threads);
+        assertEquals(String.valueOf(threads * perThread), Files.readString(oldPath));
+        assertEquals(String.valueOf(threads * perThread), Files.readString(newPath));
+        assertTrue(blockRate > fileLockRate);
+    }
+
+    private interface IdSource {
+        int nextId() throws IOException;
+    }
+
+    // IDs per second taken from the source by the given number of threads at the same time
+    private static double idsPerSecond(int threads, int perThread, IdSource source) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        source.nextId();
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return threads * perThread / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
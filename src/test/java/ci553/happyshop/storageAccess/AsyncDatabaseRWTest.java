@@ -0,0 +1,92 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AsyncDatabaseRW: calls run on the executor, errors reach the future,
+ * and a cancelled call that has not started yet is never run.
+ */
+@DisplayName("AsyncDatabaseRW Tests")
+public class AsyncDatabaseRWTest {
+
+    private CachedDatabaseRWTest.CountingDatabaseRW backend;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        backend = new CachedDatabaseRWTest.CountingDatabaseRW();
+        backend.rows.put("0001", new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+        backend.rows.put("0007", new Product("0007", "USB drive", "0007.jpg", 6.99, 100));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Calls run on a virtual thread and complete the future")
+    void testCallsRunInBackground() throws Exception {
+        AsyncDatabaseRW async = new AsyncDatabaseRW(backend, executor);
+        Thread caller = Thread.currentThread();
+
+        CompletableFuture<Boolean> onVirtualThread = async.call(db -> Thread.currentThread().isVirtual()
+                && Thread.currentThread() != caller);
+        assertTrue(onVirtualThread.get(2, TimeUnit.SECONDS));
+        assertEquals("USB drive", async.searchByProductId("0007").get(2, TimeUnit.SECONDS).getProductDescription());
+        assertEquals(1, async.searchProductPage("usb", 0, 10).get(2, TimeUnit.SECONDS).getProducts().size());
+        assertFalse(async.isProIdAvailable("0001").get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A failed call completes the future with the SQLException")
+    void testFailurePropagates() {
+        AsyncDatabaseRW async = new AsyncDatabaseRW(backend, executor);
+        CompletableFuture<Object> failing = async.call(db -> {
+            throw new SQLException("database is down");
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, error.getCause());
+    }
+
+    @Test
+    @DisplayName("A superseded call cancelled before it starts is never run")
+    void testCancelledBeforeStart() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            AsyncDatabaseRW async = new AsyncDatabaseRW(backend, single);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger runs = new AtomicInteger();
+
+            CompletableFuture<Boolean> blocking = async.call(db -> release.await(2, TimeUnit.SECONDS));
+            CompletableFuture<Integer> stale = async.call(db -> runs.incrementAndGet());
+            CompletableFuture<Integer> latest = async.call(db -> runs.incrementAndGet() * 10);
+            stale.cancel(false); // a newer search replaced it while it was queued
+            release.countDown();
+
+            assertTrue(blocking.get(2, TimeUnit.SECONDS));
+            assertEquals(10, latest.get(2, TimeUnit.SECONDS));
+            assertTrue(stale.isCancelled());
+            assertEquals(1, runs.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+}
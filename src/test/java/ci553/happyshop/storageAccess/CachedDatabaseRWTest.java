@@ -0,0 +1,264 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CachedDatabaseRW decorator, using a simple map-backed DatabaseRW
+ * that counts how often it is asked.
+ */
+@DisplayName("CachedDatabaseRW Tests")
+public class CachedDatabaseRWTest {
+
+    private CountingDatabaseRW backend;
+    private ProductCache cache;
+    private DatabaseRW customerDb;
+    private DatabaseRW warehouseDb;
+
+    @BeforeEach
+    void setUp() {
+        backend = new CountingDatabaseRW();
+        backend.rows.put("0001", new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+        backend.rows.put("0007", new Product("0007", "USB drive", "0007.jpg", 6.99, 100));
+        backend.rows.put("0008", new Product("0008", "USB2 drive", "0008.jpg", 7.99, 100));
+        cache = new ProductCache(100, 60_000);
+        // two clients sharing one cache, like the customer and warehouse clients started by Main
+        customerDb = new CachedDatabaseRW(backend, cache);
+        warehouseDb = new CachedDatabaseRW(backend, cache);
+    }
+
+    @Test
+    @DisplayName("Repeated searches are answered from the cache")
+    void testReadThrough() throws SQLException {
+        customerDb.searchProduct("usb");
+        customerDb.searchByProductId("0001");
+        int reads = backend.reads;
+        assertEquals(2, customerDb.searchProduct("usb").size());
+        assertEquals("40 inch TV", customerDb.searchByProductId("0001").getProductDescription());
+        assertEquals(reads, backend.reads);
+    }
+
+    @Test
+    @DisplayName("Warehouse edits are visible to other clients immediately")
+    void testUpdateInvalidates() throws SQLException {
+        customerDb.searchByProductId("0001");
+        warehouseDb.updateProduct("0001", "50 inch TV", 299.00, "0001.jpg", 40);
+        Product product = customerDb.searchByProductId("0001");
+        assertEquals("50 inch TV", product.getProductDescription());
+        assertEquals(40, product.getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Deleted and inserted products are reflected in the cache")
+    void testDeleteAndInsert() throws SQLException {
+        assertEquals(2, customerDb.searchProduct("usb").size());
+        warehouseDb.deleteProduct("0008");
+        assertEquals(1, customerDb.searchProduct("usb").size());
+        assertNull(customerDb.searchByProductId("0008"));
+
+        warehouseDb.insertNewProduct("0009", "USB3 drive", 8.99, "0009.jpg", 10);
+        assertEquals(2, customerDb.searchProduct("usb").size());
+    }
+
+    @Test
+    @DisplayName("A successful purchase updates the cached stock in place")
+    void testPurchaseUpdatesStock() throws SQLException {
+        customerDb.searchByProductId("0007");
+        Product ordered = new Product("0007", "USB drive", "0007.jpg", 6.99, 100);
+        ordered.setOrderedQuantity(3);
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered);
+
+        assertTrue(customerDb.purchaseStocks(trolley).isEmpty());
+        int reads = backend.reads;
+        assertEquals(97, warehouseDb.searchByProductId("0007").getStockQuantity());
+        assertEquals(reads, backend.reads);
+    }
+
+    @Test
+    @DisplayName("Concurrent purchases all reach the cached stock, without counting as cache lookups")
+    void testConcurrentPurchases() throws Exception {
+        InMemoryDatabaseRW shared = new InMemoryDatabaseRW();
+        shared.insertNewProduct("0001", "40 inch TV", 269.00, "0001.jpg", 1000);
+        DatabaseRW cachedDb = new CachedDatabaseRW(shared, cache);
+        cachedDb.searchByProductId("0001");
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<?>> purchases = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            purchases.add(clients.submit(() -> {
+                Product ordered = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 0);
+                ordered.setOrderedQuantity(2);
+                return cachedDb.purchaseStocks(new ArrayList<>(List.of(ordered)));
+            }));
+        }
+        for (Future<?> purchase : purchases) purchase.get();
+        clients.shutdown();
+
+        assertEquals(hits, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+        Product cached = cachedDb.searchByProductId("0001");
+        assertEquals(200, cached.getStockQuantity());
+        assertEquals(shared.searchByProductId("0001").getVersion(), cached.getVersion());
+    }
+
+    @Test
+    @DisplayName("A row read before a change is not cached after it, even when the change comes just before the put")
+    void testChangeBetweenLoadAndPut() throws Exception {
+        Product before = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100);
+        long readGeneration = cache.currentGeneration(); // a slow read of the row starts
+        cache.invalidate("0001");                        // an edit lands meanwhile
+        cache.putIfUnchanged(readGeneration, "0001", before);
+        cache.putKeywordResultIfUnchanged(readGeneration, "tv", List.of(before));
+        assertFalse(cache.get("0001").cached);
+        assertNull(cache.getKeywordResult("tv"));
+
+        // the same race with threads: the cache must end with the last written row, never an older read
+        AtomicInteger database = new AtomicInteger();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> reads = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            reads.add(readers.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    long generation = cache.currentGeneration();
+                    int stock = database.get();
+                    cache.putIfUnchanged(generation, "0007", new Product("0007", "USB drive", "0007.jpg", 6.99, stock));
+                }
+                return null;
+            }));
+        }
+        for (int stock = 1; stock <= 2_000; stock++) {
+            // whatever the readers stored since the last change must be the current row
+            ProductCache.Lookup lookup = cache.get("0007");
+            if (lookup.cached) assertEquals(stock - 1, lookup.product.getStockQuantity());
+            database.set(stock);     // the write reaches the database
+            cache.invalidate("0007"); // then the cache drops the old row
+        }
+        for (Future<?> read : reads) read.get();
+        readers.shutdown();
+        ProductCache.Lookup lookup = cache.get("0007");
+        if (lookup.cached) assertEquals(2_000, lookup.product.getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Cached rows keep their version, so an edit based on a cached read is not refused")
+    void testCachedVersionAfterPurchase() throws SQLException {
+        InMemoryDatabaseRW versioned = new InMemoryDatabaseRW();
+        versioned.insertNewProduct("0001", "40 inch TV", 269.00, "0001.jpg", 100);
+        DatabaseRW cachedDb = new CachedDatabaseRW(versioned, cache);
+        Product ordered = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100);
+        ordered.setOrderedQuantity(2);
+        versioned.purchaseStocks(new ArrayList<>(List.of(ordered)));
+
+        int version = versioned.searchByProductId("0001").getVersion();
+        assertTrue(version > 0);
+        assertEquals(version, cachedDb.searchByProductId("0001").getVersion(), "first read");
+        assertEquals(version, cachedDb.searchByProductId("0001").getVersion(), "cached read");
+
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered);
+        assertTrue(cachedDb.purchaseStocks(trolley).isEmpty());
+        Product cached = cachedDb.searchByProductId("0001");
+        assertEquals(versioned.searchByProductId("0001").getVersion(), cached.getVersion(), "after a purchase");
+        assertTrue(cachedDb.updateProduct("0001", "50 inch TV", 299.00, "0001.jpg", 40, cached.getVersion()));
+        assertEquals("50 inch TV", cachedDb.searchByProductId("0001").getProductDescription());
+    }
+
+    @Test
+    @DisplayName("Cached products are copies that callers cannot change")
+    void testCachedProductsAreCopies() throws SQLException {
+        Product first = customerDb.searchByProductId("0001");
+        first.setOrderedQuantity(5);
+        assertEquals(1, customerDb.searchByProductId("0001").getOrderedQuantity());
+    }
+
+    /**
+     * A map-backed DatabaseRW that counts reads, standing in for DerbyRW.
+     */
+    static class CountingDatabaseRW implements DatabaseRW {
+        final TreeMap<String, Product> rows = new TreeMap<>();
+        int reads = 0;
+
+        public ArrayList<Product> searchProduct(String keyword) {
+            reads++;
+            ArrayList<Product> result = new ArrayList<>();
+            if (rows.containsKey(keyword)) {
+                result.add(rows.get(keyword));
+                return result;
+            }
+            for (Product p : rows.values()) {
+                if (p.getProductDescription().toLowerCase().contains(keyword.toLowerCase())) result.add(p);
+            }
+            return result;
+        }
+
+        public Product searchByProductId(String productId) {
+            reads++;
+            return rows.get(productId);
+        }
+
+        public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) {
+            ArrayList<Product> insufficient = new ArrayList<>();
+            for (Product ordered : proList) {
+                Product p = rows.get(ordered.getProductId());
+                if (p.getStockQuantity() < ordered.getOrderedQuantity()) insufficient.add(p);
+            }
+            if (insufficient.isEmpty()) {
+                for (Product ordered : proList) {
+                    Product p = rows.get(ordered.getProductId());
+                    rows.put(p.getProductId(), new Product(p.getProductId(), p.getProductDescription(),
+                            p.getProductImageName(), p.getUnitPrice(),
+                            p.getStockQuantity() - ordered.getOrderedQuantity()));
+                }
+            }
+            return insufficient;
+        }
+
+        public void releaseStocks(ArrayList<Product> proList) {
+            for (Product released : proList) {
+                Product p = rows.get(released.getProductId());
+                if (p != null) {
+                    rows.put(p.getProductId(), new Product(p.getProductId(), p.getProductDescription(),
+                            p.getProductImageName(), p.getUnitPrice(),
+                            p.getStockQuantity() + released.getOrderedQuantity()));
+                }
+            }
+        }
+
+        public void updateProduct(String id, String des, double price, String imageName, int stock) {
+            rows.put(id, new Product(id, des, imageName, price, stock));
+        }
+
+        public void deleteProduct(String id) {
+            rows.remove(id);
+        }
+
+        public void insertNewProduct(String id, String des, double price, String image, int stock) {
+            rows.put(id, new Product(id, des, image, price, stock));
+        }
+
+        public boolean isProIdAvailable(String productId) {
+            return !rows.containsKey(productId);
+        }
+
+        public ArrayList<Product> getAllProducts() {
+            reads++;
+            return new ArrayList<>(rows.values());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for group-committed checkouts: DerbyRW.purchaseStocksBatch and the CheckoutCoalescer in front of it,
+ * against an in-memory Derby database. The last test is a small load generator that prints
+ * throughput and latency with and without grouping (tagged "benchmark", run with mvn test -Pbenchmarks).
+ */
+@DisplayName("CheckoutCoalescer Tests")
+public class CheckoutCoalescerTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:checkoutCoalescerTestDB;create=true";
+    private ConnectionPool pool;
+    private DerbyRW derbyRW;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 8, 1, 60_000, 5_000, 16);
+        try (PooledConnection pooled = pool.borrow();
+             Statement statement = pooled.getConnection().createStatement()) {
+            try {
+                statement.executeUpdate("DROP TABLE ProductTable");
+            } catch (SQLException e) {
+                // table does not exist yet
+            }
+            statement.executeUpdate("CREATE TABLE ProductTable(" +
+                    "productID CHAR(4) PRIMARY KEY," +
+                    "description VARCHAR(100)," +
+                    "unitPrice DOUBLE," +
+                    "image VARCHAR(100)," +
+                    "inStock INT," +
+                    "CHECK (inStock >= 0))");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00,'0001.jpg',100000)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0003', 'Toaster', 19.99, '0003.jpg',5)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0007', 'USB drive', 6.99, '0007.jpg',100000)");
+            statement.executeUpdate("ALTER TABLE ProductTable ADD COLUMN version INT NOT NULL DEFAULT 0"); // migration 4
+        }
+        derbyRW = new DerbyRW(pool, new StockLockManager(16));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private static ArrayList<Product> trolley(Object... idAndQuantity) {
+        ArrayList<Product> lines = new ArrayList<>();
+        for (int i = 0; i < idAndQuantity.length; i += 2) {
+            Product product = new Product((String) idAndQuantity[i], "", "", 0, 0);
+            product.setOrderedQuantity((Integer) idAndQuantity[i + 1]);
+            lines.add(product);
+        }
+        return lines;
+    }
+
+    private int stockOf(String id) throws SQLException {
+        return derbyRW.searchByProductId(id).getStockQuantity();
+    }
+
+    @Test
+    @DisplayName("A group commit keeps each trolley all-or-nothing")
+    void testBatchIsAllOrNothingPerTrolley() throws SQLException {
+        List<ArrayList<Product>> results = derbyRW.purchaseStocksBatch(List.of(
+                trolley("0001", 2, "0003", 1),
+                trolley("0007", 3, "0003", 10), // not enough toasters: nothing of it is taken
+                trolley("0003", 4)));
+
+        assertTrue(results.get(0).isEmpty());
+        assertEquals(1, results.get(1).size());
+        assertEquals("0003", results.get(1).get(0).getProductId());
+        assertTrue(results.get(2).isEmpty());
+
+        assertEquals(100000 - 2, stockOf("0001"));
+        assertEquals(100000, stockOf("0007"));
+        assertEquals(0, stockOf("0003"));
+    }
+
+    @Test
+    @DisplayName("Each caller gets its own result from a shared group")
+    void testCoalescerCompletesEachCaller() throws Exception {
+        CheckoutCoalescer coalescer = new CheckoutCoalescer(derbyRW, 8, 50); // waits to gather a group
+        try {
+            CompletableFuture<ArrayList<Product>> first = coalescer.submit(trolley("0003", 3));
+            CompletableFuture<ArrayList<Product>> second = coalescer.submit(trolley("0003", 3));
+            CompletableFuture<ArrayList<Product>> third = coalescer.submit(trolley("0001", 1));
+
+            assertTrue(first.get(2, TimeUnit.SECONDS).isEmpty());
+            assertEquals(1, second.get(2, TimeUnit.SECONDS).size()); // only 2 toasters were left
+            assertTrue(third.get(2, TimeUnit.SECONDS).isEmpty());
+            assertEquals(2, stockOf("0003"));
+            assertEquals(1, coalescer.getBatchCount());
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent checkouts through the coalescer never oversell")
+    void testNoOversellUnderConcurrency() throws Exception {
+        CheckoutCoalescer coalescer = new CheckoutCoalescer(derbyRW, 32, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger purchased = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (coalescer.purchaseStocks(trolley("0003", 1, "0007", 1)).isEmpty()) {
+                        purchased.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            assertEquals(5, purchased.get());
+            assertEquals(0, stockOf("0003"));
+            assertEquals(100000 - 5, stockOf("0007")); // failed trolleys took nothing
+            assertEquals(16, coalescer.getRequestCount());
+        } finally {
+            executor.shutdownNow();
+            coalescer.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A closed coalescer rejects new checkouts")
+    void testClosedCoalescerRejects() {
+        CheckoutCoalescer coalescer = new CheckoutCoalescer(derbyRW, 8, 0);
+        coalescer.close();
+        assertThrows(SQLException.class, () -> coalescer.purchaseStocks(trolley("0001", 1)));
+    }
+
+    @Test
+    @DisplayName("Checkouts submitted while the coalescer closes are all completed")
+    void testCloseWhileSubmitting() throws Exception {
+        CheckoutCoalescer coalescer = new CheckoutCoalescer(derbyRW, 8, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<CompletableFuture<ArrayList<Product>>>>> tills = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tills.add(executor.submit(() -> {
+                    List<CompletableFuture<ArrayList<Product>>> submitted = new ArrayList<>();
+                    start.await();
+                    for (int n = 0; n < 200; n++) {
+                        submitted.add(coalescer.submit(trolley("0001", 1)));
+                    }
+                    return submitted;
+                }));
+            }
+            start.countDown();
+            coalescer.close();
+            for (Future<List<CompletableFuture<ArrayList<Product>>>> till : tills) {
+                for (CompletableFuture<ArrayList<Product>> result : till.get(5, TimeUnit.SECONDS)) {
+                    try {
+                        result.get(5, TimeUnit.SECONDS); // purchased or failed, but never left waiting
+                    } catch (ExecutionException e) {
+                        assertInstanceOf(SQLException.class, e.getCause());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Load generator: throughput and latency with and without grouping")
+    void benchmarkLoadGenerator() throws Exception {
+        int threads = 16;
+        int checkoutsPerThread = 50;
+
+        LoadResult direct = runLoad(derbyRW, threads, checkoutsPerThread);
+        CheckoutCoalescer coalescer = new CheckoutCoalescer(derbyRW, 32, 0);
+        LoadResult grouped;
+        try {
+            grouped = runLoad(coalescer, threads, checkoutsPerThread);
+        } finally {
+            coalescer.close();
+        }
+
+        System.out.println("Direct checkouts:  " + direct);
+        System.out.println("Grouped checkouts: " + grouped + " " + coalescer);
+        assertEquals(100000 - 2L * threads * checkoutsPerThread, stockOf("0001"));
+        assertEquals(100000 - 2L * threads * checkoutsPerThread, stockOf("0007"));
+        assertEquals(threads * checkoutsPerThread, coalescer.getRequestCount());
+        assertTrue(coalescer.getBatchCount() <= coalescer.getRequestCount(), "no more commits than checkouts");
+    }
+
+    private record LoadResult(int checkouts, long elapsedNanos, long[] latencies) {
+        @Override
+        public String toString() {
+            return String.format("%d checkouts, %.0f/s, p50=%.2fms, p99=%.2fms",
+                    checkouts, checkouts / (elapsedNanos / 1e9),
+                    latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6);
+        }
+    }
+
+    // every thread checks out the same two products, one at a time, as fast as it can
+    private static LoadResult runLoad(DatabaseRW databaseRW, int threads, int checkoutsPerThread) throws Exception {
+        long[] latencies = new long[threads * checkoutsPerThread];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t * checkoutsPerThread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < checkoutsPerThread; i++) {
+                        long begin = System.nanoTime();
+                        assertTrue(databaseRW.purchaseStocks(trolley("0001", 1, "0007", 1)).isEmpty());
+                        latencies[offset + i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            long elapsed = System.nanoTime() - begin;
+            Arrays.sort(latencies);
+            return new LoadResult(latencies.length, elapsed, latencies);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
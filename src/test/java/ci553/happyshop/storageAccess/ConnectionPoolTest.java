@@ -0,0 +1,106 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConnectionPool, run against an in-memory Derby database
+ * so the on-disk happyShopDB is never touched.
+ */
+@DisplayName("ConnectionPool Tests")
+public class ConnectionPoolTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:poolTestDB;create=true";
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool(TEST_DB_URL, 2, 1, 60_000, 200, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Warm-up opens the minimum idle connections")
+    void testWarmUp() throws SQLException {
+        pool.warmUp();
+        ConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(1, stats.open);
+        assertEquals(1, stats.idle);
+    }
+
+    @Test
+    @DisplayName("Returned connections are reused instead of reopened")
+    void testConnectionReuse() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            try (PooledConnection pooled = pool.borrow()) {
+                assertTrue(pooled.getConnection().isValid(1));
+            }
+        }
+        ConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(1, stats.created);
+        assertEquals(5, stats.borrowed);
+        assertEquals(0, stats.active);
+    }
+
+    @Test
+    @DisplayName("Borrowing beyond the maximum size times out")
+    void testMaxSizeBound() throws SQLException {
+        try (PooledConnection first = pool.borrow();
+             PooledConnection second = pool.borrow()) {
+            assertThrows(SQLException.class, () -> pool.borrow());
+            assertEquals(1, pool.getStats().timeouts);
+        }
+        assertEquals(2, pool.getStats().idle);
+    }
+
+    @Test
+    @DisplayName("Uncommitted work is rolled back when a connection is returned")
+    void testAutoCommitRestored() throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            pooled.getConnection().setAutoCommit(false);
+        }
+        try (PooledConnection pooled = pool.borrow()) {
+            assertTrue(pooled.getConnection().getAutoCommit());
+        }
+    }
+
+    @Test
+    @DisplayName("Statements are prepared once per connection and then served from the cache")
+    void testStatementCacheHits() throws SQLException {
+        String sql = "VALUES 1";
+        PreparedStatement first;
+        try (PooledConnection pooled = pool.borrow()) {
+            first = pooled.prepareStatement(sql);
+        }
+        try (PooledConnection pooled = pool.borrow()) {
+            assertSame(first, pooled.prepareStatement(sql));
+        }
+        ConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(1, stats.statementCacheMisses);
+        assertEquals(1, stats.statementCacheHits);
+    }
+
+    @Test
+    @DisplayName("The least recently used statement is closed when the cache is full")
+    void testStatementCacheEviction() throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement eldest = pooled.prepareStatement("VALUES 0");
+            for (int i = 1; i <= 4; i++) {
+                pooled.prepareStatement("VALUES " + i); // cache size is 4
+            }
+            assertTrue(eldest.isClosed());
+            assertEquals(4, pooled.getStatementCache().size());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the configurable DatabaseRWFactory and the decorators it can stack:
+ * backend and decorator selection from properties, retries and read-replica routing.
+ * Only the memory backend and stubs are used, so no database is opened.
+ */
+@DisplayName("DatabaseRWFactory Tests")
+public class DatabaseRWFactoryTest {
+
+    @AfterEach
+    void tearDown() {
+        DatabaseRWFactory.shutdown();
+        Properties defaults = new Properties();
+        defaults.setProperty("happyshop.db.backend", "derby-embedded");
+        defaults.setProperty("happyshop.db.url", "jdbc:derby:happyShopDB");
+        defaults.setProperty("happyshop.db.network.host", "localhost");
+        defaults.setProperty("happyshop.db.network.port", "1527");
+        DatabaseRWFactory.configure(defaults);
+        DatabaseRWFactory.decorators = null;
+    }
+
+    private static Properties settings(String... nameValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            properties.setProperty(nameValues[i], nameValues[i + 1]);
+        }
+        return properties;
+    }
+
+    private static Product ordered(String id, int quantity) {
+        Product product = new Product(id, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Backend and decorators are stacked in the declared order")
+    void testDecoratorsInDeclaredOrder() throws SQLException {
+        DatabaseRWFactory.configure(settings(
+                "happyshop.db.backend", "memory",
+                "happyshop.db.decorators", "retry, metrics ,index"));
+
+        DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
+        assertInstanceOf(IndexedDatabaseRW.class, databaseRW); // the last declared is outermost
+        assertInstanceOf(InMemoryDatabaseRW.class, DatabaseRWFactory.getBackendRW());
+        assertSame(databaseRW, DatabaseRWFactory.createDatabaseRW()); // shared by every client
+
+        assertTrue(databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0001", 1)))).isEmpty());
+        assertEquals(99, databaseRW.searchByProductId("0001").getStockQuantity());
+        assertEquals(1, DatabaseRWFactory.getDatabaseMetrics().get("purchaseStocks").getCalls());
+    }
+
+    @Test
+    @DisplayName("Settings: network URL, ignored bad numbers, unknown decorators")
+    void testSettings() {
+        DatabaseRWFactory.configure(settings(
+                "happyshop.db.backend", "derby-network",
+                "happyshop.db.network.host", "shop-db",
+                "happyshop.db.network.port", "1600",
+                "happyshop.db.pool.maxSize", "many"));
+        assertEquals("jdbc:derby://shop-db:1600/happyShopDB", DatabaseRWFactory.dbURL);
+        assertEquals(8, DatabaseRWFactory.poolMaxSize);
+        assertEquals(List.of("coalesce"), DatabaseRWFactory.decoratorNames(), "nothing that only sees this JVM's writes");
+
+        DatabaseRWFactory.configure(settings(
+                "happyshop.db.backend", "memory",
+                "happyshop.db.url", "jdbc:derby:happyShopDB",
+                "happyshop.db.decorators", "index,turbo"));
+        assertThrows(IllegalArgumentException.class, DatabaseRWFactory::createDatabaseRW);
+    }
+
+    @Test
+    @DisplayName("Retry: reads retry temporary errors, writes only when nothing was sent")
+    void testRetry() throws SQLException {
+        assertTrue(RetryingDatabaseRW.isRetryable(new SQLException("deadlock", "40001"), true));
+        assertTrue(RetryingDatabaseRW.isRetryable(new SQLTransientConnectionException("pool timeout", "08001"), true));
+        assertFalse(RetryingDatabaseRW.isRetryable(new SQLException("connection lost", "08006"), true));
+        assertTrue(RetryingDatabaseRW.isRetryable(new SQLException("connection lost", "08006"), false));
+        assertFalse(RetryingDatabaseRW.isRetryable(new SQLException("duplicate key", "23505"), false));
+
+        CachedDatabaseRWTest.CountingDatabaseRW backend = new CachedDatabaseRWTest.CountingDatabaseRW();
+        FlakyDatabaseRW flaky = new FlakyDatabaseRW(backend, 2);
+        assertTrue(new RetryingDatabaseRW(flaky, 3, 1).isProIdAvailable("0001"));
+        assertEquals(3, flaky.attempts);
+
+        FlakyDatabaseRW tooFlaky = new FlakyDatabaseRW(backend, 5);
+        assertThrows(SQLException.class, () -> new RetryingDatabaseRW(tooFlaky, 3, 1).isProIdAvailable("0001"));
+        assertEquals(3, tooFlaky.attempts);
+    }
+
+    @Test
+    @DisplayName("Replica: searches go to the replica, except right after a write")
+    void testReplicaRouting() throws SQLException {
+        CachedDatabaseRWTest.CountingDatabaseRW primary = new CachedDatabaseRWTest.CountingDatabaseRW();
+        CachedDatabaseRWTest.CountingDatabaseRW replica = new CachedDatabaseRWTest.CountingDatabaseRW();
+        primary.rows.put("0001", new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+        replica.rows.put("0001", new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+
+        ReplicaRoutingDatabaseRW routing = new ReplicaRoutingDatabaseRW(primary, replica, 60_000);
+        routing.searchByProductId("0001");
+        assertEquals(1, replica.reads);
+        assertEquals(0, primary.reads);
+
+        routing.purchaseStocks(new ArrayList<>(List.of(ordered("0001", 1))));
+        assertEquals(99, routing.searchByProductId("0001").getStockQuantity()); // read from the primary
+        assertEquals(1, replica.reads);
+    }
+
+    // a pass-through decorator whose isProIdAvailable fails with a lock timeout the first few times
+    private static class FlakyDatabaseRW extends MetricsDatabaseRW {
+        private final int failures;
+        int attempts = 0;
+
+        FlakyDatabaseRW(DatabaseRW delegate, int failures) {
+            super(delegate, new DatabaseMetrics());
+            this.failures = failures;
+        }
+
+        @Override
+        public boolean isProIdAvailable(String productId) throws SQLException {
+            attempts++;
+            if (attempts <= failures) throw new SQLException("lock timeout", "40XL1");
+            return super.isProIdAvailable(productId);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.systemSetup.SchemaMigrator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DerbyRW against an in-memory Derby database with the ProductTable schema,
+ * so the on-disk happyShopDB is never touched.
+ */
+@DisplayName("DerbyRW Tests")
+public class DerbyRWTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:derbyRWTestDB;create=true";
+    private ConnectionPool pool;
+    private DerbyRW derbyRW;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 4, 1, 60_000, 1_000, 16);
+        try (PooledConnection pooled = pool.borrow();
+             Statement statement = pooled.getConnection().createStatement()) {
+            for (String table : new String[]{"StockReservation", "ProductTable", "SchemaVersion"}) {
+                try {
+                    statement.executeUpdate("DROP TABLE " + table);
+                } catch (SQLException e) {
+                    // table does not exist yet
+                }
+            }
+            statement.executeUpdate("CREATE TABLE ProductTable(" +
+                    "productID CHAR(4) PRIMARY KEY," +
+                    "description VARCHAR(100)," +
+                    "unitPrice DOUBLE," +
+                    "image VARCHAR(100)," +
+                    "inStock INT," +
+                    "CHECK (inStock >= 0))");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00,'0001.jpg',100)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0003', 'Toaster', 19.99, '0003.jpg',5)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0007', 'USB drive', 6.99, '0007.jpg',100)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0008', 'USB2 drive', 7.99, '0008.jpg',100)");
+        }
+        new SchemaMigrator(TEST_DB_URL).migrate(); // test against the current schema
+        derbyRW = new DerbyRW(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private static Product ordered(String id, int quantity) {
+        Product product = new Product(id, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Search finds a product by ID first, then by name")
+    void testSearchProduct() throws SQLException {
+        assertEquals(1, derbyRW.searchProduct("0001").size());
+        assertEquals(2, derbyRW.searchProduct("usb").size());
+        assertTrue(derbyRW.searchProduct("nothing like this").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Paged search reads one page at a time and streams lazily")
+    void testSearchProductPage() throws SQLException {
+        ProductPage first = derbyRW.searchProductPage("drive", 0, 1);
+        assertEquals("0007", first.getProducts().get(0).getProductId());
+        assertEquals(2, first.getTotalEstimate());
+        assertTrue(first.hasMore());
+
+        ProductPage second = derbyRW.searchProductPage("drive", first.nextOffset(), 1);
+        assertEquals("0008", second.getProducts().get(0).getProductId());
+        assertFalse(second.hasMore());
+
+        assertEquals(1, derbyRW.searchProductPage("0003", 0, 10).getTotalEstimate()); // ID search still works
+        assertEquals(List.of("0007", "0008"),
+                derbyRW.streamProducts("usb", 1).map(Product::getProductId).toList());
+    }
+
+    @Test
+    @DisplayName("Repeated searches reuse the cached statement plans")
+    void testRepeatedSearchUsesStatementCache() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            derbyRW.searchByProductId("0001");
+        }
+        assertTrue(pool.getStats().statementCacheHits >= 4);
+    }
+
+    @Test
+    @DisplayName("Purchase reduces the stock of every product when all are sufficient")
+    void testPurchaseAllSufficient() throws SQLException {
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered("0001", 2));
+        trolley.add(ordered("0003", 5));
+
+        assertTrue(derbyRW.purchaseStocks(trolley).isEmpty());
+        assertEquals(98, derbyRW.searchByProductId("0001").getStockQuantity());
+        assertEquals(0, derbyRW.searchByProductId("0003").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Purchase changes nothing when any product is insufficient")
+    void testPurchaseAllOrNothing() throws SQLException {
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered("0001", 2));
+        trolley.add(ordered("0003", 6));
+
+        ArrayList<Product> insufficient = derbyRW.purchaseStocks(trolley);
+        assertEquals(1, insufficient.size());
+        assertEquals("0003", insufficient.get(0).getProductId());
+        assertEquals(5, insufficient.get(0).getStockQuantity());
+        assertEquals(100, derbyRW.searchByProductId("0001").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Two DerbyRW instances racing for the last units never oversell")
+    void testConcurrentPurchaseAcrossInstances() throws Exception {
+        DerbyRW otherClient = new DerbyRW(pool); // like the second customer client started by Main
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered("0003", 3)); // 5 in stock, only one of the two purchases can succeed
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<ArrayList<Product>> first = executor.submit(() -> derbyRW.purchaseStocks(trolley));
+        Future<ArrayList<Product>> second = executor.submit(() -> otherClient.purchaseStocks(trolley));
+        int succeeded = (first.get().isEmpty() ? 1 : 0) + (second.get().isEmpty() ? 1 : 0);
+        executor.shutdown();
+
+        assertEquals(1, succeeded);
+        assertEquals(2, derbyRW.searchByProductId("0003").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Products that no longer exist are skipped, the rest is still purchased")
+    void testPurchaseSkipsMissingProduct() throws SQLException {
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered("0001", 1));
+        trolley.add(ordered("0099", 1));
+
+        assertTrue(derbyRW.purchaseStocks(trolley).isEmpty());
+        assertEquals(99, derbyRW.searchByProductId("0001").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Released stock is added back after a purchase")
+    void testReleaseStocks() throws SQLException {
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(ordered("0003", 5));
+        trolley.add(ordered("0001", 10));
+        assertTrue(derbyRW.purchaseStocks(trolley).isEmpty());
+        assertEquals(0, derbyRW.searchByProductId("0003").getStockQuantity());
+
+        derbyRW.releaseStocks(trolley);
+        assertEquals(5, derbyRW.searchByProductId("0003").getStockQuantity());
+        assertEquals(100, derbyRW.searchByProductId("0001").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Insert, update and delete a product")
+    void testInsertUpdateDelete() throws SQLException {
+        assertTrue(derbyRW.isProIdAvailable("0042"));
+        derbyRW.insertNewProduct("0042", "Kettle", 15.50, "0042.jpg", 20);
+        assertFalse(derbyRW.isProIdAvailable("0042"));
+
+        derbyRW.updateProduct("0042", "Steel Kettle", 17.00, "0042.jpg", 25);
+        Product kettle = derbyRW.searchByProductId("0042");
+        assertEquals("Steel Kettle", kettle.getProductDescription());
+        assertEquals(25, kettle.getStockQuantity());
+
+        derbyRW.deleteProduct("0042");
+        assertNull(derbyRW.searchByProductId("0042"));
+    }
+
+    @Test
+    @DisplayName("A warehouse edit is refused if the product changed since it was read")
+    void testUpdateProductCompareAndSet() throws SQLException {
+        Product firstWarehouse = derbyRW.searchByProductId("0003");
+        Product secondWarehouse = derbyRW.searchByProductId("0003");
+        assertEquals(firstWarehouse.getVersion(), secondWarehouse.getVersion());
+
+        assertTrue(derbyRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 5, firstWarehouse.getVersion()));
+        assertFalse(derbyRW.updateProduct("0003", "Toaster", 9.99, "0003.jpg", 50, secondWarehouse.getVersion()));
+        assertEquals("Toaster deluxe", derbyRW.searchByProductId("0003").getProductDescription());
+
+        // stock sold after the edit started also makes it stale, the sale is not overwritten
+        Product reread = derbyRW.searchByProductId("0003");
+        assertTrue(derbyRW.purchaseStocks(new ArrayList<>(List.of(ordered("0003", 2)))).isEmpty());
+        assertFalse(derbyRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 5, reread.getVersion()));
+        assertEquals(3, derbyRW.searchByProductId("0003").getStockQuantity());
+
+        Product current = derbyRW.searchByProductId("0003");
+        assertTrue(derbyRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 10, current.getVersion()));
+        assertEquals(current.getVersion() + 1, derbyRW.searchByProductId("0003").getVersion());
+        assertFalse(derbyRW.updateProduct("9999", "Nothing", 1.00, "x.jpg", 1, 0), "unknown product");
+    }
+
+    @Test
+    @DisplayName("Bulk insert skips IDs already in use, keyset pages read the whole table")
+    void testInsertNewProductsAndPages() throws SQLException {
+        int batchSize = DatabaseRWFactory.importBatchSize;
+        DatabaseRWFactory.importBatchSize = 2; // several JDBC batches for five rows
+        try {
+            ArrayList<Product> rejected = derbyRW.insertNewProducts(List.of(
+                    new Product("0002", "DAB Radio", "0002.jpg", 29.99, 10),
+                    new Product("0003", "Another toaster", "x.jpg", 1.00, 1), // already in use
+                    new Product("0004", "Watch", "0004.jpg", 29.99, 10),
+                    new Product("1000000005", "Kettle", "1000000005.jpg", 15.00, 10),
+                    new Product("0006", "MP3 player", "0006.jpg", 7.99, 10)));
+            assertEquals(List.of("0003"), rejected.stream().map(Product::getProductId).toList());
+        } finally {
+            DatabaseRWFactory.importBatchSize = batchSize;
+        }
+        assertEquals("Toaster", derbyRW.searchByProductId("0003").getProductDescription()); // not replaced
+        assertEquals(8, derbyRW.getAllProducts().size());
+
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<Product> page = derbyRW.getProductsAfter("", 3);
+        while (!page.isEmpty()) {
+            page.forEach(product -> ids.add(product.getProductId()));
+            page = derbyRW.getProductsAfter(ids.get(ids.size() - 1), 3);
+        }
+        assertEquals(List.of("0001", "0002", "0003", "0004", "0006", "0007", "0008", "1000000005"), ids);
+    }
+
+    @Test
+    @DisplayName("Stock adjustments are applied together, or not at all")
+    void testAdjustStocks() throws SQLException {
+        Map<String, Integer> delivery = new LinkedHashMap<>();
+        delivery.put("0003", 300);
+        delivery.put("0001", -10);
+        assertTrue(derbyRW.adjustStocks(delivery).isEmpty());
+        assertEquals(305, derbyRW.searchByProductId("0003").getStockQuantity());
+        assertEquals(90, derbyRW.searchByProductId("0001").getStockQuantity());
+
+        Map<String, Integer> bad = new LinkedHashMap<>();
+        bad.put("0007", 50);
+        bad.put("0003", -400); // more than in stock
+        bad.put("9999", 1);    // no such product
+        assertEquals(List.of("0003", "9999"), derbyRW.adjustStocks(bad));
+        assertEquals(100, derbyRW.searchByProductId("0007").getStockQuantity()); // rolled back
+        assertEquals(305, derbyRW.searchByProductId("0003").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("A reservation takes the stock and is recorded together, and can be ended only once")
+    void testReservations() throws SQLException {
+        ArrayList<Product> lines = new ArrayList<>(List.of(ordered("0003", 2), ordered("0001", 1)));
+        StockReservation reservation = new StockReservation("r1", lines, 12345L, "4242@shop-till-2");
+        assertTrue(derbyRW.reserveStocks(reservation).isEmpty());
+        assertEquals(3, derbyRW.searchByProductId("0003").getStockQuantity());
+
+        StockReservation tooMuch = new StockReservation("r2", List.of(ordered("0003", 4)), 12345L);
+        assertEquals(1, derbyRW.reserveStocks(tooMuch).size());
+        List<StockReservation> open = derbyRW.getOpenReservations();
+        assertEquals(1, open.size(), "nothing recorded for the insufficient trolley");
+        assertEquals("r1", open.get(0).getReservationId());
+        assertEquals(12345L, open.get(0).getExpiresAtMillis());
+        assertEquals("4242@shop-till-2", open.get(0).getOwner());
+        assertEquals(List.of("0003", "0001"), open.get(0).getLines().stream().map(Product::getProductId).toList());
+        assertEquals(2, open.get(0).getLines().get(0).getOrderedQuantity());
+
+        assertTrue(derbyRW.endReservation(open.get(0), true));
+        assertFalse(derbyRW.endReservation(reservation, true), "already ended");
+        assertEquals(5, derbyRW.searchByProductId("0003").getStockQuantity(), "released once");
+        assertEquals(100, derbyRW.searchByProductId("0001").getStockQuantity());
+        assertTrue(derbyRW.getOpenReservations().isEmpty());
+
+        StockReservation paid = new StockReservation("r3", List.of(ordered("0003", 1)), 12345L);
+        assertTrue(derbyRW.reserveStocks(paid).isEmpty());
+        assertTrue(derbyRW.endReservation(paid, false));
+        assertFalse(derbyRW.endReservation(paid, true), "a committed reservation is not released");
+        assertEquals(4, derbyRW.searchByProductId("0003").getStockQuantity());
+    }
+}
@@ -0,0 +1,114 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the startup index of FileOrderStore: read instead of the order files when the folders are unchanged,
+ * and the folders scanned when the index is missing, stale or damaged.
+ */
+@DisplayName("FileOrderStore Tests")
+public class FileOrderStoreTest {
+
+    @TempDir
+    Path ordersDir;
+
+    private static Order order(int orderId, String customerType) {
+        Product product = new Product("0003", "Toaster", "0003.jpg", 19.99, 12);
+        product.setOrderedQuantity(2);
+        return new Order(orderId, OrderState.Ordered, "2025-03-11 19:53:45", new ArrayList<>(List.of(product)),
+                customerType);
+    }
+
+    private FileOrderStore openStore() {
+        return new FileOrderStore(ordersDir, ordersDir.resolve("orderIndex.dat"), 50);
+    }
+
+    // three orders, one of each open state is left: 1 Ordered (VIP), 2 Progressing, 3 Collected
+    private void storeOrders() throws IOException {
+        try (FileOrderStore store = openStore()) {
+            assertEquals(List.of(), store.loadOpenOrders());
+            store.createOrder(order(1, "VIP"));
+            store.createOrder(order(2, "Standard"));
+            store.createOrder(order(3, "Prime"));
+            assertTrue(store.changeState(2, OrderState.Ordered, OrderState.Progressing));
+            assertTrue(store.changeState(3, OrderState.Ordered, OrderState.Collected));
+        }
+        assertTrue(Files.exists(ordersDir.resolve("orderIndex.dat")), "written on close");
+    }
+
+    // changes the customer type in the text file only, which does not change the folder's modification time
+    private void editCustomerType(int orderId, String from, String to) throws IOException {
+        Path file = ordersDir.resolve("ordered").resolve(orderId + ".txt");
+        Files.writeString(file, Files.readString(file).replace("CustomerType: " + from, "CustomerType: " + to));
+    }
+
+    @Test
+    @DisplayName("Open orders are read from the index when the folders are unchanged")
+    void testIndexUsed() throws IOException {
+        storeOrders();
+        editCustomerType(1, "VIP", "Prime");
+
+        try (FileOrderStore store = openStore()) {
+            assertEquals(List.of(new OrderStore.StoredOrder(1, OrderState.Ordered, "VIP"),
+                            new OrderStore.StoredOrder(2, OrderState.Progressing, "Standard")),
+                    store.loadOpenOrders(), "the index, not the edited file");
+            assertTrue(store.getStateSince(2) > 0);
+            assertEquals(0, store.getStateSince(3), "collected orders are not in the index");
+        }
+    }
+
+    @Test
+    @DisplayName("The folders are scanned when an order file was added after the index")
+    void testStaleIndex() throws IOException {
+        storeOrders();
+        editCustomerType(1, "VIP", "Prime");
+        Files.copy(ordersDir.resolve("ordered").resolve("1.txt"), ordersDir.resolve("ordered").resolve("9.txt"));
+
+        List<OrderStore.StoredOrder> expected = List.of(new OrderStore.StoredOrder(1, OrderState.Ordered, "Prime"),
+                new OrderStore.StoredOrder(9, OrderState.Ordered, "Prime"),
+                new OrderStore.StoredOrder(2, OrderState.Progressing, "Standard"));
+        try (FileOrderStore store = openStore()) {
+            assertEquals(expected, store.loadOpenOrders());
+        }
+        try (FileOrderStore store = openStore()) {
+            assertEquals(expected, store.loadOpenOrders(), "index written again after the scan");
+        }
+    }
+
+    @Test
+    @DisplayName("The folders are scanned when the index is damaged or missing")
+    void testDamagedIndex() throws IOException {
+        storeOrders();
+        editCustomerType(1, "VIP", "Prime");
+        Path indexPath = ordersDir.resolve("orderIndex.dat");
+        byte[] index = Files.readAllBytes(indexPath);
+        index[index.length - 1] ^= 1;
+        Files.write(indexPath, index);
+
+        try (FileOrderStore store = openStore()) {
+            assertEquals(OrderState.Ordered, store.loadOpenOrders().get(0).state());
+            assertEquals("Prime", store.loadOpenOrders().get(0).customerType(), "read from the file");
+        }
+
+        Files.delete(indexPath);
+        try (FileOrderStore store = new FileOrderStore(ordersDir, indexPath, 50)) {
+            assertEquals(2, store.loadOpenOrders().size());
+        }
+        try (FileOrderStore store = new FileOrderStore(ordersDir)) {
+            assertEquals(2, store.loadOpenOrders().size(), "without an index");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InMemoryDatabaseRW: the same search and purchase behaviour as DerbyRW, without a database.
+ */
+@DisplayName("InMemoryDatabaseRW Tests")
+public class InMemoryDatabaseRWTest {
+
+    private InMemoryDatabaseRW databaseRW;
+
+    @BeforeEach
+    void setUp() {
+        databaseRW = new InMemoryDatabaseRW(new StockLockManager(16));
+        databaseRW.load(List.of(
+                new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100),
+                new Product("0003", "Toaster", "0003.jpg", 19.99, 5),
+                new Product("0008", "USB2 drive", "0008.jpg", 7.99, 100),
+                new Product("0007", "USB drive", "0007.jpg", 6.99, 100)));
+    }
+
+    private static Product ordered(String id, int quantity) {
+        Product product = new Product(id, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Search finds a product by ID first, then by name, in product ID order")
+    void testSearchProduct() {
+        assertEquals(1, databaseRW.searchProduct("0001").size());
+        ArrayList<Product> drives = databaseRW.searchProduct("USB");
+        assertEquals(List.of("0007", "0008"), drives.stream().map(Product::getProductId).toList());
+        assertTrue(databaseRW.searchProduct("nothing like this").isEmpty());
+        assertEquals(4, databaseRW.getAllProducts().size());
+    }
+
+    @Test
+    @DisplayName("A purchase with one insufficient product reduces nothing")
+    void testPurchaseIsAllOrNothing() {
+        ArrayList<Product> insufficient = databaseRW.purchaseStocks(
+                new ArrayList<>(List.of(ordered("0001", 2), ordered("0003", 6))));
+
+        assertEquals(1, insufficient.size());
+        assertEquals("0003", insufficient.get(0).getProductId());
+        assertEquals(5, insufficient.get(0).getStockQuantity()); // current stock, for the customer message
+        assertEquals(100, databaseRW.searchByProductId("0001").getStockQuantity());
+
+        assertTrue(databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0001", 2), ordered("0003", 5)))).isEmpty());
+        assertEquals(98, databaseRW.searchByProductId("0001").getStockQuantity());
+        assertEquals(0, databaseRW.searchByProductId("0003").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Concurrent purchases never take more than the stock")
+    void testNoOversellUnderConcurrency() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger purchased = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0007", 1), ordered("0003", 1)))).isEmpty()) {
+                        purchased.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            assertEquals(5, purchased.get());
+            assertEquals(0, databaseRW.searchByProductId("0003").getStockQuantity());
+            assertEquals(95, databaseRW.searchByProductId("0007").getStockQuantity());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Every change raises the version, a stale warehouse edit is refused")
+    void testUpdateProductCompareAndSet() {
+        Product read = databaseRW.searchByProductId("0003");
+        databaseRW.adjustStocks(Map.of("0003", 10));
+        assertFalse(databaseRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 1, read.getVersion()));
+        assertEquals(15, databaseRW.searchByProductId("0003").getStockQuantity());
+
+        Product current = databaseRW.searchByProductId("0003");
+        assertEquals(read.getVersion() + 1, current.getVersion());
+        assertTrue(databaseRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 14, current.getVersion()));
+        assertEquals("Toaster deluxe", databaseRW.searchByProductId("0003").getProductDescription());
+    }
+
+    @Test
+    @DisplayName("Warehouse changes: release, update, delete, insert")
+    void testWarehouseChanges() throws SQLException {
+        databaseRW.releaseStocks(new ArrayList<>(List.of(ordered("0003", 3))));
+        assertEquals(8, databaseRW.searchByProductId("0003").getStockQuantity());
+
+        databaseRW.updateProduct("0003", "Toaster deluxe", 24.99, "0003.jpg", 12);
+        Product updated = databaseRW.searchByProductId("0003");
+        assertEquals("Toaster deluxe", updated.getProductDescription());
+        assertEquals(12, updated.getStockQuantity());
+
+        databaseRW.deleteProduct("0003");
+        assertTrue(databaseRW.isProIdAvailable("0003"));
+
+        databaseRW.insertNewProduct("0003", "Kettle", 15.00, "0003.jpg", 7);
+        assertEquals("Kettle", databaseRW.searchByProductId("0003").getProductDescription());
+        SQLException duplicate = assertThrows(SQLException.class,
+                () -> databaseRW.insertNewProduct("0003", "Kettle", 15.00, "0003.jpg", 7));
+        assertEquals("23505", duplicate.getSQLState());
+    }
+
+    @Test
+    @DisplayName("Stock adjustments are checked first and applied together")
+    void testAdjustStocks() {
+        assertEquals(List.of("0003"), databaseRW.adjustStocks(Map.of("0001", 50, "0003", -6)));
+        assertEquals(100, databaseRW.searchByProductId("0001").getStockQuantity()); // nothing changed
+
+        assertTrue(databaseRW.adjustStocks(Map.of("0001", 50, "0003", -5)).isEmpty());
+        assertEquals(150, databaseRW.searchByProductId("0001").getStockQuantity());
+        assertEquals(0, databaseRW.searchByProductId("0003").getStockQuantity());
+    }
+}
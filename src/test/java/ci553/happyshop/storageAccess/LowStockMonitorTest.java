@@ -0,0 +1,87 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the low-stock alerts: LowStockMonitor kept up to date by LowStockDatabaseRW
+ * over an InMemoryDatabaseRW, with the pushed threshold crossings recorded by a listener.
+ */
+@DisplayName("LowStockMonitor Tests")
+public class LowStockMonitorTest {
+
+    private InMemoryDatabaseRW backend;
+    private LowStockMonitor monitor;
+    private DatabaseRW databaseRW;
+    private final List<String> alerts = new ArrayList<>(); // "0003 low 4" or "0003 ok 12"
+
+    @BeforeEach
+    void setUp() {
+        List<Product> products = List.of(
+                new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100),
+                new Product("0003", "Toaster", "0003.jpg", 19.99, 12),
+                new Product("0007", "USB drive", "0007.jpg", 6.99, 3));
+        backend = new InMemoryDatabaseRW(new StockLockManager(16));
+        backend.load(products);
+        monitor = new LowStockMonitor(10);
+        monitor.rebuild(products);
+        monitor.addListener((level, low) -> alerts.add(level.productId() + (low ? " low " : " ok ") + level.stock()));
+        databaseRW = new LowStockDatabaseRW(backend, monitor);
+    }
+
+    private static Product ordered(String id, int quantity) {
+        Product product = new Product(id, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    private List<String> lowIds() {
+        return monitor.getLowStock().stream().map(LowStockMonitor.StockLevel::productId).toList();
+    }
+
+    @Test
+    @DisplayName("Purchases, releases and deliveries push an alert only when the threshold is crossed")
+    void testStockChangesCrossingThreshold() throws SQLException {
+        assertEquals(List.of("0007"), lowIds());
+
+        databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0003", 2)))); // 10 left, not low yet
+        assertTrue(alerts.isEmpty());
+        databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0003", 1), ordered("0003", 1))));
+        assertEquals(List.of("0003 low 8"), alerts);
+        assertEquals(List.of("0007", "0003"), lowIds(), "lowest stock first");
+
+        // an insufficient purchase changes nothing, so nothing is pushed
+        databaseRW.purchaseStocks(new ArrayList<>(List.of(ordered("0001", 95), ordered("0007", 4))));
+        assertEquals(1, alerts.size());
+        assertEquals(100, monitor.getLevel("0001").stock());
+
+        databaseRW.releaseStocks(new ArrayList<>(List.of(ordered("0003", 1))));
+        databaseRW.adjustStocks(Map.of("0003", 20, "0007", 1));
+        assertEquals(List.of("0003 low 8", "0003 ok 29"), alerts);
+        assertEquals(List.of("0007"), lowIds());
+        assertEquals(backend.searchByProductId("0007").getStockQuantity(), monitor.getLevel("0007").stock());
+    }
+
+    @Test
+    @DisplayName("Inserts, updates and deletes keep the sorted levels in step")
+    void testProductChanges() throws SQLException {
+        databaseRW.insertNewProduct("0009", "Kettle", 15.00, "0009.jpg", 2);
+        databaseRW.updateProduct("0001", "40 inch TV", 269.00, "0001.jpg", 5);
+        databaseRW.updateProduct("0099", "Not there", 1.00, "0099.jpg", 1); // unknown, not added
+        assertEquals(List.of("0009", "0007", "0001"), lowIds());
+
+        databaseRW.deleteProduct("0007");
+        assertEquals(List.of("0009 low 2", "0001 low 5", "0007 ok 3"), alerts);
+        assertEquals(List.of("0009", "0001"), lowIds());
+        assertNull(monitor.getLevel("0099"));
+    }
+}
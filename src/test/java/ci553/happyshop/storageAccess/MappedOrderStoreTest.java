@@ -0,0 +1,75 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MappedOrderStore: in-place state changes, reopening the mapped file, growing the mapping,
+ * and the order text rebuilt from the line items and the record.
+ */
+@DisplayName("MappedOrderStore Tests")
+public class MappedOrderStoreTest {
+
+    @TempDir
+    Path ordersDir;
+
+    private static Order order(int orderId, String customerType) {
+        Product product = new Product("0003", "Toaster", "0003.jpg", 19.99, 12);
+        product.setOrderedQuantity(2);
+        return new Order(orderId, OrderState.Ordered, "2025-03-11 19:53:45", new ArrayList<>(List.of(product)),
+                customerType);
+    }
+
+    @Test
+    @DisplayName("State changes are written in place and survive reopening the store")
+    void testStateChanges() throws IOException {
+        Path storeDir = ordersDir.resolve("mapped");
+        try (MappedOrderStore store = new MappedOrderStore(storeDir, 1, null)) {
+            store.createOrder(order(1, "VIP"));
+            store.createOrder(order(2, "Standard"));
+            store.createOrder(order(5000, "Prime")); // beyond the first mapping
+            assertThrows(IOException.class, () -> store.createOrder(order(2, "Standard")));
+            assertTrue(store.changeState(1, OrderState.Ordered, OrderState.Progressing));
+            assertFalse(store.changeState(1, OrderState.Ordered, OrderState.Ready), "not Ordered anymore");
+            assertTrue(store.changeState(2, OrderState.Ordered, OrderState.Collected));
+        }
+
+        try (MappedOrderStore store = new MappedOrderStore(storeDir, 0, null)) {
+            assertEquals(List.of(new OrderStore.StoredOrder(1, OrderState.Progressing, "VIP"),
+                    new OrderStore.StoredOrder(5000, OrderState.Ordered, "Prime")), store.loadOpenOrders());
+            assertEquals(OrderState.Collected, store.findState(2));
+            assertNull(store.findState(3));
+            assertNull(store.findState(100_000));
+            assertTrue(store.getStateTime(1, OrderState.Progressing) > 0);
+            assertEquals(0, store.getStateTime(1, OrderState.Ready));
+
+            String detail = store.readOrderDetail(1, OrderState.Progressing);
+            assertTrue(detail.contains("State: Progressing"));
+            assertTrue(detail.contains("Toaster"));
+            assertFalse(detail.contains("ProgressingDateTime: \n"), "time of the change filled in");
+        }
+    }
+
+    @Test
+    @DisplayName("The text files are kept as a projection")
+    void testProjection() throws IOException {
+        FileOrderStore files = new FileOrderStore(ordersDir);
+        try (MappedOrderStore store = new MappedOrderStore(ordersDir.resolve("mapped"), 1, files)) {
+            store.createOrder(order(7, "Standard"));
+            store.changeState(7, OrderState.Ordered, OrderState.Ready);
+        }
+        assertEquals(OrderState.Ready, files.findState(7));
+        assertTrue(files.readOrderDetail(7, OrderState.Ready).contains("State: Ready"));
+    }
+}
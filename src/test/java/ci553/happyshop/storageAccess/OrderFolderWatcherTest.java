@@ -0,0 +1,57 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sharing the orders folder between JVMs: OrderFolderWatcher reporting the files written by another
+ * process, and OrderFileManager refusing to move an order that was already moved.
+ */
+@DisplayName("OrderFolderWatcher Tests")
+public class OrderFolderWatcherTest {
+
+    @TempDir
+    Path ordersDir;
+
+    @Test
+    @DisplayName("A new order file and its move are reported to the listener")
+    void testChangesReported() throws IOException, InterruptedException {
+        Path ordered = ordersDir.resolve("ordered");
+        Path progressing = ordersDir.resolve("progressing");
+        Semaphore changes = new Semaphore(0);
+        try (OrderFolderWatcher watcher = new OrderFolderWatcher(List.of(ordered, progressing), changes::release, 50)) {
+            watcher.start();
+            assertTrue(Files.isDirectory(progressing), "missing folders are created");
+
+            OrderFileManager.createOrderFile(ordered, 12, "OrderId: 12\nState: Ordered");
+            assertTrue(changes.tryAcquire(10, TimeUnit.SECONDS), "new order reported");
+
+            assertTrue(OrderFileManager.updateAndMoveOrderFile(12, OrderState.Progressing, ordered, progressing));
+            assertTrue(changes.tryAcquire(10, TimeUnit.SECONDS), "move reported");
+        }
+    }
+
+    @Test
+    @DisplayName("The second move of the same order finds the file gone")
+    void testSecondMoveRefused() throws IOException {
+        Path ordered = ordersDir.resolve("ordered");
+        Path progressing = ordersDir.resolve("progressing");
+        OrderFileManager.createOrderFile(ordered, 7, "OrderId: 7\nState: Ordered");
+
+        assertTrue(OrderFileManager.updateAndMoveOrderFile(7, OrderState.Progressing, ordered, progressing));
+        assertFalse(OrderFileManager.updateAndMoveOrderFile(7, OrderState.Progressing, ordered, progressing));
+        assertTrue(OrderFileManager.readOrderFile(progressing, 7).contains("State: Progressing"));
+        assertTrue(Files.exists(ordersDir.resolve("orderState.lock")));
+    }
+}
@@ -0,0 +1,169 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Order;
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for OrderJournal: rebuilding the orders from the log, cutting off a record torn by a crash
+ * or by a failed write,
+ * snapshots with compaction of collected orders, and the text files kept as a projection.
+ */
+@DisplayName("OrderJournal Tests")
+public class OrderJournalTest {
+
+    @TempDir
+    Path ordersDir;
+
+    private static Order order(int orderId, String customerType) {
+        Product product = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100);
+        product.setOrderedQuantity(1);
+        return new Order(orderId, OrderState.Ordered, "2025-03-11 19:53:45", new ArrayList<>(List.of(product)),
+                customerType);
+    }
+
+    private OrderJournal open(int snapshotEveryEvents, OrderStore projection) throws IOException {
+        return new OrderJournal(ordersDir.resolve("journal"), 1 << 20, snapshotEveryEvents, true, projection);
+    }
+
+    @Test
+    @DisplayName("Orders and state changes are rebuilt when the journal is opened again")
+    void testReplay() throws IOException {
+        try (OrderJournal journal = open(1000, null)) {
+            journal.createOrder(order(1, "VIP"));
+            journal.createOrder(order(2, "Standard"));
+            assertTrue(journal.changeState(1, OrderState.Ordered, OrderState.Progressing));
+            assertFalse(journal.changeState(1, OrderState.Ordered, OrderState.Progressing), "already moved");
+            assertTrue(journal.changeState(2, OrderState.Ordered, OrderState.Progressing));
+            assertTrue(journal.changeState(2, OrderState.Progressing, OrderState.Collected));
+        }
+
+        try (OrderJournal journal = open(1000, null)) {
+            assertEquals(List.of(new OrderStore.StoredOrder(1, OrderState.Progressing, "VIP")), journal.loadOpenOrders());
+            assertEquals(OrderState.Collected, journal.findState(2));
+            String detail = journal.readOrderDetail(1, OrderState.Progressing);
+            assertTrue(detail.contains("State: Progressing"));
+            assertTrue(detail.contains("CustomerType: VIP"));
+            assertFalse(detail.contains("ProgressingDateTime: \n"), "time of the change filled in");
+            assertTrue(journal.getStateTime(1, OrderState.Progressing) >= journal.getStateTime(1, OrderState.Ordered));
+        }
+    }
+
+    @Test
+    @DisplayName("A record torn by a crash is cut off, and the journal goes on after it")
+    void testTornRecord() throws IOException {
+        try (OrderJournal journal = open(1000, null)) {
+            journal.createOrder(order(1, "Standard"));
+            journal.createOrder(order(2, "Standard"));
+        }
+        Path segment = Files.list(ordersDir.resolve("journal")).filter(p -> p.toString().endsWith(".log"))
+                .findFirst().orElseThrow();
+        long fullSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(fullSize - 5); // the second order's record was only partly written
+        }
+
+        try (OrderJournal journal = open(1000, null)) {
+            assertEquals(1, journal.loadOpenOrders().size());
+            assertNull(journal.findState(2));
+            journal.createOrder(order(3, "Prime"));
+        }
+        try (OrderJournal journal = open(1000, null)) {
+            assertEquals(List.of(1, 3), journal.loadOpenOrders().stream().map(OrderStore.StoredOrder::orderId).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("A write that fails halfway is cut off, so the records after it are kept")
+    void testFailedWrite() throws IOException {
+        try (FailingJournal journal = new FailingJournal(ordersDir.resolve("journal"))) {
+            journal.createOrder(order(1, "Standard"));
+            journal.failNextWrite = true;
+            assertThrows(IOException.class, () -> journal.createOrder(order(2, "Standard")));
+            assertNull(journal.findState(2));
+            journal.createOrder(order(3, "Prime"));
+            assertTrue(journal.changeState(3, OrderState.Ordered, OrderState.Progressing));
+        }
+        try (OrderJournal journal = open(1000, null)) {
+            assertEquals(List.of(new OrderStore.StoredOrder(1, OrderState.Ordered, "Standard"),
+                    new OrderStore.StoredOrder(3, OrderState.Progressing, "Prime")), journal.loadOpenOrders());
+        }
+    }
+
+    @Test
+    @DisplayName("A failed snapshot does not fail the event that triggered it, and is tried again")
+    void testFailedSnapshot() throws IOException {
+        Path journalDir = ordersDir.resolve("journal");
+        // a directory where the first snapshot's temporary file goes makes writing it fail
+        Files.createDirectories(journalDir.resolve("snapshot-0000000002.snap.tmp"));
+        try (OrderJournal journal = open(2, null)) {
+            journal.createOrder(order(1, "Standard"));
+            journal.createOrder(order(2, "Standard")); // 2nd event: the snapshot fails
+            assertEquals(OrderState.Ordered, journal.findState(2));
+            assertTrue(journal.changeState(2, OrderState.Ordered, OrderState.Progressing)); // snapshot retried
+        }
+        assertTrue(Files.exists(journalDir.resolve("snapshot-0000000003.snap")));
+        try (OrderJournal journal = open(2, null)) {
+            assertEquals(List.of(new OrderStore.StoredOrder(1, OrderState.Ordered, "Standard"),
+                    new OrderStore.StoredOrder(2, OrderState.Progressing, "Standard")), journal.loadOpenOrders());
+        }
+    }
+
+    // a journal whose next write can be made to fail after writing half of its record, like a full disk
+    private static class FailingJournal extends OrderJournal {
+        boolean failNextWrite;
+
+        FailingJournal(Path journalDir) throws IOException {
+            super(journalDir, 1 << 20, 1000, true, null);
+        }
+
+        @Override
+        void writeRecord(ByteBuffer record) throws IOException {
+            if (!failNextWrite) {
+                super.writeRecord(record);
+                return;
+            }
+            failNextWrite = false;
+            super.writeRecord(record.slice(0, record.remaining() / 2));
+            throw new IOException("No space left on device");
+        }
+    }
+
+    @Test
+    @DisplayName("Snapshots compact away collected orders and old segments; text files are kept as a copy")
+    void testSnapshotAndProjection() throws IOException {
+        FileOrderStore files = new FileOrderStore(ordersDir);
+        try (OrderJournal journal = open(4, files)) {
+            for (int id = 1; id <= 3; id++) {
+                journal.createOrder(order(id, "Standard"));
+            }
+            journal.changeState(1, OrderState.Ordered, OrderState.Collected); // 4th event: snapshot
+            assertEquals(1, journal.getSegments().size(), "older segments deleted");
+            assertNull(journal.findState(1), "collected order compacted away");
+            journal.changeState(2, OrderState.Ordered, OrderState.Ready);
+        }
+        assertEquals(1, Files.list(ordersDir.resolve("journal")).filter(p -> p.toString().endsWith(".snap")).count());
+        assertEquals(OrderState.Collected, files.findState(1));
+        assertEquals(OrderState.Ready, files.findState(2));
+        assertTrue(files.readOrderDetail(2, OrderState.Ready).contains("State: Ready"));
+
+        try (OrderJournal journal = open(4, null)) {
+            assertEquals(List.of(new OrderStore.StoredOrder(2, OrderState.Ready, "Standard"),
+                    new OrderStore.StoredOrder(3, OrderState.Ordered, "Standard")), journal.loadOpenOrders());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bulk import and export of products (ProductImporter, ProductRecordReader, ProductExporter),
+ * against an InMemoryDatabaseRW and temporary folders, so the real images/ folder is never touched.
+ */
+@DisplayName("ProductImporter Tests")
+public class ProductImporterTest {
+
+    @TempDir
+    Path supplierFolder;
+    @TempDir
+    Path imageFolder;
+
+    private InMemoryDatabaseRW databaseRW;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        databaseRW = new InMemoryDatabaseRW(new StockLockManager(16));
+        databaseRW.load(List.of(new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100)));
+        Files.writeString(imageFolder.resolve("0001.jpg"), "tv");
+        Files.writeString(supplierFolder.resolve("kettle.png"), "kettle");
+        Files.writeString(supplierFolder.resolve("radio.jpg"), "radio");
+    }
+
+    private ProductImporter importer(int commitInterval) {
+        return new ProductImporter(databaseRW, imageFolder.toString(), commitInterval, 2);
+    }
+
+    @Test
+    @DisplayName("CSV import: quoted fields, bad rows reported, images copied under the product ID")
+    void testCsvImport() throws IOException {
+        Path csv = supplierFolder.resolve("catalogue.csv");
+        Files.writeString(csv, String.join("\n",
+                "productID,description,unitPrice,image,inStock",
+                "0002,\"Kettle, 1.7 litre \"\"quiet\"\"\",15.00,kettle.png,20",
+                "0003,Radio,29.99,radio.jpg,5",
+                "0001,Another TV,199.00,0001.jpg,1",   // ID already in use
+                "12,Too short,1.00,radio.jpg,1",       // bad ID
+                "0004,Cheap,0.999,radio.jpg,1",        // three decimals
+                "0005,No image,1.00,missing.jpg,1",
+                "0003,Radio again,29.99,radio.jpg,5",  // twice in the file
+                ""));
+
+        ArrayList<int[]> progress = new ArrayList<>();
+        ProductImporter.ImportReport report = importer(2).importFile(csv,
+                (read, imported, failed) -> progress.add(new int[]{read, imported, failed}));
+
+        assertEquals(7, report.getRowsRead());
+        assertEquals(2, report.getRowsImported());
+        assertEquals(List.of(3, 4, 5, 6, 7), report.getErrors().stream().map(e -> e.row()).toList());
+        assertFalse(report.isStopped());
+        assertTrue(progress.size() >= 2, "progress is reported after every chunk");
+
+        Product kettle = databaseRW.searchByProductId("0002");
+        assertEquals("Kettle, 1.7 litre \"quiet\"", kettle.getProductDescription());
+        assertEquals("0002.png", kettle.getProductImageName());
+        assertEquals("kettle", Files.readString(imageFolder.resolve("0002.png")));
+        assertEquals("40 inch TV", databaseRW.searchByProductId("0001").getProductDescription()); // not replaced
+        assertEquals("tv", Files.readString(imageFolder.resolve("0001.jpg")));
+
+        Path errorReport = supplierFolder.resolve("errors.csv");
+        report.writeErrorReport(errorReport);
+        List<String> lines = Files.readAllLines(errorReport);
+        assertEquals("row,productID,error", lines.get(0));
+        assertEquals("3,0001,Product ID is already in use", lines.get(1));
+    }
+
+    @Test
+    @DisplayName("JSON import, and a broken file keeps the rows before the error")
+    void testJsonImport() throws IOException {
+        Path json = supplierFolder.resolve("catalogue.json");
+        Files.writeString(json, """
+                [
+                  {"productID": "0002", "description": "Kettle \\u0026 cups", "unitPrice": 15, "image": "kettle.png", "inStock": 20},
+                  {"productID": "0003", "description": "Radio", "unitPrice": 29.99, "image": "radio.jpg", "inStock": 5,
+                   "supplier": "ignored"}
+                ]""");
+        ProductImporter.ImportReport report = importer(100).importFile(json, null);
+        assertEquals(2, report.getRowsImported(), report.getErrors().toString());
+        assertEquals("Kettle & cups", databaseRW.searchByProductId("0002").getProductDescription());
+
+        Path broken = supplierFolder.resolve("broken.json");
+        Files.writeString(broken, """
+                [{"productID": "0004", "description": "Watch", "unitPrice": 29.99, "image": "radio.jpg", "inStock": 1},
+                 {"productID": "0005", "description": "Watch""");
+        report = importer(100).importFile(broken, null);
+        assertTrue(report.isStopped());
+        assertEquals(1, report.getRowsImported());
+        assertNotNull(databaseRW.searchByProductId("0004"));
+    }
+
+    @Test
+    @DisplayName("An export can be imported again into an empty database")
+    void testExportRoundTrip() throws IOException, SQLException {
+        databaseRW.insertNewProduct("0002", "Kettle, \"quiet\"", 15.00, "0001.jpg", 20);
+        for (String name : new String[]{"products.csv", "products.json"}) {
+            Path file = supplierFolder.resolve(name);
+            assertEquals(2, new ProductExporter(databaseRW, 1).exportFile(file, null));
+
+            InMemoryDatabaseRW copy = new InMemoryDatabaseRW(new StockLockManager(16));
+            ProductImporter.ImportReport report =
+                    new ProductImporter(copy, imageFolder.toString(), 10, 1).importFile(file, null);
+            assertEquals(2, report.getRowsImported(), name + ": " + report.getErrors());
+            Product kettle = copy.searchByProductId("0002");
+            assertEquals("Kettle, \"quiet\"", kettle.getProductDescription());
+            assertEquals(15.00, kettle.getUnitPrice());
+            assertEquals("0001.jpg", kettle.getProductImageName()); // already in the image folder, not copied
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ProductSearchIndex and the IndexedDatabaseRW decorator.
+ */
+@DisplayName("ProductSearchIndex Tests")
+public class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        ArrayList<Product> products = new ArrayList<>();
+        products.add(new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+        products.add(new Product("0002", "DAB Radio", "0002.jpg", 29.99, 100));
+        products.add(new Product("0004", "Watch", "0004.jpg", 29.99, 100));
+        products.add(new Product("0005", "Digital Camera", "0005.jpg", 89.99, 100));
+        products.add(new Product("0007", "USB drive", "0007.jpg", 6.99, 100));
+        products.add(new Product("0008", "USB2 drive", "0008.jpg", 7.99, 100));
+        products.add(new Product("0010", "Camera case for digital camera", "0010.jpg", 9.99, 100));
+        index.rebuild(products);
+    }
+
+    @Test
+    @DisplayName("Tokens match case-insensitively, exact matches rank before prefix matches")
+    void testExactBeforePrefix() {
+        assertEquals(List.of("0007", "0008"), index.search("USB"));
+        assertEquals(List.of("0008"), index.search("usb2"));
+    }
+
+    @Test
+    @DisplayName("Every keyword token must match, phrase matches rank first")
+    void testMultiTokenRanking() {
+        assertEquals(List.of("0005", "0010"), index.search("digital camera"));
+        assertEquals(List.of("0010", "0005"), index.search("cam")); // "Camera case..." starts with the keyword
+        assertTrue(index.search("digital watch").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Substrings inside a word no longer match, unlike LIKE '%x%'")
+    void testNoInfixMatch() {
+        assertTrue(index.search("atch").isEmpty());
+        assertTrue(index.search("  ").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Updates and deletes are applied incrementally")
+    void testIncrementalUpdates() {
+        index.put("0004", "Smart watch");
+        assertEquals(List.of("0004"), index.search("smart"));
+        index.remove("0004");
+        assertTrue(index.search("watch").isEmpty());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    @DisplayName("Misspelt keywords find similarly spelled products, best match first")
+    void testFuzzySearch() {
+        List<ProductSearchIndex.FuzzyMatch> matches = index.searchFuzzy("camra", 5, 1000);
+        assertEquals("0005", matches.get(0).productId); // both cameras score the same, ties go by productID
+        assertTrue(matches.get(0).score >= 0.3 && matches.get(0).score < 1.0);
+        assertEquals("0002", index.searchFuzzy("radoi", 5, 1000).get(0).productId);
+        assertEquals(1, index.searchFuzzy("usb drve", 1, 1000).size()); // top-K limit
+        assertTrue(index.searchFuzzy("xylophone", 5, 1000).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Fuzzy matching follows incremental updates")
+    void testFuzzySearchAfterUpdate() {
+        index.put("0011", "Toaster");
+        assertEquals("0011", index.searchFuzzy("toastr", 5, 1000).get(0).productId);
+        index.remove("0011");
+        assertTrue(index.searchFuzzy("toastr", 5, 1000).isEmpty());
+    }
+
+    @Test
+    @DisplayName("IndexedDatabaseRW keeps the index in sync with warehouse edits")
+    void testIndexedDatabaseRW() throws SQLException {
+        CachedDatabaseRWTest.CountingDatabaseRW backend = new CachedDatabaseRWTest.CountingDatabaseRW();
+        backend.rows.put("0007", new Product("0007", "USB drive", "0007.jpg", 6.99, 100));
+        ProductSearchIndex shared = new ProductSearchIndex();
+        DatabaseRW db = new IndexedDatabaseRW(backend, shared);
+
+        assertEquals(1, db.searchProduct("usb").size()); // not built yet, falls back to the backend
+        shared.rebuild(backend.getAllProducts());
+
+        db.insertNewProduct("0009", "USB3 drive", 8.99, "0009.jpg", 10);
+        assertEquals(2, db.searchProduct("usb").size());
+        db.updateProduct("0009", "Memory stick", 8.99, "0009.jpg", 10);
+        assertEquals(1, db.searchProduct("usb").size());
+        assertEquals("0009", db.searchProduct("memory").get(0).getProductId());
+        db.deleteProduct("0007");
+        assertTrue(db.searchProduct("usb").isEmpty());
+        assertEquals("0009", db.searchProduct("0009").get(0).getProductId()); // ID search still works
+        assertEquals("0009", db.searchProductFuzzy("memry", 5).get(0).getProductId());
+
+        db.insertNewProduct("0010", "USB hub", 12.99, "0010.jpg", 10);
+        db.insertNewProduct("0011", "USB cable", 2.99, "0011.jpg", 10);
+        ProductPage page = db.searchProductPage("usb", 1, 1); // second of the two ranked results
+        assertEquals(2, page.getTotalEstimate());
+        assertEquals("0011", page.getProducts().get(0).getProductId()); // "USB hub" is shorter, ranks first
+        assertFalse(page.hasMore());
+    }
+}
@@ -0,0 +1,137 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StockLockManager: parallel locking of unrelated products, ordered locking
+ * of several products without deadlock, and the per-stripe contention statistics.
+ */
+@DisplayName("StockLockManager Tests")
+public class StockLockManagerTest {
+
+    // finds a product ID that is not on the same stripe as the given one
+    private static String idOnAnotherStripe(StockLockManager manager, String productId) {
+        for (int i = 1; i < 10_000; i++) {
+            String candidate = String.format("%04d", i);
+            if (manager.stripeOf(candidate) != manager.stripeOf(productId)) return candidate;
+        }
+        throw new IllegalStateException("no product ID on another stripe");
+    }
+
+    @Test
+    @DisplayName("The stripe count is rounded up to a power of two")
+    void testStripeCount() {
+        assertEquals(64, new StockLockManager(64).getStripeCount());
+        assertEquals(16, new StockLockManager(10).getStripeCount());
+        assertEquals(1, new StockLockManager(0).getStripeCount());
+        StockLockManager manager = new StockLockManager(16);
+        assertEquals(manager.stripeOf("0001"), manager.stripeOf("0001 ")); // CHAR(4) padding is ignored
+    }
+
+    @Test
+    @DisplayName("Products on different stripes are locked in parallel")
+    void testDisjointProductsInParallel() throws Exception {
+        StockLockManager manager = new StockLockManager(64);
+        String first = "0001";
+        String second = idOnAnotherStripe(manager, first);
+        CountDownLatch firstHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> holder = executor.submit(() -> {
+                try (StockLockManager.Locked locked = manager.lockProduct(first)) {
+                    firstHeld.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            assertTrue(firstHeld.await(2, TimeUnit.SECONDS));
+
+            // while the first product is held, the second one can be locked without waiting
+            Future<?> other = executor.submit(() -> {
+                try (StockLockManager.Locked locked = manager.lockProducts(List.of(second))) {
+                    return null;
+                }
+            });
+            other.get(2, TimeUnit.SECONDS);
+            release.countDown();
+            holder.get(2, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        long contended = manager.getStripeStats().stream().mapToLong(s -> s.contended).sum();
+        assertEquals(0, contended);
+    }
+
+    @Test
+    @DisplayName("Trolleys locking the same products in opposite orders do not deadlock")
+    void testOrderedLockingAvoidsDeadlock() throws Exception {
+        StockLockManager manager = new StockLockManager(64);
+        String a = "0001";
+        String b = idOnAnotherStripe(manager, a);
+        int threads = 8, rounds = 2_000;
+        int[] counter = {0}; // only changed while holding both stripes
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                List<String> trolley = t % 2 == 0 ? List.of(a, b) : List.of(b, a);
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        try (StockLockManager.Locked locked = manager.lockProducts(trolley)) {
+                            counter[0]++;
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(20, TimeUnit.SECONDS); // a deadlock would time out here
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * rounds, counter[0]);
+
+        StockLockManager.StripeStats statsA = manager.getStripeStats().get(manager.stripeOf(a));
+        assertEquals((long) threads * rounds, statsA.acquisitions);
+        assertTrue(statsA.contentionRatio() <= 1.0);
+    }
+
+    @Test
+    @DisplayName("Waiting for a held stripe is counted as contention")
+    void testContentionStats() throws Exception {
+        StockLockManager manager = new StockLockManager(8);
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread other;
+        try (StockLockManager.Locked locked = manager.lockProduct("0003")) {
+            other = new Thread(() -> {
+                waiting.countDown();
+                try (StockLockManager.Locked again = manager.lockProduct("0003")) {
+                    // got the stripe after the main thread released it
+                }
+            });
+            other.start();
+            assertTrue(waiting.await(2, TimeUnit.SECONDS));
+            Thread.sleep(50); // let the other thread block on the stripe
+        }
+        other.join(2_000);
+
+        StockLockManager.StripeStats stats = manager.getStripeStats().get(manager.stripeOf("0003"));
+        assertEquals(2, stats.acquisitions);
+        assertEquals(1, stats.contended);
+        assertTrue(stats.totalWaitNanos > 0);
+        assertTrue(manager.toString().contains("contended=1"));
+    }
+}
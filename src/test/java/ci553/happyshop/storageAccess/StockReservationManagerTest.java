@@ -0,0 +1,149 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StockReservationManager: reserve, commit and release, expiry of abandoned reservations,
+ * and recovery of reservations left open, using InMemoryDatabaseRW to record them.
+ */
+@DisplayName("StockReservationManager Tests")
+public class StockReservationManagerTest {
+
+    private InMemoryDatabaseRW backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new InMemoryDatabaseRW();
+        backend.load(List.of(new Product("0001", "40 inch TV", "0001.jpg", 269.00, 10),
+                new Product("0003", "Toaster", "0003.jpg", 19.99, 5)));
+    }
+
+    private static ArrayList<Product> trolley(String id, int quantity) {
+        Product product = new Product(id, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(product);
+        return trolley;
+    }
+
+    private int stock(String id) {
+        return backend.searchByProductId(id).getStockQuantity();
+    }
+
+    @Test
+    @DisplayName("Reserved stock is kept on commit and given back on release")
+    void testCommitAndRelease() throws SQLException {
+        StockReservationManager manager = new StockReservationManager(backend, 60_000);
+
+        StockReservation paid = manager.reserve(trolley("0001", 3));
+        assertTrue(paid.isReserved());
+        assertEquals(7, stock("0001"));
+        assertTrue(manager.commit(paid.getReservationId()));
+        assertFalse(manager.release(paid.getReservationId())); // already committed
+        assertEquals(7, stock("0001"));
+
+        StockReservation cancelled = manager.reserve(trolley("0001", 2));
+        assertEquals(5, stock("0001"));
+        assertTrue(manager.release(cancelled.getReservationId()));
+        assertEquals(7, stock("0001"));
+        assertFalse(manager.commit(cancelled.getReservationId()));
+        assertEquals(0, manager.getActiveCount());
+    }
+
+    @Test
+    @DisplayName("Nothing is reserved if a product has insufficient stock")
+    void testInsufficientStock() throws SQLException {
+        StockReservationManager manager = new StockReservationManager(backend, 60_000);
+        StockReservation reservation = manager.reserve(trolley("0003", 6));
+
+        assertFalse(reservation.isReserved());
+        assertEquals(1, reservation.getInsufficientProducts().size());
+        assertEquals(5, stock("0003"));
+        assertEquals(0, manager.getActiveCount());
+    }
+
+    @Test
+    @DisplayName("Abandoned reservations expire and their stock is released")
+    void testExpiry() throws Exception {
+        StockReservationManager manager = new StockReservationManager(backend, 20);
+        StockReservation reservation = manager.reserve(trolley("0003", 5));
+        assertEquals(0, stock("0003"));
+
+        Thread.sleep(50);
+        assertEquals(1, manager.expireReservations());
+        assertEquals(5, stock("0003"));
+        assertFalse(manager.commit(reservation.getReservationId())); // the payment came too late
+    }
+
+    @Test
+    @DisplayName("Reservations left open by a previous run are released at start")
+    void testRecovery() throws Exception {
+        StockReservationManager crashed = new StockReservationManager(backend, 60_000, stoppedProcess());
+        StockReservation open = crashed.reserve(trolley("0001", 4));
+        StockReservation paid = crashed.reserve(trolley("0003", 2));
+        crashed.commit(paid.getReservationId());
+        assertEquals(6, stock("0001"));
+        assertEquals(3, stock("0003"));
+        // no shutdown: the application stopped during the payment of the first trolley
+
+        StockReservationManager restarted = new StockReservationManager(backend, 60_000);
+        assertEquals(1, restarted.recover());
+        assertEquals(10, stock("0001"));
+        assertEquals(3, stock("0003")); // the paid reservation keeps its stock
+        assertFalse(restarted.commit(open.getReservationId()));
+        assertFalse(crashed.commit(open.getReservationId()), "its record was ended by the recovery");
+        assertEquals(10, stock("0001"));
+
+        // a second start has nothing to release
+        assertTrue(backend.getOpenReservations().isEmpty());
+        assertEquals(0, new StockReservationManager(backend, 60_000).recover());
+    }
+
+    @Test
+    @DisplayName("Recovery leaves the reservations of running clients alone until they expire")
+    void testRecoveryWithSharedDatabase() throws Exception {
+        // the test runner's parent process stands for another client that is still running
+        String otherHost = "4242@some-other-host";
+        String running = ProcessHandle.current().parent().orElseThrow().pid()
+                + StockReservation.THIS_PROCESS.substring(StockReservation.THIS_PROCESS.indexOf('@'));
+        StockReservationManager otherClient = new StockReservationManager(backend, 60_000, running);
+        StockReservationManager remoteClient = new StockReservationManager(backend, 60_000, otherHost);
+        StockReservationManager expiredClient = new StockReservationManager(backend, -1, otherHost);
+        StockReservation held = otherClient.reserve(trolley("0001", 4));
+        remoteClient.reserve(trolley("0001", 1));
+        expiredClient.reserve(trolley("0003", 2));
+        assertEquals(5, stock("0001"));
+        assertEquals(3, stock("0003"));
+
+        StockReservationManager starting = new StockReservationManager(backend, 60_000);
+        assertEquals(1, starting.recover(), "only the expired reservation is released");
+        assertEquals(5, stock("0001"));
+        assertEquals(5, stock("0003"));
+        assertTrue(otherClient.commit(held.getReservationId()), "the running client can still commit");
+        assertEquals(5, stock("0001"));
+    }
+
+    @Test
+    @DisplayName("Only other processes on this host that are no longer running count as stopped")
+    void testOwnerStopped() {
+        assertTrue(StockReservationManager.ownerStopped(stoppedProcess()));
+        assertFalse(StockReservationManager.ownerStopped(StockReservation.THIS_PROCESS));
+        assertFalse(StockReservationManager.ownerStopped(Long.MAX_VALUE + "@some-other-host"));
+        assertFalse(StockReservationManager.ownerStopped(""));
+    }
+
+    // an owner on this host whose process does not exist
+    private static String stoppedProcess() {
+        String thisProcess = StockReservation.THIS_PROCESS;
+        return Long.MAX_VALUE + thisProcess.substring(thisProcess.indexOf('@'));
+    }
+}
@@ -0,0 +1,150 @@
+package ci553.happyshop.systemSetup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SchemaMigrator against an in-memory Derby database:
+ * an old ProductTable keeps its data through the migrations, and running them again changes nothing.
+ */
+@DisplayName("SchemaMigrator Tests")
+public class SchemaMigratorTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:schemaMigratorTestDB;create=true";
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection(TEST_DB_URL);
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"StockReservation", "ProductTable", "SchemaVersion"}) {
+                try {
+                    statement.executeUpdate("DROP TABLE " + table);
+                } catch (SQLException e) {
+                    // table does not exist yet
+                }
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    private void createOldProductTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE ProductTable(" +
+                    "productID CHAR(4) PRIMARY KEY," +
+                    "description VARCHAR(100)," +
+                    "unitPrice DOUBLE," +
+                    "image VARCHAR(100)," +
+                    "inStock INT," +
+                    "CHECK (inStock >= 0))");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00,'0001.jpg',100)");
+            statement.executeUpdate("INSERT INTO ProductTable VALUES('0007', 'USB drive', 6.99, '0007.jpg',3)");
+        }
+    }
+
+    private int columnType(String column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(null, null, "PRODUCTTABLE", column)) {
+            assertTrue(rs.next(), column + " exists");
+            return rs.getInt("DATA_TYPE");
+        }
+    }
+
+    @Test
+    @DisplayName("Migrations keep the products and widen the columns")
+    void testMigratesExistingTable() throws SQLException {
+        createOldProductTable();
+        SchemaMigrator migrator = new SchemaMigrator(TEST_DB_URL);
+
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrator.migrate());
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrator.currentVersion());
+        assertEquals(Types.VARCHAR, columnType("PRODUCTID"));
+        assertEquals(Types.DECIMAL, columnType("UNITPRICE"));
+        assertEquals(Types.INTEGER, columnType("VERSION"));
+
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT productID, unitPrice, inStock FROM ProductTable WHERE productID = '0007'")) {
+                assertTrue(rs.next());
+                assertEquals("0007", rs.getString(1)); // no CHAR padding left
+                assertEquals(new BigDecimal("6.99"), rs.getBigDecimal(2)); // exact, not 6.9899999...
+                assertEquals(3, rs.getInt(3));
+            }
+
+            // longer IDs fit now, and the stock check survived the copy
+            statement.executeUpdate("INSERT INTO ProductTable (productID, description, unitPrice, image, inStock) "
+                    + "VALUES('1000000001', 'Kettle', 15.00, 'k.jpg', 5)");
+            SQLException negativeStock = assertThrows(SQLException.class,
+                    () -> statement.executeUpdate("UPDATE ProductTable SET inStock = -1 WHERE productID = '0001'"));
+            assertEquals("23513", negativeStock.getSQLState()); // check constraint violated
+        }
+    }
+
+    @Test
+    @DisplayName("A StockReservation table left over from an earlier schema is kept and completed")
+    void testLeftOverReservationTable() throws SQLException {
+        createOldProductTable();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE StockReservation(" +
+                    "reservationID VARCHAR(36) NOT NULL," +
+                    "lineNo INT NOT NULL," +
+                    "productID VARCHAR(10) NOT NULL," +
+                    "quantity INT NOT NULL," +
+                    "expiresAt BIGINT NOT NULL," +
+                    "PRIMARY KEY (reservationID, lineNo))");
+        }
+        SchemaMigrator migrator = new SchemaMigrator(TEST_DB_URL);
+
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrator.migrate());
+        try (ResultSet rs = connection.getMetaData().getColumns(null, null, "STOCKRESERVATION", "OWNER")) {
+            assertTrue(rs.next(), "owner column added");
+        }
+    }
+
+    @Test
+    @DisplayName("Running the migrations again changes nothing")
+    void testIdempotent() throws SQLException {
+        createOldProductTable();
+        SchemaMigrator migrator = new SchemaMigrator(TEST_DB_URL);
+        migrator.migrate();
+
+        assertEquals(0, migrator.migrate());
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrator.currentVersion());
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM ProductTable")) {
+            assertTrue(rs.next());
+            assertEquals(2, rs.getInt(1));
+        }
+    }
+
+    @Test
+    @DisplayName("An empty database gets the whole schema")
+    void testEmptyDatabase() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(TEST_DB_URL);
+        assertEquals(0, migrator.currentVersion());
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), migrator.migrate());
+        assertEquals(Types.VARCHAR, columnType("PRODUCTID"));
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, "PRODUCTTABLE", false, false)) {
+            boolean stockIndex = false;
+            while (rs.next()) {
+                if ("INSTOCK".equals(rs.getString("COLUMN_NAME"))) stockIndex = true;
+            }
+            assertTrue(stockIndex, "inStock is indexed");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ci553.happyshop.utility;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the asynchronous logging pipeline: AsyncFileAppender, LogLevel and Logger.
+ */
+@DisplayName("AsyncFileAppender Tests")
+public class AsyncFileAppenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static AsyncFileAppender.LogEvent event(LogLevel level, String message) {
+        return new AsyncFileAppender.LogEvent(System.currentTimeMillis(), level, "DerbyRW", "main", message, null);
+    }
+
+    @Test
+    @DisplayName("Events are written as structured key=value lines")
+    void testStructuredLines() throws IOException {
+        Path logFile = tempDir.resolve("happyshop.log");
+        AsyncFileAppender appender = new AsyncFileAppender(logFile, 64, 1_000_000, 3);
+        appender.append(event(LogLevel.WARN, "Product \"0004\" is NOT in stock"));
+        appender.close(2_000);
+
+        List<String> lines = Files.readAllLines(logFile);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("level=WARN logger=DerbyRW thread=\"main\""));
+        assertTrue(lines.get(0).endsWith("msg=\"Product \\\"0004\\\" is NOT in stock\""));
+    }
+
+    @Test
+    @DisplayName("The log file is rotated and only maxFiles old files are kept")
+    void testRotation() throws IOException {
+        Path logFile = tempDir.resolve("happyshop.log");
+        AsyncFileAppender appender = new AsyncFileAppender(logFile, 1024, 500, 2);
+        for (int i = 0; i < 40; i++) {
+            appender.append(event(LogLevel.INFO, "message number " + i));
+        }
+        appender.close(2_000);
+
+        assertTrue(Files.exists(logFile));
+        assertTrue(Files.exists(tempDir.resolve("happyshop.1.log")));
+        assertTrue(Files.exists(tempDir.resolve("happyshop.2.log")));
+        assertFalse(Files.exists(tempDir.resolve("happyshop.3.log")));
+        assertTrue(Files.size(logFile) <= 500);
+        assertTrue(Files.readString(logFile).contains("message number 39"));
+    }
+
+    @Test
+    @DisplayName("Messages below the level are skipped without building them")
+    void testLevelsAndLazyMessages() {
+        LogLevel previous = Logger.getLevel();
+        try {
+            Logger.setLevel(LogLevel.WARN);
+            Logger log = Logger.getLogger(AsyncFileAppenderTest.class);
+            int[] built = {0};
+            log.debug(() -> "debug " + (++built[0]));
+            log.info(() -> "info " + (++built[0]));
+            assertEquals(0, built[0]);
+            assertTrue(log.isEnabled(LogLevel.ERROR));
+            assertFalse(log.isDebugEnabled());
+        } finally {
+            Logger.setLevel(previous);
+        }
+        assertEquals(LogLevel.WARN, LogLevel.parse(" warn ", LogLevel.INFO));
+        assertEquals(LogLevel.INFO, LogLevel.parse("loud", LogLevel.INFO));
+    }
+}